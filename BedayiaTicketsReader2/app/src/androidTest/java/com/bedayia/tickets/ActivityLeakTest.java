@@ -0,0 +1,83 @@
+package com.bedayia.tickets;
+
+import android.Manifest;
+import android.app.Activity;
+import android.content.Context;
+
+import androidx.test.core.app.ActivityScenario;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+import androidx.test.rule.GrantPermissionRule;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Heap regression test: once a screen is destroyed nothing app-scoped may still
+ * reach it. The old OdooApiService singleton kept the first Activity it was
+ * created with for the life of the process.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ActivityLeakTest {
+    private static final int GC_ATTEMPTS = 50;
+
+    @Rule
+    public GrantPermissionRule camera = GrantPermissionRule.grant(Manifest.permission.CAMERA);
+
+    @Before
+    public void servicesAreBuilt() throws Exception {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        TicketsApp.from(context).services().get(30, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void loginScreenIsNotRetained() throws InterruptedException {
+        assertCollected(launchAndDestroy(LoginActivity.class));
+    }
+
+    @Test
+    public void mainScreenIsNotRetained() throws InterruptedException {
+        assertCollected(launchAndDestroy(MainActivity.class));
+    }
+
+    @Test
+    public void scannerIsNotRetained() throws InterruptedException {
+        assertCollected(launchAndDestroy(QRScannerActivity.class));
+    }
+
+    @Test
+    public void servicesAreBuiltOnce() throws Exception {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        TicketsApp app = TicketsApp.from(context);
+        assertSame(app.services().get(), app.services().get());
+        assertSame(app.services().get().api, app.services().get().api);
+    }
+
+    private static <A extends Activity> WeakReference<Activity> launchAndDestroy(Class<A> type) {
+        AtomicReference<WeakReference<Activity>> activity = new AtomicReference<>();
+        try (ActivityScenario<A> scenario = ActivityScenario.launch(type)) {
+            scenario.onActivity(launched -> activity.set(new WeakReference<>(launched)));
+        }
+        return activity.get();
+    }
+
+    private static void assertCollected(WeakReference<Activity> activity) throws InterruptedException {
+        for (int attempt = 0; attempt < GC_ATTEMPTS && activity.get() != null; attempt++) {
+            InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+            Runtime.getRuntime().gc();
+            System.runFinalization();
+            Thread.sleep(100);
+        }
+        Activity retained = activity.get();
+        assertNull((retained != null ? retained.getClass().getSimpleName() : "") + " still reachable after onDestroy",
+                retained);
+    }
+}
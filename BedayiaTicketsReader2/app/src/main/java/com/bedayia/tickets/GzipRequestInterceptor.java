@@ -0,0 +1,63 @@
+package com.bedayia.tickets;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.Okio;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Gzips request bodies for hosts that have said they accept it.
+ *
+ * <p>OkHttp already negotiates gzip for responses. For requests there is no
+ * handshake, so we wait until a host advertises {@code Accept-Encoding: gzip}
+ * on a response (RFC 7694) before compressing anything sent to it. An older
+ * backend therefore keeps receiving plain bodies.
+ */
+class GzipRequestInterceptor implements Interceptor {
+    // Below this a gzip header and trailer cost more than they save
+    private static final long MIN_COMPRESS_BYTES = 256;
+
+    private final Set<String> gzipHosts = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        String host = request.url().host() + ":" + request.url().port();
+
+        RequestBody body = request.body();
+        if (body != null
+                && request.header("Content-Encoding") == null
+                && gzipHosts.contains(host)
+                && body.contentLength() >= MIN_COMPRESS_BYTES) {
+            request = request.newBuilder()
+                    .header("Content-Encoding", "gzip")
+                    .method(request.method(), gzip(body))
+                    .build();
+        }
+
+        Response response = chain.proceed(request);
+        String accepted = response.header("Accept-Encoding");
+        if (accepted != null && accepted.contains("gzip")) {
+            gzipHosts.add(host);
+        }
+        return response;
+    }
+
+    // Compressed up front so the request still carries a Content-Length
+    private static RequestBody gzip(RequestBody body) throws IOException {
+        Buffer compressed = new Buffer();
+        try (BufferedSink sink = Okio.buffer(new GzipSink(compressed))) {
+            body.writeTo(sink);
+        }
+        MediaType contentType = body.contentType();
+        return RequestBody.create(compressed.readByteString(), contentType);
+    }
+}
@@ -7,13 +7,15 @@ import android.widget.TextView;
 import android.widget.Toast;
 import android.view.View;
 import androidx.appcompat.app.AppCompatActivity;
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
-import java.lang.reflect.Type;
+import androidx.core.content.ContextCompat;
+import com.bedayia.tickets.core.CancellationScope;
+import com.bedayia.tickets.core.Futures;
+import com.bedayia.tickets.core.InviteeJson;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public class InviteesActivity extends AppCompatActivity implements InviteesAdapter.OnAttendanceChangeListener {
     private ListView inviteesListView;
@@ -25,6 +27,7 @@ public class InviteesActivity extends AppCompatActivity implements InviteesAdapt
     private TextView mainInviteeQrcode;
     private TextView mainInviteeSeats;
     private Map<Integer, Boolean> originalAttendance;
+    private final CancellationScope requestScope = new CancellationScope();
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -53,11 +56,15 @@ public class InviteesActivity extends AppCompatActivity implements InviteesAdapt
         submitButton.setOnClickListener(v -> submitAttendanceData());
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        requestScope.close();
+    }
+
     private void parseInviteesData(String jsonResponse) {
         try {
-            Gson gson = new Gson();
-            Type listType = new TypeToken<List<Invitee>>(){}.getType();
-            List<Invitee> invitees = gson.fromJson(jsonResponse, listType);
+            List<Invitee> invitees = InviteeJson.parseList(jsonResponse);
             
             // Find main invitee
             Invitee mainInvitee = null;
@@ -94,27 +101,27 @@ public class InviteesActivity extends AppCompatActivity implements InviteesAdapt
         submitButton.setEnabled(false);
         submitButton.setText("Submitting...");
 
-        // Send updated data to API
-        OdooApiService.getInstance(this).updateInviteesData(inviteesList, new OdooApiCallback() {
-            @Override
-            public void onSuccess(String response) {
-                runOnUiThread(() -> {
-                    submitButton.setEnabled(false);
+        // Send updated data to API once the backend client is built; the upload completes
+        // even if the usher leaves the screen
+        CompletableFuture<Boolean> checkIn = TicketsApp.from(this).services()
+                .thenCompose(services -> services.api.checkIn(inviteesList));
+        requestScope.observe(checkIn)
+                .whenCompleteAsync((uploaded, error) -> {
+                    if (Futures.isCancellation(error)) {
+                        return;
+                    }
                     submitButton.setText("Submit Attendance");
-                    Toast.makeText(InviteesActivity.this, "Attendance updated successfully!", Toast.LENGTH_LONG).show();
-                    finish();
-                });
-            }
-
-            @Override
-            public void onError(String error) {
-                runOnUiThread(() -> {
-                    submitButton.setEnabled(true);
-                    submitButton.setText("Submit Attendance");
-                    Toast.makeText(InviteesActivity.this, "Error: " + error, Toast.LENGTH_LONG).show();
-                });
-            }
-        });
+                    if (error == null) {
+                        submitButton.setEnabled(false);
+                        Toast.makeText(InviteesActivity.this, uploaded
+                                ? "Attendance updated successfully!"
+                                : "Saved offline; will sync when the server is back", Toast.LENGTH_LONG).show();
+                        finish();
+                    } else {
+                        submitButton.setEnabled(true);
+                        Toast.makeText(InviteesActivity.this, "Error: " + Futures.unwrap(error).getMessage(), Toast.LENGTH_LONG).show();
+                    }
+                }, ContextCompat.getMainExecutor(this));
     }
 
     // Called by adapter when a checkbox is changed
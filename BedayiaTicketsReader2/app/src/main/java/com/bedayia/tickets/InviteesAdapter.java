@@ -68,7 +68,7 @@ public class InviteesAdapter extends BaseAdapter {
         boolean isReadOnly = invitee.isInviteesAttendance();
         holder.attendanceCheckBox.setEnabled(!isReadOnly);
     
-        if (invitee.getInviteesAttendanceTime() != null && !invitee.getInviteesAttendanceTime().equals("false")) {
+        if (invitee.hasAttendanceTime()) {
             holder.attendanceTimeTextView.setText("Time: " + invitee.getInviteesAttendanceTime());
             holder.attendanceTimeTextView.setVisibility(View.VISIBLE);
         } else {
@@ -8,12 +8,17 @@ import android.widget.Button;
 import android.widget.EditText;
 import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.content.ContextCompat;
+import com.bedayia.tickets.core.CancellationScope;
+import com.bedayia.tickets.core.Futures;
+import java.util.concurrent.CompletableFuture;
 
 public class LoginActivity extends AppCompatActivity {
     private static final String PREFS_NAME = "LoginPrefs";
     private static final String API_KEY = "api_key";
     private static final String USERNAME = "username";
     private static final String DB_NAME = "bedayia_school";
+    private final CancellationScope requestScope = new CancellationScope();
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -37,33 +42,35 @@ public class LoginActivity extends AppCompatActivity {
             loginButton.setEnabled(false);
             loginButton.setText("Logging in...");
 
-            // Make login API call
-            OdooApiService.getInstance(this).login(username, password, DB_NAME, new OdooApiCallback() {
-                @Override
-                public void onSuccess(String apiKey) {
-                    runOnUiThread(() -> {
-                        // Save API key and username to SharedPreferences
-                        saveApiKey(apiKey, username);
-                        
-                        // Navigate to MainActivity
-                        Intent intent = new Intent(LoginActivity.this, MainActivity.class);
-                        startActivity(intent);
-                        finish();
-                    });
-                }
+            // Make login API call once the backend client is built (at once unless restored
+            // without the splash); the call itself is tracked too, so leaving cancels it
+            CompletableFuture<String> login = TicketsApp.from(this).services()
+                    .thenCompose(services -> requestScope.track(services.api.login(username, password, DB_NAME)));
+            requestScope.track(login)
+                    .whenCompleteAsync((apiKey, error) -> {
+                        if (error == null) {
+                            // Save API key and username to SharedPreferences
+                            saveApiKey(apiKey, username);
 
-                @Override
-                public void onError(String error) {
-                    runOnUiThread(() -> {
-                        loginButton.setEnabled(true);
-                        loginButton.setText("Login");
-                        Toast.makeText(LoginActivity.this, error, Toast.LENGTH_LONG).show();
-                    });
-                }
-            });
+                            // Navigate to MainActivity
+                            Intent intent = new Intent(LoginActivity.this, MainActivity.class);
+                            startActivity(intent);
+                            finish();
+                        } else if (!Futures.isCancellation(error)) {
+                            loginButton.setEnabled(true);
+                            loginButton.setText("Login");
+                            Toast.makeText(LoginActivity.this, Futures.unwrap(error).getMessage(), Toast.LENGTH_LONG).show();
+                        }
+                    }, ContextCompat.getMainExecutor(this));
         });
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        requestScope.close();
+    }
+
     private void saveApiKey(String apiKey, String username) {
         SharedPreferences prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
         SharedPreferences.Editor editor = prefs.edit();
@@ -5,11 +5,24 @@ import android.content.Intent;
 import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
 import android.os.Bundle;
+import android.view.View;
 import android.widget.ImageButton;
+import android.widget.TextView;
 import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
+import androidx.lifecycle.Lifecycle;
+import com.bedayia.tickets.core.CancellationScope;
+import com.bedayia.tickets.core.Futures;
+import com.bedayia.tickets.core.InviteeJson;
+import com.bedayia.tickets.core.OccupancyMirror;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 public class MainActivity extends AppCompatActivity {
     private static final int QR_SCAN_REQUEST_CODE = 1001;
@@ -20,6 +33,9 @@ public class MainActivity extends AppCompatActivity {
     
     private ImageButton scanButton;
     private ImageButton logoutButton;
+    private TextView occupancyText;
+    private OdooApiService api;
+    private final CancellationScope requestScope = new CancellationScope();
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -28,6 +44,7 @@ public class MainActivity extends AppCompatActivity {
 
         scanButton = findViewById(R.id.scan_button);
         logoutButton = findViewById(R.id.logout_button);
+        occupancyText = findViewById(R.id.occupancy_text);
         
         scanButton.setOnClickListener(v -> {
             if (checkCameraPermission()) {
@@ -38,6 +55,91 @@ public class MainActivity extends AppCompatActivity {
         });
 
         logoutButton.setOnClickListener(v -> logout());
+
+        // Usable once the backend client is there; only takes a moment when restored without the splash
+        scanButton.setEnabled(false);
+        logoutButton.setEnabled(false);
+        TicketsApp.from(this).whenReady(this, requestScope, services -> onServicesReady(services.api));
+    }
+
+    private void onServicesReady(OdooApiService api) {
+        this.api = api;
+        scanButton.setEnabled(true);
+        logoutButton.setEnabled(true);
+
+        // Hidden on purpose: only the event staff need the audit export
+        findViewById(R.id.header_title).setOnLongClickListener(v -> {
+            exportScanJournal();
+            return true;
+        });
+
+        // Logged in from here on: follow check-ins made at the other gates, through
+        // the backend and directly over the LAN for when the backend is down
+        api.startAttendanceStream();
+        api.startPeerSync();
+        api.startOccupancyUpdates();
+        api.startReconcile();
+        if (getLifecycle().getCurrentState().isAtLeast(Lifecycle.State.STARTED)) {
+            followOccupancy();
+        }
+    }
+
+    private void exportScanJournal() {
+        requestScope.track(CompletableFuture.supplyAsync(() -> {
+            try {
+                return api.exportScanJournal();
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        })).whenCompleteAsync((File file, Throwable error) -> {
+            if (Futures.isCancellation(error)) {
+                return;
+            }
+            Toast.makeText(MainActivity.this, error == null ? "Scan journal saved to " + file.getPath()
+                    : "Export failed: " + Futures.unwrap(error).getMessage(), Toast.LENGTH_LONG).show();
+        }, ContextCompat.getMainExecutor(this));
+    }
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        if (api != null) {
+            followOccupancy();
+        }
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        // The mirror outlives this screen; don't let it hold on to it
+        if (api != null) {
+            api.getOccupancy().setListener(null);
+        }
+    }
+
+    private void followOccupancy() {
+        OccupancyMirror occupancy = api.getOccupancy();
+        occupancy.setListener(() -> runOnUiThread(this::showOccupancy));
+        showOccupancy();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        requestScope.close();
+    }
+
+    private void showOccupancy() {
+        StringBuilder text = new StringBuilder();
+        for (OccupancyMirror.EventCount count : api.getOccupancy().snapshot()) {
+            if (text.length() > 0) {
+                text.append('\n');
+            }
+            text.append(String.format(Locale.US, "%s: %d of %d guests inside", count.getName(),
+                    count.getGuestsAttended(), count.getGuests()));
+        }
+        occupancyText.setText(text);
+        occupancyText.setVisibility(text.length() > 0 ? View.VISIBLE : View.GONE);
     }
 
     private void logout() {
@@ -47,46 +149,30 @@ public class MainActivity extends AppCompatActivity {
         String username = prefs.getString(USERNAME, "");
         
         if (!apiKey.isEmpty() && !username.isEmpty()) {
-            // Call logout API
-            OdooApiService.getInstance(this).logout(apiKey, username, new OdooApiCallback() {
-                @Override
-                public void onSuccess(String response) {
-                    runOnUiThread(() -> {
+            // Call logout API; the revocation finishes even if this screen goes away
+            requestScope.observe(api.logout(apiKey, username))
+                    .whenCompleteAsync((ignored, error) -> {
+                        if (Futures.isCancellation(error)) {
+                            return;
+                        }
                         // Clear the API key and username from SharedPreferences
+                        // (even if API call fails, still logout locally)
                         SharedPreferences.Editor editor = prefs.edit();
                         editor.remove(API_KEY);
                         editor.remove(USERNAME);
                         editor.apply();
 
                         // Show logout message
-                        Toast.makeText(MainActivity.this, "Logged out successfully", Toast.LENGTH_SHORT).show();
+                        Toast.makeText(MainActivity.this,
+                                error == null ? "Logged out successfully" : "Logged out (offline)",
+                                Toast.LENGTH_SHORT).show();
 
                         // Go back to LoginActivity
                         Intent intent = new Intent(MainActivity.this, LoginActivity.class);
                         intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
                         startActivity(intent);
                         finish();
-                    });
-                }
-
-                @Override
-                public void onError(String error) {
-                    runOnUiThread(() -> {
-                        // Even if API call fails, still logout locally
-                        SharedPreferences.Editor editor = prefs.edit();
-                        editor.remove(API_KEY);
-                        editor.remove(USERNAME);
-                        editor.apply();
-
-                        Toast.makeText(MainActivity.this, "Logged out (offline)", Toast.LENGTH_SHORT).show();
-
-                        Intent intent = new Intent(MainActivity.this, LoginActivity.class);
-                        intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
-                        startActivity(intent);
-                        finish();
-                    });
-                }
-            });
+                    }, ContextCompat.getMainExecutor(this));
         } else {
             // No API key or username stored, just go to login
             Toast.makeText(this, "Logged out successfully", Toast.LENGTH_SHORT).show();
@@ -132,7 +218,11 @@ public class MainActivity extends AppCompatActivity {
         super.onActivityResult(requestCode, resultCode, data);
         if (requestCode == QR_SCAN_REQUEST_CODE && resultCode == RESULT_OK) {
             String scannedData = data.getStringExtra("SCANNED_DATA");
-            if (scannedData != null) {
+            String apiResponse = data.getStringExtra("API_RESPONSE");
+            if (apiResponse != null) {
+                // The scanner already looked the code up - don't fetch it a second time
+                showInvitees(apiResponse);
+            } else if (scannedData != null) {
                 // Send the scanned data to Odoo API and launch InviteesActivity
                 sendToOdooAPI(scannedData);
             }
@@ -140,22 +230,23 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void sendToOdooAPI(String scannedData) {
-        OdooApiService.getInstance(this).getInviteesData(scannedData, new OdooApiCallback() {
-            @Override
-            public void onSuccess(String response) {
-                runOnUiThread(() -> {
-                    Intent intent = new Intent(MainActivity.this, InviteesActivity.class);
-                    intent.putExtra("INVITEES_DATA", response);
-                    startActivity(intent);
-                });
-            }
+        // A result can reach a screen restored after process death before its services are back
+        CompletableFuture<List<Invitee>> lookup = TicketsApp.from(this).services()
+                .thenCompose(services -> requestScope.track(services.api.getInvitees(scannedData)));
+        requestScope.track(lookup)
+                .whenCompleteAsync((invitees, error) -> {
+                    if (error == null) {
+                        showInvitees(InviteeJson.toJson(invitees));
+                    } else if (!Futures.isCancellation(error)) {
+                        Toast.makeText(MainActivity.this, "Error: " + Futures.unwrap(error).getMessage(),
+                                Toast.LENGTH_LONG).show();
+                    }
+                }, ContextCompat.getMainExecutor(this));
+    }
 
-            @Override
-            public void onError(String error) {
-                runOnUiThread(() -> {
-                    Toast.makeText(MainActivity.this, "Error: " + error, Toast.LENGTH_LONG).show();
-                });
-            }
-        });
+    private void showInvitees(String inviteesJson) {
+        Intent intent = new Intent(MainActivity.this, InviteesActivity.class);
+        intent.putExtra("INVITEES_DATA", inviteesJson);
+        startActivity(intent);
     }
 } 
\ No newline at end of file
@@ -1,6 +0,0 @@
-package com.bedayia.tickets;
-
-public interface OdooApiCallback {
-    void onSuccess(String response);
-    void onError(String error);
-} 
\ No newline at end of file
@@ -2,13 +2,41 @@ package com.bedayia.tickets;
 
 import android.content.Context;
 import android.content.SharedPreferences;
+import android.net.wifi.WifiManager;
 import android.util.Log;
+import com.bedayia.tickets.core.ApiException;
+import com.bedayia.tickets.core.AttendanceChange;
+import com.bedayia.tickets.core.AttendanceState;
+import com.bedayia.tickets.core.AttendanceStreamClient;
+import com.bedayia.tickets.core.AttendanceTimes;
+import com.bedayia.tickets.core.BackendEndpoint;
+import com.bedayia.tickets.core.CircuitBreaker;
+import com.bedayia.tickets.core.EndpointPool;
+import com.bedayia.tickets.core.EndpointUnavailableException;
+import com.bedayia.tickets.core.Futures;
+import com.bedayia.tickets.core.GateLedger;
+import com.bedayia.tickets.core.GateReconciler;
+import com.bedayia.tickets.core.InviteeCbor;
+import com.bedayia.tickets.core.InviteeJson;
+import com.bedayia.tickets.core.InviteeLookup;
+import com.bedayia.tickets.core.OccupancyMirror;
+import com.bedayia.tickets.core.PeerGossip;
+import com.bedayia.tickets.core.RequestScheduler.Priority;
+import com.bedayia.tickets.core.RequestScheduler;
+import com.bedayia.tickets.core.ScanJournal;
+import com.bedayia.tickets.core.ScanResult;
+import com.bedayia.tickets.core.UploadOutbox;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
+import com.google.gson.reflect.TypeToken;
+import okhttp3.Dispatcher;
 import okhttp3.Interceptor;
+import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
 import okhttp3.logging.HttpLoggingInterceptor;
 import retrofit2.Call;
 import retrofit2.Callback;
@@ -16,21 +44,106 @@ import retrofit2.Response;
 import retrofit2.Retrofit;
 import retrofit2.converter.gson.GsonConverterFactory;
 import retrofit2.http.Body;
+import retrofit2.http.GET;
+import retrofit2.http.Header;
+import retrofit2.http.Headers;
 import retrofit2.http.POST;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+public class OdooApiService implements InviteeLookup {
+    // Encoding of the invitee list in get_data responses and update_data requests
+    public enum WireFormat { JSON, CBOR }
 
-public class OdooApiService {
     private static final String TAG = "OdooApiService";
-    private static final String BASE_URL = "http://192.168.100.17:3000/api/v1/";
     private static final String PREFS_NAME = "LoginPrefs";
     private static final String API_KEY = "api_key";
-    
-    private static OdooApiService instance;
-    private final OdooApiInterface apiInterface;
-    private Context context;
+    private static final String WIRE_FORMAT = "wire_format";
+    private static final String USERNAME = "username";
+    // Issued with the API key; signs the gate-to-gate sync of the event being run
+    private static final String GATE_SECRET = "gate_secret";
+    private static final long LOOKUP_DEADLINE_MS = 8_000;
+    private static final long DEFAULT_DEADLINE_MS = 15_000;
+    // Bounds sockets and threads for the whole app; a gate only ever needs a handful
+    private static final int MAX_CONCURRENT_REQUESTS = 4;
+    // Background work never takes the last slots, so a lookup can always start
+    private static final int MAX_BACKGROUND_REQUESTS = 2;
+    // Consecutive transport failures before an endpoint is skipped, and for how long
+    private static final int BREAKER_FAILURE_THRESHOLD = 3;
+    private static final long BREAKER_OPEN_MS = 15_000;
+    // Hedge delay until an endpoint has enough history for a p95
+    private static final long DEFAULT_HEDGE_DELAY_MS = 300;
+    private static final long MIN_HEDGE_DELAY_MS = 50;
+    // Anti-entropy round between gates, and how often offline check-ins are retried
+    private static final long GATE_SYNC_INTERVAL_MS = 500;
+    private static final long RECONCILE_INTERVAL_MS = 15_000;
+    private static final int RECONCILE_BATCH_SIZE = 50;
+    // Fresh headcount snapshot; pushes keep it current in between
+    private static final long OCCUPANCY_REFRESH_MS = 60_000;
+    // About a day of scanning at a busy gate; older entries are overwritten
+    private static final int SCAN_JOURNAL_CAPACITY = 8192;
+    private static final String SCAN_JOURNAL_FILE = "scan-journal.bin";
+    private static final String UPLOAD_OUTBOX_FILE = "upload-outbox.jsonl";
+    private static final MediaType CBOR = MediaType.get(InviteeCbor.MEDIA_TYPE);
+    private static final Type EVENT_COUNT_LIST_TYPE = new TypeToken<List<OccupancyMirror.EventCount>>(){}.getType();
+
+    // One Retrofit interface per configured backend, all sharing one OkHttp client
+    private final Map<BackendEndpoint, OdooApiInterface> apiInterfaces = new HashMap<>();
+    private final EndpointPool endpointPool;
+    private final Gson gson = new Gson();
+    // Check-ins pushed from other gates, overlaid on every lookup
+    private final AttendanceState attendanceState = new AttendanceState();
+    private final AttendanceStreamClient attendanceStream;
+    // Live headcount per event
+    private final OccupancyMirror occupancy = new OccupancyMirror();
+    private ScheduledFuture<?> occupancyRefresh;
+    // Check-ins shared with the other gates over the LAN, for when the backend is down
+    private final GateLedger gateLedger;
+    private final GateReconciler reconciler;
+    private ScheduledFuture<?> reconcileTask;
+    // Check-ins the server doesn't have yet, by the account that made them, kept across
+    // restarts; null if the file could not be opened
+    private UploadOutbox uploadOutbox;
+    // Keys of earlier sessions the server refused; their check-ins wait for that user's next login
+    private final Set<String> refusedKeys = ConcurrentHashMap.newKeySet();
+    // Scans and check-ins made on this device, kept across restarts; null if the file could not be opened
+    private ScanJournal scanJournal;
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(namedThreads("odoo-api-timer"));
+    private PeerGossip peerGossip;
+    private WifiManager.MulticastLock multicastLock;
+    private final RequestScheduler scheduler =
+            new RequestScheduler(MAX_CONCURRENT_REQUESTS, MAX_CONCURRENT_REQUESTS, MAX_BACKGROUND_REQUESTS);
+    private final Context context;
 
-    private OdooApiService(Context context) {
+    // Built once by TicketsApp, off the main thread; the context must be the application's
+    OdooApiService(Context context) {
         this.context = context;
         
         // Create logging interceptor
@@ -47,9 +160,9 @@ public class OdooApiService {
                 SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
                 String apiKey = prefs.getString(API_KEY, "");
                 
-                // Add Authorization header if API key exists
+                // Add Authorization header if API key exists, unless the call brings its own
                 Request.Builder requestBuilder = originalRequest.newBuilder();
-                if (!apiKey.isEmpty()) {
+                if (!apiKey.isEmpty() && originalRequest.header("Authorization") == null) {
                     requestBuilder.addHeader("Authorization", "Bearer " + apiKey);
                 }
                 
@@ -58,141 +171,134 @@ public class OdooApiService {
             }
         };
 
+        // Bounded network pool instead of OkHttp's unbounded default
+        ThreadPoolExecutor networkExecutor = new ThreadPoolExecutor(
+                MAX_CONCURRENT_REQUESTS, MAX_CONCURRENT_REQUESTS, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), namedThreads("odoo-api"));
+        networkExecutor.allowCoreThreadTimeOut(true);
+        Dispatcher dispatcher = new Dispatcher(networkExecutor);
+        dispatcher.setMaxRequests(MAX_CONCURRENT_REQUESTS);
+        dispatcher.setMaxRequestsPerHost(MAX_CONCURRENT_REQUESTS);
+
         // Create OkHttp client with interceptors
         OkHttpClient client = new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
                 .addInterceptor(logging)
                 .addInterceptor(authInterceptor)
+                .addInterceptor(new GzipRequestInterceptor())
                 .build();
 
-        // Create Retrofit instance
-        Retrofit retrofit = new Retrofit.Builder()
-                .baseUrl(BASE_URL)
-                .client(client)
-                .addConverterFactory(GsonConverterFactory.create())
-                .build();
+        // Create a Retrofit instance per backend endpoint; responses are parsed off
+        // the main thread and callers hop to the UI themselves
+        Executor callbackExecutor = Executors.newSingleThreadExecutor(namedThreads("odoo-api-callback"));
+        List<BackendEndpoint> endpoints = new ArrayList<>();
+        for (String baseUrl : context.getResources().getStringArray(R.array.backend_endpoints)) {
+            BackendEndpoint endpoint = new BackendEndpoint(baseUrl,
+                    new CircuitBreaker(BREAKER_FAILURE_THRESHOLD, BREAKER_OPEN_MS));
+            Retrofit retrofit = new Retrofit.Builder()
+                    .baseUrl(baseUrl)
+                    .client(client)
+                    .callbackExecutor(callbackExecutor)
+                    .addConverterFactory(GsonConverterFactory.create())
+                    .build();
+            apiInterfaces.put(endpoint, retrofit.create(OdooApiInterface.class));
+            endpoints.add(endpoint);
+        }
+        endpointPool = new EndpointPool(endpoints, timer, DEFAULT_HEDGE_DELAY_MS, MIN_HEDGE_DELAY_MS);
 
-        apiInterface = retrofit.create(OdooApiInterface.class);
-    }
+        attendanceStream = new AttendanceStreamClient(
+                () -> endpointPool.preferredEndpoint().getBaseUrl(),
+                () -> context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).getString(API_KEY, ""),
+                attendanceState, namedThreads("attendance-stream"));
+        attendanceStream.setListener(change -> occupancy.apply(change, attendanceState.getLastEventId()));
 
-    public static synchronized OdooApiService getInstance(Context context) {
-        if (instance == null) {
-            instance = new OdooApiService(context);
+        // A fresh id per process run keeps sequence numbers unique across restarts
+        String username = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).getString(USERNAME, "gate");
+        gateLedger = new GateLedger(username + "-" + UUID.randomUUID().toString().substring(0, 8));
+        gateLedger.setListener(entry -> attendanceState.apply(new AttendanceChange(0, entry.getQrcodeText(),
+                entry.getName(), true, AttendanceTimes.format(entry.getTimeMillis()))));
+        reconciler = new GateReconciler(gateLedger, this::uploadCheckIns, RECONCILE_BATCH_SIZE);
+        try {
+            scanJournal = ScanJournal.open(new File(context.getFilesDir(), SCAN_JOURNAL_FILE), SCAN_JOURNAL_CAPACITY);
+        } catch (IOException e) {
+            Log.e(TAG, "Scan journal unavailable", e);
         }
-        return instance;
+        try {
+            uploadOutbox = UploadOutbox.open(new File(context.getFilesDir(), UPLOAD_OUTBOX_FILE));
+        } catch (IOException e) {
+            Log.e(TAG, "Upload outbox unavailable, offline check-ins only kept in memory", e);
+        }
+    }
+
+    private static ThreadFactory namedThreads(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
     }
 
-    public void login(String username, String password, String db, OdooApiCallback callback) {
+    // Resolves to the API key issued for this device
+    public CompletableFuture<String> login(String username, String password, String db) {
         LoginRequest loginRequest = new LoginRequest(username, password, db);
-        
-        Call<JsonObject> call = apiInterface.login(loginRequest);
-        call.enqueue(new Callback<JsonObject>() {
-            @Override
-            public void onResponse(Call<JsonObject> call, Response<JsonObject> response) {
-                if (response.isSuccessful() && response.body() != null) {
-                    JsonObject loginResponse = response.body();
-                    boolean success = loginResponse.has("success") && loginResponse.get("success").getAsBoolean();
-                    
-                    if (success && loginResponse.has("message")) {
-                        JsonArray messageArray = loginResponse.getAsJsonArray("message");
-                        if (messageArray.size() > 0) {
-                            JsonObject message = messageArray.get(0).getAsJsonObject();
-                            if (message.has("apikey")) {
-                                String apiKey = message.get("apikey").getAsString();
-                                Log.d(TAG, "Login successful, API key: " + apiKey);
-                                callback.onSuccess(apiKey);
-                            } else {
-                                Log.e(TAG, "Login response missing apikey");
-                                callback.onError("Login failed: No API key in response");
-                            }
-                        } else {
-                            Log.e(TAG, "Login response message array is empty");
-                            callback.onError("Login failed: Empty response");
-                        }
-                    } else {
-                        Log.e(TAG, "Login failed: success = " + success);
-                        callback.onError("Login failed: Invalid credentials");
-                    }
-                } else {
-                    Log.e(TAG, "Login API Error: " + response.code() + " " + response.message());
-                    callback.onError("Login failed: " + response.code());
-                }
-            }
 
-            @Override
-            public void onFailure(Call<JsonObject> call, Throwable t) {
-                Log.e(TAG, "Login Network Error", t);
-                callback.onError("Network Error: " + t.getMessage());
-            }
-        });
+        return enqueue(Priority.INTERACTIVE, false, api -> api.login(loginRequest), DEFAULT_DEADLINE_MS, "Login",
+                this::parseLogin);
     }
 
-    public void logout(String apiKey, String username, OdooApiCallback callback) {
+    public CompletableFuture<Void> logout(String apiKey, String username) {
+        // Stop listening before the key is revoked, and forget this session's gates
+        stopAttendanceStream();
+        stopPeerSync();
+        stopOccupancyUpdates();
+        stopReconcile();
+        attendanceState.clear();
+        occupancy.clear();
+        context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).edit().remove(GATE_SECRET).apply();
+
         // Create request body with API key and username
         JsonObject requestBody = new JsonObject();
         requestBody.addProperty("api_key", apiKey);
         requestBody.addProperty("username", username);
-        
-        Call<JsonObject> call = apiInterface.logout(requestBody);
-        call.enqueue(new Callback<JsonObject>() {
-            @Override
-            public void onResponse(Call<JsonObject> call, Response<JsonObject> response) {
-                if (response.isSuccessful() && response.body() != null) {
-                    JsonObject logoutResponse = response.body();
-                    boolean success = logoutResponse.has("success") && logoutResponse.get("success").getAsBoolean();
-                    
-                    if (success) {
-                        Log.d(TAG, "Logout successful: " + logoutResponse.get("message").getAsString());
-                        callback.onSuccess("Logout successful");
-                    } else {
-                        Log.e(TAG, "Logout failed");
-                        callback.onError("Logout failed");
-                    }
-                } else {
-                    Log.e(TAG, "Logout API Error: " + response.code() + " " + response.message());
-                    callback.onError("Logout failed: " + response.code());
-                }
-            }
 
-            @Override
-            public void onFailure(Call<JsonObject> call, Throwable t) {
-                Log.e(TAG, "Logout Network Error", t);
-                callback.onError("Network Error: " + t.getMessage());
-            }
-        });
+        // Upload the offline check-ins while this session's key still works; whatever
+        // can't go now stays in the outbox under this account rather than going under another key
+        return reconciler.reconcile().handle((uploaded, error) -> {
+            holdUnsent(username);
+            return null;
+        }).thenCompose(ignored -> enqueue(Priority.INTERACTIVE, false, api -> api.logout(requestBody),
+                DEFAULT_DEADLINE_MS, "Logout", this::parseLogout));
     }
 
-    public void getInviteesData(String qrCodeText, OdooApiCallback callback) {
+    public CompletableFuture<List<Invitee>> getInvitees(String qrCodeText) {
         // Send invitees_qrcode_text in the body
         JsonObject requestBody = new JsonObject();
         requestBody.addProperty("invitees_qrcode_text", qrCodeText);
-        Call<JsonObject> call = apiInterface.getInviteesData(requestBody);
-        call.enqueue(new Callback<JsonObject>() {
-            @Override
-            public void onResponse(Call<JsonObject> call, Response<JsonObject> response) {
-                if (response.isSuccessful() && response.body() != null) {
-                    Log.d(TAG, "API Response: " + response.body().toString());
-                    // Extract the invitees array from the "message" field
-                    JsonArray inviteesArray = response.body().getAsJsonArray("message");
-                    if (inviteesArray != null) {
-                        callback.onSuccess(inviteesArray.toString());
-                    } else {
-                        callback.onError("No invitees data found in response");
-                    }
-                } else {
-                    Log.e(TAG, "API Error: " + response.code() + " " + response.message());
-                    callback.onError("API Error: " + response.code());
-                }
-            }
 
-            @Override
-            public void onFailure(Call<JsonObject> call, Throwable t) {
-                Log.e(TAG, "Network Error", t);
-                callback.onError("Network Error: " + t.getMessage());
-            }
-        });
+        // Lookups are read-only, so they may be hedged to a second endpoint. A check-in
+        // pushed from another gate may be newer than the reply, so it is overlaid
+        if (getWireFormat() == WireFormat.CBOR) {
+            return enqueue(Priority.INTERACTIVE, true, api -> api.getInviteesDataCbor(requestBody),
+                    LOOKUP_DEADLINE_MS, "API", body -> attendanceState.overlay(parseInviteesCbor(body)));
+        }
+        return enqueue(Priority.INTERACTIVE, true, api -> api.getInviteesData(requestBody), LOOKUP_DEADLINE_MS,
+                "API", body -> attendanceState.overlay(parseInvitees(body)));
+    }
+
+    // Lookup stage for ScanPipeline
+    @Override
+    public CompletableFuture<List<Invitee>> lookup(String qrCodeText) {
+        return getInvitees(qrCodeText);
     }
 
-    public void updateInviteesData(List<Invitee> invitees, OdooApiCallback callback) {
+    public CompletableFuture<Void> updateInvitees(List<Invitee> invitees) {
+        if (getWireFormat() == WireFormat.CBOR) {
+            RequestBody cborBody = RequestBody.create(InviteeCbor.encode(invitees), CBOR);
+            return enqueue(Priority.BACKGROUND, false, api -> api.updateInviteesDataCbor(cborBody),
+                    DEFAULT_DEADLINE_MS, "Update API", body -> recordCheckIns(invitees));
+        }
+
         // Create request body with invitees list
         JsonObject requestBody = new JsonObject();
         JsonArray inviteesArray = new JsonArray();
@@ -210,26 +316,490 @@ public class OdooApiService {
         
         requestBody.add("invitees", inviteesArray);
 
-        // Make API call
-        Call<JsonObject> call = apiInterface.updateInviteesData(requestBody);
-        call.enqueue(new Callback<JsonObject>() {
+        return enqueue(Priority.BACKGROUND, false, api -> api.updateInviteesData(requestBody), DEFAULT_DEADLINE_MS,
+                "Update API", body -> recordCheckIns(invitees));
+    }
+
+    /**
+     * Submits attendance from the invitees screen. Newly admitted guests are
+     * shared with the other gates first, so they are protected against a second
+     * entry even if the backend is unreachable. Completes with true once the
+     * server has them, or false if they were kept for a later upload; only a
+     * rejection by the server (4xx) fails the future.
+     */
+    public CompletableFuture<Boolean> checkIn(List<Invitee> invitees) {
+        long now = System.currentTimeMillis();
+        List<GateLedger.Entry> recorded = new ArrayList<>();
+        Map<String, Integer> guestsByCode = new LinkedHashMap<>();
+        for (Invitee invitee : invitees) {
+            // Only guests ticked on this screen; the rest already have a time from the server.
+            // They get theirs now, so the lookup overlay and a second submit see them as done
+            if (invitee.isInviteesAttendance() && !invitee.hasAttendanceTime()) {
+                invitee.setAttendanceTimeMillis(now);
+                guestsByCode.merge(invitee.getInviteesQrcodeText(), 1, Integer::sum);
+                GateLedger.Entry entry = gateLedger.recordLocal(invitee.getInviteesQrcodeText(),
+                        invitee.getInviteesName(), now, false);
+                if (entry != null) {
+                    recorded.add(entry);
+                    publishToPeers(entry);
+                }
+            }
+        }
+        keepUntilUploaded(recorded);
+        if (scanJournal != null) {
+            for (Map.Entry<String, Integer> code : guestsByCode.entrySet()) {
+                scanJournal.append(code.getKey(), now, ScanJournal.Result.CHECKED_IN, code.getValue(),
+                        gateLedger.getDeviceId());
+            }
+        }
+
+        return updateInvitees(invitees).handle((ignored, error) -> {
+            if (error == null) {
+                gateLedger.markUploaded(recorded);
+                forgetUploaded(recorded);
+                return true;
+            }
+            Throwable cause = Futures.unwrap(error);
+            if (cause instanceof ApiException && !((ApiException) cause).isServerError()) {
+                throw new CompletionException(cause);
+            }
+            Log.w(TAG, "Backend unreachable, " + recorded.size() + " check-ins kept for later", cause);
+            return false;
+        });
+    }
+
+    // Guests admitted on this code according to the other gates, earliest first
+    public List<GateLedger.Entry> admittedByPeers(String qrCodeText) {
+        return gateLedger.admittedOn(qrCodeText);
+    }
+
+    public void journalScan(ScanResult result) {
+        if (scanJournal != null) {
+            scanJournal.append(result.getCode(), System.currentTimeMillis(),
+                    ScanJournal.Result.of(result.getDecision()), 0, gateLedger.getDeviceId());
+        }
+    }
+
+    // The last check-in on this code made on this device, even before a restart; null if none
+    public ScanJournal.Entry lastCheckInHere(String qrCodeText) {
+        return scanJournal != null ? scanJournal.lastCheckIn(qrCodeText) : null;
+    }
+
+    /** Writes the scan journal as CSV to the app's external files (pullable over USB) for the post-event audit. */
+    public File exportScanJournal() throws IOException {
+        if (scanJournal == null) {
+            throw new IOException("Scan journal unavailable");
+        }
+        File dir = context.getExternalFilesDir(null);
+        File out = new File(dir != null ? dir : context.getFilesDir(),
+                "scan-journal-" + gateLedger.getDeviceId() + ".csv");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(out), StandardCharsets.UTF_8)) {
+            scanJournal.exportCsv(writer);
+        }
+        return out;
+    }
+
+    /**
+     * Joins the other gates on the LAN (configured peers plus multicast
+     * discovery). Runs alongside the backend so the ledger is already shared
+     * when the backend goes away.
+     */
+    public void startPeerSync() {
+        timer.execute(() -> {
+            synchronized (this) {
+                if (peerGossip != null) {
+                    return;
+                }
+                String secret = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+                        .getString(GATE_SECRET, "");
+                if (secret.isEmpty()) {
+                    Log.w(TAG, "No gate secret for this session, gate peer sync off");
+                    return;
+                }
+                int port = context.getResources().getInteger(R.integer.gate_peer_port);
+                List<InetSocketAddress> peers = new ArrayList<>();
+                for (String peer : context.getResources().getStringArray(R.array.gate_peers)) {
+                    int colon = peer.lastIndexOf(':');
+                    peers.add(new InetSocketAddress(peer.substring(0, colon),
+                            Integer.parseInt(peer.substring(colon + 1))));
+                }
+                try {
+                    InetAddress group = InetAddress.getByName(context.getString(R.string.gate_multicast_group));
+                    // Wi-Fi drops multicast to save power unless someone holds this lock
+                    WifiManager wifi = (WifiManager) context.getApplicationContext()
+                            .getSystemService(Context.WIFI_SERVICE);
+                    if (wifi != null) {
+                        multicastLock = wifi.createMulticastLock("gate-sync");
+                        multicastLock.setReferenceCounted(false);
+                        multicastLock.acquire();
+                    }
+                    PeerGossip gossip = new PeerGossip(gateLedger, secret.getBytes(StandardCharsets.UTF_8), port, peers,
+                            group, GATE_SYNC_INTERVAL_MS, namedThreads("gate-sync"));
+                    gossip.start();
+                    peerGossip = gossip;
+                } catch (IOException e) {
+                    Log.e(TAG, "Gate peer sync unavailable", e);
+                    releaseMulticastLock();
+                }
+            }
+        });
+    }
+
+    public synchronized void stopPeerSync() {
+        if (peerGossip != null) {
+            peerGossip.close();
+            peerGossip = null;
+        }
+        releaseMulticastLock();
+    }
+
+    private void releaseMulticastLock() {
+        if (multicastLock != null && multicastLock.isHeld()) {
+            multicastLock.release();
+        }
+        multicastLock = null;
+    }
+
+    private synchronized void publishToPeers(GateLedger.Entry entry) {
+        if (peerGossip != null) {
+            peerGossip.publish(entry);
+        }
+    }
+
+    /**
+     * Retries the offline check-ins every few seconds while logged in, starting
+     * with any this user left unsent at their last logout or before the app was
+     * killed. Those of other accounts go up under their own key while it works.
+     */
+    public synchronized void startReconcile() {
+        if (reconcileTask != null) {
+            return;
+        }
+        String username = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).getString(USERNAME, "");
+        if (uploadOutbox != null) {
+            List<GateLedger.Entry> held = uploadOutbox.pendingFor(username);
+            // Those from before a restart are new to this run's ledger; gates stay protected against them
+            gateLedger.merge(held);
+            gateLedger.requeue(held);
+        }
+        reconcileTask = timer.scheduleWithFixedDelay(this::reconcile, 0, RECONCILE_INTERVAL_MS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stopReconcile() {
+        if (reconcileTask != null) {
+            reconcileTask.cancel(false);
+            reconcileTask = null;
+        }
+    }
+
+    // Out of this session's queue; they stay in the outbox under this account
+    private synchronized void holdUnsent(String username) {
+        List<GateLedger.Entry> unsent = gateLedger.pendingUploads();
+        if (unsent.isEmpty()) {
+            return;
+        }
+        Log.w(TAG, unsent.size() + " check-ins not uploaded, kept for " + username + "'s key or next login");
+        gateLedger.markUploaded(unsent);
+    }
+
+    private void keepUntilUploaded(List<GateLedger.Entry> entries) {
+        if (uploadOutbox == null || entries.isEmpty()) {
+            return;
+        }
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        try {
+            uploadOutbox.add(new UploadOutbox.Account(prefs.getString(USERNAME, ""), prefs.getString(API_KEY, "")),
+                    entries);
+        } catch (IOException e) {
+            Log.e(TAG, "Could not keep " + entries.size() + " check-ins on disk", e);
+        }
+    }
+
+    private void forgetUploaded(List<GateLedger.Entry> entries) {
+        if (uploadOutbox == null) {
+            return;
+        }
+        try {
+            uploadOutbox.remove(entries);
+        } catch (IOException e) {
+            // Uploaded again after a restart at worst, which the server ignores
+            Log.e(TAG, "Could not clear uploaded check-ins from disk", e);
+        }
+    }
+
+    private void reconcile() {
+        uploadHeld();
+        if (gateLedger.pendingUploads().isEmpty()) {
+            return;
+        }
+        reconciler.reconcile().whenComplete((uploaded, error) -> {
+            if (error == null) {
+                Log.d(TAG, "Uploaded " + uploaded + " check-ins made while offline");
+            }
+        });
+    }
+
+    // One batch per account and round, for check-ins of other users' sessions that
+    // were never resumed here (logged out offline, or the app was killed)
+    private void uploadHeld() {
+        if (uploadOutbox == null) {
+            return;
+        }
+        String username = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).getString(USERNAME, "");
+        for (Map.Entry<UploadOutbox.Account, List<GateLedger.Entry>> held : uploadOutbox.byAccount().entrySet()) {
+            UploadOutbox.Account account = held.getKey();
+            if (account.getUsername().equals(username) || account.getApiKey().isEmpty()
+                    || refusedKeys.contains(account.getApiKey())) {
+                continue;
+            }
+            List<GateLedger.Entry> batch = held.getValue().subList(0,
+                    Math.min(RECONCILE_BATCH_SIZE, held.getValue().size()));
+            uploadCheckIns(batch, account.getApiKey()).whenComplete((ignored, error) -> {
+                Throwable cause = Futures.unwrap(error);
+                if (cause instanceof ApiException && (((ApiException) cause).getHttpCode() == 401
+                        || ((ApiException) cause).getHttpCode() == 403)) {
+                    refusedKeys.add(account.getApiKey());
+                    Log.w(TAG, held.getValue().size() + " check-ins wait for " + account.getUsername()
+                            + "'s next login, their key was revoked");
+                }
+            });
+        }
+    }
+
+    private CompletableFuture<Void> uploadCheckIns(List<GateLedger.Entry> entries) {
+        return uploadCheckIns(entries, null);
+    }
+
+    // Always JSON: only there can the gate's own check-in time go along, which the
+    // server keeps instead of the upload time so the earliest admission still stands.
+    // Under the logged-in session's key unless another account's is given
+    private CompletableFuture<Void> uploadCheckIns(List<GateLedger.Entry> entries, String apiKey) {
+        List<Invitee> invitees = new ArrayList<>(entries.size());
+        JsonArray inviteesArray = new JsonArray();
+        for (GateLedger.Entry entry : entries) {
+            Invitee invitee = new Invitee();
+            invitee.setInviteesQrcodeText(entry.getQrcodeText());
+            invitee.setInviteesName(entry.getName());
+            invitee.setInviteesAttendance(true);
+            invitee.setAttendanceTimeMillis(entry.getTimeMillis());
+            invitees.add(invitee);
+
+            JsonObject inviteeObject = new JsonObject();
+            inviteeObject.addProperty("invitees_qrcode_text", entry.getQrcodeText());
+            inviteeObject.addProperty("invitees_name", entry.getName());
+            inviteeObject.addProperty("invitees_attendance", true);
+            inviteeObject.addProperty("invitees_checked_in_at", entry.getTimeMillis());
+            inviteesArray.add(inviteeObject);
+        }
+        JsonObject requestBody = new JsonObject();
+        requestBody.add("invitees", inviteesArray);
+
+        return enqueue(Priority.BACKGROUND, false, api -> apiKey != null
+                        ? api.updateInviteesDataAs("Bearer " + apiKey, requestBody) : api.updateInviteesData(requestBody),
+                DEFAULT_DEADLINE_MS, "Reconcile API", body -> {
+                    forgetUploaded(entries);
+                    return recordCheckIns(invitees);
+                });
+    }
+
+    // Our own check-ins, so a re-scan here is caught even before the push comes back
+    private Void recordCheckIns(List<Invitee> invitees) {
+        attendanceState.recordLocal(invitees);
+        return null;
+    }
+
+    /**
+     * Subscribes to check-ins from the other gates while logged in. Safe to call
+     * repeatedly; the stream reconnects on its own after Wi-Fi drops.
+     */
+    public void startAttendanceStream() {
+        attendanceStream.start();
+    }
+
+    public void stopAttendanceStream() {
+        attendanceStream.close();
+    }
+
+    /**
+     * Keeps {@link #getOccupancy()} current while logged in: a snapshot from
+     * tickets/occupancy now and every minute, with the pushed check-ins applied
+     * in between.
+     */
+    public synchronized void startOccupancyUpdates() {
+        if (occupancyRefresh == null) {
+            occupancyRefresh = timer.scheduleWithFixedDelay(this::refreshOccupancy, 0, OCCUPANCY_REFRESH_MS,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public synchronized void stopOccupancyUpdates() {
+        if (occupancyRefresh != null) {
+            occupancyRefresh.cancel(false);
+            occupancyRefresh = null;
+        }
+    }
+
+    public OccupancyMirror getOccupancy() {
+        return occupancy;
+    }
+
+    private void refreshOccupancy() {
+        enqueue(Priority.BACKGROUND, true, OdooApiInterface::getOccupancy, DEFAULT_DEADLINE_MS, "Occupancy API",
+                body -> {
+                    if (!body.has("events")) {
+                        throw new ApiException("No events in occupancy response");
+                    }
+                    List<OccupancyMirror.EventCount> counts = gson.fromJson(body.getAsJsonArray("events"),
+                            EVENT_COUNT_LIST_TYPE);
+                    String streamId = body.has("stream_id") ? body.get("stream_id").getAsString() : null;
+                    occupancy.reset(counts, streamId);
+                    return null;
+                });
+    }
+
+    public AttendanceStreamClient getAttendanceStream() {
+        return attendanceStream;
+    }
+
+    // Per-device switch; JSON unless this gate has been moved to the compact encoding
+    public WireFormat getWireFormat() {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        return WireFormat.CBOR.name().equals(prefs.getString(WIRE_FORMAT, null)) ? WireFormat.CBOR : WireFormat.JSON;
+    }
+
+    public void setWireFormat(WireFormat format) {
+        context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+                .edit()
+                .putString(WIRE_FORMAT, format.name())
+                .apply();
+    }
+
+    // Queue depths, in-flight counts and queue wait per priority class
+    public RequestScheduler getScheduler() {
+        return scheduler;
+    }
+
+    // Per-endpoint latency and breaker state, hedge counters
+    public EndpointPool getEndpointPool() {
+        return endpointPool;
+    }
+
+    /**
+     * Queues the request behind the scheduler for its priority class, then sends
+     * it to the best available endpoint (failing over, and hedging if allowed).
+     * Each attempt has a hard deadline covering connect, write and read; time
+     * spent queued does not count against it. When every endpoint's breaker is
+     * open the future fails at once with {@link EndpointUnavailableException}
+     * so the caller can take its offline path. Cancelling the returned
+     * future drops queued work or cancels the HTTP call, so an abandoned screen
+     * stops holding a socket and its continuation.
+     */
+    private <B, T> CompletableFuture<T> enqueue(Priority priority, boolean hedged,
+                                                Function<OdooApiInterface, Call<B>> request,
+                                                long deadlineMs, String label, ResponseMapper<B, T> mapper) {
+        return scheduler.submit(priority, () -> endpointPool.call(hedged, endpoint ->
+                execute(request.apply(apiInterfaces.get(endpoint)), deadlineMs, label, mapper)));
+    }
+
+    private <B, T> CompletableFuture<T> execute(Call<B> call, long deadlineMs, String label,
+                                                ResponseMapper<B, T> mapper) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        call.timeout().timeout(deadlineMs, TimeUnit.MILLISECONDS);
+        future.whenComplete((result, error) -> {
+            if (future.isCancelled()) {
+                call.cancel();
+            }
+        });
+
+        call.enqueue(new Callback<B>() {
             @Override
-            public void onResponse(Call<JsonObject> call, Response<JsonObject> response) {
-                if (response.isSuccessful() && response.body() != null) {
-                    Log.d(TAG, "Update API Response: " + response.body().toString());
-                    callback.onSuccess(response.body().toString());
-                } else {
-                    Log.e(TAG, "Update API Error: " + response.code() + " " + response.message());
-                    callback.onError("Update API Error: " + response.code());
+            public void onResponse(Call<B> call, Response<B> response) {
+                if (!response.isSuccessful() || response.body() == null) {
+                    Log.e(TAG, label + " Error: " + response.code() + " " + response.message());
+                    future.completeExceptionally(new ApiException(label + " Error: " + response.code(), response.code()));
+                    return;
+                }
+                try {
+                    future.complete(mapper.map(response.body()));
+                } catch (IOException | RuntimeException e) {
+                    future.completeExceptionally(e);
                 }
             }
 
             @Override
-            public void onFailure(Call<JsonObject> call, Throwable t) {
-                Log.e(TAG, "Update Network Error", t);
-                callback.onError("Update Network Error: " + t.getMessage());
+            public void onFailure(Call<B> call, Throwable t) {
+                if (call.isCanceled()) {
+                    return;
+                }
+                Log.e(TAG, label + " Network Error", t);
+                future.completeExceptionally(new IOException("Network Error: " + t.getMessage(), t));
             }
         });
+        return future;
+    }
+
+    private String parseLogin(JsonObject loginResponse) throws IOException {
+        boolean success = loginResponse.has("success") && loginResponse.get("success").getAsBoolean();
+
+        if (success && loginResponse.has("message")) {
+            JsonArray messageArray = loginResponse.getAsJsonArray("message");
+            if (messageArray.size() > 0) {
+                JsonObject message = messageArray.get(0).getAsJsonObject();
+                if (message.has("apikey")) {
+                    String apiKey = message.get("apikey").getAsString();
+                    SharedPreferences.Editor prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+                            .edit();
+                    if (message.has("gate_secret")) {
+                        prefs.putString(GATE_SECRET, message.get("gate_secret").getAsString());
+                    } else {
+                        // No active event: peer sync stays off rather than running unsigned
+                        prefs.remove(GATE_SECRET);
+                    }
+                    prefs.apply();
+                    Log.d(TAG, "Login successful");
+                    return apiKey;
+                }
+                Log.e(TAG, "Login response missing apikey");
+                throw new ApiException("Login failed: No API key in response");
+            }
+            Log.e(TAG, "Login response message array is empty");
+            throw new ApiException("Login failed: Empty response");
+        }
+        Log.e(TAG, "Login failed: success = " + success);
+        throw new ApiException("Login failed: Invalid credentials");
+    }
+
+    private Void parseLogout(JsonObject logoutResponse) throws IOException {
+        boolean success = logoutResponse.has("success") && logoutResponse.get("success").getAsBoolean();
+        if (!success) {
+            Log.e(TAG, "Logout failed");
+            throw new ApiException("Logout failed");
+        }
+        Log.d(TAG, "Logout successful: " + logoutResponse.get("message").getAsString());
+        return null;
+    }
+
+    private List<Invitee> parseInvitees(JsonObject body) throws IOException {
+        // Extract the invitees array from the "message" field
+        JsonArray inviteesArray = body.getAsJsonArray("message");
+        if (inviteesArray == null) {
+            throw new ApiException("No invitees data found in response");
+        }
+        return InviteeJson.parseList(inviteesArray);
+    }
+
+    // An older backend ignores Accept: application/cbor and answers with JSON
+    private List<Invitee> parseInviteesCbor(ResponseBody body) throws IOException {
+        MediaType contentType = body.contentType();
+        if (contentType != null && "cbor".equals(contentType.subtype())) {
+            return InviteeCbor.decode(body.bytes());
+        }
+        return parseInvitees(gson.fromJson(body.charStream(), JsonObject.class));
+    }
+
+    private interface ResponseMapper<B, T> {
+        T map(B body) throws IOException;
     }
 
     // Retrofit interface for API calls
@@ -239,10 +809,24 @@ public class OdooApiService {
         
         @POST("tickets/get_data")
         Call<JsonObject> getInviteesData(@Body JsonObject requestBody);
+
+        @Headers("Accept: " + InviteeCbor.MEDIA_TYPE)
+        @POST("tickets/get_data")
+        Call<ResponseBody> getInviteesDataCbor(@Body JsonObject requestBody);
         
         @POST("tickets/update_data")
         Call<JsonObject> updateInviteesData(@Body JsonObject requestBody);
+
+        @POST("tickets/update_data")
+        Call<JsonObject> updateInviteesDataAs(@Header("Authorization") String authorization,
+                                              @Body JsonObject requestBody);
+
+        @POST("tickets/update_data")
+        Call<JsonObject> updateInviteesDataCbor(@Body RequestBody requestBody);
         
+        @GET("tickets/occupancy")
+        Call<JsonObject> getOccupancy();
+
         @POST("tickets/logout")
         Call<JsonObject> logout(@Body JsonObject requestBody);
     }
@@ -2,32 +2,74 @@ package com.bedayia.tickets;
 
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.PowerManager;
 import android.util.Log;
+import android.util.Size;
 import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.camera.core.CameraSelector;
 import androidx.camera.core.ImageAnalysis;
 import androidx.camera.core.ImageProxy;
 import androidx.camera.core.Preview;
+import androidx.camera.core.resolutionselector.ResolutionSelector;
+import androidx.camera.core.resolutionselector.ResolutionStrategy;
 import androidx.camera.lifecycle.ProcessCameraProvider;
 import androidx.camera.view.PreviewView;
 import androidx.core.content.ContextCompat;
+import com.bedayia.tickets.core.AdaptiveScanPolicy;
+import com.bedayia.tickets.core.CancellationScope;
+import com.bedayia.tickets.core.Futures;
+import com.bedayia.tickets.core.GateLedger;
+import com.bedayia.tickets.core.InviteeJson;
+import com.bedayia.tickets.core.MotionDetector;
+import com.bedayia.tickets.core.ScanDecision;
+import com.bedayia.tickets.core.ScanDeduplicator;
+import com.bedayia.tickets.core.ScanJournal;
+import com.bedayia.tickets.core.ScanPipeline;
+import com.bedayia.tickets.core.ScanResult;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.mlkit.vision.barcode.BarcodeScanner;
-import com.google.mlkit.vision.barcode.BarcodeScannerOptions;
-import com.google.mlkit.vision.barcode.BarcodeScanning;
 import com.google.mlkit.vision.barcode.common.Barcode;
 import com.google.mlkit.vision.common.InputImage;
+import java.text.SimpleDateFormat;
+import java.util.Date;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 public class QRScannerActivity extends AppCompatActivity {
     private static final String TAG = "QRScannerActivity";
+    private static final long DUPLICATE_WINDOW_MS = 3000;
+    // Quiet time before frames are skipped, before the resolution drops, and the rate while idle
+    private static final long IDLE_AFTER_MS = 4_000;
+    private static final long LOW_RESOLUTION_AFTER_MS = 30_000;
+    private static final long IDLE_INTERVAL_MS = 500;
+    private static final Size HIGH_RESOLUTION = new Size(1280, 720);
+    private static final Size LOW_RESOLUTION = new Size(640, 480);
     private PreviewView previewView;
     private ExecutorService cameraExecutor;
     private BarcodeScanner barcodeScanner;
+    private OdooApiService api;
+    private ScanPipeline scanPipeline;
+    private final AdaptiveScanPolicy scanPolicy =
+            new AdaptiveScanPolicy(IDLE_AFTER_MS, LOW_RESOLUTION_AFTER_MS, IDLE_INTERVAL_MS);
+    // Only touched on the analysis thread
+    private final MotionDetector motionDetector = new MotionDetector();
+    private PowerManager powerManager;
+    private final PowerManager.OnThermalStatusChangedListener thermalListener = status -> {
+        Log.i(TAG, "Thermal status " + status);
+        scanPolicy.setThermalStatus(status);
+    };
+    private ProcessCameraProvider cameraProvider;
+    private ImageAnalysis imageAnalysis;
+    // Written on the main thread, read by the analyzer
+    private volatile AdaptiveScanPolicy.Resolution boundResolution;
+    private volatile boolean rebindPending;
+    // Lookups for a closed scanner are abandoned, not just ignored
+    private final CancellationScope requestScope = new CancellationScope();
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -37,12 +79,20 @@ public class QRScannerActivity extends AppCompatActivity {
         previewView = findViewById(R.id.preview_view);
         cameraExecutor = Executors.newSingleThreadExecutor();
 
-        // Configure barcode scanner
-        BarcodeScannerOptions options = new BarcodeScannerOptions.Builder()
-                .setBarcodeFormats(Barcode.FORMAT_QR_CODE)
-                .build();
-        barcodeScanner = BarcodeScanning.getClient(options);
+        powerManager = getSystemService(PowerManager.class);
+        scanPolicy.setThermalStatus(powerManager.getCurrentThermalStatus());
+        powerManager.addThermalStatusListener(getMainExecutor(), thermalListener);
+
+        // The camera only starts once there is a decoder and a backend to hand frames to
+        TicketsApp.from(this).whenReady(this, requestScope, this::onServicesReady);
+    }
 
+    private void onServicesReady(TicketsApp.Services services) {
+        // Shared with later scanner screens, so the model is only loaded once
+        barcodeScanner = services.barcodeScanner;
+        api = services.api;
+        scanPipeline = new ScanPipeline(new ScanDeduplicator(DUPLICATE_WINDOW_MS),
+                qrCodeText -> requestScope.track(api.lookup(qrCodeText)));
         startCamera();
     }
 
@@ -52,33 +102,73 @@ public class QRScannerActivity extends AppCompatActivity {
 
         cameraProviderFuture.addListener(() -> {
             try {
-                ProcessCameraProvider cameraProvider = cameraProviderFuture.get();
-                bindPreview(cameraProvider);
+                cameraProvider = cameraProviderFuture.get();
+                bindPreview();
             } catch (ExecutionException | InterruptedException e) {
                 Log.e(TAG, "Error starting camera", e);
             }
         }, ContextCompat.getMainExecutor(this));
     }
 
-    private void bindPreview(ProcessCameraProvider cameraProvider) {
+    private void bindPreview() {
         Preview preview = new Preview.Builder().build();
         preview.setSurfaceProvider(previewView.getSurfaceProvider());
 
-        ImageAnalysis imageAnalysis = new ImageAnalysis.Builder()
-                .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
-                .build();
+        boundResolution = scanPolicy.resolution(System.nanoTime());
+        imageAnalysis = buildAnalysis(boundResolution);
 
-        imageAnalysis.setAnalyzer(cameraExecutor, this::analyzeImage);
+        cameraProvider.unbindAll();
+        cameraProvider.bindToLifecycle(this, backCamera(), preview, imageAnalysis);
+    }
 
-        CameraSelector cameraSelector = new CameraSelector.Builder()
+    private static CameraSelector backCamera() {
+        return new CameraSelector.Builder()
                 .requireLensFacing(CameraSelector.LENS_FACING_BACK)
                 .build();
+    }
 
-        cameraProvider.unbindAll();
-        cameraProvider.bindToLifecycle(this, cameraSelector, preview, imageAnalysis);
+    private ImageAnalysis buildAnalysis(AdaptiveScanPolicy.Resolution resolution) {
+        Size size = resolution == AdaptiveScanPolicy.Resolution.HIGH ? HIGH_RESOLUTION : LOW_RESOLUTION;
+        ImageAnalysis analysis = new ImageAnalysis.Builder()
+                .setResolutionSelector(new ResolutionSelector.Builder()
+                        .setResolutionStrategy(new ResolutionStrategy(size,
+                                ResolutionStrategy.FALLBACK_RULE_CLOSEST_LOWER_THEN_HIGHER))
+                        .build())
+                .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
+                .build();
+        analysis.setAnalyzer(cameraExecutor, this::analyzeImage);
+        return analysis;
+    }
+
+    // Swaps only the analysis use case; the preview keeps running
+    private void rebindAnalysis() {
+        rebindPending = false;
+        AdaptiveScanPolicy.Resolution resolution = scanPolicy.resolution(System.nanoTime());
+        if (isFinishing() || cameraProvider == null || resolution == boundResolution) {
+            return;
+        }
+        Log.d(TAG, "Analysis resolution " + boundResolution + " -> " + resolution + ", " + scanPolicy.summary());
+        cameraProvider.unbind(imageAnalysis);
+        boundResolution = resolution;
+        imageAnalysis = buildAnalysis(resolution);
+        cameraProvider.bindToLifecycle(this, backCamera(), imageAnalysis);
     }
 
     private void analyzeImage(ImageProxy imageProxy) {
+        long frameStartNanos = System.nanoTime();
+        // The Y plane always has a pixel stride of 1
+        ImageProxy.PlaneProxy luma = imageProxy.getPlanes()[0];
+        boolean motion = motionDetector.update(luma.getBuffer(), imageProxy.getWidth(), imageProxy.getHeight(),
+                luma.getRowStride());
+        if (scanPolicy.resolution(frameStartNanos) != boundResolution && !rebindPending) {
+            rebindPending = true;
+            ContextCompat.getMainExecutor(this).execute(this::rebindAnalysis);
+        }
+        if (!scanPolicy.shouldAnalyze(frameStartNanos, motion)) {
+            imageProxy.close();
+            return;
+        }
+
         InputImage image = InputImage.fromMediaImage(
                 imageProxy.getImage(), 
                 imageProxy.getImageInfo().getRotationDegrees()
@@ -90,35 +180,20 @@ public class QRScannerActivity extends AppCompatActivity {
                         if (barcode.getRawValue() != null) {
                             String scannedData = barcode.getRawValue();
                             Log.d(TAG, "Scanned QR Code: " + scannedData);
-                            
-                            // Call API to get invitees data
-                            OdooApiService.getInstance(this).getInviteesData(scannedData, new OdooApiCallback() {
-                                @Override
-                                public void onSuccess(String response) {
-                                    // Return the scanned data and API response to the calling activity
-                                    Intent resultIntent = new Intent();
-                                    resultIntent.putExtra("SCANNED_DATA", scannedData);
-                                    resultIntent.putExtra("API_RESPONSE", response);
-                                    setResult(RESULT_OK, resultIntent);
-                                    finish();
-                                }
-
-                                @Override
-                                public void onError(String error) {
-                                    // Handle API call failure
-                                    Log.e(TAG, "API call failed: " + error);
-                                    Toast.makeText(QRScannerActivity.this, "Error: " + error, Toast.LENGTH_SHORT).show();
-                                    
-                                    // Still return the scanned data even if API fails
-                                    Intent resultIntent = new Intent();
-                                    resultIntent.putExtra("SCANNED_DATA", scannedData);
-                                    setResult(RESULT_OK, resultIntent);
-                                    finish();
-                                }
-                            });
+                            scanPolicy.onDecoded(System.nanoTime(), true, false);
+
+                            // Dedupe + lookup + decide; null means this code is already in flight
+                            CompletableFuture<ScanResult> result = scanPipeline.submitDecoded(scannedData, frameStartNanos);
+                            if (result != null) {
+                                scanPolicy.onScan();
+                                Log.d(TAG, "Scan policy: " + scanPolicy.summary());
+                                result.thenAcceptAsync(this::onScanResult, ContextCompat.getMainExecutor(this));
+                            }
                             return;
                         }
                     }
+                    // Found but unreadable (glare, half in frame): someone is presenting a code
+                    scanPolicy.onDecoded(System.nanoTime(), false, !barcodes.isEmpty());
                 })
                 .addOnFailureListener(e -> {
                     Log.e(TAG, "Barcode scanning failed", e);
@@ -128,10 +203,54 @@ public class QRScannerActivity extends AppCompatActivity {
                 });
     }
 
+    private void onScanResult(ScanResult result) {
+        if (isFinishing() || Futures.isCancellation(result.getError())) {
+            return;
+        }
+        Log.d(TAG, "Scan " + result.getDecision() + " in " + (result.getLatencyNanos() / 1_000_000) + "ms");
+        api.journalScan(result);
+        // Answered from memory, so it shows even when the backend and the other gates can't be reached
+        ScanJournal.Entry checkedInHere = api.lastCheckInHere(result.getCode());
+        if (checkedInHere != null) {
+            String time = new SimpleDateFormat("HH:mm", Locale.getDefault())
+                    .format(new Date(checkedInHere.getTimeMillis()));
+            Toast.makeText(QRScannerActivity.this, "Already checked in at this gate at " + time + " ("
+                    + checkedInHere.getGuests() + " guests)", Toast.LENGTH_LONG).show();
+        }
+
+        Intent resultIntent = new Intent();
+        resultIntent.putExtra("SCANNED_DATA", result.getCode());
+        if (result.getDecision() == ScanDecision.LOOKUP_FAILED) {
+            // Handle API call failure
+            String error = result.getError() != null ? result.getError().getMessage() : "Lookup failed";
+            Log.e(TAG, "API call failed: " + error);
+            // Backend unreachable: the other gates may still know this code was used
+            List<GateLedger.Entry> admitted = api.admittedByPeers(result.getCode());
+            if (!admitted.isEmpty()) {
+                StringBuilder names = new StringBuilder();
+                for (GateLedger.Entry entry : admitted) {
+                    names.append(names.length() > 0 ? ", " : "").append(entry.getName());
+                }
+                Toast.makeText(QRScannerActivity.this, "Offline: already admitted at a gate: " + names,
+                        Toast.LENGTH_LONG).show();
+            } else if (checkedInHere == null) {
+                Toast.makeText(QRScannerActivity.this, "Error: " + error, Toast.LENGTH_SHORT).show();
+            }
+            // Still return the scanned data even if API fails
+        } else {
+            // Return the scanned data and API response to the calling activity
+            resultIntent.putExtra("API_RESPONSE", InviteeJson.toJson(result.getInvitees()));
+        }
+        setResult(RESULT_OK, resultIntent);
+        finish();
+    }
+
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        requestScope.close();
+        powerManager.removeThermalStatusListener(thermalListener);
+        Log.i(TAG, "Scan policy: " + scanPolicy.summary());
         cameraExecutor.shutdown();
-        barcodeScanner.close();
     }
 } 
\ No newline at end of file
@@ -19,6 +19,9 @@ public class SplashActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_splash);
 
+        // Build the backend client and scanner while the splash is up
+        TicketsApp.from(this).services();
+
         ImageView icon = findViewById(R.id.splash_icon);
         // Animate the icon up and down
         ObjectAnimator animator = ObjectAnimator.ofFloat(icon, "translationY", 0f, -30f, 0f, 30f, 0f);
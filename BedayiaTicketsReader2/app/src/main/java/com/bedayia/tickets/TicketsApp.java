@@ -0,0 +1,89 @@
+package com.bedayia.tickets;
+
+import android.app.Application;
+import android.content.Context;
+import android.util.Log;
+import android.widget.Toast;
+import androidx.core.content.ContextCompat;
+import com.bedayia.tickets.core.CancellationScope;
+import com.bedayia.tickets.core.Futures;
+import com.google.mlkit.vision.barcode.BarcodeScanner;
+import com.google.mlkit.vision.barcode.BarcodeScannerOptions;
+import com.google.mlkit.vision.barcode.BarcodeScanning;
+import com.google.mlkit.vision.barcode.common.Barcode;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Owns what lives as long as the process: the backend client (HTTP pool,
+ * session, gate ledger, scan journal) and the barcode scanner, whose model then
+ * stays loaded between scans. They are built with the application context only,
+ * so none of them keeps an Activity alive.
+ *
+ * <p>Building them reads preferences, opens the journal and sets up Retrofit,
+ * so it happens once, on a background thread, the first time anything asks.
+ * The splash screen asks first, which leaves the whole splash for it. Screens
+ * never wait for it on the main thread: one restored after process death,
+ * without the splash, attaches through {@link #whenReady} once it is done.
+ */
+public class TicketsApp extends Application {
+    private static final String TAG = "TicketsApp";
+
+    private final AtomicReference<CompletableFuture<Services>> services = new AtomicReference<>();
+
+    public static TicketsApp from(Context context) {
+        return (TicketsApp) context.getApplicationContext();
+    }
+
+    // Starts the build unless it has been started already; completes when it is done.
+    // A failed build is forgotten, so the next call tries again
+    CompletableFuture<Services> services() {
+        CompletableFuture<Services> current = services.get();
+        if (current != null) {
+            return current;
+        }
+        CompletableFuture<Services> created = new CompletableFuture<>();
+        if (!services.compareAndSet(null, created)) {
+            return services.get();
+        }
+        new Thread(() -> {
+            try {
+                created.complete(new Services(this));
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Could not start services", e);
+                services.compareAndSet(created, null);
+                created.completeExceptionally(e);
+            }
+        }, "tickets-init").start();
+        return created;
+    }
+
+    /**
+     * Runs {@code ready} on the main thread once the services are built, which
+     * is on the next loop when they already are. Nothing runs once {@code scope}
+     * (the calling screen) has closed; a failed build is shown as a toast.
+     */
+    void whenReady(Context screen, CancellationScope scope, Consumer<Services> ready) {
+        scope.observe(services()).whenCompleteAsync((built, error) -> {
+            if (error == null) {
+                ready.accept(built);
+            } else if (!Futures.isCancellation(error)) {
+                Toast.makeText(screen, "Could not start: " + Futures.unwrap(error).getMessage(),
+                        Toast.LENGTH_LONG).show();
+            }
+        }, ContextCompat.getMainExecutor(screen));
+    }
+
+    static final class Services {
+        final OdooApiService api;
+        final BarcodeScanner barcodeScanner;
+
+        Services(Application app) {
+            api = new OdooApiService(app);
+            barcodeScanner = BarcodeScanning.getClient(new BarcodeScannerOptions.Builder()
+                    .setBarcodeFormats(Barcode.FORMAT_QR_CODE)
+                    .build());
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.bedayia.tickets.loadsim;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * When guests reach one gate: a Poisson process whose rate follows a shape
+ * that repeats every stage. {@code DOORS} is graduation night: a trickle, a
+ * rush peaking about a third of the way in as the ceremony nears, then a tail.
+ * Arrivals are drawn independently of how fast the backend answers, so a slow
+ * backend shows up as guests queueing at the gate rather than as fewer scans.
+ */
+public class ArrivalCurve {
+    public enum Shape { STEADY, DOORS }
+
+    // DOORS: Gaussian rush centred at 35% of the stage, never below 10% of the peak
+    private static final double RUSH_CENTRE = 0.35;
+    private static final double RUSH_WIDTH = 0.15;
+    private static final double TRICKLE = 0.10;
+    private static final int MEAN_STEPS = 1000;
+
+    private final Shape shape;
+    private final double peakPerNano;
+    private final long startNanos;
+    private final long stageNanos;
+
+    /**
+     * @param peakPerMinute guests per minute at one gate at the height of the rush
+     * @param startNanos    {@link System#nanoTime()} when the first stage starts
+     */
+    public ArrivalCurve(Shape shape, double peakPerMinute, long startNanos, long stageNanos) {
+        this.shape = shape;
+        this.peakPerNano = peakPerMinute / TimeUnit.MINUTES.toNanos(1);
+        this.startNanos = startNanos;
+        this.stageNanos = stageNanos;
+    }
+
+    /** Share of the peak rate at this point of a stage (0..1). */
+    public double factor(double fractionOfStage) {
+        if (shape == Shape.STEADY) {
+            return 1;
+        }
+        double z = (fractionOfStage - RUSH_CENTRE) / RUSH_WIDTH;
+        return Math.max(TRICKLE, Math.exp(-z * z / 2));
+    }
+
+    /** Average of {@link #factor} over a stage. */
+    public double meanFactor() {
+        double sum = 0;
+        for (int i = 0; i < MEAN_STEPS; i++) {
+            sum += factor((i + 0.5) / MEAN_STEPS);
+        }
+        return sum / MEAN_STEPS;
+    }
+
+    /** Expected guests per second at one gate over a whole stage. */
+    public double meanPerSecond() {
+        return peakPerNano * TimeUnit.SECONDS.toNanos(1) * meanFactor();
+    }
+
+    /** Next arrival after {@code afterNanos}, by thinning a Poisson process at the peak rate. */
+    public long nextArrival(long afterNanos, Random random) {
+        long t = afterNanos;
+        while (true) {
+            t += (long) (-Math.log(1 - random.nextDouble()) / peakPerNano);
+            double fraction = (Math.max(0, t - startNanos) % stageNanos) / (double) stageNanos;
+            if (random.nextDouble() < factor(fraction)) {
+                return t;
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.bedayia.tickets.loadsim;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The tickets nobody has scanned yet in this run, shared by all gates. Each
+ * code is handed out once, as each guest arrives once, so every scan is a first
+ * admission (get_data, then update_data) and never a cheap "already inside"
+ * answer from a ticket an earlier stage checked in. When the pool runs dry the
+ * gates stop and the stage is flagged, since it no longer offered its load.
+ */
+public class CodePool {
+    private final List<String> codes;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public CodePool(List<String> codes, long seed) {
+        this.codes = new ArrayList<>(codes);
+        Collections.shuffle(this.codes, new Random(seed));
+    }
+
+    /** The next unscanned code, or null once every code has been handed out. */
+    public String take() {
+        int index = next.getAndIncrement();
+        return index < codes.size() ? codes.get(index) : null;
+    }
+
+    public int size() {
+        return codes.size();
+    }
+
+    public int remaining() {
+        return Math.max(0, codes.size() - next.get());
+    }
+}
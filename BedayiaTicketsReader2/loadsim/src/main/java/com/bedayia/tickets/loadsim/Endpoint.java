@@ -0,0 +1,19 @@
+package com.bedayia.tickets.loadsim;
+
+/** The scanner protocol, in the order a device uses it. */
+public enum Endpoint {
+    LOGIN("tickets/login"),
+    GET_DATA("tickets/get_data"),
+    UPDATE_DATA("tickets/update_data"),
+    LOGOUT("tickets/logout");
+
+    private final String path;
+
+    Endpoint(String path) {
+        this.path = path;
+    }
+
+    public String getPath() {
+        return path;
+    }
+}
@@ -0,0 +1,124 @@
+package com.bedayia.tickets.loadsim;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Log-linear latency histogram in microseconds: eight buckets per power of
+ * two, so any percentile is within about 12% of the true value. Recording is
+ * lock-free, because hundreds of virtual threads write to the same instance and
+ * a monitor would pin them to their carrier threads.
+ */
+public class Histogram {
+    private static final int SUB_BUCKETS = 8;
+    private static final int SUB_BUCKET_BITS = 3;
+    // 2^27 µs is a bit over two minutes; anything slower lands in the last bucket
+    private static final int MAX_EXPONENT = 27;
+    private static final int BAR_WIDTH = 40;
+
+    private final AtomicLongArray counts = new AtomicLongArray((MAX_EXPONENT - 1) * SUB_BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder sumMicros = new LongAdder();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    public void record(long nanos) {
+        long micros = Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos));
+        counts.incrementAndGet(index(micros));
+        total.increment();
+        sumMicros.add(micros);
+        maxMicros.accumulateAndGet(micros, Math::max);
+    }
+
+    public long count() {
+        return total.sum();
+    }
+
+    public double meanMillis() {
+        long count = count();
+        return count == 0 ? 0 : sumMicros.sum() / (count * 1000.0);
+    }
+
+    public double maxMillis() {
+        return maxMicros.get() / 1000.0;
+    }
+
+    /** @param percentile 0..100; returns the bucket's upper bound in milliseconds, 0 when empty */
+    public double percentileMillis(double percentile) {
+        long count = count();
+        if (count == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return Math.min(upperBound(i), maxMicros.get()) / 1000.0;
+            }
+        }
+        return maxMillis();
+    }
+
+    public String summary() {
+        return String.format(Locale.US, "n=%d mean=%.1fms p50=%.1fms p95=%.1fms p99=%.1fms max=%.1fms",
+                count(), meanMillis(), percentileMillis(50), percentileMillis(95), percentileMillis(99),
+                maxMillis());
+    }
+
+    /** Text histogram with one row per doubling of latency, from the fastest row to the slowest. */
+    public String render() {
+        long[] rows = new long[MAX_EXPONENT];
+        int first = MAX_EXPONENT;
+        int last = -1;
+        for (int i = 0; i < counts.length(); i++) {
+            long count = counts.get(i);
+            if (count > 0) {
+                int row = row(upperBound(i));
+                rows[row] += count;
+                first = Math.min(first, row);
+                last = Math.max(last, row);
+            }
+        }
+        long peak = 0;
+        for (long row : rows) {
+            peak = Math.max(peak, row);
+        }
+        StringBuilder out = new StringBuilder();
+        for (int row = first; row <= last; row++) {
+            String label = row == 0 ? "      <1ms" : String.format(Locale.US, "%6d ms+", 1L << (row - 1));
+            int bar = peak == 0 ? 0 : (int) Math.round(rows[row] * (double) BAR_WIDTH / peak);
+            out.append(String.format(Locale.US, "  %s |%-" + BAR_WIDTH + "s| %d%n", label,
+                    "#".repeat(bar), rows[row]));
+        }
+        return out.toString();
+    }
+
+    static int index(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int sub = (int) ((micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+        int index = (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+        return Math.min(index, (MAX_EXPONENT - 1) * SUB_BUCKETS - 1);
+    }
+
+    // Largest value (µs) that falls in this bucket
+    static long upperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int sub = index % SUB_BUCKETS;
+        return ((SUB_BUCKETS + sub + 1L) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    // 0 for under a millisecond, then one row per power of two in ms
+    private static int row(long micros) {
+        long millis = micros / 1000;
+        return millis == 0 ? 0 : Math.min(MAX_EXPONENT - 1, 64 - Long.numberOfLeadingZeros(millis));
+    }
+}
@@ -0,0 +1,125 @@
+package com.bedayia.tickets.loadsim;
+
+import java.io.PrintStream;
+import java.util.List;
+import java.util.Locale;
+
+/** Prints the per-stage results and decides where the backend saturated. */
+public class LoadReport {
+    // A stage keeping up delivers nearly all the scans that arrive
+    private static final double MIN_THROUGHPUT_SHARE = 0.9;
+
+    private final double sloMillis;
+    private final double maxErrorRate;
+
+    /**
+     * @param sloMillis    get_data p95 above this counts as saturated
+     * @param maxErrorRate share of failed get_data/update_data calls above which a stage counts as saturated
+     */
+    public LoadReport(double sloMillis, double maxErrorRate) {
+        this.sloMillis = sloMillis;
+        this.maxErrorRate = maxErrorRate;
+    }
+
+    /** Why this stage is saturated, or null if the backend kept up. */
+    public String saturationReason(StageStats stage) {
+        StageStats.EndpointStats lookups = stage.get(Endpoint.GET_DATA);
+        StageStats.EndpointStats updates = stage.get(Endpoint.UPDATE_DATA);
+        double errors = Math.max(lookups.errorRate(), updates.errorRate());
+        if (errors > maxErrorRate) {
+            return String.format(Locale.US, "%.1f%% of calls failed", errors * 100);
+        }
+        double p95 = lookups.getLatency().percentileMillis(95);
+        if (p95 > sloMillis) {
+            return String.format(Locale.US, "get_data p95 %.0fms over the %.0fms target", p95, sloMillis);
+        }
+        double delivered = stage.throughput(Endpoint.GET_DATA);
+        if (delivered < stage.getOfferedScansPerSecond() * MIN_THROUGHPUT_SHARE) {
+            return String.format(Locale.US, "only %.1f of %.1f scans/s served; guests are queueing",
+                    delivered, stage.getOfferedScansPerSecond());
+        }
+        return null;
+    }
+
+    /**
+     * Index of the first saturated stage, or -1 if every stage kept up. Only
+     * stages before the first that ran out of codes count; from there on fewer
+     * guests arrived than the stage asked for.
+     */
+    public int findSaturation(List<StageStats> stages) {
+        for (int i = 0; i < measured(stages); i++) {
+            if (saturationReason(stages.get(i)) != null) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public void printStage(PrintStream out, int index, StageStats stage) {
+        out.printf(Locale.US, "%nStage %d: %d gates, %.1f scans/s offered, %.0fs%n", index + 1, stage.getGates(),
+                stage.getOfferedScansPerSecond(), stage.getElapsedSeconds());
+        for (Endpoint endpoint : Endpoint.values()) {
+            StageStats.EndpointStats stats = stage.get(endpoint);
+            if (stats.getLatency().count() == 0) {
+                continue;
+            }
+            out.printf(Locale.US, " %-12s %6.1f/s  errors=%d  %s%n", endpoint.getPath().replace("tickets/", ""),
+                    stage.throughput(endpoint), stats.getErrors(), stats.getLatency().summary());
+            out.print(stats.getLatency().render());
+        }
+        out.printf(Locale.US, " %-12s %s%n", "guest wait", stage.getGuestWait().summary());
+        if (stage.getGatesOutOfCodes() > 0) {
+            out.printf(Locale.US, " OUT OF CODES: %d gates stopped, every ticket had been scanned; "
+                    + "this stage did not offer its full load%n", stage.getGatesOutOfCodes());
+        }
+    }
+
+    // Stages up to the first that ran out of codes
+    static int measured(List<StageStats> stages) {
+        for (int i = 0; i < stages.size(); i++) {
+            if (stages.get(i).getGatesOutOfCodes() > 0) {
+                return i;
+            }
+        }
+        return stages.size();
+    }
+
+    public void printSummary(PrintStream out, List<StageStats> stages) {
+        out.printf(Locale.US, "%n%6s %9s %9s %9s %9s %9s %9s %7s %11s%n", "gates", "offered/s", "scans/s",
+                "get p50", "get p95", "get p99", "upd p95", "errors", "wait p95");
+        for (StageStats stage : stages) {
+            StageStats.EndpointStats lookups = stage.get(Endpoint.GET_DATA);
+            StageStats.EndpointStats updates = stage.get(Endpoint.UPDATE_DATA);
+            out.printf(Locale.US, "%6d %9.1f %9.1f %7.0fms %7.0fms %7.0fms %7.0fms %6.1f%% %9.0fms%n",
+                    stage.getGates(), stage.getOfferedScansPerSecond(), stage.throughput(Endpoint.GET_DATA),
+                    lookups.getLatency().percentileMillis(50), lookups.getLatency().percentileMillis(95),
+                    lookups.getLatency().percentileMillis(99), updates.getLatency().percentileMillis(95),
+                    Math.max(lookups.errorRate(), updates.errorRate()) * 100,
+                    stage.getGuestWait().percentileMillis(95));
+        }
+
+        int measured = measured(stages);
+        if (measured < stages.size()) {
+            out.printf(Locale.US, "%nStage %d ran out of unscanned codes, so it and any later stage are left out; "
+                    + "seed more tickets (bun run db:seed-loadtest --students N).%n", measured + 1);
+            if (measured == 0) {
+                return;
+            }
+        }
+        int saturated = findSaturation(stages);
+        if (saturated < 0) {
+            StageStats last = stages.get(measured - 1);
+            out.printf(Locale.US, "%nNo saturation up to %d gates (%.1f scans/s); add larger stages to find the limit.%n",
+                    last.getGates(), last.throughput(Endpoint.GET_DATA));
+        } else if (saturated == 0) {
+            out.printf(Locale.US, "%nSaturated already at the first stage (%d gates): %s%n",
+                    stages.get(0).getGates(), saturationReason(stages.get(0)));
+        } else {
+            StageStats healthy = stages.get(saturated - 1);
+            StageStats over = stages.get(saturated);
+            out.printf(Locale.US, "%nSaturation between %d and %d gates: last healthy stage served %.1f scans/s; "
+                            + "at %d gates %s%n", healthy.getGates(), over.getGates(),
+                    healthy.throughput(Endpoint.GET_DATA), over.getGates(), saturationReason(over));
+        }
+    }
+}
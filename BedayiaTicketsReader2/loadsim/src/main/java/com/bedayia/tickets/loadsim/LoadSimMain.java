@@ -0,0 +1,217 @@
+package com.bedayia.tickets.loadsim;
+
+import com.bedayia.tickets.LoginRequest;
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Graduation-night load test for the scanner API. Runs in stages of growing
+ * gate counts; every gate is a virtual thread doing login, then get_data and
+ * update_data for each guest the arrival curve sends it, then logout. After
+ * each stage it prints per-endpoint throughput and latency histograms, and at
+ * the end where the backend stopped keeping up. Every code is scanned at most
+ * once per run (see {@link CodePool}); the run stops, and fails, at the stage
+ * where they run out. Entry point for {@code ./gradlew :loadsim:run}.
+ *
+ * <pre>
+ *   --base-url URL        backend API root (default http://localhost:3000/api/v1/)
+ *   --codes FILE          QR code texts to scan, one per line (written by bun run db:seed-loadtest)
+ *   --gates N,N,...       gates active in each stage (default 25,50,100,200,400)
+ *   --stage-seconds N     length of each stage (default 60)
+ *   --peak-per-minute N   guests per gate per minute at the height of the rush (default 6)
+ *   --shape doors|steady  arrival curve within a stage (default doors)
+ *   --think-ms N          median time the usher spends on the guest list (default 1500)
+ *   --slo-ms N            get_data p95 above this counts as saturated (default 500)
+ *   --timeout-ms N        per-request timeout (default 10000)
+ *   --user-prefix NAME    gate i logs in as NAME + i (default loadgate)
+ *   --password PASS       password of the load-test users (default loadtest)
+ *   --db NAME             login db field (default bedayia_school)
+ *   --mock                run against an in-process stand-in instead of --base-url
+ *   --mock-workers N      stand-in worker threads (default 8)
+ *   --mock-service-ms N   stand-in time per request (default 20)
+ * </pre>
+ */
+public final class LoadSimMain {
+    private static final double MAX_ERROR_RATE = 0.01;
+    private static final long DRAIN_SECONDS = 30;
+
+    private LoadSimMain() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = "http://localhost:3000/api/v1/";
+        String codesFile = null;
+        List<Integer> gates = List.of(25, 50, 100, 200, 400);
+        long stageSeconds = 60;
+        double peakPerMinute = 6;
+        ArrivalCurve.Shape shape = ArrivalCurve.Shape.DOORS;
+        long thinkMillis = 1500;
+        double sloMillis = 500;
+        long timeoutMillis = 10_000;
+        String userPrefix = "loadgate";
+        String password = "loadtest";
+        String db = "bedayia_school";
+        boolean mock = false;
+        int mockWorkers = 8;
+        long mockServiceMillis = 20;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--base-url": baseUrl = args[++i]; break;
+                case "--codes": codesFile = args[++i]; break;
+                case "--gates": gates = parseList(args[++i]); break;
+                case "--stage-seconds": stageSeconds = Long.parseLong(args[++i]); break;
+                case "--peak-per-minute": peakPerMinute = Double.parseDouble(args[++i]); break;
+                case "--shape": shape = ArrivalCurve.Shape.valueOf(args[++i].toUpperCase(Locale.ROOT)); break;
+                case "--think-ms": thinkMillis = Long.parseLong(args[++i]); break;
+                case "--slo-ms": sloMillis = Double.parseDouble(args[++i]); break;
+                case "--timeout-ms": timeoutMillis = Long.parseLong(args[++i]); break;
+                case "--user-prefix": userPrefix = args[++i]; break;
+                case "--password": password = args[++i]; break;
+                case "--db": db = args[++i]; break;
+                case "--mock": mock = true; break;
+                case "--mock-workers": mockWorkers = Integer.parseInt(args[++i]); break;
+                case "--mock-service-ms": mockServiceMillis = Long.parseLong(args[++i]); break;
+                default:
+                    System.err.println("Unknown option " + args[i]);
+                    System.exit(2);
+            }
+        }
+
+        long stageNanos = TimeUnit.SECONDS.toNanos(stageSeconds);
+        double expectedArrivals = new ArrivalCurve(shape, peakPerMinute, 0, stageNanos).meanPerSecond()
+                * stageSeconds * gates.stream().mapToInt(Integer::intValue).sum();
+        List<String> codes = loadCodes(codesFile, mock, expectedArrivals);
+        if (expectedArrivals > codes.size()) {
+            System.out.printf(Locale.US, "Warning: about %.0f guests will arrive but there are only %d codes; "
+                    + "the run will stop where they run out%n", expectedArrivals, codes.size());
+        }
+        MockTicketsServer mockServer = null;
+        if (mock) {
+            mockServer = new MockTicketsServer(mockWorkers, mockServiceMillis);
+            baseUrl = mockServer.getBaseUrl();
+            System.out.printf(Locale.US, "Stand-in backend: %d workers x %dms, capacity about %.0f requests/s%n",
+                    mockWorkers, mockServiceMillis, mockWorkers * 1000.0 / mockServiceMillis);
+        }
+        boolean complete;
+        try {
+            complete = run(baseUrl, codes, gates, stageSeconds, peakPerMinute, shape, thinkMillis, timeoutMillis,
+                    userPrefix, password, db, new LoadReport(sloMillis, MAX_ERROR_RATE));
+        } finally {
+            if (mockServer != null) {
+                mockServer.close();
+            }
+        }
+        if (!complete) {
+            System.exit(1);
+        }
+    }
+
+    // False if the codes ran out before the last stage was done
+    private static boolean run(String baseUrl, List<String> codes, List<Integer> gates, long stageSeconds,
+                            double peakPerMinute, ArrivalCurve.Shape shape, long thinkMillis, long timeoutMillis,
+                            String userPrefix, String password, String db, LoadReport report)
+            throws InterruptedException {
+        long stageNanos = TimeUnit.SECONDS.toNanos(stageSeconds);
+        ArrivalCurve arrivals = new ArrivalCurve(shape, peakPerMinute, System.nanoTime(), stageNanos);
+        System.out.printf(Locale.US, "%s, %d codes, arrivals %s peaking at %.1f/min per gate (mean %.2f/s)%n",
+                baseUrl, codes.size(), shape.name().toLowerCase(Locale.ROOT), peakPerMinute,
+                arrivals.meanPerSecond());
+        CodePool pool = new CodePool(codes, 1);
+        boolean complete = true;
+
+        AtomicReference<StageStats> current = new AtomicReference<>();
+        // Devices still logging out after the last stage land here
+        StageStats teardown = new StageStats(0, 0);
+        CountDownLatch stop = new CountDownLatch(1);
+        HttpClient http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(timeoutMillis))
+                .build();
+        TicketsClient client = new TicketsClient(http, baseUrl, Duration.ofMillis(timeoutMillis), current::get);
+        ThreadFactory gateThreads = Thread.ofVirtual().name("gate-", 1).factory();
+        List<StageStats> stages = new ArrayList<>();
+
+        ExecutorService devices = Executors.newThreadPerTaskExecutor(gateThreads);
+        try {
+            int started = 0;
+            for (int gateCount : gates) {
+                StageStats stage = new StageStats(gateCount, gateCount * arrivals.meanPerSecond());
+                current.set(stage);
+                long stageStart = System.nanoTime();
+                for (; started < gateCount; started++) {
+                    LoginRequest login = new LoginRequest(userPrefix + (started + 1), password, db);
+                    devices.execute(new ScannerDevice(client, login, pool, arrivals, thinkMillis, current::get,
+                            stop, started));
+                }
+                TimeUnit.NANOSECONDS.sleep(stageNanos - (System.nanoTime() - stageStart));
+                stage.setElapsedNanos(System.nanoTime() - stageStart);
+                stages.add(stage);
+                report.printStage(System.out, stages.size() - 1, stage);
+                if (stage.getGatesOutOfCodes() > 0) {
+                    // Later stages could only re-scan tickets that are already in
+                    complete = false;
+                    break;
+                }
+            }
+            current.set(teardown);
+        } finally {
+            stop.countDown();
+            devices.shutdown();
+            if (!devices.awaitTermination(DRAIN_SECONDS, TimeUnit.SECONDS)) {
+                System.err.println("Some gates were still busy after " + DRAIN_SECONDS + "s; not logged out");
+                devices.shutdownNow();
+            }
+        }
+        StageStats.EndpointStats logouts = teardown.get(Endpoint.LOGOUT);
+        System.out.printf(Locale.US, "%nLogged out %d gates (%d failed)%n", logouts.getOk(), logouts.getErrors());
+        report.printSummary(System.out, stages);
+        return complete;
+    }
+
+    private static List<String> loadCodes(String file, boolean mock, double expectedArrivals) throws IOException {
+        if (file == null) {
+            if (!mock) {
+                System.err.println("--codes is required against a real backend (see bun run db:seed-loadtest)");
+                System.exit(2);
+            }
+            // The stand-in answers any code, so make twice as many as the run should need
+            List<String> codes = new ArrayList<>();
+            for (int i = 1; i <= Math.max(2000, 2 * Math.ceil(expectedArrivals)); i++) {
+                codes.add("LOAD" + i);
+            }
+            return codes;
+        }
+        List<String> codes = new ArrayList<>();
+        for (String line : Files.readAllLines(Paths.get(file), StandardCharsets.UTF_8)) {
+            if (!line.isBlank()) {
+                codes.add(line.trim());
+            }
+        }
+        if (codes.isEmpty()) {
+            throw new IOException(file + " has no codes");
+        }
+        return codes;
+    }
+
+    private static List<Integer> parseList(String value) {
+        List<Integer> parsed = new ArrayList<>();
+        for (String item : value.split(",")) {
+            parsed.add(Integer.parseInt(item.trim()));
+        }
+        return parsed;
+    }
+}
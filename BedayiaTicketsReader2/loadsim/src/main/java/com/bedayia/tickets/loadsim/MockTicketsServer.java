@@ -0,0 +1,118 @@
+package com.bedayia.tickets.loadsim;
+
+import com.bedayia.tickets.Invitee;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stand-in for the tickets API with a known capacity: a fixed pool of workers,
+ * each spending {@code serviceMillis} per request, so it saturates at
+ * workers / service time. Used by {@code --mock} to check the simulator itself
+ * finds the knee where it should.
+ */
+public class MockTicketsServer implements AutoCloseable {
+    private static final int GUESTS_PER_CODE = 3;
+
+    private final HttpServer server;
+    private final ExecutorService workers;
+    private final long serviceMillis;
+    private final Gson gson = new Gson();
+    // qrcode -> guests already admitted
+    private final Map<String, Map<String, Boolean>> attendance = new ConcurrentHashMap<>();
+
+    public MockTicketsServer(int workerCount, long serviceMillis) throws IOException {
+        this.serviceMillis = serviceMillis;
+        this.workers = Executors.newFixedThreadPool(workerCount);
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        server.createContext("/api/v1/tickets/", this::handle);
+        server.setExecutor(workers);
+        server.start();
+    }
+
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/api/v1/";
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        workers.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            JsonObject request;
+            try (InputStreamReader reader = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)) {
+                request = gson.fromJson(reader, JsonObject.class);
+            }
+            TimeUnit.MILLISECONDS.sleep(serviceMillis);
+
+            String path = exchange.getRequestURI().getPath();
+            JsonObject response = new JsonObject();
+            if (path.endsWith("/login")) {
+                JsonObject key = new JsonObject();
+                key.addProperty("apikey", UUID.randomUUID().toString().replace("-", ""));
+                JsonArray message = new JsonArray();
+                message.add(key);
+                response.add("message", message);
+            } else if (path.endsWith("/get_data")) {
+                response.add("message", gson.toJsonTree(guests(request.get("invitees_qrcode_text").getAsString())));
+            } else if (path.endsWith("/update_data")) {
+                for (JsonElement element : request.getAsJsonArray("invitees")) {
+                    Invitee invitee = gson.fromJson(element, Invitee.class);
+                    if (invitee.isInviteesAttendance()) {
+                        attendance.computeIfAbsent(invitee.getInviteesQrcodeText(), code -> new ConcurrentHashMap<>())
+                                .put(invitee.getInviteesName(), true);
+                    }
+                }
+                response.addProperty("message", "Attendance updated");
+            } else if (path.endsWith("/logout")) {
+                response.addProperty("message", "API KEY Successfully Removed");
+            } else {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            response.addProperty("success", true);
+            byte[] body = response.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(path.endsWith("/login") ? 201 : 200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private List<Invitee> guests(String code) {
+        Map<String, Boolean> admitted = attendance.getOrDefault(code, Map.of());
+        List<Invitee> guests = new ArrayList<>(GUESTS_PER_CODE);
+        for (int i = 1; i <= GUESTS_PER_CODE; i++) {
+            Invitee invitee = new Invitee();
+            invitee.setInviteesQrcodeText(code);
+            invitee.setInviteesName("Guest " + i);
+            invitee.setNumberOfSeats(GUESTS_PER_CODE);
+            invitee.setInviteesAttendance(admitted.containsKey(invitee.getInviteesName()));
+            guests.add(invitee);
+        }
+        return guests;
+    }
+}
@@ -0,0 +1,147 @@
+package com.bedayia.tickets.loadsim;
+
+import com.bedayia.tickets.Invitee;
+import com.bedayia.tickets.LoginRequest;
+import com.bedayia.tickets.core.ApiException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * One gate for the whole run, on its own virtual thread: logs in, then for
+ * every arriving guest scans the code (get_data), lets the usher tick the
+ * guests off and submits them (update_data), and logs out when the run stops
+ * or the shared {@link CodePool} runs out of unscanned tickets.
+ */
+public class ScannerDevice implements Runnable {
+    private static final int LOGIN_ATTEMPTS = 5;
+    private static final long LOGIN_RETRY_MILLIS = 1_000;
+    // Usher reading the list and ticking boxes: log-normal around the median
+    private static final double THINK_SIGMA = 0.5;
+
+    private final TicketsClient client;
+    private final LoginRequest login;
+    private final CodePool codes;
+    private final ArrivalCurve arrivals;
+    private final long thinkMedianMillis;
+    private final Supplier<StageStats> stage;
+    private final CountDownLatch stop;
+    private final Random random;
+
+    public ScannerDevice(TicketsClient client, LoginRequest login, CodePool codes, ArrivalCurve arrivals,
+                         long thinkMedianMillis, Supplier<StageStats> stage, CountDownLatch stop, long seed) {
+        this.client = client;
+        this.login = login;
+        this.codes = codes;
+        this.arrivals = arrivals;
+        this.thinkMedianMillis = thinkMedianMillis;
+        this.stage = stage;
+        this.stop = stop;
+        this.random = new Random(seed);
+    }
+
+    @Override
+    public void run() {
+        String apiKey = logIn();
+        if (apiKey == null) {
+            return;
+        }
+        long arrival = arrivals.nextArrival(System.nanoTime(), random);
+        while (waitUntil(arrival)) {
+            String code = codes.take();
+            if (code == null) {
+                stage.get().recordOutOfCodes();
+                break;
+            }
+            try {
+                admit(apiKey, code);
+                // Measured from when the guest reached the gate, so time spent queueing counts
+                stage.get().getGuestWait().record(System.nanoTime() - arrival);
+            } catch (ApiException e) {
+                if (e.getHttpCode() == 401) {
+                    apiKey = logIn();
+                    if (apiKey == null) {
+                        return;
+                    }
+                }
+            } catch (IOException e) {
+                // Counted as an error by the client; next guest
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            arrival = arrivals.nextArrival(arrival, random);
+        }
+        try {
+            client.logout(apiKey, login.getLogin());
+        } catch (IOException e) {
+            // Left logged in; the seed script revokes the keys before the next run
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void admit(String apiKey, String code) throws IOException, InterruptedException {
+        List<Invitee> invitees = client.getData(apiKey, code);
+        List<Invitee> arriving = new ArrayList<>();
+        for (Invitee invitee : invitees) {
+            if (!invitee.isInviteesAttendance()) {
+                arriving.add(invitee);
+            }
+        }
+        if (arriving.isEmpty()) {
+            // Everyone on this ticket is already in: the usher turns the guest away
+            return;
+        }
+        long think = Math.round(thinkMedianMillis * Math.exp(THINK_SIGMA * random.nextGaussian()));
+        if (!waitUntil(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(think))) {
+            return;
+        }
+        // Like the app, submit the whole list with the arrivals ticked
+        for (Invitee invitee : arriving) {
+            invitee.setInviteesAttendance(true);
+        }
+        client.updateData(apiKey, invitees);
+    }
+
+    private String logIn() {
+        for (int attempt = 1; attempt <= LOGIN_ATTEMPTS; attempt++) {
+            try {
+                return client.login(login);
+            } catch (ApiException e) {
+                if (e.getHttpCode() == 401 || e.getHttpCode() == 403) {
+                    System.err.println(login.getLogin() + ": login refused (" + e.getMessage()
+                            + "); is the load-test seed applied?");
+                    return null;
+                }
+            } catch (IOException e) {
+                // Retry below
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            if (!waitUntil(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(LOGIN_RETRY_MILLIS * attempt))) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    // False if the run was stopped first
+    private boolean waitUntil(long deadlineNanos) {
+        long wait = deadlineNanos - System.nanoTime();
+        if (wait <= 0) {
+            return stop.getCount() > 0;
+        }
+        try {
+            return !stop.await(wait, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
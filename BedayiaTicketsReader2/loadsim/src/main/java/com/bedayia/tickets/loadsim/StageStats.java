@@ -0,0 +1,93 @@
+package com.bedayia.tickets.loadsim;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Everything measured while one load stage was active. Requests are counted
+ * in the stage they complete in.
+ */
+public class StageStats {
+    private final int gates;
+    private final double offeredScansPerSecond;
+    private final Map<Endpoint, EndpointStats> endpoints = new EnumMap<>(Endpoint.class);
+    // Guest arrival at the gate until their check-in is stored: includes queueing behind earlier guests
+    private final Histogram guestWait = new Histogram();
+    // Gates that stopped because every code had been scanned
+    private final LongAdder outOfCodes = new LongAdder();
+    private volatile long elapsedNanos;
+
+    public StageStats(int gates, double offeredScansPerSecond) {
+        this.gates = gates;
+        this.offeredScansPerSecond = offeredScansPerSecond;
+        for (Endpoint endpoint : Endpoint.values()) {
+            endpoints.put(endpoint, new EndpointStats());
+        }
+    }
+
+    public int getGates() {
+        return gates;
+    }
+
+    public double getOfferedScansPerSecond() {
+        return offeredScansPerSecond;
+    }
+
+    public EndpointStats get(Endpoint endpoint) {
+        return endpoints.get(endpoint);
+    }
+
+    public Histogram getGuestWait() {
+        return guestWait;
+    }
+
+    public long getGatesOutOfCodes() {
+        return outOfCodes.sum();
+    }
+
+    void recordOutOfCodes() {
+        outOfCodes.increment();
+    }
+
+    public double getElapsedSeconds() {
+        return elapsedNanos / 1e9;
+    }
+
+    void setElapsedNanos(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public double throughput(Endpoint endpoint) {
+        double seconds = getElapsedSeconds();
+        return seconds > 0 ? get(endpoint).getOk() / seconds : 0;
+    }
+
+    public static class EndpointStats {
+        private final Histogram latency = new Histogram();
+        private final LongAdder ok = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+
+        public Histogram getLatency() {
+            return latency;
+        }
+
+        public long getOk() {
+            return ok.sum();
+        }
+
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        public double errorRate() {
+            long total = getOk() + getErrors();
+            return total == 0 ? 0 : getErrors() / (double) total;
+        }
+
+        void record(long nanos, boolean success) {
+            latency.record(nanos);
+            (success ? ok : errors).increment();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.bedayia.tickets.loadsim;
+
+import com.bedayia.tickets.Invitee;
+import com.bedayia.tickets.LoginRequest;
+import com.bedayia.tickets.core.ApiException;
+import com.bedayia.tickets.core.InviteeJson;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Blocking client for the scanner endpoints, sending the same request bodies
+ * as OdooApiService. Meant to be called from virtual threads: every call just
+ * parks its thread while the request is in flight. Each call is timed into
+ * whichever stage is current when it completes.
+ */
+public class TicketsClient {
+    private final HttpClient http;
+    private final String baseUrl;
+    private final Duration timeout;
+    private final Supplier<StageStats> stage;
+    private final Gson gson = new Gson();
+
+    public TicketsClient(HttpClient http, String baseUrl, Duration timeout, Supplier<StageStats> stage) {
+        this.http = http;
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl : baseUrl + "/";
+        this.timeout = timeout;
+        this.stage = stage;
+    }
+
+    /** @return the API key */
+    public String login(LoginRequest request) throws IOException, InterruptedException {
+        JsonObject body = call(Endpoint.LOGIN, null, gson.toJson(request));
+        JsonArray message = body.getAsJsonArray("message");
+        if (message == null || message.size() == 0) {
+            throw new ApiException("Login response has no API key");
+        }
+        return message.get(0).getAsJsonObject().get("apikey").getAsString();
+    }
+
+    public List<Invitee> getData(String apiKey, String qrCodeText) throws IOException, InterruptedException {
+        JsonObject request = new JsonObject();
+        request.addProperty("invitees_qrcode_text", qrCodeText);
+        JsonObject body = call(Endpoint.GET_DATA, apiKey, request.toString());
+        JsonArray message = body.getAsJsonArray("message");
+        if (message == null) {
+            throw new ApiException("No invitees data found in response");
+        }
+        return InviteeJson.parseList(message.toString());
+    }
+
+    public void updateData(String apiKey, List<Invitee> invitees) throws IOException, InterruptedException {
+        JsonObject request = new JsonObject();
+        request.add("invitees", gson.toJsonTree(invitees));
+        call(Endpoint.UPDATE_DATA, apiKey, request.toString());
+    }
+
+    public void logout(String apiKey, String username) throws IOException, InterruptedException {
+        JsonObject request = new JsonObject();
+        request.addProperty("api_key", apiKey);
+        request.addProperty("username", username);
+        call(Endpoint.LOGOUT, null, request.toString());
+    }
+
+    private JsonObject call(Endpoint endpoint, String apiKey, String json) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl + endpoint.getPath()))
+                .timeout(timeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json));
+        if (apiKey != null) {
+            request.header("Authorization", "Bearer " + apiKey);
+        }
+
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            HttpResponse<String> response = http.send(request.build(), HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() / 100 != 2) {
+                throw new ApiException(endpoint.getPath() + " Error: " + response.statusCode() + " "
+                        + response.body(), response.statusCode());
+            }
+            JsonObject body = gson.fromJson(response.body(), JsonObject.class);
+            if (body == null) {
+                throw new ApiException(endpoint.getPath() + " returned an empty body");
+            }
+            success = true;
+            return body;
+        } catch (JsonParseException e) {
+            throw new ApiException(endpoint.getPath() + " returned malformed JSON");
+        } finally {
+            stage.get().get(endpoint).record(System.nanoTime() - start, success);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.bedayia.tickets.loadsim;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class LoadReportTest {
+    private final LoadReport report = new LoadReport(500, 0.01);
+
+    @Test
+    public void histogramPercentilesStayWithinBucketResolution() {
+        Histogram histogram = new Histogram();
+        Random random = new Random(7);
+        long[] samples = new long[10_000];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = TimeUnit.MICROSECONDS.toNanos(100 + random.nextInt(2_000_000));
+            histogram.record(samples[i]);
+        }
+        Arrays.sort(samples);
+        for (double percentile : new double[] {50, 95, 99}) {
+            double exact = samples[(int) Math.ceil(percentile / 100 * samples.length) - 1] / 1e6;
+            double reported = histogram.percentileMillis(percentile);
+            assertTrue(percentile + ": " + reported + " vs " + exact,
+                    reported >= exact && reported <= exact * 1.125);
+        }
+        assertEquals(10_000, histogram.count());
+    }
+
+    @Test
+    public void saturationIsTheFirstStageThatFallsBehind() {
+        List<StageStats> stages = Arrays.asList(
+                stage(50, 20, 20, 40),
+                stage(100, 40, 40, 60),
+                // Fast answers, but a third of the arriving guests were never scanned
+                stage(200, 80, 52, 90),
+                stage(400, 160, 60, 900));
+
+        assertNull(report.saturationReason(stages.get(1)));
+        assertEquals(2, report.findSaturation(stages));
+        assertTrue(report.saturationReason(stages.get(3)).contains("p95"));
+    }
+
+    @Test
+    public void failedCallsSaturateAStage() {
+        StageStats stage = stage(50, 20, 20, 40);
+        for (int i = 0; i < 10; i++) {
+            stage.get(Endpoint.UPDATE_DATA).record(TimeUnit.MILLISECONDS.toNanos(10_000), false);
+        }
+        assertTrue(report.saturationReason(stage).contains("failed"));
+    }
+
+    @Test
+    public void aStageThatRanOutOfCodesIsNotASaturationPoint() {
+        StageStats dry = stage(200, 80, 30, 40);
+        dry.recordOutOfCodes();
+        List<StageStats> stages = Arrays.asList(stage(50, 20, 20, 40), dry, stage(400, 160, 60, 900));
+
+        // Its low throughput came from guests that never arrived, not from the backend
+        assertEquals(-1, report.findSaturation(stages));
+        assertEquals(1, LoadReport.measured(stages));
+    }
+
+    @Test
+    public void codePoolHandsOutEveryCodeOnce() throws InterruptedException {
+        List<String> codes = new java.util.ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            codes.add("LOAD" + i);
+        }
+        CodePool pool = new CodePool(codes, 3);
+        Set<String> taken = ConcurrentHashMap.newKeySet();
+        Thread[] gates = new Thread[8];
+        for (int g = 0; g < gates.length; g++) {
+            gates[g] = new Thread(() -> {
+                for (String code = pool.take(); code != null; code = pool.take()) {
+                    assertTrue("handed out twice: " + code, taken.add(code));
+                }
+            });
+            gates[g].start();
+        }
+        for (Thread gate : gates) {
+            gate.join();
+        }
+        assertEquals(1000, taken.size());
+        assertEquals(0, pool.remaining());
+        assertNull(pool.take());
+    }
+
+    // A 10 s stage that served scansPerSecond lookups, all taking latencyMillis
+    private static StageStats stage(int gates, double offered, double scansPerSecond, long latencyMillis) {
+        StageStats stage = new StageStats(gates, offered);
+        stage.setElapsedNanos(TimeUnit.SECONDS.toNanos(10));
+        for (int i = 0; i < scansPerSecond * 10; i++) {
+            stage.get(Endpoint.GET_DATA).record(TimeUnit.MILLISECONDS.toNanos(latencyMillis), true);
+            stage.get(Endpoint.UPDATE_DATA).record(TimeUnit.MILLISECONDS.toNanos(latencyMillis), true);
+        }
+        return stage;
+    }
+}
@@ -1,5 +1,7 @@
 package com.bedayia.tickets;
 
+import com.bedayia.tickets.core.AttendanceTimes;
+import com.google.gson.annotations.JsonAdapter;
 import com.google.gson.annotations.SerializedName;
 
 public class Invitee {
@@ -18,8 +20,10 @@ public class Invitee {
     @SerializedName("invitees_attendance")
     private boolean inviteesAttendance;
     
+    // Epoch millis, AttendanceTimes.NONE when not checked in; a string on the wire
     @SerializedName("invitees_attendance_time")
-    private String inviteesAttendanceTime;
+    @JsonAdapter(AttendanceTimes.JsonAdapter.class)
+    private long inviteesAttendanceTime;
 
     // Getters and Setters
     public boolean isMainInvitee() {
@@ -62,11 +66,24 @@ public class Invitee {
         this.inviteesAttendance = inviteesAttendance;
     }
 
+    // Wire form ("yyyy-MM-dd HH:mm:ss"), or null when not checked in
     public String getInviteesAttendanceTime() {
-        return inviteesAttendanceTime;
+        return AttendanceTimes.format(inviteesAttendanceTime);
     }
 
     public void setInviteesAttendanceTime(String inviteesAttendanceTime) {
-        this.inviteesAttendanceTime = inviteesAttendanceTime;
+        this.inviteesAttendanceTime = AttendanceTimes.parse(inviteesAttendanceTime);
+    }
+
+    public boolean hasAttendanceTime() {
+        return inviteesAttendanceTime != AttendanceTimes.NONE;
+    }
+
+    public long getAttendanceTimeMillis() {
+        return inviteesAttendanceTime;
+    }
+
+    public void setAttendanceTimeMillis(long attendanceTimeMillis) {
+        this.inviteesAttendanceTime = attendanceTimeMillis;
     }
 } 
\ No newline at end of file
@@ -0,0 +1,136 @@
+package com.bedayia.tickets.core;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides which camera frames are worth decoding, so a scanner left open for a
+ * whole ceremony doesn't run the decoder flat out between guests. After a quiet
+ * period (no code, no partial detection, no motion) frames are only decoded
+ * every so often, and after a longer one the analysis resolution can drop too.
+ * Any motion or detection switches back to decoding every frame at once.
+ *
+ * <p>The device's thermal status caps the rate on top of that: from
+ * {@link #THERMAL_MODERATE} even an active scanner decodes at most ten frames a
+ * second, and from {@link #THERMAL_SEVERE} five, at low resolution.
+ *
+ * <p>Times are {@link System#nanoTime()} values passed in by the caller. Safe to
+ * call from the analysis thread and the decoder's callback thread.
+ */
+public final class AdaptiveScanPolicy {
+    public enum Resolution { HIGH, LOW }
+
+    // PowerManager.THERMAL_STATUS_* values, so the platform listener can pass them straight in
+    public static final int THERMAL_NONE = 0;
+    public static final int THERMAL_MODERATE = 2;
+    public static final int THERMAL_SEVERE = 3;
+
+    private static final long MODERATE_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long SEVERE_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+    // Frame timestamps jitter; one this much early still counts as on time
+    private static final long JITTER_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private final long idleAfterNanos;
+    private final long lowResolutionAfterNanos;
+    private final long idleIntervalNanos;
+
+    private boolean started;
+    private long lastActivityNanos;
+    private long lastAnalyzedNanos;
+    private int thermalStatus = THERMAL_NONE;
+    private long analyzed;
+    private long skipped;
+    private long scans;
+
+    /**
+     * @param idleAfterMs quiet time before frames are skipped
+     * @param lowResolutionAfterMs quiet time before the resolution drops
+     * @param idleIntervalMs time between decoded frames while idle
+     */
+    public AdaptiveScanPolicy(long idleAfterMs, long lowResolutionAfterMs, long idleIntervalMs) {
+        this.idleAfterNanos = TimeUnit.MILLISECONDS.toNanos(idleAfterMs);
+        this.lowResolutionAfterNanos = TimeUnit.MILLISECONDS.toNanos(lowResolutionAfterMs);
+        this.idleIntervalNanos = TimeUnit.MILLISECONDS.toNanos(idleIntervalMs);
+    }
+
+    /**
+     * Called for every frame the camera delivers.
+     *
+     * @param motion whether the frame moved against the previous one (see {@link MotionDetector})
+     * @return true to decode the frame, false to drop it straight away
+     */
+    public synchronized boolean shouldAnalyze(long nowNanos, boolean motion) {
+        if (!started || motion) {
+            started = true;
+            lastActivityNanos = nowNanos;
+        }
+        if (analyzed > 0 && nowNanos - lastAnalyzedNanos < interval(nowNanos) - JITTER_NANOS) {
+            skipped++;
+            return false;
+        }
+        lastAnalyzedNanos = nowNanos;
+        analyzed++;
+        return true;
+    }
+
+    /**
+     * Reports what the decoder made of an analyzed frame.
+     *
+     * @param partial a code was detected but could not be read, so one is probably being presented
+     */
+    public synchronized void onDecoded(long nowNanos, boolean codeFound, boolean partial) {
+        if (codeFound || partial) {
+            lastActivityNanos = nowNanos;
+        }
+    }
+
+    // A new code went to lookup
+    public synchronized void onScan() {
+        scans++;
+    }
+
+    public synchronized void setThermalStatus(int status) {
+        thermalStatus = status;
+    }
+
+    public synchronized boolean isIdle(long nowNanos) {
+        return started && nowNanos - lastActivityNanos >= idleAfterNanos;
+    }
+
+    // The analysis resolution the camera should be bound at now
+    public synchronized Resolution resolution(long nowNanos) {
+        if (thermalStatus >= THERMAL_SEVERE || (started && nowNanos - lastActivityNanos >= lowResolutionAfterNanos)) {
+            return Resolution.LOW;
+        }
+        return Resolution.HIGH;
+    }
+
+    // Decoded frames per code sent to lookup, the cost of a scan in decoder work
+    public synchronized double framesPerScan() {
+        return scans == 0 ? analyzed : analyzed / (double) scans;
+    }
+
+    public synchronized long analyzedFrames() {
+        return analyzed;
+    }
+
+    public synchronized long skippedFrames() {
+        return skipped;
+    }
+
+    public synchronized String summary() {
+        return String.format(Locale.US, "scans=%d analyzed=%d skipped=%d frames/scan=%.1f thermal=%d",
+                scans, analyzed, skipped, framesPerScan(), thermalStatus);
+    }
+
+    private long interval(long nowNanos) {
+        boolean idle = isIdle(nowNanos);
+        if (thermalStatus >= THERMAL_SEVERE) {
+            return idle ? Math.max(idleIntervalNanos, SEVERE_INTERVAL_NANOS) * 2 : SEVERE_INTERVAL_NANOS;
+        }
+        if (thermalStatus >= THERMAL_MODERATE) {
+            return idle ? Math.max(idleIntervalNanos, MODERATE_INTERVAL_NANOS) : MODERATE_INTERVAL_NANOS;
+        }
+        return idle ? idleIntervalNanos : 0;
+    }
+}
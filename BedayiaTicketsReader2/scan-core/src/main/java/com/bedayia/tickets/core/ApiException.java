@@ -0,0 +1,33 @@
+package com.bedayia.tickets.core;
+
+import java.io.IOException;
+
+/**
+ * The backend answered, but not with what we asked for: an HTTP error status
+ * or a body we could not use. Distinguishes "the server said no" from transport
+ * failures, which is what {@link EndpointPool} uses to decide whether an
+ * endpoint is unhealthy.
+ */
+public class ApiException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final int httpCode;
+
+    public ApiException(String message) {
+        this(message, 0);
+    }
+
+    public ApiException(String message, int httpCode) {
+        super(message);
+        this.httpCode = httpCode;
+    }
+
+    // 0 when the status was fine but the body was not
+    public int getHttpCode() {
+        return httpCode;
+    }
+
+    public boolean isServerError() {
+        return httpCode >= 500;
+    }
+}
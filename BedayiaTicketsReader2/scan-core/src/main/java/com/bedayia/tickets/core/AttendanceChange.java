@@ -0,0 +1,53 @@
+package com.bedayia.tickets.core;
+
+import com.google.gson.annotations.SerializedName;
+
+// One attendance write on the server, as pushed by tickets/stream
+public final class AttendanceChange {
+    @SerializedName("event_id")
+    private int eventId;
+
+    @SerializedName("invitees_qrcode_text")
+    private String inviteesQrcodeText;
+
+    @SerializedName("invitees_name")
+    private String inviteesName;
+
+    @SerializedName("invitees_attendance")
+    private boolean inviteesAttendance;
+
+    @SerializedName("invitees_attendance_time")
+    private String inviteesAttendanceTime;
+
+    public AttendanceChange() {
+    }
+
+    public AttendanceChange(int eventId, String inviteesQrcodeText, String inviteesName,
+                            boolean inviteesAttendance, String inviteesAttendanceTime) {
+        this.eventId = eventId;
+        this.inviteesQrcodeText = inviteesQrcodeText;
+        this.inviteesName = inviteesName;
+        this.inviteesAttendance = inviteesAttendance;
+        this.inviteesAttendanceTime = inviteesAttendanceTime;
+    }
+
+    public int getEventId() {
+        return eventId;
+    }
+
+    public String getInviteesQrcodeText() {
+        return inviteesQrcodeText;
+    }
+
+    public String getInviteesName() {
+        return inviteesName;
+    }
+
+    public boolean isInviteesAttendance() {
+        return inviteesAttendance;
+    }
+
+    public String getInviteesAttendanceTime() {
+        return inviteesAttendanceTime;
+    }
+}
@@ -0,0 +1,91 @@
+package com.bedayia.tickets.core;
+
+import com.bedayia.tickets.Invitee;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Guests this device knows to be inside, from the push stream and from its own
+ * uploads. Lookups are overlaid with it, so a guest admitted at another gate a
+ * moment ago is shown as already admitted even if get_data raced the write.
+ * The server stays authoritative; this only ever adds attendance to a lookup.
+ */
+public class AttendanceState {
+    // Attendance time per admitted invitee (qrcode + name); null time is allowed
+    private final ConcurrentHashMap<String, String> admitted = new ConcurrentHashMap<>();
+    private final AtomicLong changesApplied = new AtomicLong();
+    private volatile String lastEventId;
+
+    public void apply(AttendanceChange change) {
+        String key = key(change.getInviteesQrcodeText(), change.getInviteesName());
+        if (change.isInviteesAttendance()) {
+            admitted.put(key, orEmpty(change.getInviteesAttendanceTime()));
+        } else {
+            // An organiser un-marked the guest
+            admitted.remove(key);
+        }
+        changesApplied.incrementAndGet();
+    }
+
+    // This device's own check-ins, once the upload has succeeded; stamped now if
+    // they carry no time, so the overlay never shows a guest attended without one
+    public void recordLocal(List<Invitee> invitees) {
+        long now = System.currentTimeMillis();
+        for (Invitee invitee : invitees) {
+            if (invitee.isInviteesAttendance()) {
+                admitted.putIfAbsent(key(invitee.getInviteesQrcodeText(), invitee.getInviteesName()),
+                        AttendanceTimes.format(invitee.hasAttendanceTime() ? invitee.getAttendanceTimeMillis() : now));
+            }
+        }
+    }
+
+    public boolean isAdmitted(String qrcodeText, String name) {
+        return admitted.containsKey(key(qrcodeText, name));
+    }
+
+    /** Marks invitees admitted elsewhere as attended; returns the same list. */
+    public List<Invitee> overlay(List<Invitee> invitees) {
+        for (Invitee invitee : invitees) {
+            if (invitee.isInviteesAttendance()) {
+                continue;
+            }
+            String time = admitted.get(key(invitee.getInviteesQrcodeText(), invitee.getInviteesName()));
+            if (time != null) {
+                invitee.setInviteesAttendance(true);
+                invitee.setInviteesAttendanceTime(time.isEmpty() ? null : time);
+            }
+        }
+        return invitees;
+    }
+
+    public int admittedCount() {
+        return admitted.size();
+    }
+
+    public long getChangesApplied() {
+        return changesApplied.get();
+    }
+
+    // Resume point for the stream
+    public String getLastEventId() {
+        return lastEventId;
+    }
+
+    void setLastEventId(String lastEventId) {
+        this.lastEventId = lastEventId;
+    }
+
+    public void clear() {
+        admitted.clear();
+        lastEventId = null;
+    }
+
+    private static String key(String qrcodeText, String name) {
+        return qrcodeText + '\u0000' + name;
+    }
+
+    private static String orEmpty(String value) {
+        return value != null ? value : "";
+    }
+}
@@ -0,0 +1,239 @@
+package com.bedayia.tickets.core;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Subscribes to tickets/stream (server-sent events) and applies every
+ * attendance change to an {@link AttendanceState}. Runs on its own thread and
+ * reconnects with backoff, resuming from the last event id so nothing pushed
+ * during a Wi-Fi drop is lost. Plain {@link HttpURLConnection} so it works the
+ * same on the device and in JVM tests.
+ */
+public class AttendanceStreamClient implements AutoCloseable {
+    private static final String PATH = "tickets/stream";
+    private static final int CONNECT_TIMEOUT_MS = 5_000;
+    // The server sends a heartbeat every 15 s; three missed means the connection is dead
+    private static final int READ_TIMEOUT_MS = 45_000;
+    private static final long MIN_BACKOFF_MS = 1_000;
+    private static final long MAX_BACKOFF_MS = 30_000;
+
+    private final Supplier<String> baseUrl;
+    private final Supplier<String> apiKey;
+    private final AttendanceState state;
+    private final ThreadFactory threads;
+    private final Gson gson = new Gson();
+    private final AtomicLong connects = new AtomicLong();
+    private final AtomicLong resets = new AtomicLong();
+    private volatile Consumer<AttendanceChange> listener;
+    private volatile boolean connected;
+
+    private Thread thread;
+    private HttpURLConnection connection;
+    private boolean running;
+
+    /**
+     * @param baseUrl resolved on every (re)connect, so it can follow the best endpoint
+     * @param apiKey  resolved on every (re)connect; empty means not logged in
+     */
+    public AttendanceStreamClient(Supplier<String> baseUrl, Supplier<String> apiKey, AttendanceState state,
+                                  ThreadFactory threads) {
+        this.baseUrl = baseUrl;
+        this.apiKey = apiKey;
+        this.state = state;
+        this.threads = threads;
+    }
+
+    public AttendanceState getState() {
+        return state;
+    }
+
+    // Called on the stream thread after each change has been applied
+    public void setListener(Consumer<AttendanceChange> listener) {
+        this.listener = listener;
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        thread = threads.newThread(this::run);
+        thread.start();
+    }
+
+    @Override
+    public synchronized void close() {
+        running = false;
+        if (connection != null) {
+            // Unblocks the read on the stream thread. Some JDKs make disconnect()
+            // wait for that read to return, so never do it on the caller's thread
+            threads.newThread(connection::disconnect).start();
+        }
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    public long getConnects() {
+        return connects.get();
+    }
+
+    // Times the server could not replay what we missed
+    public long getResets() {
+        return resets.get();
+    }
+
+    private void run() {
+        long backoff = MIN_BACKOFF_MS;
+        while (isRunning()) {
+            try {
+                if (stream()) {
+                    backoff = MIN_BACKOFF_MS;
+                } else {
+                    // Rejected (e.g. logged out elsewhere): no point retrying quickly
+                    backoff = MAX_BACKOFF_MS;
+                }
+            } catch (IOException e) {
+                // Dropped; reconnect below
+            } finally {
+                connected = false;
+            }
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                return;
+            }
+            backoff = Math.min(MAX_BACKOFF_MS, backoff * 2);
+        }
+    }
+
+    // False for a thread left over from before close(), even if start() was called again
+    private synchronized boolean isRunning() {
+        return running && thread == Thread.currentThread();
+    }
+
+    // Returns false when the server refused the subscription, true after a stream ended
+    private boolean stream() throws IOException {
+        HttpURLConnection http = (HttpURLConnection) new URL(baseUrl.get() + PATH).openConnection();
+        http.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        http.setReadTimeout(READ_TIMEOUT_MS);
+        http.setRequestProperty("Accept", "text/event-stream");
+        String key = apiKey.get();
+        if (key != null && !key.isEmpty()) {
+            http.setRequestProperty("Authorization", "Bearer " + key);
+        }
+        String lastEventId = state.getLastEventId();
+        if (lastEventId != null) {
+            http.setRequestProperty("Last-Event-ID", lastEventId);
+        }
+        synchronized (this) {
+            if (!isRunning()) {
+                return true;
+            }
+            connection = http;
+        }
+        try {
+            if (http.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                return false;
+            }
+            connects.incrementAndGet();
+            connected = true;
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(http.getInputStream(), StandardCharsets.UTF_8))) {
+                readEvents(reader);
+            }
+            return true;
+        } finally {
+            synchronized (this) {
+                if (connection == http) {
+                    connection = null;
+                }
+            }
+            http.disconnect();
+        }
+    }
+
+    private void readEvents(BufferedReader reader) throws IOException {
+        String id = null;
+        String type = "message";
+        StringBuilder data = new StringBuilder();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty()) {
+                if (data.length() > 0) {
+                    dispatch(id, type, data.toString());
+                }
+                id = null;
+                type = "message";
+                data.setLength(0);
+                continue;
+            }
+            if (line.startsWith(":")) {
+                continue;
+            }
+            int colon = line.indexOf(':');
+            String field = colon < 0 ? line : line.substring(0, colon);
+            String value = colon < 0 ? "" : line.substring(colon + 1);
+            if (value.startsWith(" ")) {
+                value = value.substring(1);
+            }
+            switch (field) {
+                case "id": id = value; break;
+                case "event": type = value; break;
+                case "data":
+                    if (data.length() > 0) {
+                        data.append('\n');
+                    }
+                    data.append(value);
+                    break;
+                default:
+                    // retry: we use our own backoff
+                    break;
+            }
+        }
+    }
+
+    private void dispatch(String id, String type, String data) {
+        if ("reset".equals(type)) {
+            resets.incrementAndGet();
+            state.setLastEventId(null);
+            return;
+        }
+        if (!"attendance".equals(type)) {
+            return;
+        }
+        AttendanceChange change;
+        try {
+            change = gson.fromJson(data, AttendanceChange.class);
+        } catch (JsonParseException e) {
+            return;
+        }
+        if (change == null) {
+            return;
+        }
+        state.apply(change);
+        if (id != null) {
+            state.setLastEventId(id);
+        }
+        Consumer<AttendanceChange> current = listener;
+        if (current != null) {
+            current.accept(change);
+        }
+    }
+}
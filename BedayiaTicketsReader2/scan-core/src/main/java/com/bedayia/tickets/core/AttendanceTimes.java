@@ -0,0 +1,81 @@
+package com.bedayia.tickets.core;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+
+/**
+ * Attendance times as epoch milliseconds, 0 meaning "not checked in". The wire
+ * format is get_data's local "yyyy-MM-dd HH:mm:ss", or null (older Odoo
+ * backends sent {@code false}); parsing and formatting both use the device's
+ * zone, so a time read from the server is written back unchanged.
+ */
+public final class AttendanceTimes {
+    public static final long NONE = 0;
+
+    private static final DateTimeFormatter WIRE = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss", Locale.US);
+
+    private AttendanceTimes() {
+    }
+
+    /** @return epoch millis, or {@link #NONE} for null, empty, "false" or an unreadable value */
+    public static long parse(String value) {
+        if (value == null || value.isEmpty() || "false".equals(value)) {
+            return NONE;
+        }
+        try {
+            return LocalDateTime.parse(value, WIRE).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            // Admin writes go through toISOString()
+            try {
+                return OffsetDateTime.parse(value).toInstant().toEpochMilli();
+            } catch (DateTimeParseException ignored) {
+                return NONE;
+            }
+        }
+    }
+
+    /** @return the wire form, or null for {@link #NONE} */
+    public static String format(long millis) {
+        if (millis == NONE) {
+            return null;
+        }
+        return WIRE.format(Instant.ofEpochMilli(millis).atZone(ZoneId.systemDefault()));
+    }
+
+    /** Gson mapping for a {@code long} field holding an attendance time. */
+    public static final class JsonAdapter extends TypeAdapter<Long> {
+        @Override
+        public void write(JsonWriter out, Long millis) throws IOException {
+            String value = millis == null ? null : format(millis);
+            if (value == null) {
+                out.nullValue();
+            } else {
+                out.value(value);
+            }
+        }
+
+        @Override
+        public Long read(JsonReader in) throws IOException {
+            JsonToken token = in.peek();
+            if (token == JsonToken.NULL) {
+                in.nextNull();
+                return NONE;
+            }
+            if (token == JsonToken.BOOLEAN) {
+                in.nextBoolean();
+                return NONE;
+            }
+            return parse(in.nextString());
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.bedayia.tickets.core;
+
+import java.util.concurrent.TimeUnit;
+
+public final class BackendEndpoint {
+    private static final int LATENCY_WINDOW = 128;
+    private static final double EWMA_WEIGHT = 0.2;
+
+    private final String baseUrl;
+    private final CircuitBreaker breaker;
+    private final LatencyRecorder latency = LatencyRecorder.window(LATENCY_WINDOW);
+    // -1 until the first successful response
+    private long ewmaNanos = -1;
+    // Pool call sequence number of the last response, to spot stale estimates
+    private long lastResponseSeq = -1;
+
+    public BackendEndpoint(String baseUrl, CircuitBreaker breaker) {
+        this.baseUrl = baseUrl;
+        this.breaker = breaker;
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public CircuitBreaker getBreaker() {
+        return breaker;
+    }
+
+    public LatencyRecorder getLatency() {
+        return latency;
+    }
+
+    public synchronized long getEwmaNanos() {
+        return ewmaNanos;
+    }
+
+    synchronized boolean isStale(long seq, long maxAge) {
+        return lastResponseSeq < 0 || seq - lastResponseSeq > maxAge;
+    }
+
+    void recordResponse(long nanos, long seq, boolean stale) {
+        latency.record(nanos);
+        synchronized (this) {
+            // A stale estimate says nothing about now; start over from this sample
+            ewmaNanos = ewmaNanos < 0 || stale ? nanos : (long) (EWMA_WEIGHT * nanos + (1 - EWMA_WEIGHT) * ewmaNanos);
+            lastResponseSeq = seq;
+        }
+        breaker.onSuccess();
+    }
+
+    void recordFailure() {
+        breaker.onFailure();
+    }
+
+    @Override
+    public String toString() {
+        long ewma = getEwmaNanos();
+        return baseUrl + " [" + breaker.getState() + ", ewma="
+                + (ewma < 0 ? "-" : TimeUnit.NANOSECONDS.toMillis(ewma) + "ms") + "]";
+    }
+}
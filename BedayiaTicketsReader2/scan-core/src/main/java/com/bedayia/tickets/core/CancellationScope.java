@@ -0,0 +1,70 @@
+package com.bedayia.tickets.core;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Ties pending futures to an owner's lifetime (an Activity between onCreate and
+ * onDestroy). {@link #close()} cancels everything still pending, which cancels
+ * the underlying HTTP call and drops the continuation that would otherwise keep
+ * the owner reachable.
+ */
+public class CancellationScope implements AutoCloseable {
+    private final Set<CompletableFuture<?>> pending = Collections.newSetFromMap(new IdentityHashMap<>());
+    private boolean closed;
+
+    /**
+     * Cancels {@code future} itself when the scope closes. Use for work that is
+     * pointless once the owner is gone, like a lookup for a scan screen.
+     */
+    public <T> CompletableFuture<T> track(CompletableFuture<T> future) {
+        synchronized (this) {
+            if (!closed) {
+                pending.add(future);
+                future.whenComplete((result, error) -> remove(future));
+                return future;
+            }
+        }
+        future.cancel(true);
+        return future;
+    }
+
+    /**
+     * Returns a dependent future that is cancelled when the scope closes while
+     * {@code future} carries on. Use for work that must finish regardless, like
+     * an attendance upload, when only the UI callback belongs to the owner.
+     */
+    public <T> CompletableFuture<T> observe(CompletableFuture<T> future) {
+        return track(future.thenApply(result -> result));
+    }
+
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    public synchronized int pendingCount() {
+        return pending.size();
+    }
+
+    @Override
+    public void close() {
+        CompletableFuture<?>[] toCancel;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            toCancel = pending.toArray(new CompletableFuture<?>[0]);
+            pending.clear();
+        }
+        for (CompletableFuture<?> future : toCancel) {
+            future.cancel(true);
+        }
+    }
+
+    private synchronized void remove(CompletableFuture<?> future) {
+        pending.remove(future);
+    }
+}
@@ -0,0 +1,94 @@
+package com.bedayia.tickets.core;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Classic closed / open / half-open breaker. After {@code failureThreshold}
+ * consecutive failures the endpoint is skipped for {@code openMillis}; then a
+ * single probe request is let through and its outcome decides whether the
+ * breaker closes again.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openMillis;
+    private final LongSupplier clockMillis;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAtMillis;
+    private boolean probeInFlight;
+
+    public CircuitBreaker(int failureThreshold, long openMillis, LongSupplier clockMillis) {
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+        this.clockMillis = clockMillis;
+    }
+
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        this(failureThreshold, openMillis, () -> System.nanoTime() / 1_000_000);
+    }
+
+    // Whether a call would be let through right now, without claiming the probe
+    public synchronized boolean isCallPermitted() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                return clockMillis.getAsLong() - openedAtMillis >= openMillis;
+            default:
+                return !probeInFlight;
+        }
+    }
+
+    // Claims permission for one call; every true must be followed by onSuccess, onFailure or release
+    public synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (clockMillis.getAsLong() - openedAtMillis < openMillis) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                probeInFlight = true;
+                return true;
+            default:
+                if (probeInFlight) {
+                    return false;
+                }
+                probeInFlight = true;
+                return true;
+        }
+    }
+
+    public synchronized void onSuccess() {
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        probeInFlight = false;
+    }
+
+    public synchronized void onFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAtMillis = clockMillis.getAsLong();
+        }
+        probeInFlight = false;
+    }
+
+    // The call was abandoned (hedge lost, caller cancelled): no verdict either way
+    public synchronized void release() {
+        probeInFlight = false;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+}
@@ -0,0 +1,245 @@
+package com.bedayia.tickets.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Picks which backend a request goes to. Endpoints whose breaker is open are
+ * skipped, the rest are tried fastest-first by observed latency, and a failed
+ * attempt fails over to the next endpoint immediately. Hedged calls (idempotent
+ * lookups only) additionally send a second copy to the next endpoint once the
+ * first has been quiet for longer than its own p95; whichever answers first
+ * wins and the other is cancelled.
+ */
+public class EndpointPool {
+    // Below this many samples the p95 is noise; use the default delay instead
+    private static final int MIN_SAMPLES_FOR_P95 = 8;
+    // An endpoint not heard from in this many calls is re-measured, so one slow
+    // outlier does not lock it out for the rest of the ceremony
+    private static final int REPROBE_AFTER_CALLS = 32;
+
+    private final List<BackendEndpoint> endpoints;
+    private final ScheduledExecutorService timer;
+    private final long defaultHedgeDelayMillis;
+    private final long minHedgeDelayMillis;
+    private final AtomicLong hedgesSent = new AtomicLong();
+    private final AtomicLong hedgesWon = new AtomicLong();
+    private final AtomicLong callSeq = new AtomicLong();
+
+    public EndpointPool(List<BackendEndpoint> endpoints, ScheduledExecutorService timer,
+                        long defaultHedgeDelayMillis, long minHedgeDelayMillis) {
+        if (endpoints.isEmpty()) {
+            throw new IllegalArgumentException("At least one backend endpoint is required");
+        }
+        this.endpoints = Collections.unmodifiableList(new ArrayList<>(endpoints));
+        this.timer = timer;
+        this.defaultHedgeDelayMillis = defaultHedgeDelayMillis;
+        this.minHedgeDelayMillis = minHedgeDelayMillis;
+    }
+
+    public List<BackendEndpoint> getEndpoints() {
+        return endpoints;
+    }
+
+    // Where a long-lived connection (the attendance stream) should go right now
+    public BackendEndpoint preferredEndpoint() {
+        List<BackendEndpoint> ranked = ranked(callSeq.get());
+        return ranked.isEmpty() ? endpoints.get(0) : ranked.get(0);
+    }
+
+    public long getHedgesSent() {
+        return hedgesSent.get();
+    }
+
+    // Hedges that answered before the original request
+    public long getHedgesWon() {
+        return hedgesWon.get();
+    }
+
+    /**
+     * @param hedged  whether a duplicate may be sent; only for idempotent requests
+     * @param attempt starts the request against one endpoint
+     * @return the first successful response, or the last failure once every
+     * permitted endpoint has failed; fails immediately with
+     * {@link EndpointUnavailableException} when every breaker is open
+     */
+    public <T> CompletableFuture<T> call(boolean hedged, Function<BackendEndpoint, CompletableFuture<T>> attempt) {
+        long seq = callSeq.incrementAndGet();
+        Attempts<T> attempts = new Attempts<>(seq, ranked(seq).iterator(), attempt);
+        if (!attempts.launchNext()) {
+            return Futures.failed(new EndpointUnavailableException("All backend endpoints are failing"));
+        }
+
+        ScheduledFuture<?> hedge = null;
+        if (hedged && endpoints.size() > 1 && !attempts.result.isDone()) {
+            hedge = timer.schedule(() -> {
+                if (!attempts.result.isDone() && attempts.launchNext()) {
+                    hedgesSent.incrementAndGet();
+                }
+            }, hedgeDelayMillis(attempts.primary), TimeUnit.MILLISECONDS);
+        }
+
+        ScheduledFuture<?> pendingHedge = hedge;
+        attempts.result.whenComplete((value, error) -> {
+            if (pendingHedge != null) {
+                pendingHedge.cancel(false);
+            }
+            // Covers both the caller cancelling and the race being won
+            attempts.cancelRunning();
+        });
+        return attempts.result;
+    }
+
+    long hedgeDelayMillis(BackendEndpoint endpoint) {
+        LatencyRecorder latency = endpoint.getLatency();
+        if (latency.count() < MIN_SAMPLES_FOR_P95) {
+            return defaultHedgeDelayMillis;
+        }
+        return Math.max(minHedgeDelayMillis, TimeUnit.NANOSECONDS.toMillis(latency.percentile(95)));
+    }
+
+    // Permitted endpoints, fastest first; untried or stale endpoints sort first so they get measured
+    private List<BackendEndpoint> ranked(long seq) {
+        List<BackendEndpoint> ranked = new ArrayList<>();
+        List<Long> keys = new ArrayList<>();
+        for (BackendEndpoint endpoint : endpoints) {
+            if (endpoint.getBreaker().isCallPermitted()) {
+                long key = endpoint.isStale(seq, REPROBE_AFTER_CALLS) ? -1 : endpoint.getEwmaNanos();
+                int at = 0;
+                while (at < keys.size() && keys.get(at) <= key) {
+                    at++;
+                }
+                ranked.add(at, endpoint);
+                keys.add(at, key);
+            }
+        }
+        return ranked;
+    }
+
+    // A transport failure or 5xx says the endpoint is unwell; a 4xx or bad body says the request was
+    private static boolean isEndpointFailure(Throwable error) {
+        return !(error instanceof ApiException) || ((ApiException) error).isServerError();
+    }
+
+    private final class Attempts<T> {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        private final long seq;
+        private final Iterator<BackendEndpoint> candidates;
+        private final Function<BackendEndpoint, CompletableFuture<T>> attempt;
+        private final List<CompletableFuture<T>> running = new ArrayList<>();
+        private int launched;
+        private int outstanding;
+        private Throwable lastError;
+        // First answer wins; set before result completes so counters are settled by then
+        private boolean settled;
+        BackendEndpoint primary;
+
+        Attempts(long seq, Iterator<BackendEndpoint> candidates,
+                 Function<BackendEndpoint, CompletableFuture<T>> attempt) {
+            this.seq = seq;
+            this.candidates = candidates;
+            this.attempt = attempt;
+        }
+
+        boolean launchNext() {
+            while (true) {
+                BackendEndpoint endpoint;
+                int order;
+                synchronized (this) {
+                    if (result.isDone() || !candidates.hasNext()) {
+                        return false;
+                    }
+                    endpoint = candidates.next();
+                    if (!endpoint.getBreaker().tryAcquire()) {
+                        continue;
+                    }
+                    if (primary == null) {
+                        primary = endpoint;
+                    }
+                    order = launched++;
+                    outstanding++;
+                }
+
+                boolean stale = endpoint.isStale(seq, REPROBE_AFTER_CALLS);
+                long started = System.nanoTime();
+                CompletableFuture<T> call;
+                try {
+                    call = attempt.apply(endpoint);
+                } catch (RuntimeException e) {
+                    call = Futures.failed(e);
+                }
+                synchronized (this) {
+                    running.add(call);
+                }
+                call.whenComplete((value, error) -> onDone(endpoint, order, stale, started, value, error));
+                return true;
+            }
+        }
+
+        private void onDone(BackendEndpoint endpoint, int order, boolean stale, long started, T value,
+                            Throwable error) {
+            Throwable cause = Futures.unwrap(error);
+            if (error == null || !isEndpointFailure(cause)) {
+                endpoint.recordResponse(System.nanoTime() - started, seq, stale);
+                synchronized (this) {
+                    if (settled) {
+                        return;
+                    }
+                    settled = true;
+                }
+                if (order > 0) {
+                    hedgesWon.incrementAndGet();
+                }
+                if (error == null) {
+                    result.complete(value);
+                } else {
+                    result.completeExceptionally(cause);
+                }
+                return;
+            }
+            if (Futures.isCancellation(cause)) {
+                endpoint.getBreaker().release();
+            } else {
+                endpoint.recordFailure();
+            }
+
+            synchronized (this) {
+                outstanding--;
+                if (!Futures.isCancellation(cause)) {
+                    lastError = cause;
+                }
+            }
+            // Fail over straight away rather than waiting out the hedge delay
+            if (result.isDone() || launchNext()) {
+                return;
+            }
+            Throwable failure;
+            synchronized (this) {
+                if (outstanding > 0) {
+                    return;
+                }
+                failure = lastError != null ? lastError
+                        : new EndpointUnavailableException("All backend endpoints are failing");
+            }
+            result.completeExceptionally(failure);
+        }
+
+        void cancelRunning() {
+            List<CompletableFuture<T>> toCancel;
+            synchronized (this) {
+                toCancel = new ArrayList<>(running);
+            }
+            for (CompletableFuture<T> call : toCancel) {
+                call.cancel(true);
+            }
+        }
+    }
+}
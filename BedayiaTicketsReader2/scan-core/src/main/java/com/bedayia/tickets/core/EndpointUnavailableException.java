@@ -0,0 +1,12 @@
+package com.bedayia.tickets.core;
+
+import java.io.IOException;
+
+// Every configured backend endpoint has an open circuit; callers take their offline path
+public class EndpointUnavailableException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    public EndpointUnavailableException(String message) {
+        super(message);
+    }
+}
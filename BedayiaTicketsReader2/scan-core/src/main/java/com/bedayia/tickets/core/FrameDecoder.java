@@ -0,0 +1,12 @@
+package com.bedayia.tickets.core;
+
+/**
+ * Decode stage of the scan pipeline. Implementations must be safe to call from
+ * the single camera-analysis thread; they are not required to be thread-safe.
+ */
+public interface FrameDecoder {
+    /**
+     * @return the raw text of the first QR code found in the frame, or {@code null}
+     */
+    String decode(LumaFrame frame);
+}
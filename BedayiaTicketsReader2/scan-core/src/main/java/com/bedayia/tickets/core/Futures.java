@@ -0,0 +1,30 @@
+package com.bedayia.tickets.core;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+public final class Futures {
+    private Futures() {
+    }
+
+    public static <T> CompletableFuture<T> failed(Throwable error) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(error);
+        return future;
+    }
+
+    // Strips the CompletionException / ExecutionException wrappers added by dependent stages
+    public static Throwable unwrap(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof ExecutionException)
+                && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+
+    public static boolean isCancellation(Throwable error) {
+        return unwrap(error) instanceof CancellationException;
+    }
+}
@@ -0,0 +1,204 @@
+package com.bedayia.tickets.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * Check-ins known to this gate, shared with the other gates by {@link PeerGossip}.
+ *
+ * <p>A grow-only set: each entry is stamped with the device that recorded it and
+ * a per-device sequence number, entries are never removed, and merging is a
+ * union. Any two gates that have exchanged everything hold the same set,
+ * whatever order the datagrams arrived in. Each device is responsible for
+ * uploading its own entries once the backend is reachable again.
+ */
+public class GateLedger {
+    private final String deviceId;
+    private long localSeq;
+    private final Map<String, TreeMap<Long, Entry>> byOrigin = new HashMap<>();
+    // Highest contiguous sequence number per device
+    private final Map<String, Long> contiguous = new HashMap<>();
+    // Earliest entry per invitee (qrcode + name)
+    private final Map<String, Entry> admitted = new HashMap<>();
+    private final Set<Entry> pendingUpload = new LinkedHashSet<>();
+    private volatile Consumer<Entry> listener;
+
+    /** @param deviceId unique per process run, so sequence numbers never repeat after a restart */
+    public GateLedger(String deviceId) {
+        this.deviceId = deviceId;
+    }
+
+    public String getDeviceId() {
+        return deviceId;
+    }
+
+    // Called for entries learned from peers, outside the ledger lock
+    public void setListener(Consumer<Entry> listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Records a check-in made at this gate.
+     *
+     * @param uploaded whether the backend already has it
+     * @return the new entry, or null if some gate had already admitted this invitee
+     */
+    public synchronized Entry recordLocal(String qrcodeText, String name, long timeMillis, boolean uploaded) {
+        if (admitted.containsKey(key(qrcodeText, name))) {
+            return null;
+        }
+        Entry entry = new Entry(deviceId, ++localSeq, qrcodeText, name, timeMillis);
+        add(entry);
+        if (!uploaded) {
+            pendingUpload.add(entry);
+        }
+        return entry;
+    }
+
+    /** Adds entries from a peer; returns the ones that were new to us. */
+    public List<Entry> merge(Collection<Entry> entries) {
+        List<Entry> learned = new ArrayList<>();
+        synchronized (this) {
+            for (Entry entry : entries) {
+                if (!entry.origin.equals(deviceId) && add(entry)) {
+                    learned.add(entry);
+                }
+            }
+        }
+        Consumer<Entry> current = listener;
+        if (current != null) {
+            learned.forEach(current);
+        }
+        return learned;
+    }
+
+    /** Highest contiguous sequence number seen from each device. */
+    public synchronized Map<String, Long> versionVector() {
+        return new HashMap<>(contiguous);
+    }
+
+    /** Entries a peer with the given version vector has not seen, at most {@code max}. */
+    public synchronized List<Entry> missingFor(Map<String, Long> remote, int max) {
+        List<Entry> missing = new ArrayList<>();
+        for (Map.Entry<String, TreeMap<Long, Entry>> origin : byOrigin.entrySet()) {
+            Long seen = remote.get(origin.getKey());
+            for (Entry entry : origin.getValue().tailMap(seen != null ? seen : 0L, false).values()) {
+                if (missing.size() >= max) {
+                    return missing;
+                }
+                missing.add(entry);
+            }
+        }
+        return missing;
+    }
+
+    public synchronized List<Entry> pendingUploads() {
+        return new ArrayList<>(pendingUpload);
+    }
+
+    public synchronized void markUploaded(Collection<Entry> entries) {
+        pendingUpload.removeAll(entries);
+    }
+
+    // Puts back entries taken out of the upload queue, e.g. held for a later session
+    public synchronized void requeue(Collection<Entry> entries) {
+        pendingUpload.addAll(entries);
+    }
+
+    public synchronized boolean isAdmitted(String qrcodeText, String name) {
+        return admitted.containsKey(key(qrcodeText, name));
+    }
+
+    /** Everyone admitted on this code, earliest check-in first. */
+    public synchronized List<Entry> admittedOn(String qrcodeText) {
+        List<Entry> entries = new ArrayList<>();
+        for (Entry entry : admitted.values()) {
+            if (entry.qrcodeText.equals(qrcodeText)) {
+                entries.add(entry);
+            }
+        }
+        entries.sort((a, b) -> Long.compare(a.timeMillis, b.timeMillis));
+        return entries;
+    }
+
+    public synchronized int size() {
+        int size = 0;
+        for (TreeMap<Long, Entry> entries : byOrigin.values()) {
+            size += entries.size();
+        }
+        return size;
+    }
+
+    private boolean add(Entry entry) {
+        TreeMap<Long, Entry> entries = byOrigin.computeIfAbsent(entry.origin, origin -> new TreeMap<>());
+        if (entries.putIfAbsent(entry.seq, entry) != null) {
+            return false;
+        }
+        long seq = contiguous.getOrDefault(entry.origin, 0L);
+        while (entries.containsKey(seq + 1)) {
+            seq++;
+        }
+        contiguous.put(entry.origin, seq);
+        // Two gates admitting the same guest while cut off: the earlier check-in stands
+        admitted.merge(key(entry.qrcodeText, entry.name), entry,
+                (current, candidate) -> candidate.timeMillis < current.timeMillis ? candidate : current);
+        return true;
+    }
+
+    private static String key(String qrcodeText, String name) {
+        return qrcodeText + '\u0000' + name;
+    }
+
+    public static final class Entry {
+        final String origin;
+        final long seq;
+        final String qrcodeText;
+        final String name;
+        final long timeMillis;
+
+        public Entry(String origin, long seq, String qrcodeText, String name, long timeMillis) {
+            this.origin = origin;
+            this.seq = seq;
+            this.qrcodeText = qrcodeText;
+            this.name = name;
+            this.timeMillis = timeMillis;
+        }
+
+        public String getOrigin() {
+            return origin;
+        }
+
+        public String getQrcodeText() {
+            return qrcodeText;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getTimeMillis() {
+            return timeMillis;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            Entry other = (Entry) o;
+            return seq == other.seq && origin.equals(other.origin);
+        }
+
+        @Override
+        public int hashCode() {
+            return origin.hashCode() * 31 + Long.hashCode(seq);
+        }
+    }
+}
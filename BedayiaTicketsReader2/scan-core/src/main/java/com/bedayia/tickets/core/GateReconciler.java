@@ -0,0 +1,46 @@
+package com.bedayia.tickets.core;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Uploads this gate's check-ins that never reached the backend, once it is
+ * reachable again. One pass at a time; entries are only marked uploaded after
+ * the server accepted them, so a failed pass is simply retried later. The
+ * server ignores check-ins it already has, so a retry is harmless.
+ */
+public class GateReconciler {
+    private final GateLedger ledger;
+    private final Function<List<GateLedger.Entry>, CompletableFuture<Void>> upload;
+    private final int batchSize;
+    private CompletableFuture<Integer> running;
+
+    public GateReconciler(GateLedger ledger, Function<List<GateLedger.Entry>, CompletableFuture<Void>> upload,
+                          int batchSize) {
+        this.ledger = ledger;
+        this.upload = upload;
+        this.batchSize = batchSize;
+    }
+
+    /** Completes with the number of check-ins uploaded, or with the first upload failure. */
+    public synchronized CompletableFuture<Integer> reconcile() {
+        if (running != null && !running.isDone()) {
+            return running;
+        }
+        running = uploadFrom(0);
+        return running;
+    }
+
+    private CompletableFuture<Integer> uploadFrom(int uploaded) {
+        List<GateLedger.Entry> pending = ledger.pendingUploads();
+        if (pending.isEmpty()) {
+            return CompletableFuture.completedFuture(uploaded);
+        }
+        List<GateLedger.Entry> batch = pending.subList(0, Math.min(batchSize, pending.size()));
+        return upload.apply(batch).thenCompose(ignored -> {
+            ledger.markUploaded(batch);
+            return uploadFrom(uploaded + batch.size());
+        });
+    }
+}
@@ -0,0 +1,248 @@
+package com.bedayia.tickets.core;
+
+import com.bedayia.tickets.Invitee;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact binary encoding of the invitee list (media type {@code application/cbor}).
+ *
+ * <p>The list is a CBOR array of fixed-position rows instead of objects with
+ * long keys:
+ * <pre>
+ *   [qrcode_text, name, main_invitee, number_of_seats, attendance, attendance_time | null]
+ * </pre>
+ * Only the subset of CBOR needed for that shape is supported (unsigned/negative
+ * ints, text strings, arrays, true/false/null, definite lengths). The backend
+ * mirror lives in {@code backend/src/lib/cbor.ts}; keep the row order in sync.
+ */
+public final class InviteeCbor {
+    public static final String MEDIA_TYPE = "application/cbor";
+
+    private static final int ROW_FIELDS = 6;
+    private static final int MAJOR_UINT = 0;
+    private static final int MAJOR_NEGINT = 1;
+    private static final int MAJOR_TEXT = 3;
+    private static final int MAJOR_ARRAY = 4;
+    private static final int FALSE = 0xf4;
+    private static final int TRUE = 0xf5;
+    private static final int NULL = 0xf6;
+
+    private InviteeCbor() {
+    }
+
+    public static byte[] encode(List<Invitee> invitees) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16 + invitees.size() * 48);
+        writeHead(out, MAJOR_ARRAY, invitees.size());
+        for (Invitee invitee : invitees) {
+            writeHead(out, MAJOR_ARRAY, ROW_FIELDS);
+            writeText(out, invitee.getInviteesQrcodeText());
+            writeText(out, invitee.getInviteesName());
+            out.write(invitee.isMainInvitee() ? TRUE : FALSE);
+            writeInt(out, invitee.getNumberOfSeats());
+            out.write(invitee.isInviteesAttendance() ? TRUE : FALSE);
+            writeText(out, invitee.getInviteesAttendanceTime());
+        }
+        return out.toByteArray();
+    }
+
+    public static List<Invitee> decode(byte[] data) throws IOException {
+        Reader in = new Reader(data);
+        int count = in.expectArray();
+        // Don't trust the header for the allocation size
+        List<Invitee> invitees = new ArrayList<>(Math.min(count, 1024));
+        String previousCode = null;
+        for (int i = 0; i < count; i++) {
+            int fields = in.expectArray();
+            if (fields < ROW_FIELDS) {
+                throw new IOException("Invitee row " + i + " has " + fields + " fields");
+            }
+            Invitee invitee = new Invitee();
+            String code = in.readText();
+            // Guests on one ticket are consecutive; keep one copy of their code
+            if (code != null && code.equals(previousCode)) {
+                code = previousCode;
+            }
+            previousCode = code;
+            invitee.setInviteesQrcodeText(code);
+            invitee.setInviteesName(in.readText());
+            invitee.setMainInvitee(in.readBoolean());
+            invitee.setNumberOfSeats((int) in.readInt());
+            invitee.setInviteesAttendance(in.readBoolean());
+            invitee.setInviteesAttendanceTime(in.readText());
+            // Newer peers may append fields; skip what we don't know
+            for (int f = ROW_FIELDS; f < fields; f++) {
+                in.skip();
+            }
+            invitees.add(invitee);
+        }
+        if (in.pos != data.length) {
+            throw new IOException("Trailing bytes after invitee list");
+        }
+        return invitees;
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, long value) {
+        if (value >= 0) {
+            writeHead(out, MAJOR_UINT, value);
+        } else {
+            writeHead(out, MAJOR_NEGINT, -1 - value);
+        }
+    }
+
+    private static void writeText(ByteArrayOutputStream out, String value) {
+        if (value == null) {
+            out.write(NULL);
+            return;
+        }
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        writeHead(out, MAJOR_TEXT, utf8.length);
+        out.write(utf8, 0, utf8.length);
+    }
+
+    private static void writeHead(ByteArrayOutputStream out, int major, long value) {
+        int type = major << 5;
+        if (value < 24) {
+            out.write(type | (int) value);
+        } else if (value < 0x100) {
+            out.write(type | 24);
+            out.write((int) value);
+        } else if (value < 0x10000) {
+            out.write(type | 25);
+            writeBigEndian(out, value, 2);
+        } else if (value < 0x100000000L) {
+            out.write(type | 26);
+            writeBigEndian(out, value, 4);
+        } else {
+            out.write(type | 27);
+            writeBigEndian(out, value, 8);
+        }
+    }
+
+    private static void writeBigEndian(ByteArrayOutputStream out, long value, int bytes) {
+        for (int shift = (bytes - 1) * 8; shift >= 0; shift -= 8) {
+            out.write((int) (value >>> shift) & 0xff);
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] data;
+        private int pos;
+
+        Reader(byte[] data) {
+            this.data = data;
+        }
+
+        int expectArray() throws IOException {
+            int initial = next();
+            if (initial >>> 5 != MAJOR_ARRAY) {
+                throw new IOException("Expected array at offset " + (pos - 1));
+            }
+            return (int) argument(initial);
+        }
+
+        String readText() throws IOException {
+            int initial = next();
+            if (initial == NULL) {
+                return null;
+            }
+            if (initial >>> 5 != MAJOR_TEXT) {
+                throw new IOException("Expected text at offset " + (pos - 1));
+            }
+            int length = (int) argument(initial);
+            require(length);
+            String value = new String(data, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            return value;
+        }
+
+        boolean readBoolean() throws IOException {
+            int initial = next();
+            if (initial == TRUE) {
+                return true;
+            }
+            if (initial == FALSE || initial == NULL) {
+                return false;
+            }
+            throw new IOException("Expected boolean at offset " + (pos - 1));
+        }
+
+        long readInt() throws IOException {
+            int initial = next();
+            switch (initial >>> 5) {
+                case MAJOR_UINT:
+                    return argument(initial);
+                case MAJOR_NEGINT:
+                    return -1 - argument(initial);
+                default:
+                    if (initial == NULL) {
+                        return 0;
+                    }
+                    throw new IOException("Expected integer at offset " + (pos - 1));
+            }
+        }
+
+        void skip() throws IOException {
+            int initial = next();
+            switch (initial >>> 5) {
+                case MAJOR_UINT:
+                case MAJOR_NEGINT:
+                    argument(initial);
+                    break;
+                case MAJOR_TEXT:
+                    int length = (int) argument(initial);
+                    require(length);
+                    pos += length;
+                    break;
+                case MAJOR_ARRAY:
+                    for (long i = argument(initial); i > 0; i--) {
+                        skip();
+                    }
+                    break;
+                default:
+                    if (initial != TRUE && initial != FALSE && initial != NULL) {
+                        throw new IOException("Unsupported CBOR item 0x" + Integer.toHexString(initial));
+                    }
+            }
+        }
+
+        private long argument(int initial) throws IOException {
+            int info = initial & 0x1f;
+            if (info < 24) {
+                return info;
+            }
+            int bytes;
+            switch (info) {
+                case 24: bytes = 1; break;
+                case 25: bytes = 2; break;
+                case 26: bytes = 4; break;
+                case 27: bytes = 8; break;
+                default: throw new IOException("Indefinite or reserved length at offset " + (pos - 1));
+            }
+            require(bytes);
+            long value = 0;
+            for (int i = 0; i < bytes; i++) {
+                value = (value << 8) | (data[pos++] & 0xff);
+            }
+            // Nothing in an invitee list needs more than 31 bits
+            if (value < 0 || value > Integer.MAX_VALUE) {
+                throw new IOException("Value out of range at offset " + pos);
+            }
+            return value;
+        }
+
+        private int next() throws IOException {
+            require(1);
+            return data[pos++] & 0xff;
+        }
+
+        private void require(int bytes) throws IOException {
+            if (bytes < 0 || pos + bytes > data.length) {
+                throw new IOException("Truncated CBOR at offset " + pos);
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.bedayia.tickets.core;
+
+import com.bedayia.tickets.Invitee;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.reflect.TypeToken;
+import java.lang.reflect.Type;
+import java.util.List;
+
+// Shared Gson mapping for the invitee list carried in "message" and between activities
+public final class InviteeJson {
+    private static final Gson GSON = new Gson();
+    private static final Type LIST_TYPE = new TypeToken<List<Invitee>>(){}.getType();
+
+    private InviteeJson() {
+    }
+
+    public static List<Invitee> parseList(String json) {
+        List<Invitee> invitees = GSON.fromJson(json, LIST_TYPE);
+        if (invitees != null) {
+            shareCodes(invitees);
+        }
+        return invitees;
+    }
+
+    // The "message" array of an already parsed response
+    public static List<Invitee> parseList(JsonElement json) {
+        List<Invitee> invitees = GSON.fromJson(json, LIST_TYPE);
+        if (invitees != null) {
+            shareCodes(invitees);
+        }
+        return invitees;
+    }
+
+    // Guests on one ticket come consecutively; point them all at one copy of the code
+    static void shareCodes(List<Invitee> invitees) {
+        String previous = null;
+        for (Invitee invitee : invitees) {
+            String code = invitee.getInviteesQrcodeText();
+            if (code != null && code.equals(previous)) {
+                invitee.setInviteesQrcodeText(previous);
+            } else {
+                previous = code;
+            }
+        }
+    }
+
+    public static String toJson(List<Invitee> invitees) {
+        return GSON.toJson(invitees, LIST_TYPE);
+    }
+}
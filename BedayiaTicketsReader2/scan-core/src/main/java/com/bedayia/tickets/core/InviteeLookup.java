@@ -0,0 +1,14 @@
+package com.bedayia.tickets.core;
+
+import com.bedayia.tickets.Invitee;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Lookup stage of the scan pipeline: resolves a decoded QR text to the invitees
+ * it admits. On the device this is the tickets API; in the replay harness and
+ * tests it is an in-memory table.
+ */
+public interface InviteeLookup {
+    CompletableFuture<List<Invitee>> lookup(String qrCodeText);
+}
@@ -0,0 +1,342 @@
+package com.bedayia.tickets.core;
+
+import com.bedayia.tickets.Invitee;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A whole event's invitees in columnar arrays instead of one {@link Invitee}
+ * object (plus two strings) per guest. QR codes and names are stored once, as
+ * UTF-8 in shared byte arrays, and rows are grouped by code so a lookup is a
+ * hash probe and a contiguous range. Attendance is a bit in {@code flags} and
+ * its time an epoch long. Strings are only created when a row is read.
+ *
+ * <p>Built once; afterwards only attendance changes, under the table's lock.
+ */
+public final class InviteeTable {
+    private static final byte MAIN = 1;
+    private static final byte ATTENDED = 2;
+
+    // Per code
+    private final byte[] codeBytes;
+    private final int[] codeOffsets;
+    private final int[] codeFirstRow;
+    private final int[] codeSeats;
+    // Open addressing: code id + 1, 0 for empty
+    private final int[] codeSlots;
+
+    // Per row, grouped by code
+    private final byte[] nameBytes;
+    private final int[] nameOffsets;
+    private final int[] rowCode;
+    private final byte[] flags;
+    private final long[] attendanceMillis;
+
+    private InviteeTable(Builder builder) {
+        int codes = builder.codeOffsets.size() - 1;
+        int rows = builder.rowCount;
+        codeBytes = builder.codeBytes.toArray();
+        codeOffsets = builder.codeOffsets.toArray();
+        codeSeats = builder.codeSeats.toArray();
+
+        // Counting sort of the rows by code, keeping their order within a code
+        codeFirstRow = new int[codes + 1];
+        for (int row = 0; row < rows; row++) {
+            codeFirstRow[builder.rowCode.get(row) + 1]++;
+        }
+        for (int code = 0; code < codes; code++) {
+            codeFirstRow[code + 1] += codeFirstRow[code];
+        }
+        int[] next = Arrays.copyOf(codeFirstRow, codes);
+        int[] order = new int[rows];
+        for (int row = 0; row < rows; row++) {
+            order[next[builder.rowCode.get(row)]++] = row;
+        }
+
+        rowCode = new int[rows];
+        flags = new byte[rows];
+        attendanceMillis = new long[rows];
+        nameOffsets = new int[rows + 1];
+        nameBytes = new byte[builder.nameBytes.size()];
+        int nameEnd = 0;
+        for (int row = 0; row < rows; row++) {
+            int source = order[row];
+            rowCode[row] = builder.rowCode.get(source);
+            flags[row] = builder.flags.get(source);
+            attendanceMillis[row] = builder.attendanceMillis.get(source);
+            int start = builder.nameOffsets.get(source);
+            int length = builder.nameOffsets.get(source + 1) - start;
+            builder.nameBytes.copyTo(start, nameBytes, nameEnd, length);
+            nameEnd += length;
+            nameOffsets[row + 1] = nameEnd;
+        }
+
+        codeSlots = new int[Math.max(2, Integer.highestOneBit(Math.max(1, codes) * 2 - 1) << 1)];
+        for (int code = 0; code < codes; code++) {
+            int slot = slot(hash(codeBytes, codeOffsets[code], codeOffsets[code + 1]));
+            while (codeSlots[slot] != 0) {
+                slot = (slot + 1) & (codeSlots.length - 1);
+            }
+            codeSlots[slot] = code + 1;
+        }
+    }
+
+    public static InviteeTable of(Collection<Invitee> invitees) {
+        Builder builder = new Builder();
+        for (Invitee invitee : invitees) {
+            builder.add(invitee);
+        }
+        return builder.build();
+    }
+
+    public int size() {
+        return flags.length;
+    }
+
+    public int codeCount() {
+        return codeSeats.length;
+    }
+
+    /** @return the code's id, or -1 if no invitee has it */
+    public int findCode(String qrcodeText) {
+        byte[] key = qrcodeText.getBytes(StandardCharsets.UTF_8);
+        int slot = slot(hash(key, 0, key.length));
+        while (codeSlots[slot] != 0) {
+            int code = codeSlots[slot] - 1;
+            int start = codeOffsets[code];
+            if (codeOffsets[code + 1] - start == key.length && regionEquals(key, codeBytes, start)) {
+                return code;
+            }
+            slot = (slot + 1) & (codeSlots.length - 1);
+        }
+        return -1;
+    }
+
+    /** First row of a code; its rows are {@code firstRow(code)} up to {@code firstRow(code + 1)}. */
+    public int firstRow(int code) {
+        return codeFirstRow[code];
+    }
+
+    public String qrcodeText(int row) {
+        int code = rowCode[row];
+        return new String(codeBytes, codeOffsets[code], codeOffsets[code + 1] - codeOffsets[code],
+                StandardCharsets.UTF_8);
+    }
+
+    public String name(int row) {
+        return new String(nameBytes, nameOffsets[row], nameOffsets[row + 1] - nameOffsets[row],
+                StandardCharsets.UTF_8);
+    }
+
+    public int seats(int row) {
+        return codeSeats[rowCode[row]];
+    }
+
+    public boolean isMain(int row) {
+        return (flags[row] & MAIN) != 0;
+    }
+
+    public synchronized boolean isAttended(int row) {
+        return (flags[row] & ATTENDED) != 0;
+    }
+
+    /** @return epoch millis, or {@link AttendanceTimes#NONE} */
+    public synchronized long attendanceMillis(int row) {
+        return attendanceMillis[row];
+    }
+
+    /** @return false if the row was already checked in */
+    public synchronized boolean markAttended(int row, long timeMillis) {
+        if ((flags[row] & ATTENDED) != 0) {
+            return false;
+        }
+        flags[row] |= ATTENDED;
+        attendanceMillis[row] = timeMillis;
+        return true;
+    }
+
+    public synchronized void clearAttendance(int row) {
+        flags[row] &= ~ATTENDED;
+        attendanceMillis[row] = AttendanceTimes.NONE;
+    }
+
+    /**
+     * The guests on a code as objects, for the screens that take a list; like
+     * get_data, the main invitee (the student) is left out.
+     */
+    public List<Invitee> lookup(String qrcodeText) {
+        int code = findCode(qrcodeText);
+        if (code < 0) {
+            return new ArrayList<>();
+        }
+        List<Invitee> invitees = new ArrayList<>(codeFirstRow[code + 1] - codeFirstRow[code]);
+        for (int row = codeFirstRow[code]; row < codeFirstRow[code + 1]; row++) {
+            if (isMain(row)) {
+                continue;
+            }
+            Invitee invitee = new Invitee();
+            invitee.setInviteesQrcodeText(qrcodeText);
+            invitee.setInviteesName(name(row));
+            invitee.setNumberOfSeats(codeSeats[code]);
+            synchronized (this) {
+                invitee.setInviteesAttendance((flags[row] & ATTENDED) != 0);
+                invitee.setAttendanceTimeMillis(attendanceMillis[row]);
+            }
+            invitees.add(invitee);
+        }
+        return invitees;
+    }
+
+    private int slot(int hash) {
+        return hash & (codeSlots.length - 1);
+    }
+
+    private static int hash(byte[] bytes, int start, int end) {
+        int hash = 1;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+        // Spread the low bits, which pick the slot
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean regionEquals(byte[] key, byte[] bytes, int start) {
+        for (int i = 0; i < key.length; i++) {
+            if (key[i] != bytes[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static final class Builder {
+        private final Map<String, Integer> codeIds = new HashMap<>();
+        private final Bytes codeBytes = new Bytes();
+        private final Ints codeOffsets = new Ints();
+        private final Ints codeSeats = new Ints();
+        private final Bytes nameBytes = new Bytes();
+        private final Ints nameOffsets = new Ints();
+        private final Ints rowCode = new Ints();
+        private final Bytes flags = new Bytes();
+        private final Longs attendanceMillis = new Longs();
+        private int rowCount;
+
+        public Builder() {
+            codeOffsets.add(0);
+            nameOffsets.add(0);
+        }
+
+        public Builder add(Invitee invitee) {
+            return add(invitee.getInviteesQrcodeText(), invitee.getInviteesName(), invitee.isMainInvitee(),
+                    invitee.getNumberOfSeats(), invitee.isInviteesAttendance(), invitee.getAttendanceTimeMillis());
+        }
+
+        public Builder add(String qrcodeText, String name, boolean main, int seats, boolean attended,
+                           long attendanceMillis) {
+            String code = qrcodeText != null ? qrcodeText : "";
+            Integer id = codeIds.get(code);
+            if (id == null) {
+                id = codeIds.size();
+                codeIds.put(code, id);
+                codeBytes.add(code.getBytes(StandardCharsets.UTF_8));
+                codeOffsets.add(codeBytes.size());
+                // Seats belong to the ticket, so the first row's count stands for the code
+                codeSeats.add(seats);
+            }
+            rowCode.add(id);
+            nameBytes.add((name != null ? name : "").getBytes(StandardCharsets.UTF_8));
+            nameOffsets.add(nameBytes.size());
+            flags.add((byte) ((main ? MAIN : 0) | (attended ? ATTENDED : 0)));
+            this.attendanceMillis.add(attendanceMillis);
+            rowCount++;
+            return this;
+        }
+
+        public InviteeTable build() {
+            return new InviteeTable(this);
+        }
+    }
+
+    // Growable primitive arrays, so building does not box every value
+
+    private static final class Ints {
+        private int[] values = new int[64];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int get(int index) {
+            return values[index];
+        }
+
+        int size() {
+            return size;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    private static final class Longs {
+        private long[] values = new long[64];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        long get(int index) {
+            return values[index];
+        }
+    }
+
+    private static final class Bytes {
+        private byte[] values = new byte[256];
+        private int size;
+
+        void add(byte value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void add(byte[] bytes) {
+            if (size + bytes.length > values.length) {
+                values = Arrays.copyOf(values, Math.max(values.length * 2, size + bytes.length));
+            }
+            System.arraycopy(bytes, 0, values, size, bytes.length);
+            size += bytes.length;
+        }
+
+        byte get(int index) {
+            return values[index];
+        }
+
+        void copyTo(int start, byte[] target, int targetStart, int length) {
+            System.arraycopy(values, start, target, targetStart, length);
+        }
+
+        int size() {
+            return size;
+        }
+
+        byte[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
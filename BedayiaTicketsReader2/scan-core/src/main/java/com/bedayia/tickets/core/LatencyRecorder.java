@@ -0,0 +1,101 @@
+package com.bedayia.tickets.core;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects latency samples (nanoseconds) and reports percentiles. By default
+ * every sample is kept, which suits benchmark runs; long-lived recorders on the
+ * device use {@link #window(int)} so only the most recent samples count.
+ */
+public class LatencyRecorder {
+    private long[] samples;
+    private int count;
+    // 0 for unbounded, otherwise the ring size
+    private final int window;
+    private int next;
+
+    public LatencyRecorder() {
+        this(1024);
+    }
+
+    public LatencyRecorder(int initialCapacity) {
+        this(Math.max(16, initialCapacity), 0);
+    }
+
+    private LatencyRecorder(int capacity, int window) {
+        this.samples = new long[capacity];
+        this.window = window;
+    }
+
+    // Recorder that only reports on the last {@code size} samples
+    public static LatencyRecorder window(int size) {
+        return new LatencyRecorder(size, size);
+    }
+
+    public synchronized void record(long nanos) {
+        if (window > 0) {
+            samples[next] = nanos;
+            next = (next + 1) % window;
+            count = Math.min(count + 1, window);
+            return;
+        }
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, samples.length * 2);
+        }
+        samples[count++] = nanos;
+    }
+
+    public synchronized int count() {
+        return count;
+    }
+
+    public synchronized void reset() {
+        count = 0;
+        next = 0;
+    }
+
+    /**
+     * @param percentile 0..100
+     * @return the sample at that percentile in nanoseconds, or 0 when empty
+     */
+    public synchronized long percentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * count) - 1;
+        return sorted[Math.max(0, Math.min(count - 1, index))];
+    }
+
+    public synchronized long mean() {
+        if (count == 0) {
+            return 0;
+        }
+        long sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += samples[i];
+        }
+        return sum / count;
+    }
+
+    public synchronized long max() {
+        long max = 0;
+        for (int i = 0; i < count; i++) {
+            max = Math.max(max, samples[i]);
+        }
+        return max;
+    }
+
+    public String summary() {
+        return String.format(Locale.US, "n=%d mean=%.2fms p50=%.2fms p95=%.2fms p99=%.2fms max=%.2fms",
+                count(), millis(mean()), millis(percentile(50)), millis(percentile(95)),
+                millis(percentile(99)), millis(max()));
+    }
+
+    private static double millis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,52 @@
+package com.bedayia.tickets.core;
+
+/**
+ * A single camera frame reduced to its luminance (Y) plane, which is all the
+ * QR decoder needs. {@code rowStride} may be wider than {@code width} when the
+ * frame comes straight from a camera buffer with padding.
+ */
+public final class LumaFrame {
+    private final byte[] luma;
+    private final int width;
+    private final int height;
+    private final int rowStride;
+    private final long timestampNanos;
+
+    public LumaFrame(byte[] luma, int width, int height, int rowStride, long timestampNanos) {
+        if (width <= 0 || height <= 0 || rowStride < width) {
+            throw new IllegalArgumentException("Invalid frame size " + width + "x" + height + " stride " + rowStride);
+        }
+        if (luma.length < rowStride * (height - 1) + width) {
+            throw new IllegalArgumentException("Luma buffer too small for " + width + "x" + height);
+        }
+        this.luma = luma;
+        this.width = width;
+        this.height = height;
+        this.rowStride = rowStride;
+        this.timestampNanos = timestampNanos;
+    }
+
+    public LumaFrame(byte[] luma, int width, int height, long timestampNanos) {
+        this(luma, width, height, width, timestampNanos);
+    }
+
+    public byte[] getLuma() {
+        return luma;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getRowStride() {
+        return rowStride;
+    }
+
+    public long getTimestampNanos() {
+        return timestampNanos;
+    }
+}
@@ -0,0 +1,53 @@
+package com.bedayia.tickets.core;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Tells whether the camera sees something move, by comparing a coarse grid of
+ * luma samples with the previous frame's. It reads a few hundred bytes of the
+ * Y plane in place, so it is cheap enough to run on every frame, including the
+ * ones the decoder skips.
+ */
+public final class MotionDetector {
+    private static final int GRID = 16;
+    // A cell changed if its luma moved by more than this (0-255)
+    private static final int CELL_THRESHOLD = 24;
+    // ...and the frame moved if this many cells changed; below that it is sensor noise or flicker
+    private static final int MOTION_CELLS = GRID * GRID / 16;
+
+    private final int[] previous = new int[GRID * GRID];
+    private final int[] current = new int[GRID * GRID];
+    private int width;
+    private int height;
+
+    /**
+     * @param luma the Y plane, one byte per pixel, read with absolute gets
+     * @return true if enough of the frame changed since the last call. A frame
+     *         of a new size (after a resolution switch) only becomes the new reference.
+     */
+    public boolean update(ByteBuffer luma, int width, int height, int rowStride) {
+        for (int row = 0; row < GRID; row++) {
+            int y = (row * 2 + 1) * height / (GRID * 2);
+            for (int column = 0; column < GRID; column++) {
+                int x = (column * 2 + 1) * width / (GRID * 2);
+                current[row * GRID + column] = luma.get(y * rowStride + x) & 0xff;
+            }
+        }
+        boolean sameSize = width == this.width && height == this.height;
+        this.width = width;
+        this.height = height;
+
+        int changed = 0;
+        for (int i = 0; i < current.length; i++) {
+            if (Math.abs(current[i] - previous[i]) > CELL_THRESHOLD) {
+                changed++;
+            }
+            previous[i] = current[i];
+        }
+        return sameSize && changed >= MOTION_CELLS;
+    }
+
+    public boolean update(LumaFrame frame) {
+        return update(ByteBuffer.wrap(frame.getLuma()), frame.getWidth(), frame.getHeight(), frame.getRowStride());
+    }
+}
@@ -0,0 +1,183 @@
+package com.bedayia.tickets.core;
+
+import com.google.gson.annotations.SerializedName;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Live headcount per event on the device: a snapshot from tickets/occupancy,
+ * kept current by the check-ins pushed on tickets/stream until the next
+ * snapshot replaces it. Pushes the snapshot already counted (by stream id) are
+ * skipped, and so is a push that repeats what the mirror already knows of that
+ * invitee since the snapshot. Pushes are taken to be guests, since the gates
+ * never check in the main invitee; the next snapshot corrects anything else.
+ */
+public class OccupancyMirror {
+
+    public static final class EventCount {
+        @SerializedName("event_id")
+        private int eventId;
+
+        @SerializedName("name")
+        private String name;
+
+        @SerializedName("invitees")
+        private int invitees;
+
+        @SerializedName("attended")
+        private int attended;
+
+        @SerializedName("guests")
+        private int guests;
+
+        @SerializedName("guests_attended")
+        private int guestsAttended;
+
+        @SerializedName("seats")
+        private int seats;
+
+        public EventCount() {
+        }
+
+        public EventCount(int eventId, String name, int invitees, int attended, int guests, int guestsAttended,
+                          int seats) {
+            this.eventId = eventId;
+            this.name = name;
+            this.invitees = invitees;
+            this.attended = attended;
+            this.guests = guests;
+            this.guestsAttended = guestsAttended;
+            this.seats = seats;
+        }
+
+        private EventCount copy() {
+            return new EventCount(eventId, name, invitees, attended, guests, guestsAttended, seats);
+        }
+
+        public int getEventId() {
+            return eventId;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getInvitees() {
+            return invitees;
+        }
+
+        public int getAttended() {
+            return attended;
+        }
+
+        public int getGuests() {
+            return guests;
+        }
+
+        public int getGuestsAttended() {
+            return guestsAttended;
+        }
+
+        public int getSeats() {
+            return seats;
+        }
+    }
+
+    private final Map<Integer, EventCount> events = new LinkedHashMap<>();
+    // Attendance of each invitee (qrcode + name) pushed since the snapshot
+    private final Map<String, Boolean> pushed = new HashMap<>();
+    // Last stream change included in the snapshot, "<boot>.<seq>"
+    private String snapshotBoot;
+    private long snapshotSeq = -1;
+    private volatile Runnable listener;
+
+    // Called after every change, on the thread that made it
+    public void setListener(Runnable listener) {
+        this.listener = listener;
+    }
+
+    public void reset(List<EventCount> counts, String streamId) {
+        synchronized (this) {
+            events.clear();
+            pushed.clear();
+            for (EventCount count : counts) {
+                events.put(count.getEventId(), count.copy());
+            }
+            int dot = streamId != null ? streamId.indexOf('.') : -1;
+            snapshotBoot = dot > 0 ? streamId.substring(0, dot) : null;
+            snapshotSeq = dot > 0 ? parseSeq(streamId.substring(dot + 1)) : -1;
+        }
+        notifyListener();
+    }
+
+    /** @param streamId the change's id on tickets/stream, if known */
+    public void apply(AttendanceChange change, String streamId) {
+        synchronized (this) {
+            EventCount count = events.get(change.getEventId());
+            if (count == null) {
+                return;
+            }
+            String key = change.getInviteesQrcodeText() + '\u0000' + change.getInviteesName();
+            Boolean previous = pushed.put(key, change.isInviteesAttendance());
+            if (alreadyCounted(streamId) || (previous != null && previous == change.isInviteesAttendance())) {
+                return;
+            }
+            int delta = change.isInviteesAttendance() ? 1 : -1;
+            count.attended = clamp(count.attended + delta, count.invitees);
+            count.guestsAttended = clamp(count.guestsAttended + delta, count.guests);
+        }
+        notifyListener();
+    }
+
+    public synchronized EventCount get(int eventId) {
+        EventCount count = events.get(eventId);
+        return count != null ? count.copy() : null;
+    }
+
+    public synchronized List<EventCount> snapshot() {
+        List<EventCount> copies = new ArrayList<>(events.size());
+        for (EventCount count : events.values()) {
+            copies.add(count.copy());
+        }
+        return copies;
+    }
+
+    public void clear() {
+        reset(new ArrayList<>(), null);
+    }
+
+    private boolean alreadyCounted(String streamId) {
+        if (streamId == null || snapshotBoot == null) {
+            return false;
+        }
+        int dot = streamId.indexOf('.');
+        // A different boot means the server restarted after the snapshot
+        if (dot <= 0 || !snapshotBoot.equals(streamId.substring(0, dot))) {
+            return false;
+        }
+        long seq = parseSeq(streamId.substring(dot + 1));
+        return seq >= 0 && seq <= snapshotSeq;
+    }
+
+    private void notifyListener() {
+        Runnable current = listener;
+        if (current != null) {
+            current.run();
+        }
+    }
+
+    private static long parseSeq(String text) {
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static int clamp(int value, int max) {
+        return Math.max(0, Math.min(value, max));
+    }
+}
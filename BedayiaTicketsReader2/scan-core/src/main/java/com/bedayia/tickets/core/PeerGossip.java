@@ -0,0 +1,413 @@
+package com.bedayia.tickets.core;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.annotations.SerializedName;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MulticastSocket;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Gossips a {@link GateLedger} between gates on the local network over UDP, so
+ * gates keep catching each other's check-ins while the backend is down.
+ *
+ * <p>New local check-ins are pushed to every known peer at once. Because
+ * datagrams get lost, every {@code syncIntervalMillis} each gate also sends
+ * its version vector to one random peer, which answers with whatever the
+ * sender is missing (anti-entropy). Peers come from a configured list and,
+ * optionally, from hellos on a multicast group; anyone we hear from is added.
+ *
+ * <p>Every datagram starts with an HMAC-SHA256 of the rest, keyed by the
+ * event's gate secret the backend issues at login. Datagrams that don't carry a
+ * valid one are dropped before parsing, so only gates of the same event can add
+ * check-ins or become peers.
+ */
+public class PeerGossip implements AutoCloseable {
+    // Keeps datagrams under a typical Wi-Fi MTU so they are never fragmented
+    static final int MAX_DATAGRAM_BYTES = 1200;
+    private static final int MAX_ENTRIES_PER_REPLY = 256;
+    private static final long HELLO_INTERVAL_MILLIS = 2_000;
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final int MAC_BYTES = 32;
+
+    private static final String HELLO = "hello";
+    private static final String PUSH = "push";
+    private static final String SYNC = "sync";
+
+    private final GateLedger ledger;
+    private final SecretKeySpec key;
+    private final int port;
+    private final InetAddress multicastGroup;
+    private final long syncIntervalMillis;
+    private final ThreadFactory threads;
+    private final Set<SocketAddress> peers = ConcurrentHashMap.newKeySet();
+    private final Gson gson = new Gson();
+    private final Random random = new Random();
+    private final AtomicLong datagramsSent = new AtomicLong();
+    private final AtomicLong datagramsReceived = new AtomicLong();
+    private final AtomicLong entriesLearned = new AtomicLong();
+    private final AtomicLong datagramsRejected = new AtomicLong();
+    // Test hook: fraction of outgoing datagrams silently dropped
+    private volatile double dropRate;
+
+    private DatagramSocket socket;
+    private ScheduledExecutorService timer;
+    private Thread receiver;
+
+    /**
+     * @param secret         the event's gate secret; gates only talk to gates holding the same one
+     * @param port           UDP port to listen on (0 for any; peers learn it from our datagrams)
+     * @param peers          statically configured gates, may be empty
+     * @param multicastGroup group for discovery hellos on {@code port}, or null to use the list only
+     */
+    public PeerGossip(GateLedger ledger, byte[] secret, int port, List<InetSocketAddress> peers,
+                      InetAddress multicastGroup, long syncIntervalMillis, ThreadFactory threads) {
+        if (secret == null || secret.length == 0) {
+            throw new IllegalArgumentException("Gate secret required");
+        }
+        this.ledger = ledger;
+        this.key = new SecretKeySpec(secret, MAC_ALGORITHM);
+        this.port = port;
+        this.multicastGroup = multicastGroup;
+        this.syncIntervalMillis = syncIntervalMillis;
+        this.threads = threads;
+        this.peers.addAll(peers);
+    }
+
+    public synchronized void start() throws IOException {
+        if (socket != null) {
+            return;
+        }
+        if (multicastGroup != null) {
+            MulticastSocket multicast = new MulticastSocket(port);
+            multicast.joinGroup(multicastGroup);
+            socket = multicast;
+        } else {
+            socket = new DatagramSocket(new InetSocketAddress(port));
+        }
+        receiver = threads.newThread(this::receive);
+        receiver.start();
+        timer = Executors.newSingleThreadScheduledExecutor(threads);
+        timer.scheduleWithFixedDelay(this::syncWithRandomPeer, syncIntervalMillis, syncIntervalMillis,
+                TimeUnit.MILLISECONDS);
+        if (multicastGroup != null) {
+            timer.scheduleWithFixedDelay(this::sayHello, 0, HELLO_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (socket == null) {
+            return;
+        }
+        timer.shutdownNow();
+        socket.close();
+        receiver.interrupt();
+        socket = null;
+    }
+
+    public synchronized int getLocalPort() {
+        return socket != null ? socket.getLocalPort() : -1;
+    }
+
+    public void addPeer(InetSocketAddress peer) {
+        peers.add(peer);
+    }
+
+    public Set<SocketAddress> getPeers() {
+        return Collections.unmodifiableSet(peers);
+    }
+
+    /**
+     * Sends a check-in recorded here to every known gate straight away. The
+     * datagrams go out on the gossip thread, so this is safe on the main thread.
+     */
+    public void publish(GateLedger.Entry entry) {
+        ScheduledExecutorService current;
+        synchronized (this) {
+            current = timer;
+        }
+        if (current == null || current.isShutdown()) {
+            // Not running; anti-entropy hands it over once we are
+            return;
+        }
+        Message message = new Message(PUSH, ledger.getDeviceId());
+        message.entries = Collections.singletonList(WireEntry.of(entry));
+        byte[] data = encode(message);
+        current.execute(() -> {
+            for (SocketAddress peer : peers) {
+                send(data, peer);
+            }
+        });
+    }
+
+    public long getDatagramsSent() {
+        return datagramsSent.get();
+    }
+
+    public long getDatagramsReceived() {
+        return datagramsReceived.get();
+    }
+
+    public long getEntriesLearned() {
+        return entriesLearned.get();
+    }
+
+    // Datagrams dropped for a missing or wrong signature
+    public long getDatagramsRejected() {
+        return datagramsRejected.get();
+    }
+
+    void setDropRate(double dropRate) {
+        this.dropRate = dropRate;
+    }
+
+    private void receive() {
+        byte[] buffer = new byte[MAX_DATAGRAM_BYTES * 2];
+        DatagramSocket current;
+        synchronized (this) {
+            current = socket;
+        }
+        while (current != null && !current.isClosed()) {
+            DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+            try {
+                current.receive(packet);
+            } catch (IOException e) {
+                if (current.isClosed()) {
+                    return;
+                }
+                continue;
+            }
+            datagramsReceived.incrementAndGet();
+            if (!verify(packet.getData(), packet.getLength())) {
+                datagramsRejected.incrementAndGet();
+                continue;
+            }
+            Message message;
+            try {
+                message = gson.fromJson(new String(packet.getData(), MAC_BYTES, packet.getLength() - MAC_BYTES,
+                        StandardCharsets.UTF_8), Message.class);
+            } catch (JsonParseException e) {
+                continue;
+            }
+            if (message == null || message.type == null || message.from == null
+                    || message.from.equals(ledger.getDeviceId())) {
+                // Our own multicast hello, or noise
+                continue;
+            }
+            handle(message, packet.getSocketAddress());
+        }
+    }
+
+    private void handle(Message message, SocketAddress sender) {
+        boolean isNew = peers.add(sender);
+        switch (message.type) {
+            case HELLO:
+                if (isNew) {
+                    // Catch a newcomer up straight away instead of waiting for a random pick
+                    sendSync(sender);
+                }
+                break;
+            case PUSH:
+                merge(message.entries);
+                break;
+            case SYNC:
+                Map<String, Long> remote = message.vv != null ? message.vv : Collections.emptyMap();
+                reply(remote, sender);
+                // Push-pull: if the sender knows things we don't, ask for them too
+                if (isAhead(remote, ledger.versionVector())) {
+                    sendSync(sender);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void merge(List<WireEntry> entries) {
+        if (entries == null || entries.isEmpty()) {
+            return;
+        }
+        List<GateLedger.Entry> decoded = new ArrayList<>(entries.size());
+        for (WireEntry entry : entries) {
+            if (entry.origin != null && entry.qrcodeText != null) {
+                decoded.add(entry.toEntry());
+            }
+        }
+        entriesLearned.addAndGet(ledger.merge(decoded).size());
+    }
+
+    private static boolean isAhead(Map<String, Long> remote, Map<String, Long> local) {
+        for (Map.Entry<String, Long> origin : remote.entrySet()) {
+            Long seen = local.get(origin.getKey());
+            if (origin.getValue() != null && origin.getValue() > (seen != null ? seen : 0L)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Sends the peer what its version vector says it lacks, split into datagrams
+    private void reply(Map<String, Long> remote, SocketAddress sender) {
+        List<GateLedger.Entry> missing = ledger.missingFor(remote, MAX_ENTRIES_PER_REPLY);
+        // In UTF-8 bytes, as sent: Arabic names are two bytes a character
+        Message envelope = new Message(PUSH, ledger.getDeviceId());
+        envelope.entries = Collections.emptyList();
+        int budget = MAX_DATAGRAM_BYTES - MAC_BYTES - utf8Length(gson.toJson(envelope));
+        List<WireEntry> batch = new ArrayList<>();
+        int batchBytes = 0;
+        for (GateLedger.Entry entry : missing) {
+            WireEntry wire = WireEntry.of(entry);
+            int size = utf8Length(gson.toJson(wire)) + 1;
+            if (!batch.isEmpty() && batchBytes + size > budget) {
+                sendEntries(batch, sender);
+                batch = new ArrayList<>();
+                batchBytes = 0;
+            }
+            batch.add(wire);
+            batchBytes += size;
+        }
+        if (!batch.isEmpty()) {
+            sendEntries(batch, sender);
+        }
+    }
+
+    private static int utf8Length(String json) {
+        return json.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private void sendEntries(List<WireEntry> entries, SocketAddress peer) {
+        Message message = new Message(PUSH, ledger.getDeviceId());
+        message.entries = entries;
+        send(encode(message), peer);
+    }
+
+    private void syncWithRandomPeer() {
+        List<SocketAddress> known = new ArrayList<>(peers);
+        if (!known.isEmpty()) {
+            sendSync(known.get(random.nextInt(known.size())));
+        }
+    }
+
+    private void sendSync(SocketAddress peer) {
+        Message message = new Message(SYNC, ledger.getDeviceId());
+        message.vv = ledger.versionVector();
+        send(encode(message), peer);
+    }
+
+    private void sayHello() {
+        send(encode(new Message(HELLO, ledger.getDeviceId())), new InetSocketAddress(multicastGroup, port));
+    }
+
+    // The signature, then the JSON it covers
+    private byte[] encode(Message message) {
+        byte[] payload = gson.toJson(message).getBytes(StandardCharsets.UTF_8);
+        byte[] data = new byte[MAC_BYTES + payload.length];
+        System.arraycopy(mac(payload, 0, payload.length), 0, data, 0, MAC_BYTES);
+        System.arraycopy(payload, 0, data, MAC_BYTES, payload.length);
+        return data;
+    }
+
+    private boolean verify(byte[] data, int length) {
+        if (length <= MAC_BYTES) {
+            return false;
+        }
+        byte[] expected = mac(data, MAC_BYTES, length - MAC_BYTES);
+        // Constant time, so the signature can't be guessed byte by byte
+        return MessageDigest.isEqual(expected, Arrays.copyOf(data, MAC_BYTES));
+    }
+
+    // A Mac isn't thread-safe and the receiver and timer threads both sign, so one per call
+    private byte[] mac(byte[] data, int offset, int length) {
+        try {
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(key);
+            mac.update(data, offset, length);
+            return mac.doFinal();
+        } catch (GeneralSecurityException e) {
+            // HmacSHA256 is a required algorithm on every Java platform and Android
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void send(byte[] data, SocketAddress peer) {
+        DatagramSocket current;
+        synchronized (this) {
+            current = socket;
+        }
+        if (current == null || (dropRate > 0 && random.nextDouble() < dropRate)) {
+            return;
+        }
+        try {
+            current.send(new DatagramPacket(data, data.length, peer));
+            datagramsSent.incrementAndGet();
+        } catch (SocketException e) {
+            // Closed underneath us, or the network went away; the next sync retries
+        } catch (IOException e) {
+            // Same: gossip is best effort
+        }
+    }
+
+    private static final class Message {
+        String type;
+        String from;
+        Map<String, Long> vv;
+        List<WireEntry> entries;
+
+        Message(String type, String from) {
+            this.type = type;
+            this.from = from;
+        }
+    }
+
+    // Short keys: a whole batch has to fit in one datagram
+    private static final class WireEntry {
+        @SerializedName("o")
+        String origin;
+        @SerializedName("s")
+        long seq;
+        @SerializedName("q")
+        String qrcodeText;
+        @SerializedName("n")
+        String name;
+        @SerializedName("t")
+        long timeMillis;
+
+        static WireEntry of(GateLedger.Entry entry) {
+            WireEntry wire = new WireEntry();
+            wire.origin = entry.origin;
+            wire.seq = entry.seq;
+            wire.qrcodeText = entry.qrcodeText;
+            wire.name = entry.name;
+            wire.timeMillis = entry.timeMillis;
+            return wire;
+        }
+
+        GateLedger.Entry toEntry() {
+            return new GateLedger.Entry(origin, seq, qrcodeText, name, timeMillis);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.bedayia.tickets.core;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Admission control in front of the HTTP client. Work is queued per priority
+ * class and started strictly in priority order: a queued background upload
+ * never starts while an interactive lookup is waiting, and background work is
+ * capped below the total so there is always a slot left for the guest standing
+ * at the gate. Requests already on the wire are never interrupted.
+ */
+public class RequestScheduler {
+
+    public enum Priority {
+        // A guest is waiting on the answer (QR lookup, login)
+        INTERACTIVE,
+        // Nobody is watching a spinner (attendance uploads, refreshes, sync)
+        BACKGROUND
+    }
+
+    private static final Priority[] PRIORITIES = Priority.values();
+    private static final int QUEUE_WAIT_WINDOW = 512;
+
+    private final int maxInFlight;
+    private final int[] limits = new int[PRIORITIES.length];
+    private final int[] inFlight = new int[PRIORITIES.length];
+    private final int[] maxQueueDepth = new int[PRIORITIES.length];
+    private final long[] completed = new long[PRIORITIES.length];
+    private final LatencyRecorder[] queueWait = new LatencyRecorder[PRIORITIES.length];
+    @SuppressWarnings("unchecked")
+    private final ArrayDeque<Task<?>>[] queues = (ArrayDeque<Task<?>>[]) new ArrayDeque<?>[PRIORITIES.length];
+    private int totalInFlight;
+
+    /**
+     * @param maxInFlight      requests on the wire at once, across all classes
+     * @param interactiveLimit cap for {@link Priority#INTERACTIVE}
+     * @param backgroundLimit  cap for {@link Priority#BACKGROUND}; keep it below
+     *                         {@code maxInFlight} to reserve room for lookups
+     */
+    public RequestScheduler(int maxInFlight, int interactiveLimit, int backgroundLimit) {
+        if (maxInFlight < 1 || interactiveLimit < 1 || backgroundLimit < 1) {
+            throw new IllegalArgumentException("Limits must be positive");
+        }
+        this.maxInFlight = maxInFlight;
+        limits[Priority.INTERACTIVE.ordinal()] = interactiveLimit;
+        limits[Priority.BACKGROUND.ordinal()] = backgroundLimit;
+        for (int i = 0; i < PRIORITIES.length; i++) {
+            queues[i] = new ArrayDeque<>();
+            queueWait[i] = LatencyRecorder.window(QUEUE_WAIT_WINDOW);
+        }
+    }
+
+    /**
+     * Queues {@code work}, which is invoked once a slot is free and must return
+     * the in-flight request. Cancelling the returned future removes queued work
+     * or cancels the running request.
+     */
+    public <T> CompletableFuture<T> submit(Priority priority, Supplier<CompletableFuture<T>> work) {
+        Task<T> task = new Task<>(priority, work);
+        task.result.whenComplete((result, error) -> {
+            if (task.result.isCancelled()) {
+                cancel(task);
+            }
+        });
+        synchronized (this) {
+            ArrayDeque<Task<?>> queue = queues[priority.ordinal()];
+            queue.add(task);
+            maxQueueDepth[priority.ordinal()] = Math.max(maxQueueDepth[priority.ordinal()], queue.size());
+        }
+        drain();
+        return task.result;
+    }
+
+    public synchronized int queueDepth(Priority priority) {
+        return queues[priority.ordinal()].size();
+    }
+
+    public synchronized int inFlight(Priority priority) {
+        return inFlight[priority.ordinal()];
+    }
+
+    public synchronized int maxQueueDepth(Priority priority) {
+        return maxQueueDepth[priority.ordinal()];
+    }
+
+    public synchronized long completed(Priority priority) {
+        return completed[priority.ordinal()];
+    }
+
+    // Time spent queued before the request was started
+    public LatencyRecorder queueWait(Priority priority) {
+        return queueWait[priority.ordinal()];
+    }
+
+    public String summary() {
+        StringBuilder summary = new StringBuilder();
+        for (Priority priority : PRIORITIES) {
+            if (summary.length() > 0) {
+                summary.append('\n');
+            }
+            summary.append(priority).append(": queued=").append(queueDepth(priority))
+                    .append(" maxQueued=").append(maxQueueDepth(priority))
+                    .append(" inFlight=").append(inFlight(priority))
+                    .append(" completed=").append(completed(priority))
+                    .append(" wait ").append(queueWait(priority).summary());
+        }
+        return summary.toString();
+    }
+
+    private void drain() {
+        List<Task<?>> toStart = new ArrayList<>();
+        synchronized (this) {
+            for (Priority priority : PRIORITIES) {
+                int index = priority.ordinal();
+                ArrayDeque<Task<?>> queue = queues[index];
+                while (!queue.isEmpty() && totalInFlight < maxInFlight && inFlight[index] < limits[index]) {
+                    Task<?> task = queue.poll();
+                    task.started = true;
+                    inFlight[index]++;
+                    totalInFlight++;
+                    toStart.add(task);
+                }
+                if (!queue.isEmpty()) {
+                    // Lower classes wait until this one has drained
+                    break;
+                }
+            }
+        }
+        for (Task<?> task : toStart) {
+            task.start();
+        }
+    }
+
+    private void release(Task<?> task) {
+        synchronized (this) {
+            int index = task.priority.ordinal();
+            inFlight[index]--;
+            totalInFlight--;
+            completed[index]++;
+        }
+        drain();
+    }
+
+    private void cancel(Task<?> task) {
+        CompletableFuture<?> running;
+        synchronized (this) {
+            if (!task.started) {
+                queues[task.priority.ordinal()].remove(task);
+                return;
+            }
+            running = task.inner;
+        }
+        if (running != null) {
+            running.cancel(true);
+        }
+    }
+
+    private final class Task<T> {
+        final Priority priority;
+        final Supplier<CompletableFuture<T>> work;
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        final long queuedAt = System.nanoTime();
+        // Guarded by RequestScheduler.this
+        boolean started;
+        volatile CompletableFuture<T> inner;
+
+        Task(Priority priority, Supplier<CompletableFuture<T>> work) {
+            this.priority = priority;
+            this.work = work;
+        }
+
+        void start() {
+            queueWait[priority.ordinal()].record(System.nanoTime() - queuedAt);
+            CompletableFuture<T> running;
+            try {
+                running = work.get();
+            } catch (RuntimeException e) {
+                running = Futures.failed(e);
+            }
+            synchronized (RequestScheduler.this) {
+                inner = running;
+            }
+            if (result.isCancelled()) {
+                running.cancel(true);
+            }
+            running.whenComplete((value, error) -> {
+                release(this);
+                if (error != null) {
+                    result.completeExceptionally(Futures.unwrap(error));
+                } else {
+                    result.complete(value);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.bedayia.tickets.core;
+
+public enum ScanDecision {
+    // At least one invitee on the code has not been checked in yet
+    ADMIT,
+    // Every invitee on the code already has attendance recorded
+    ALREADY_ADMITTED,
+    // The code is not known to the backend
+    NOT_FOUND,
+    // The lookup itself failed (network, server error, timeout)
+    LOOKUP_FAILED
+}
@@ -0,0 +1,52 @@
+package com.bedayia.tickets.core;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Drops repeat decodes of the same code within a time window. The camera keeps
+ * producing frames of the same QR code while the first lookup is in flight, and
+ * without this every one of them would start another API call.
+ */
+public class ScanDeduplicator {
+    private static final int MAX_TRACKED_CODES = 256;
+
+    private final long windowMillis;
+    private final LinkedHashMap<String, Long> lastSeen = new LinkedHashMap<>();
+
+    public ScanDeduplicator(long windowMillis) {
+        this.windowMillis = windowMillis;
+    }
+
+    /**
+     * @return {@code true} if the code should go on to lookup, {@code false} if it
+     * was already accepted within the window
+     */
+    public synchronized boolean accept(String code, long nowMillis) {
+        Long previous = lastSeen.get(code);
+        if (previous != null && nowMillis - previous < windowMillis) {
+            return false;
+        }
+        // Re-insert so iteration order stays oldest-first
+        lastSeen.remove(code);
+        lastSeen.put(code, nowMillis);
+        evictExpired(nowMillis);
+        return true;
+    }
+
+    public synchronized void forget(String code) {
+        lastSeen.remove(code);
+    }
+
+    private void evictExpired(long nowMillis) {
+        Iterator<Map.Entry<String, Long>> it = lastSeen.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            if (lastSeen.size() <= MAX_TRACKED_CODES && nowMillis - eldest.getValue() < windowMillis) {
+                break;
+            }
+            it.remove();
+        }
+    }
+}
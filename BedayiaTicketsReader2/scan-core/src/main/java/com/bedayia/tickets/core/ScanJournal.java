@@ -0,0 +1,330 @@
+package com.bedayia.tickets.core;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * What was scanned and admitted at this gate, kept in a memory-mapped file so
+ * it survives the process being killed, with an in-memory index by code for
+ * "already admitted here" checks that don't need the backend.
+ *
+ * <p>The file is a ring of fixed-size slots after a small header; entry
+ * {@code seq} lives in slot {@code seq % capacity}, so once the ring is full
+ * each append replaces the oldest entry. A slot carries a CRC over its contents
+ * and is written CRC last: a write torn by a crash leaves a slot that fails the
+ * check and is skipped on the next open, and every other entry survives. The
+ * page cache holds the writes once put into the mapping, so process death loses
+ * nothing; only power loss before the kernel writes the pages back can, and
+ * {@link #force()} covers that for callers that care.
+ *
+ * <p>Codes and device ids longer than a slot allows are cut short, the same way
+ * on write and on lookup, so the index still matches them.
+ */
+public final class ScanJournal implements Closeable {
+    /** Stored by ordinal: only ever add values at the end. */
+    public enum Result {
+        ADMIT, ALREADY_ADMITTED, NOT_FOUND, LOOKUP_FAILED,
+        // Guests ticked in and submitted on the invitees screen
+        CHECKED_IN;
+
+        public static Result of(ScanDecision decision) {
+            return valueOf(decision.name());
+        }
+    }
+
+    private static final int MAGIC = 0x42534a31; // "BSJ1"
+    private static final int HEADER_SIZE = 64;
+    static final int SLOT_SIZE = 256;
+    // crc, seq, time, result, guests, device length, code length
+    private static final int SLOT_FIXED = 4 + 8 + 8 + 1 + 2 + 1 + 2;
+    private static final int MAX_DEVICE_BYTES = 48;
+    private static final int MAX_CODE_BYTES = SLOT_SIZE - SLOT_FIXED - MAX_DEVICE_BYTES;
+    private static final DateTimeFormatter CSV_TIME =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss", Locale.US).withZone(ZoneId.systemDefault());
+
+    private final RandomAccessFile file;
+    private final MappedByteBuffer map;
+    private final int capacity;
+    private final Entry[] slots;
+    private final Map<String, Entry> lastByCode = new HashMap<>();
+    private final Map<String, Entry> lastCheckInByCode = new HashMap<>();
+    private final CRC32 crc = new CRC32();
+    private final byte[] scratch = new byte[SLOT_SIZE];
+    private long nextSeq = 1;
+    private int skipped;
+
+    private ScanJournal(RandomAccessFile file, MappedByteBuffer map, int capacity) {
+        this.file = file;
+        this.map = map;
+        this.capacity = capacity;
+        this.slots = new Entry[capacity];
+    }
+
+    /**
+     * Opens (or creates) the journal and rebuilds the index from it. A file of
+     * another format or capacity is started over.
+     *
+     * @param capacity entries kept before the oldest are overwritten
+     */
+    public static ScanJournal open(File path, int capacity) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(path, "rw");
+        try {
+            long size = HEADER_SIZE + (long) capacity * SLOT_SIZE;
+            boolean fresh = file.length() != size || !headerMatches(file, capacity);
+            if (fresh) {
+                file.setLength(0);
+                file.setLength(size);
+            }
+            MappedByteBuffer map = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            ScanJournal journal = new ScanJournal(file, map, capacity);
+            if (fresh) {
+                map.putInt(0, MAGIC);
+                map.putInt(4, SLOT_SIZE);
+                map.putInt(8, capacity);
+            } else {
+                journal.recover();
+            }
+            return journal;
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    // RandomAccessFile reads big-endian, the mapping's default order
+    private static boolean headerMatches(RandomAccessFile file, int capacity) throws IOException {
+        file.seek(0);
+        return file.readInt() == MAGIC && file.readInt() == SLOT_SIZE && file.readInt() == capacity;
+    }
+
+    private void recover() {
+        for (int slot = 0; slot < capacity; slot++) {
+            Entry entry = read(slot);
+            if (entry == null) {
+                continue;
+            }
+            slots[slot] = entry;
+            nextSeq = Math.max(nextSeq, entry.seq + 1);
+        }
+        // Index in write order so the latest entry per code wins
+        for (Entry entry : entriesInOrder()) {
+            index(entry);
+        }
+    }
+
+    private Entry read(int slot) {
+        int offset = HEADER_SIZE + slot * SLOT_SIZE;
+        long seq = map.getLong(offset + 4);
+        if (seq <= 0 || seq % capacity != slot) {
+            return null;
+        }
+        int deviceLength = map.get(offset + 23) & 0xff;
+        int codeLength = map.getShort(offset + 24) & 0xffff;
+        if (deviceLength > MAX_DEVICE_BYTES || codeLength > MAX_CODE_BYTES) {
+            skipped++;
+            return null;
+        }
+        int length = SLOT_FIXED - 4 + deviceLength + codeLength;
+        ByteBuffer body = map.duplicate();
+        body.position(offset + 4);
+        body.get(scratch, 0, length);
+        crc.reset();
+        crc.update(scratch, 0, length);
+        int result = map.get(offset + 20);
+        if ((int) crc.getValue() != map.getInt(offset) || result < 0 || result >= Result.values().length) {
+            skipped++;
+            return null;
+        }
+        String device = new String(scratch, SLOT_FIXED - 4, deviceLength, StandardCharsets.UTF_8);
+        String code = new String(scratch, SLOT_FIXED - 4 + deviceLength, codeLength, StandardCharsets.UTF_8);
+        return new Entry(seq, code, map.getLong(offset + 12), Result.values()[result],
+                map.getShort(offset + 21) & 0xffff, device);
+    }
+
+    /** Records a scan or check-in; returns the stored entry (code and device possibly shortened). */
+    public synchronized Entry append(String code, long timeMillis, Result result, int guests, String device) {
+        byte[] deviceBytes = truncate(device, MAX_DEVICE_BYTES);
+        byte[] codeBytes = truncate(code, MAX_CODE_BYTES);
+        long seq = nextSeq++;
+        int slot = (int) (seq % capacity);
+        int offset = HEADER_SIZE + slot * SLOT_SIZE;
+
+        ByteBuffer body = ByteBuffer.wrap(scratch);
+        body.putLong(seq).putLong(timeMillis).put((byte) result.ordinal())
+                .putShort((short) Math.min(guests, 0xffff)).put((byte) deviceBytes.length)
+                .putShort((short) codeBytes.length).put(deviceBytes).put(codeBytes);
+        crc.reset();
+        crc.update(scratch, 0, body.position());
+
+        ByteBuffer target = map.duplicate();
+        target.position(offset + 4);
+        target.put(scratch, 0, body.position());
+        map.putInt(offset, (int) crc.getValue());
+
+        Entry replaced = slots[slot];
+        if (replaced != null) {
+            unindex(replaced);
+        }
+        Entry entry = new Entry(seq, new String(codeBytes, StandardCharsets.UTF_8), timeMillis, result,
+                Math.min(guests, 0xffff), new String(deviceBytes, StandardCharsets.UTF_8));
+        slots[slot] = entry;
+        index(entry);
+        return entry;
+    }
+
+    /** The latest entry of any kind for this code, or null. */
+    public synchronized Entry lastScan(String code) {
+        return lastByCode.get(key(code));
+    }
+
+    /** The latest check-in made at this gate on this code, or null. */
+    public synchronized Entry lastCheckIn(String code) {
+        return lastCheckInByCode.get(key(code));
+    }
+
+    /** Everything still in the ring, oldest first. */
+    public synchronized List<Entry> entries() {
+        return entriesInOrder();
+    }
+
+    public synchronized int size() {
+        int size = 0;
+        for (Entry entry : slots) {
+            if (entry != null) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    // Slots dropped on open because their CRC or lengths did not check out
+    public synchronized int skippedOnOpen() {
+        return skipped;
+    }
+
+    /** Writes the journal as CSV, oldest first, for the post-event audit. */
+    public void exportCsv(Writer out) throws IOException {
+        out.write("seq,time,result,guests,device,code\n");
+        for (Entry entry : entries()) {
+            out.write(entry.seq + "," + CSV_TIME.format(Instant.ofEpochMilli(entry.timeMillis)) + ","
+                    + entry.result + "," + entry.guests + "," + csv(entry.device) + "," + csv(entry.code) + "\n");
+        }
+    }
+
+    /** Flushes the mapping to storage, for surviving power loss and not just process death. */
+    public synchronized void force() {
+        map.force();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        map.force();
+        file.close();
+    }
+
+    private List<Entry> entriesInOrder() {
+        List<Entry> entries = new ArrayList<>(capacity);
+        for (Entry entry : slots) {
+            if (entry != null) {
+                entries.add(entry);
+            }
+        }
+        entries.sort((a, b) -> Long.compare(a.seq, b.seq));
+        return entries;
+    }
+
+    private void index(Entry entry) {
+        lastByCode.put(entry.code, entry);
+        if (entry.result == Result.CHECKED_IN) {
+            lastCheckInByCode.put(entry.code, entry);
+        }
+    }
+
+    // Forget an overwritten entry unless a later one for its code took its place
+    private void unindex(Entry entry) {
+        lastByCode.remove(entry.code, entry);
+        lastCheckInByCode.remove(entry.code, entry);
+    }
+
+    private static String key(String code) {
+        return new String(truncate(code, MAX_CODE_BYTES), StandardCharsets.UTF_8);
+    }
+
+    // Cuts on a character boundary so the shortened text still decodes the same
+    private static byte[] truncate(String text, int maxBytes) {
+        byte[] bytes = (text != null ? text : "").getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= maxBytes) {
+            return bytes;
+        }
+        int end = maxBytes;
+        while (end > 0 && (bytes[end] & 0xc0) == 0x80) {
+            end--;
+        }
+        return Arrays.copyOf(bytes, end);
+    }
+
+    private static String csv(String value) {
+        return value.contains(",") || value.contains("\"") || value.contains("\n")
+                ? "\"" + value.replace("\"", "\"\"") + "\"" : value;
+    }
+
+    public static final class Entry {
+        final long seq;
+        final String code;
+        final long timeMillis;
+        final Result result;
+        final int guests;
+        final String device;
+
+        Entry(long seq, String code, long timeMillis, Result result, int guests, String device) {
+            this.seq = seq;
+            this.code = code;
+            this.timeMillis = timeMillis;
+            this.result = result;
+            this.guests = guests;
+            this.device = device;
+        }
+
+        public long getSeq() {
+            return seq;
+        }
+
+        public String getCode() {
+            return code;
+        }
+
+        public long getTimeMillis() {
+            return timeMillis;
+        }
+
+        public Result getResult() {
+            return result;
+        }
+
+        // Guests admitted by a check-in; 0 for scans
+        public int getGuests() {
+            return guests;
+        }
+
+        public String getDevice() {
+            return device;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.bedayia.tickets.core;
+
+import com.bedayia.tickets.Invitee;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decode -> dedupe -> lookup -> decide. Activities feed it frames (or ML Kit
+ * results) and act on the {@link ScanResult}; nothing in here touches Android,
+ * so the same pipeline runs in the replay harness and in unit tests.
+ */
+public class ScanPipeline {
+    private final FrameDecoder decoder;
+    private final ScanDeduplicator deduplicator;
+    private final InviteeLookup lookup;
+
+    public ScanPipeline(FrameDecoder decoder, ScanDeduplicator deduplicator, InviteeLookup lookup) {
+        this.decoder = decoder;
+        this.deduplicator = deduplicator;
+        this.lookup = lookup;
+    }
+
+    // For callers that decode upstream (ML Kit on the device) and only use submitDecoded
+    public ScanPipeline(ScanDeduplicator deduplicator, InviteeLookup lookup) {
+        this(null, deduplicator, lookup);
+    }
+
+    /**
+     * Runs the decode stage on the calling thread.
+     *
+     * @return the pending result, or {@code null} if the frame held no code or the
+     * code was a duplicate of one already being handled
+     */
+    public CompletableFuture<ScanResult> submitFrame(LumaFrame frame) {
+        if (decoder == null) {
+            throw new IllegalStateException("Pipeline was built without a frame decoder");
+        }
+        String code = decoder.decode(frame);
+        if (code == null) {
+            return null;
+        }
+        return submitDecoded(code, frame.getTimestampNanos());
+    }
+
+    public CompletableFuture<ScanResult> submitDecoded(String code) {
+        return submitDecoded(code, System.nanoTime());
+    }
+
+    /**
+     * @param startNanos {@link System#nanoTime()} at which the frame was captured,
+     *                   used for end-to-end latency
+     * @return the pending result, or {@code null} for a duplicate
+     */
+    public CompletableFuture<ScanResult> submitDecoded(String code, long startNanos) {
+        long nowMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+        if (!deduplicator.accept(code, nowMillis)) {
+            return null;
+        }
+
+        CompletableFuture<List<Invitee>> pending;
+        try {
+            pending = lookup.lookup(code);
+        } catch (RuntimeException e) {
+            pending = Futures.failed(e);
+        }
+
+        return pending.handle((invitees, error) -> {
+            long latencyNanos = System.nanoTime() - startNanos;
+            if (error != null) {
+                // Let the next frame of the same code retry instead of waiting out the window
+                deduplicator.forget(code);
+                return new ScanResult(code, ScanDecision.LOOKUP_FAILED, null, Futures.unwrap(error), latencyNanos);
+            }
+            return new ScanResult(code, decide(invitees), invitees, null, latencyNanos);
+        });
+    }
+
+    public static ScanDecision decide(List<Invitee> invitees) {
+        if (invitees == null || invitees.isEmpty()) {
+            return ScanDecision.NOT_FOUND;
+        }
+        for (Invitee invitee : invitees) {
+            if (!invitee.isInviteesAttendance()) {
+                return ScanDecision.ADMIT;
+            }
+        }
+        return ScanDecision.ALREADY_ADMITTED;
+    }
+}
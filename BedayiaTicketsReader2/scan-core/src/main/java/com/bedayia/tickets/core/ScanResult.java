@@ -0,0 +1,42 @@
+package com.bedayia.tickets.core;
+
+import com.bedayia.tickets.Invitee;
+import java.util.Collections;
+import java.util.List;
+
+public final class ScanResult {
+    private final String code;
+    private final ScanDecision decision;
+    private final List<Invitee> invitees;
+    private final Throwable error;
+    private final long latencyNanos;
+
+    ScanResult(String code, ScanDecision decision, List<Invitee> invitees, Throwable error, long latencyNanos) {
+        this.code = code;
+        this.decision = decision;
+        this.invitees = invitees != null ? Collections.unmodifiableList(invitees) : Collections.emptyList();
+        this.error = error;
+        this.latencyNanos = latencyNanos;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public ScanDecision getDecision() {
+        return decision;
+    }
+
+    public List<Invitee> getInvitees() {
+        return invitees;
+    }
+
+    public Throwable getError() {
+        return error;
+    }
+
+    // Time from the frame (or decode) timestamp to the decision
+    public long getLatencyNanos() {
+        return latencyNanos;
+    }
+}
@@ -0,0 +1,233 @@
+package com.bedayia.tickets.core;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.annotations.SerializedName;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * This gate's check-ins the backend does not have yet, kept in a file so they
+ * survive the process being killed and sessions that are never resumed. Each is
+ * stored with the account that made it, so it can still go up under that
+ * account's key while the key works, whoever is logged in at the time.
+ *
+ * <p>The file is a log of JSON lines, one per entry added or uploaded, written
+ * through on every change. A line torn by a crash fails to parse and is skipped.
+ * Opening rewrites the file with only the entries still pending.
+ */
+public final class UploadOutbox implements Closeable {
+    private final File path;
+    private final Gson gson = new Gson();
+    // Insertion ordered, so uploads go oldest first
+    private final Map<GateLedger.Entry, Account> pending = new LinkedHashMap<>();
+    private int skipped;
+    private Writer out;
+
+    private UploadOutbox(File path) {
+        this.path = path;
+    }
+
+    /** Opens (or creates) the outbox and reads back what is still pending. */
+    public static UploadOutbox open(File path) throws IOException {
+        UploadOutbox outbox = new UploadOutbox(path);
+        if (path.exists()) {
+            outbox.load();
+        }
+        outbox.rewrite();
+        return outbox;
+    }
+
+    private void load() throws IOException {
+        try (BufferedReader in = new BufferedReader(
+                new InputStreamReader(new FileInputStream(path), StandardCharsets.UTF_8))) {
+            for (String text = in.readLine(); text != null; text = in.readLine()) {
+                Line line;
+                try {
+                    line = gson.fromJson(text, Line.class);
+                } catch (JsonParseException e) {
+                    line = null;
+                }
+                if (line == null || line.origin == null) {
+                    skipped++;
+                } else if (line.done) {
+                    pending.remove(new GateLedger.Entry(line.origin, line.seq, null, null, 0));
+                } else if (line.qrcodeText != null && line.username != null) {
+                    pending.put(new GateLedger.Entry(line.origin, line.seq, line.qrcodeText, line.name,
+                            line.timeMillis), new Account(line.username, line.apiKey));
+                } else {
+                    skipped++;
+                }
+            }
+        }
+    }
+
+    /** Keeps check-ins made under {@code account} until {@link #remove} is called for them. */
+    public synchronized void add(Account account, Collection<GateLedger.Entry> entries) throws IOException {
+        for (GateLedger.Entry entry : entries) {
+            if (pending.putIfAbsent(entry, account) == null) {
+                out.write(gson.toJson(Line.added(entry, account)));
+                out.write('\n');
+            }
+        }
+        out.flush();
+    }
+
+    /** Forgets check-ins the server has accepted. */
+    public synchronized void remove(Collection<GateLedger.Entry> entries) throws IOException {
+        for (GateLedger.Entry entry : entries) {
+            if (pending.remove(entry) != null) {
+                out.write(gson.toJson(Line.done(entry)));
+                out.write('\n');
+            }
+        }
+        if (pending.isEmpty()) {
+            // Everything is up; start the log over instead of letting it grow all event
+            rewrite();
+        } else {
+            out.flush();
+        }
+    }
+
+    /** Pending check-ins by the account that made them, oldest first. */
+    public synchronized Map<Account, List<GateLedger.Entry>> byAccount() {
+        Map<Account, List<GateLedger.Entry>> accounts = new LinkedHashMap<>();
+        for (Map.Entry<GateLedger.Entry, Account> entry : pending.entrySet()) {
+            accounts.computeIfAbsent(entry.getValue(), account -> new ArrayList<>()).add(entry.getKey());
+        }
+        return accounts;
+    }
+
+    /** Pending check-ins made by this user, under any of their keys. */
+    public synchronized List<GateLedger.Entry> pendingFor(String username) {
+        List<GateLedger.Entry> entries = new ArrayList<>();
+        for (Map.Entry<GateLedger.Entry, Account> entry : pending.entrySet()) {
+            if (entry.getValue().username.equals(username)) {
+                entries.add(entry.getKey());
+            }
+        }
+        return entries;
+    }
+
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    // Lines dropped on open because they did not parse
+    public synchronized int skippedOnOpen() {
+        return skipped;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+    }
+
+    // Writes the pending entries to a new file and swaps it in, so a crash leaves one or the other
+    private void rewrite() throws IOException {
+        close();
+        File next = new File(path.getPath() + ".tmp");
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(next),
+                StandardCharsets.UTF_8))) {
+            for (Map.Entry<GateLedger.Entry, Account> entry : pending.entrySet()) {
+                writer.write(gson.toJson(Line.added(entry.getKey(), entry.getValue())));
+                writer.write('\n');
+            }
+        }
+        if (!next.renameTo(path)) {
+            throw new IOException("Could not replace " + path);
+        }
+        out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(path, true), StandardCharsets.UTF_8));
+    }
+
+    /** Who made a check-in: the username, and the API key of that session. */
+    public static final class Account {
+        final String username;
+        final String apiKey;
+
+        public Account(String username, String apiKey) {
+            this.username = username;
+            this.apiKey = apiKey;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public String getApiKey() {
+            return apiKey;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Account)) {
+                return false;
+            }
+            Account other = (Account) o;
+            return username.equals(other.username) && Objects.equals(apiKey, other.apiKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return username.hashCode() * 31 + Objects.hashCode(apiKey);
+        }
+    }
+
+    // Short keys, like the gossip wire format
+    private static final class Line {
+        @SerializedName("o")
+        String origin;
+        @SerializedName("s")
+        long seq;
+        @SerializedName("q")
+        String qrcodeText;
+        @SerializedName("n")
+        String name;
+        @SerializedName("t")
+        long timeMillis;
+        @SerializedName("u")
+        String username;
+        @SerializedName("k")
+        String apiKey;
+        @SerializedName("done")
+        boolean done;
+
+        static Line added(GateLedger.Entry entry, Account account) {
+            Line line = new Line();
+            line.origin = entry.origin;
+            line.seq = entry.seq;
+            line.qrcodeText = entry.qrcodeText;
+            line.name = entry.name;
+            line.timeMillis = entry.timeMillis;
+            line.username = account.username;
+            line.apiKey = account.apiKey;
+            return line;
+        }
+
+        static Line done(GateLedger.Entry entry) {
+            Line line = new Line();
+            line.origin = entry.origin;
+            line.seq = entry.seq;
+            line.done = true;
+            return line;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.bedayia.tickets.core;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.PlanarYUVLuminanceSource;
+import com.google.zxing.ReaderException;
+import com.google.zxing.Result;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.qrcode.QRCodeReader;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Pure-JVM QR decoder used by the replay harness and anywhere ML Kit is not
+ * available. On the device {@code QRScannerActivity} decodes with ML Kit and
+ * feeds the raw text straight into {@link ScanPipeline#submitDecoded}.
+ */
+public class ZxingFrameDecoder implements FrameDecoder {
+    private final QRCodeReader reader = new QRCodeReader();
+    private final Map<DecodeHintType, Object> hints = new EnumMap<>(DecodeHintType.class);
+
+    public ZxingFrameDecoder() {
+        hints.put(DecodeHintType.POSSIBLE_FORMATS, Collections.singletonList(BarcodeFormat.QR_CODE));
+        hints.put(DecodeHintType.CHARACTER_SET, "UTF-8");
+    }
+
+    @Override
+    public String decode(LumaFrame frame) {
+        PlanarYUVLuminanceSource source = new PlanarYUVLuminanceSource(
+                frame.getLuma(),
+                frame.getRowStride(),
+                frame.getHeight(),
+                0,
+                0,
+                frame.getWidth(),
+                frame.getHeight(),
+                false
+        );
+        try {
+            Result result = reader.decode(new BinaryBitmap(new HybridBinarizer(source)), hints);
+            return result.getText();
+        } catch (ReaderException e) {
+            // No code in this frame - the common case while the usher is aiming
+            return null;
+        } finally {
+            reader.reset();
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.bedayia.tickets.core.replay;
+
+import com.bedayia.tickets.core.GateLedger;
+import com.bedayia.tickets.core.PeerGossip;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gate peer-sync on one machine: {@code --spawn N} starts N gate JVMs on
+ * loopback, each configured with only its neighbour, has every gate record
+ * its own check-ins at the same instant and reports how long each took to hold
+ * all of them. Without {@code --spawn} it runs a single gate, which is also how
+ * to try it across real devices on a LAN. Entry point for
+ * {@code ./gradlew :scan-core:gossip}.
+ *
+ * <pre>
+ *   --spawn N            launch N gate processes and report convergence (default 4)
+ *   --checkins N         check-ins recorded by each gate (default 50)
+ *   --base-port P        first UDP port; gate i listens on P + i (default 47900)
+ *   --sync-ms N          anti-entropy interval (default 200)
+ *   --multicast GROUP    discover peers on this group instead of the ring
+ *   --secret S           gate secret the datagrams are signed with; gates only sync with the same one
+ *   single gate: --port P --device ID --peers host:port,... --expect N --start-at EPOCH_MS
+ * </pre>
+ */
+public final class GossipMain {
+    private static final long TIMEOUT_MILLIS = 30_000;
+
+    private GossipMain() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int spawn = 4;
+        int checkIns = 50;
+        int basePort = 47900;
+        long syncMillis = 200;
+        String multicast = null;
+        String secret = "gossip-demo";
+        Integer port = null;
+        String device = null;
+        String peers = "";
+        int expect = 0;
+        long startAt = 0;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--spawn": spawn = Integer.parseInt(args[++i]); break;
+                case "--checkins": checkIns = Integer.parseInt(args[++i]); break;
+                case "--base-port": basePort = Integer.parseInt(args[++i]); break;
+                case "--sync-ms": syncMillis = Long.parseLong(args[++i]); break;
+                case "--multicast": multicast = args[++i]; break;
+                case "--secret": secret = args[++i]; break;
+                case "--port": port = Integer.parseInt(args[++i]); break;
+                case "--device": device = args[++i]; break;
+                case "--peers": peers = args[++i]; break;
+                case "--expect": expect = Integer.parseInt(args[++i]); break;
+                case "--start-at": startAt = Long.parseLong(args[++i]); break;
+                default:
+                    System.err.println("Unknown option " + args[i]);
+                    System.exit(2);
+            }
+        }
+
+        if (port != null) {
+            runGate(port, device != null ? device : "gate-" + port, parsePeers(peers), multicast, secret, checkIns,
+                    expect > 0 ? expect : checkIns, startAt > 0 ? startAt : System.currentTimeMillis(), syncMillis);
+        } else {
+            spawnGates(spawn, checkIns, basePort, syncMillis, multicast, secret);
+        }
+    }
+
+    private static void spawnGates(int count, int checkIns, int basePort, long syncMillis, String multicast,
+                                   String secret) throws IOException, InterruptedException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        // Leave time for every JVM to boot before the common start instant
+        long startAt = System.currentTimeMillis() + 1500 + count * 150L;
+        List<Process> processes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            List<String> command = new ArrayList<>();
+            Collections.addAll(command, java, "-cp", System.getProperty("java.class.path"),
+                    GossipMain.class.getName(),
+                    "--port", String.valueOf(basePort + i),
+                    "--device", "gate-" + i,
+                    "--checkins", String.valueOf(checkIns),
+                    "--expect", String.valueOf(count * checkIns),
+                    "--start-at", String.valueOf(startAt),
+                    "--sync-ms", String.valueOf(syncMillis),
+                    "--secret", secret);
+            if (multicast != null) {
+                Collections.addAll(command, "--multicast", multicast);
+            } else {
+                Collections.addAll(command, "--peers", "127.0.0.1:" + (basePort + (i + 1) % count));
+            }
+            processes.add(new ProcessBuilder(command).redirectErrorStream(true).start());
+        }
+
+        long worst = 0;
+        boolean allConverged = true;
+        for (Process process : processes) {
+            try (BufferedReader out = new BufferedReader(
+                    new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = out.readLine()) != null) {
+                    System.out.println(line);
+                    if (line.contains(" converged in ")) {
+                        long millis = Long.parseLong(line.replaceAll(".* converged in (\\d+)ms.*", "$1"));
+                        worst = Math.max(worst, millis);
+                    } else if (line.contains(" TIMEOUT")) {
+                        allConverged = false;
+                    }
+                }
+            }
+            process.waitFor(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        System.out.println(allConverged
+                ? count + " gates x " + checkIns + " check-ins: all converged, slowest after " + worst + "ms"
+                : "Some gates did not converge within " + TIMEOUT_MILLIS + "ms");
+        if (!allConverged) {
+            System.exit(1);
+        }
+    }
+
+    private static void runGate(int port, String device, List<InetSocketAddress> peers, String multicast,
+                                String secret, int checkIns, int expect, long startAt, long syncMillis) throws Exception {
+        GateLedger ledger = new GateLedger(device);
+        InetAddress group = multicast != null ? InetAddress.getByName(multicast) : null;
+        try (PeerGossip gossip = new PeerGossip(ledger, secret.getBytes(StandardCharsets.UTF_8), port, peers, group,
+                syncMillis, runnable -> {
+            Thread thread = new Thread(runnable, "gossip");
+            thread.setDaemon(true);
+            return thread;
+        })) {
+            gossip.start();
+            Thread.sleep(Math.max(0, startAt - System.currentTimeMillis()));
+
+            for (int n = 0; n < checkIns; n++) {
+                GateLedger.Entry entry = ledger.recordLocal("S" + device + "-" + n, "Guest " + n,
+                        System.currentTimeMillis(), false);
+                gossip.publish(entry);
+            }
+
+            long deadline = startAt + TIMEOUT_MILLIS;
+            while (ledger.size() < expect && System.currentTimeMillis() < deadline) {
+                Thread.sleep(2);
+            }
+            long elapsed = System.currentTimeMillis() - startAt;
+            if (ledger.size() >= expect) {
+                System.out.println(device + ": " + ledger.size() + " check-ins, converged in " + elapsed + "ms ("
+                        + gossip.getDatagramsSent() + " datagrams sent, " + gossip.getPeers().size() + " peers)");
+            } else {
+                System.out.println(device + ": " + ledger.size() + "/" + expect + " check-ins TIMEOUT");
+            }
+            // Keep answering syncs for a moment so slower gates can finish
+            Thread.sleep(syncMillis * 5);
+        }
+    }
+
+    private static List<InetSocketAddress> parsePeers(String peers) {
+        List<InetSocketAddress> parsed = new ArrayList<>();
+        for (String peer : peers.split(",")) {
+            if (!peer.trim().isEmpty()) {
+                int colon = peer.lastIndexOf(':');
+                parsed.add(new InetSocketAddress(peer.substring(0, colon).trim(),
+                        Integer.parseInt(peer.substring(colon + 1).trim())));
+            }
+        }
+        return parsed;
+    }
+}
@@ -0,0 +1,55 @@
+package com.bedayia.tickets.core.replay;
+
+import com.bedayia.tickets.Invitee;
+import com.bedayia.tickets.core.InviteeLookup;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Stand-in for the tickets API with a fixed simulated round trip
+final class InMemoryLookup implements InviteeLookup, AutoCloseable {
+    private final Map<String, List<Invitee>> table = new HashMap<>();
+    private final long latencyMillis;
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "replay-lookup");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    InMemoryLookup(List<String> codes, int guestsPerCode, long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+        for (String code : codes) {
+            List<Invitee> invitees = new ArrayList<>();
+            for (int i = 0; i < guestsPerCode; i++) {
+                Invitee invitee = new Invitee();
+                invitee.setInviteesQrcodeText(code);
+                invitee.setInviteesName("Guest " + (i + 1));
+                invitee.setNumberOfSeats(guestsPerCode);
+                invitees.add(invitee);
+            }
+            table.put(code, invitees);
+        }
+    }
+
+    @Override
+    public CompletableFuture<List<Invitee>> lookup(String qrCodeText) {
+        List<Invitee> invitees = table.getOrDefault(qrCodeText, Collections.emptyList());
+        if (latencyMillis <= 0) {
+            return CompletableFuture.completedFuture(invitees);
+        }
+        CompletableFuture<List<Invitee>> future = new CompletableFuture<>();
+        timer.schedule(() -> future.complete(invitees), latencyMillis, TimeUnit.MILLISECONDS);
+        return future;
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+    }
+}
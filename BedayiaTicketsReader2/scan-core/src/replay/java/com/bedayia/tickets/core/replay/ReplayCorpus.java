@@ -0,0 +1,186 @@
+package com.bedayia.tickets.core.replay;
+
+import com.bedayia.tickets.core.LumaFrame;
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.imageio.ImageIO;
+
+/**
+ * Ordered list of frames to replay. A corpus directory may contain:
+ * <ul>
+ *   <li>{@code *.png} / {@code *.jpg} QR photos, converted to luminance</li>
+ *   <li>{@code *_<W>x<H>.y8} raw Y-plane dumps captured from {@code ImageProxy}</li>
+ *   <li>an optional {@code <name>.txt} next to a frame holding the expected QR text</li>
+ * </ul>
+ * Files replay in name order, so a recorded session keeps its aiming/blank frames
+ * between codes.
+ */
+public final class ReplayCorpus {
+    private static final Pattern RAW_FRAME = Pattern.compile(".*_(\\d+)x(\\d+)\\.y8$");
+
+    private final List<LumaFrame> frames;
+    private final List<String> expectedCodes;
+
+    private ReplayCorpus(List<LumaFrame> frames, List<String> expectedCodes) {
+        this.frames = Collections.unmodifiableList(frames);
+        this.expectedCodes = Collections.unmodifiableList(expectedCodes);
+    }
+
+    public List<LumaFrame> getFrames() {
+        return frames;
+    }
+
+    // Expected QR text per frame, null for frames without a code or without a sidecar
+    public List<String> getExpectedCodes() {
+        return expectedCodes;
+    }
+
+    public List<String> distinctCodes() {
+        return expectedCodes.stream().filter(c -> c != null).distinct().collect(Collectors.toList());
+    }
+
+    public static ReplayCorpus load(Path directory) throws IOException {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.sorted().collect(Collectors.toList());
+        }
+
+        List<LumaFrame> frames = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            String lower = name.toLowerCase(Locale.ROOT);
+            LumaFrame frame;
+            if (lower.endsWith(".png") || lower.endsWith(".jpg") || lower.endsWith(".jpeg")) {
+                BufferedImage image = ImageIO.read(file.toFile());
+                if (image == null) {
+                    throw new IOException("Unreadable image " + file);
+                }
+                frame = fromImage(image);
+            } else {
+                Matcher matcher = RAW_FRAME.matcher(name);
+                if (!matcher.matches()) {
+                    continue;
+                }
+                int width = Integer.parseInt(matcher.group(1));
+                int height = Integer.parseInt(matcher.group(2));
+                frame = new LumaFrame(Files.readAllBytes(file), width, height, 0);
+            }
+            frames.add(frame);
+            expected.add(readSidecar(file));
+        }
+        if (frames.isEmpty()) {
+            throw new IOException("No frames found in " + directory);
+        }
+        return new ReplayCorpus(frames, expected);
+    }
+
+    /**
+     * Builds a corpus that looks like a gate session: a few blank frames while
+     * the usher aims, then several frames of the same code, for each code.
+     */
+    public static ReplayCorpus synthetic(int codes, int framesPerCode, int blankFramesBetween, int size, long seed) {
+        Random random = new Random(seed);
+        QRCodeWriter writer = new QRCodeWriter();
+        Map<EncodeHintType, Object> hints = new EnumMap<>(EncodeHintType.class);
+        hints.put(EncodeHintType.MARGIN, 4);
+        hints.put(EncodeHintType.CHARACTER_SET, "UTF-8");
+
+        // Blank frames are shared; they are read-only
+        List<byte[]> blanks = new ArrayList<>();
+        for (int i = 0; i < Math.min(4, Math.max(1, blankFramesBetween)); i++) {
+            blanks.add(noise(size, random));
+        }
+
+        List<LumaFrame> frames = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        for (int c = 0; c < codes; c++) {
+            // Same shape as EventService.createEventItem: student id followed by name
+            String code = String.format(Locale.ROOT, "S%05dStudent %d", 10000 + c, c);
+            for (int b = 0; b < blankFramesBetween; b++) {
+                frames.add(new LumaFrame(blanks.get(b % blanks.size()), size, size, 0));
+                expected.add(null);
+            }
+            byte[] luma = render(writer, code, size, hints, random);
+            for (int f = 0; f < framesPerCode; f++) {
+                frames.add(new LumaFrame(luma, size, size, 0));
+                expected.add(code);
+            }
+        }
+        return new ReplayCorpus(frames, expected);
+    }
+
+    private static byte[] render(QRCodeWriter writer, String text, int size, Map<EncodeHintType, Object> hints,
+                                 Random random) {
+        BitMatrix matrix;
+        try {
+            matrix = writer.encode(text, BarcodeFormat.QR_CODE, size * 3 / 5, size * 3 / 5, hints);
+        } catch (WriterException e) {
+            throw new IllegalArgumentException("Cannot encode " + text, e);
+        }
+        byte[] luma = noise(size, random);
+        int offsetX = (size - matrix.getWidth()) / 2 + random.nextInt(9) - 4;
+        int offsetY = (size - matrix.getHeight()) / 2 + random.nextInt(9) - 4;
+        for (int y = 0; y < matrix.getHeight(); y++) {
+            for (int x = 0; x < matrix.getWidth(); x++) {
+                int base = matrix.get(x, y) ? 30 : 220;
+                luma[(y + offsetY) * size + x + offsetX] = (byte) (base + random.nextInt(21) - 10);
+            }
+        }
+        return luma;
+    }
+
+    // Mid-grey sensor noise, roughly what an out-of-focus background looks like
+    private static byte[] noise(int size, Random random) {
+        byte[] luma = new byte[size * size];
+        for (int i = 0; i < luma.length; i++) {
+            luma[i] = (byte) (96 + random.nextInt(64));
+        }
+        return luma;
+    }
+
+    private static LumaFrame fromImage(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        byte[] luma = new byte[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int rgb = image.getRGB(x, y);
+                int r = (rgb >> 16) & 0xff;
+                int g = (rgb >> 8) & 0xff;
+                int b = rgb & 0xff;
+                luma[y * width + x] = (byte) ((r * 299 + g * 587 + b * 114) / 1000);
+            }
+        }
+        return new LumaFrame(luma, width, height, 0);
+    }
+
+    private static String readSidecar(Path frameFile) throws IOException {
+        String name = frameFile.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        Path sidecar = frameFile.resolveSibling(name.substring(0, dot) + ".txt");
+        if (!Files.exists(sidecar)) {
+            return null;
+        }
+        return new String(Files.readAllBytes(sidecar), StandardCharsets.UTF_8).trim();
+    }
+}
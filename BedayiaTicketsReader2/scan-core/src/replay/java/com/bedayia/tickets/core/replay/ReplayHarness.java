@@ -0,0 +1,141 @@
+package com.bedayia.tickets.core.replay;
+
+import com.bedayia.tickets.core.FrameDecoder;
+import com.bedayia.tickets.core.InviteeLookup;
+import com.bedayia.tickets.core.LatencyRecorder;
+import com.bedayia.tickets.core.LumaFrame;
+import com.bedayia.tickets.core.ScanDecision;
+import com.bedayia.tickets.core.ScanDeduplicator;
+import com.bedayia.tickets.core.ScanPipeline;
+import com.bedayia.tickets.core.ScanResult;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pushes a {@link ReplayCorpus} through a {@link ScanPipeline} on one thread,
+ * the way the camera analyzer does, and measures decode throughput and
+ * frame-to-decision latency.
+ */
+public class ReplayHarness {
+    private final ReplayCorpus corpus;
+    private final FrameDecoder decoder;
+    private final InviteeLookup lookup;
+    private final long dedupeWindowMillis;
+
+    public ReplayHarness(ReplayCorpus corpus, FrameDecoder decoder, InviteeLookup lookup, long dedupeWindowMillis) {
+        this.corpus = corpus;
+        this.decoder = decoder;
+        this.lookup = lookup;
+        this.dedupeWindowMillis = dedupeWindowMillis;
+    }
+
+    public Report run(int iterations) {
+        Report report = new Report();
+        TimedDecoder timedDecoder = new TimedDecoder(decoder, report);
+        List<CompletableFuture<ScanResult>> pending = new ArrayList<>();
+
+        long started = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            // Fresh dedupe state per pass so every pass does the same lookups
+            ScanPipeline pipeline = new ScanPipeline(timedDecoder, new ScanDeduplicator(dedupeWindowMillis), lookup);
+            for (LumaFrame frame : corpus.getFrames()) {
+                LumaFrame stamped = new LumaFrame(frame.getLuma(), frame.getWidth(), frame.getHeight(),
+                        frame.getRowStride(), System.nanoTime());
+                CompletableFuture<ScanResult> result = pipeline.submitFrame(stamped);
+                if (result != null) {
+                    pending.add(result);
+                }
+            }
+        }
+        for (CompletableFuture<ScanResult> future : pending) {
+            ScanResult result = future.join();
+            report.endToEnd.record(result.getLatencyNanos());
+            report.decisions.merge(result.getDecision(), 1, Integer::sum);
+        }
+        report.wallNanos = System.nanoTime() - started;
+        return report;
+    }
+
+    public static final class Report {
+        final LatencyRecorder decode = new LatencyRecorder();
+        final LatencyRecorder endToEnd = new LatencyRecorder();
+        final Map<ScanDecision, Integer> decisions = new EnumMap<>(ScanDecision.class);
+        int framesWithCode;
+        long wallNanos;
+
+        public int frames() {
+            return decode.count();
+        }
+
+        public int framesWithCode() {
+            return framesWithCode;
+        }
+
+        public int lookups() {
+            return endToEnd.count();
+        }
+
+        public LatencyRecorder decodeLatency() {
+            return decode;
+        }
+
+        public LatencyRecorder endToEndLatency() {
+            return endToEnd;
+        }
+
+        public Map<ScanDecision, Integer> decisions() {
+            return decisions;
+        }
+
+        public double framesPerSecond() {
+            return frames() / seconds();
+        }
+
+        public double decodesPerSecond() {
+            return framesWithCode / seconds();
+        }
+
+        private double seconds() {
+            return wallNanos / (double) TimeUnit.SECONDS.toNanos(1);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "frames=%d decoded=%d lookups=%d wall=%.2fs%n"
+                            + "throughput: %.1f frames/s, %.1f decodes/s%n"
+                            + "decode:     %s%n"
+                            + "end-to-end: %s%n"
+                            + "decisions:  %s",
+                    frames(), framesWithCode, lookups(), seconds(),
+                    framesPerSecond(), decodesPerSecond(),
+                    decode.summary(), endToEnd.summary(), decisions);
+        }
+    }
+
+    private static final class TimedDecoder implements FrameDecoder {
+        private final FrameDecoder delegate;
+        private final Report report;
+
+        TimedDecoder(FrameDecoder delegate, Report report) {
+            this.delegate = delegate;
+            this.report = report;
+        }
+
+        @Override
+        public String decode(LumaFrame frame) {
+            long start = System.nanoTime();
+            String code = delegate.decode(frame);
+            report.decode.record(System.nanoTime() - start);
+            if (code != null) {
+                report.framesWithCode++;
+            }
+            return code;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.bedayia.tickets.core.replay;
+
+import com.bedayia.tickets.core.ZxingFrameDecoder;
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * Command line entry point for {@code ./gradlew :scan-core:replay}.
+ *
+ * <pre>
+ *   --corpus DIR            replay recorded frames / QR photos instead of a synthetic session
+ *   --codes N               synthetic corpus: number of distinct codes (default 100)
+ *   --frame-size PX         synthetic corpus: square frame edge (default 480)
+ *   --iterations N          passes over the corpus (default 5)
+ *   --warmup N              untimed passes first, to let the JIT settle (default 2)
+ *   --lookup-latency-ms N   simulated tickets/get_data round trip (default 40)
+ *   --guests N              invitees per code in the simulated lookup (default 4)
+ * </pre>
+ */
+public final class ReplayMain {
+    private static final long DEDUPE_WINDOW_MILLIS = 3000;
+
+    private ReplayMain() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        String corpusDir = null;
+        int codes = 100;
+        int frameSize = 480;
+        int iterations = 5;
+        int warmup = 2;
+        long lookupLatencyMillis = 40;
+        int guests = 4;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--corpus": corpusDir = args[++i]; break;
+                case "--codes": codes = Integer.parseInt(args[++i]); break;
+                case "--frame-size": frameSize = Integer.parseInt(args[++i]); break;
+                case "--iterations": iterations = Integer.parseInt(args[++i]); break;
+                case "--warmup": warmup = Integer.parseInt(args[++i]); break;
+                case "--lookup-latency-ms": lookupLatencyMillis = Long.parseLong(args[++i]); break;
+                case "--guests": guests = Integer.parseInt(args[++i]); break;
+                default:
+                    System.err.println("Unknown option " + args[i]);
+                    System.exit(2);
+            }
+        }
+
+        ReplayCorpus corpus = corpusDir != null
+                ? ReplayCorpus.load(Paths.get(corpusDir))
+                : ReplayCorpus.synthetic(codes, 3, 2, frameSize, 42L);
+        System.out.println("Corpus: " + (corpusDir != null ? corpusDir : "synthetic") + ", "
+                + corpus.getFrames().size() + " frames, " + corpus.distinctCodes().size() + " known codes");
+
+        try (InMemoryLookup lookup = new InMemoryLookup(corpus.distinctCodes(), guests, lookupLatencyMillis)) {
+            ReplayHarness harness = new ReplayHarness(corpus, new ZxingFrameDecoder(), lookup, DEDUPE_WINDOW_MILLIS);
+            if (warmup > 0) {
+                harness.run(warmup);
+            }
+            System.out.println(harness.run(iterations));
+        }
+    }
+}
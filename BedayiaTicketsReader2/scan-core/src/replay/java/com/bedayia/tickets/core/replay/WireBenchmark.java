@@ -0,0 +1,136 @@
+package com.bedayia.tickets.core.replay;
+
+import com.bedayia.tickets.Invitee;
+import com.bedayia.tickets.core.InviteeCbor;
+import com.bedayia.tickets.core.InviteeJson;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Bytes on the wire and encode/decode cost of the invitee list as JSON vs the
+ * compact CBOR rows, each with and without gzip. Entry point for
+ * {@code ./gradlew :scan-core:wireBenchmark}.
+ *
+ * <pre>
+ *   --sizes N,N,...   party sizes to measure (default 5,500: a family and a whole class)
+ *   --iterations N    timed encode/decode rounds per size (default 2000)
+ * </pre>
+ */
+public final class WireBenchmark {
+    private static final String[] FIRST_NAMES = {
+            "Mohammed", "Ahmed", "Fatima", "Mariam", "Omar", "Youssef", "Nour", "Salma", "محمد", "فاطمة"
+    };
+    private static final String[] LAST_NAMES = {
+            "Hassan", "Ibrahim", "El Sayed", "Abdelrahman", "Mostafa", "عبد الله", "محمود"
+    };
+
+    // Keeps the JIT from discarding the timed loops
+    private static volatile long sink;
+
+    private WireBenchmark() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        int[] sizes = {5, 500};
+        int iterations = 2000;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--sizes":
+                    String[] parts = args[++i].split(",");
+                    sizes = new int[parts.length];
+                    for (int p = 0; p < parts.length; p++) {
+                        sizes[p] = Integer.parseInt(parts[p].trim());
+                    }
+                    break;
+                case "--iterations": iterations = Integer.parseInt(args[++i]); break;
+                default:
+                    System.err.println("Unknown option " + args[i]);
+                    System.exit(2);
+            }
+        }
+
+        System.out.println(String.format(Locale.US, "%-8s %-6s %10s %10s %12s %12s",
+                "invitees", "format", "bytes", "gzip bytes", "encode us", "decode us"));
+        for (int size : sizes) {
+            List<Invitee> party = party(size, new Random(size));
+            measure(party, "json", iterations);
+            measure(party, "cbor", iterations);
+        }
+    }
+
+    private static void measure(List<Invitee> party, String format, int iterations) throws IOException {
+        boolean cbor = format.equals("cbor");
+        byte[] encoded = encode(party, cbor);
+        int gzipped = gzip(encoded).length;
+
+        // Warm up both paths before timing
+        for (int i = 0; i < iterations; i++) {
+            decode(encode(party, cbor), cbor);
+        }
+
+        int rounds = iterations;
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            sink += encode(party, cbor).length;
+        }
+        double encodeMicros = (System.nanoTime() - start) / 1000.0 / rounds;
+
+        start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            sink += decode(encoded, cbor).size();
+        }
+        double decodeMicros = (System.nanoTime() - start) / 1000.0 / rounds;
+
+        System.out.println(String.format(Locale.US, "%-8d %-6s %10d %10d %12.1f %12.1f",
+                party.size(), format, encoded.length, gzipped, encodeMicros, decodeMicros));
+    }
+
+    private static byte[] encode(List<Invitee> party, boolean cbor) {
+        return cbor ? InviteeCbor.encode(party) : InviteeJson.toJson(party).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<Invitee> decode(byte[] data, boolean cbor) throws IOException {
+        return cbor ? InviteeCbor.decode(data) : InviteeJson.parseList(new String(data, StandardCharsets.UTF_8));
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    // Shaped like tickets/get_data: one main invitee per student followed by their guests
+    private static List<Invitee> party(int size, Random random) {
+        List<Invitee> party = new ArrayList<>(size);
+        int student = 10000;
+        while (party.size() < size) {
+            student++;
+            String studentName = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " "
+                    + LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+            int guests = Math.min(size - party.size(), 1 + random.nextInt(5));
+            for (int g = 0; g < guests; g++) {
+                String name = g == 0 ? studentName : studentName + " Guest " + g;
+                boolean attended = random.nextInt(3) == 0;
+                Invitee invitee = new Invitee();
+                invitee.setMainInvitee(g == 0);
+                invitee.setNumberOfSeats(g == 0 ? guests : 0);
+                invitee.setInviteesQrcodeText("S" + student + name);
+                invitee.setInviteesName(name);
+                invitee.setInviteesAttendance(attended);
+                invitee.setInviteesAttendanceTime(attended
+                        ? String.format(Locale.US, "2025-06-20 18:%02d:%02d", random.nextInt(60), random.nextInt(60))
+                        : null);
+                party.add(invitee);
+            }
+        }
+        return party;
+    }
+}
@@ -0,0 +1,140 @@
+package com.bedayia.tickets.core;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class AdaptiveScanPolicyTest {
+    private static final long FRAME_NANOS = TimeUnit.SECONDS.toNanos(1) / 30;
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void quietScannerSkipsFramesUntilSomethingMoves() {
+        AdaptiveScanPolicy policy = new AdaptiveScanPolicy(4_000, 30_000, 500);
+        long now = 0;
+        int analyzed = 0;
+        for (int frame = 0; frame < 30 * 10; frame++, now += FRAME_NANOS) {
+            if (policy.shouldAnalyze(now, false)) {
+                analyzed++;
+            }
+        }
+        // Every frame for the first 4s, then two a second
+        assertTrue("analyzed " + analyzed, analyzed >= 120 && analyzed <= 134);
+        assertTrue(policy.isIdle(now));
+
+        assertTrue("motion must be decoded on the same frame", policy.shouldAnalyze(now, true));
+        now += FRAME_NANOS;
+        assertTrue(policy.shouldAnalyze(now, false));
+        assertFalse(policy.isIdle(now));
+    }
+
+    @Test
+    public void partialDetectionKeepsTheScannerActive() {
+        AdaptiveScanPolicy policy = new AdaptiveScanPolicy(4_000, 30_000, 500);
+        long now = 0;
+        policy.shouldAnalyze(now, false);
+        for (int second = 1; second <= 10; second++) {
+            now = second * SECOND;
+            assertTrue(policy.shouldAnalyze(now, false));
+            policy.onDecoded(now, false, true);
+        }
+        assertFalse(policy.isIdle(now + FRAME_NANOS));
+    }
+
+    @Test
+    public void resolutionDropsAfterALongQuietSpellAndComesBackOnMotion() {
+        AdaptiveScanPolicy policy = new AdaptiveScanPolicy(4_000, 30_000, 500);
+        policy.shouldAnalyze(0, false);
+        assertEquals(AdaptiveScanPolicy.Resolution.HIGH, policy.resolution(29 * SECOND));
+        assertEquals(AdaptiveScanPolicy.Resolution.LOW, policy.resolution(31 * SECOND));
+
+        policy.shouldAnalyze(32 * SECOND, true);
+        assertEquals(AdaptiveScanPolicy.Resolution.HIGH, policy.resolution(32 * SECOND));
+    }
+
+    @Test
+    public void thermalStatusCapsTheRateAndResolution() {
+        AdaptiveScanPolicy policy = new AdaptiveScanPolicy(4_000, 30_000, 500);
+        policy.setThermalStatus(AdaptiveScanPolicy.THERMAL_MODERATE);
+        assertEquals(10, analyzedInOneSecondOfMotion(policy, 0));
+        assertEquals(AdaptiveScanPolicy.Resolution.HIGH, policy.resolution(SECOND));
+
+        policy.setThermalStatus(AdaptiveScanPolicy.THERMAL_SEVERE);
+        assertEquals(5, analyzedInOneSecondOfMotion(policy, 2 * SECOND));
+        assertEquals(AdaptiveScanPolicy.Resolution.LOW, policy.resolution(3 * SECOND));
+
+        policy.setThermalStatus(AdaptiveScanPolicy.THERMAL_NONE);
+        assertEquals(30, analyzedInOneSecondOfMotion(policy, 4 * SECOND));
+    }
+
+    @Test
+    public void ceremonyCostsFarFewerFramesPerScan() {
+        // An hour at 30 fps, a guest every 45s: a second of motion, the code readable after 0.5s
+        AdaptiveScanPolicy adaptive = new AdaptiveScanPolicy(4_000, 30_000, 500);
+        long frames = 0;
+        long guests = 0;
+        for (long now = 0; now < 3600 * SECOND; now += FRAME_NANOS, frames++) {
+            long sinceArrival = now % (45 * SECOND);
+            boolean presenting = sinceArrival < SECOND;
+            boolean readable = sinceArrival >= SECOND / 2 && sinceArrival < SECOND / 2 + FRAME_NANOS;
+            if (adaptive.shouldAnalyze(now, presenting)) {
+                adaptive.onDecoded(now, readable, presenting && !readable);
+                if (readable) {
+                    adaptive.onScan();
+                    guests++;
+                }
+            }
+        }
+        double fullRate = frames / (double) guests;
+        System.out.printf(Locale.US, "%d guests in an hour: %.0f frames/scan at full rate, adaptive %s%n",
+                guests, fullRate, adaptive.summary());
+        assertEquals(80, guests);
+        assertTrue(adaptive.framesPerScan() < fullRate / 4);
+    }
+
+    @Test
+    public void motionDetectorIgnoresNoiseButNotMovement() {
+        int width = 640;
+        int height = 480;
+        byte[] scene = texture(width, height, 0);
+        MotionDetector detector = new MotionDetector();
+        assertFalse("first frame is only a reference", detector.update(ByteBuffer.wrap(scene), width, height, width));
+
+        byte[] noisy = scene.clone();
+        Random random = new Random(7);
+        for (int i = 0; i < noisy.length; i++) {
+            noisy[i] = (byte) Math.max(0, Math.min(255, (noisy[i] & 0xff) + random.nextInt(11) - 5));
+        }
+        assertFalse(detector.update(ByteBuffer.wrap(noisy), width, height, width));
+
+        assertTrue(detector.update(ByteBuffer.wrap(texture(width, height, 37)), width, height, width));
+        assertFalse("a new resolution is not motion",
+                detector.update(ByteBuffer.wrap(texture(320, 240, 11)), 320, 240, 320));
+    }
+
+    private static int analyzedInOneSecondOfMotion(AdaptiveScanPolicy policy, long start) {
+        int analyzed = 0;
+        for (long now = start; now < start + SECOND - FRAME_NANOS / 2; now += FRAME_NANOS) {
+            if (policy.shouldAnalyze(now, true)) {
+                analyzed++;
+            }
+        }
+        return analyzed;
+    }
+
+    // Diagonal stripes, shifted to simulate the phone or the guest moving
+    private static byte[] texture(int width, int height, int shift) {
+        byte[] luma = new byte[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                luma[y * width + x] = (byte) (((x + y + shift) / 40) % 2 == 0 ? 40 : 210);
+            }
+        }
+        return luma;
+    }
+}
@@ -0,0 +1,212 @@
+package com.bedayia.tickets.core;
+
+import com.bedayia.tickets.Invitee;
+import com.google.gson.Gson;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class AttendanceStreamTest {
+    private static final int GATES = 6;
+
+    private StreamServer server;
+    private final List<AttendanceStreamClient> clients = new ArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        server = new StreamServer();
+    }
+
+    @After
+    public void tearDown() {
+        clients.forEach(AttendanceStreamClient::close);
+        server.close();
+    }
+
+    @Test
+    public void everyGateSeesACheckInWithinASecond() throws Exception {
+        List<AttendanceStreamClient> gates = connectGates(GATES);
+        CountDownLatch delivered = new CountDownLatch(GATES);
+        LatencyRecorder latency = new LatencyRecorder();
+        long[] publishedAt = new long[1];
+        for (AttendanceStreamClient gate : gates) {
+            gate.setListener(change -> {
+                latency.record(System.nanoTime() - publishedAt[0]);
+                delivered.countDown();
+            });
+        }
+
+        publishedAt[0] = System.nanoTime();
+        server.publish(new AttendanceChange(1, "S10001Student 1", "Guest 1", true, "2025-06-20 18:04:11"));
+
+        assertTrue("not every gate got the check-in", delivered.await(1, TimeUnit.SECONDS));
+        for (AttendanceStreamClient gate : gates) {
+            assertTrue(gate.getState().isAdmitted("S10001Student 1", "Guest 1"));
+        }
+        System.out.println("push to " + GATES + " gates: " + latency.summary());
+    }
+
+    @Test
+    public void reconnectingGateCatchesUpFromLastEventId() throws Exception {
+        AttendanceStreamClient gate = connectGates(1).get(0);
+        server.publish(new AttendanceChange(1, "S1", "A", true, null));
+        awaitApplied(gate, 1);
+
+        // AP drops the connection; a check-in happens while the gate is away
+        server.dropConnections();
+        server.publish(new AttendanceChange(1, "S2", "B", true, null));
+
+        awaitApplied(gate, 2);
+        assertTrue(gate.getState().isAdmitted("S2", "B"));
+        assertEquals(2, gate.getConnects());
+        assertEquals(0, gate.getResets());
+    }
+
+    @Test
+    public void unmarkAndOverlay() throws Exception {
+        AttendanceStreamClient gate = connectGates(1).get(0);
+        server.publish(new AttendanceChange(1, "S1", "A", true, "2025-06-20 18:00:00"));
+        server.publish(new AttendanceChange(1, "S1", "B", true, "2025-06-20 18:00:01"));
+        server.publish(new AttendanceChange(1, "S1", "B", false, null));
+        awaitApplied(gate, 3);
+
+        Invitee a = invitee("S1", "A");
+        Invitee b = invitee("S1", "B");
+        gate.getState().overlay(java.util.Arrays.asList(a, b));
+        assertTrue(a.isInviteesAttendance());
+        assertEquals("2025-06-20 18:00:00", a.getInviteesAttendanceTime());
+        assertFalse(b.isInviteesAttendance());
+    }
+
+    @Test
+    public void ownCheckInsOverlayWithATime() {
+        AttendanceState state = new AttendanceState();
+        Invitee ticked = invitee("S1", "A");
+        ticked.setInviteesAttendance(true);
+        state.recordLocal(Collections.singletonList(ticked));
+
+        Invitee reopened = invitee("S1", "A");
+        state.overlay(Collections.singletonList(reopened));
+        assertTrue(reopened.isInviteesAttendance());
+        assertTrue("a re-opened ticket must not look newly ticked", reopened.hasAttendanceTime());
+    }
+
+    private List<AttendanceStreamClient> connectGates(int count) throws InterruptedException {
+        List<AttendanceStreamClient> gates = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            AttendanceStreamClient gate = new AttendanceStreamClient(server::baseUrl, () -> "key",
+                    new AttendanceState(), runnable -> {
+                        Thread thread = new Thread(runnable, "attendance-stream-test");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            gate.start();
+            gates.add(gate);
+            clients.add(gate);
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        while (server.subscribers() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, server.subscribers());
+        return gates;
+    }
+
+    private static void awaitApplied(AttendanceStreamClient gate, long count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (gate.getState().getChangesApplied() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, gate.getState().getChangesApplied());
+    }
+
+    private static Invitee invitee(String code, String name) {
+        Invitee invitee = new Invitee();
+        invitee.setInviteesQrcodeText(code);
+        invitee.setInviteesName(name);
+        return invitee;
+    }
+
+    /** Loopback stand-in for tickets/stream, with the same id / Last-Event-ID replay rules. */
+    private static final class StreamServer {
+        private final HttpServer http;
+        private final ExecutorService executor = Executors.newCachedThreadPool();
+        private final List<OutputStream> streams = new CopyOnWriteArrayList<>();
+        private final List<String> backlog = Collections.synchronizedList(new ArrayList<>());
+        private final Gson gson = new Gson();
+
+        StreamServer() throws IOException {
+            http = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 64);
+            http.createContext("/tickets/stream", this::subscribe);
+            http.setExecutor(executor);
+            http.start();
+        }
+
+        String baseUrl() {
+            return "http://127.0.0.1:" + http.getAddress().getPort() + "/";
+        }
+
+        int subscribers() {
+            return streams.size();
+        }
+
+        synchronized void publish(AttendanceChange change) {
+            String event = "id: " + (backlog.size() + 1) + "\nevent: attendance\ndata: " + gson.toJson(change) + "\n\n";
+            backlog.add(event);
+            for (OutputStream out : streams) {
+                write(out, event);
+            }
+        }
+
+        void dropConnections() throws IOException {
+            for (OutputStream out : streams) {
+                streams.remove(out);
+                out.close();
+            }
+        }
+
+        private synchronized void subscribe(HttpExchange exchange) throws IOException {
+            exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream out = exchange.getResponseBody();
+            write(out, "retry: 1000\n\n");
+            String lastEventId = exchange.getRequestHeaders().getFirst("Last-Event-ID");
+            int from = lastEventId != null ? Integer.parseInt(lastEventId) : backlog.size();
+            for (String event : backlog.subList(from, backlog.size())) {
+                write(out, event);
+            }
+            streams.add(out);
+        }
+
+        private void write(OutputStream out, String text) {
+            try {
+                out.write(text.getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            } catch (IOException e) {
+                streams.remove(out);
+            }
+        }
+
+        void close() {
+            http.stop(0);
+            executor.shutdownNow();
+        }
+    }
+}
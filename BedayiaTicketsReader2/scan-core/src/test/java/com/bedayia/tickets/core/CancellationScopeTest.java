@@ -0,0 +1,36 @@
+package com.bedayia.tickets.core;
+
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.*;
+
+public class CancellationScopeTest {
+
+    @Test
+    public void closeCancelsTrackedButNotObservedWork() {
+        CancellationScope scope = new CancellationScope();
+        CompletableFuture<String> lookup = new CompletableFuture<>();
+        CompletableFuture<String> upload = new CompletableFuture<>();
+
+        scope.track(lookup);
+        CompletableFuture<String> uploadCallback = scope.observe(upload);
+        assertEquals(2, scope.pendingCount());
+
+        scope.close();
+
+        assertTrue(lookup.isCancelled());
+        assertTrue(uploadCallback.isCancelled());
+        assertFalse(upload.isDone());
+        assertTrue(scope.track(new CompletableFuture<>()).isCancelled());
+    }
+
+    @Test
+    public void completedFuturesLeaveTheScope() {
+        CancellationScope scope = new CancellationScope();
+        CompletableFuture<String> lookup = scope.track(new CompletableFuture<>());
+        lookup.complete("done");
+        assertEquals(0, scope.pendingCount());
+    }
+}
@@ -0,0 +1,138 @@
+package com.bedayia.tickets.core;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class EndpointPoolTest {
+    private MockBackend first;
+    private MockBackend second;
+    private ScheduledExecutorService timer;
+    private EndpointPool pool;
+
+    @Before
+    public void setUp() throws Exception {
+        first = new MockBackend(4, 20);
+        second = new MockBackend(4, 20);
+        timer = Executors.newSingleThreadScheduledExecutor();
+        pool = new EndpointPool(Arrays.asList(
+                new BackendEndpoint(first.baseUrl(), new CircuitBreaker(3, 60_000)),
+                new BackendEndpoint(second.baseUrl(), new CircuitBreaker(3, 60_000))),
+                timer, 500, 10);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        first.close();
+        second.close();
+        timer.shutdownNow();
+    }
+
+    @Test
+    public void slowEndpointIsHedgedAtItsObservedP95() throws Exception {
+        // Learn normal latency; the first endpoint is the faster one and should become primary
+        second.setDelayMillis(60);
+        for (int i = 0; i < 100; i++) {
+            lookup(true).get(5, TimeUnit.SECONDS);
+        }
+        BackendEndpoint a = pool.getEndpoints().get(0);
+        BackendEndpoint b = pool.getEndpoints().get(1);
+        BackendEndpoint primary = a.getEwmaNanos() <= b.getEwmaNanos() ? a : b;
+        long hedgeDelay = pool.hedgeDelayMillis(primary);
+
+        // The primary stalls (AP hiccup); the other endpoint is healthy
+        MockBackend stalledServer = primary == a ? first : second;
+        MockBackend healthyServer = primary == a ? second : first;
+        stalledServer.setDelayMillis(1500);
+        healthyServer.setDelayMillis(20);
+        LatencyRecorder stalled = new LatencyRecorder();
+        for (int i = 0; i < 5; i++) {
+            long started = System.nanoTime();
+            lookup(true).get(5, TimeUnit.SECONDS);
+            stalled.record(System.nanoTime() - started);
+        }
+        long worstMillis = TimeUnit.NANOSECONDS.toMillis(stalled.max());
+
+        System.out.println("hedge delay (primary p95) " + hedgeDelay + "ms, stalled lookups " + stalled.summary());
+        // Either the hedge answered or selection already moved to the healthy endpoint
+        assertTrue("worst " + worstMillis + "ms", worstMillis < hedgeDelay + 400);
+    }
+
+    @Test
+    public void hedgeWinsAndCancelsTheStalledRequest() throws Exception {
+        first.setDelayMillis(1500);
+        long started = System.nanoTime();
+        lookup(true).get(5, TimeUnit.SECONDS);
+        long tookMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+        // No history yet, so the hedge goes out after the 500ms default
+        assertTrue("took " + tookMillis + "ms", tookMillis >= 500 && tookMillis < 1200);
+        assertEquals(1, pool.getHedgesSent());
+        assertEquals(1, pool.getHedgesWon());
+    }
+
+    @Test
+    public void failingEndpointFailsOverThenTripsItsBreaker() throws Exception {
+        first.setFailing(true);
+        for (int i = 0; i < 6; i++) {
+            lookup(false).get(5, TimeUnit.SECONDS);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, pool.getEndpoints().get(0).getBreaker().getState());
+
+        int failingHits = first.requests.get();
+        lookup(false).get(5, TimeUnit.SECONDS);
+        assertEquals("open breaker must not be called", failingHits, first.requests.get());
+    }
+
+    @Test
+    public void allBreakersOpenFailsFastToFallback() throws Exception {
+        first.setFailing(true);
+        second.setFailing(true);
+        for (int i = 0; i < 3; i++) {
+            try {
+                lookup(false).get(5, TimeUnit.SECONDS);
+                fail("expected failure");
+            } catch (ExecutionException expected) {
+                // still learning
+            }
+        }
+
+        long started = System.nanoTime();
+        try {
+            lookup(true).get(5, TimeUnit.SECONDS);
+            fail("expected fast failure");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof EndpointUnavailableException);
+        }
+        assertTrue(System.nanoTime() - started < TimeUnit.MILLISECONDS.toNanos(20));
+    }
+
+    @Test
+    public void clientErrorsDoNotCountAgainstTheEndpoint() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            CompletableFuture<String> rejected = pool.call(false,
+                    endpoint -> Futures.failed(new ApiException("Invalid or expired API key", 401)));
+            try {
+                rejected.get(5, TimeUnit.SECONDS);
+                fail("expected failure");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof ApiException);
+            }
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, pool.getEndpoints().get(0).getBreaker().getState());
+        assertEquals(CircuitBreaker.State.CLOSED, pool.getEndpoints().get(1).getBreaker().getState());
+    }
+
+    private CompletableFuture<String> lookup(boolean hedged) {
+        return pool.call(hedged, endpoint -> first.post(endpoint.getBaseUrl(), "tickets/get_data"));
+    }
+}
@@ -0,0 +1,93 @@
+package com.bedayia.tickets.core;
+
+import com.bedayia.tickets.Invitee;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class InviteeCborTest {
+
+    @Test
+    public void roundTripsEveryField() throws IOException {
+        Invitee main = invitee("S10001محمد أحمد", "محمد أحمد", true, 4, true, "2025-06-20 18:04:11");
+        Invitee guest = invitee("S10001Guest 1", "Guest 1", false, 0, false, null);
+        StringBuilder longName = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            longName.append('x');
+        }
+        Invitee wide = invitee("S10002" + longName, longName.toString(), false, 70000, false, null);
+
+        List<Invitee> decoded = InviteeCbor.decode(InviteeCbor.encode(Arrays.asList(main, guest, wide)));
+
+        assertEquals(3, decoded.size());
+        assertSame(main, decoded.get(0));
+        assertSame(guest, decoded.get(1));
+        assertSame(wide, decoded.get(2));
+    }
+
+    @Test
+    public void emptyListIsOneByte() throws IOException {
+        byte[] encoded = InviteeCbor.encode(Collections.emptyList());
+        assertArrayEquals(new byte[]{(byte) 0x80}, encoded);
+        assertTrue(InviteeCbor.decode(encoded).isEmpty());
+    }
+
+    @Test
+    public void isSmallerThanJsonForATypicalParty() {
+        List<Invitee> party = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            party.add(invitee("S10042Guest " + i, "Guest " + i, i == 0, i == 0 ? 5 : 0, false, null));
+        }
+        int json = InviteeJson.toJson(party).getBytes(java.nio.charset.StandardCharsets.UTF_8).length;
+        int cbor = InviteeCbor.encode(party).length;
+        assertTrue("cbor " + cbor + " vs json " + json, cbor * 3 < json);
+    }
+
+    @Test
+    public void rejectsTruncatedInput() {
+        byte[] encoded = InviteeCbor.encode(Collections.singletonList(
+                invitee("S10001Student 1", "Student 1", true, 1, false, null)));
+        try {
+            InviteeCbor.decode(Arrays.copyOf(encoded, encoded.length - 3));
+            fail("expected IOException");
+        } catch (IOException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void skipsFieldsAddedByNewerPeers() throws IOException {
+        // [[ "S1", "A", true, 1, false, null, 7, "extra" ]]
+        byte[] encoded = {(byte) 0x81, (byte) 0x88, 0x62, 'S', '1', 0x61, 'A', (byte) 0xf5, 0x01,
+                (byte) 0xf4, (byte) 0xf6, 0x07, 0x65, 'e', 'x', 't', 'r', 'a'};
+        List<Invitee> decoded = InviteeCbor.decode(encoded);
+        assertSame(invitee("S1", "A", true, 1, false, null), decoded.get(0));
+    }
+
+    private static void assertSame(Invitee expected, Invitee actual) {
+        assertEquals(expected.getInviteesQrcodeText(), actual.getInviteesQrcodeText());
+        assertEquals(expected.getInviteesName(), actual.getInviteesName());
+        assertEquals(expected.isMainInvitee(), actual.isMainInvitee());
+        assertEquals(expected.getNumberOfSeats(), actual.getNumberOfSeats());
+        assertEquals(expected.isInviteesAttendance(), actual.isInviteesAttendance());
+        assertEquals(expected.getInviteesAttendanceTime(), actual.getInviteesAttendanceTime());
+    }
+
+    private static Invitee invitee(String code, String name, boolean main, int seats, boolean attended,
+                                   String time) {
+        Invitee invitee = new Invitee();
+        invitee.setInviteesQrcodeText(code);
+        invitee.setInviteesName(name);
+        invitee.setMainInvitee(main);
+        invitee.setNumberOfSeats(seats);
+        invitee.setInviteesAttendance(attended);
+        invitee.setInviteesAttendanceTime(time);
+        return invitee;
+    }
+}
@@ -0,0 +1,62 @@
+package com.bedayia.tickets.core;
+
+import com.bedayia.tickets.Invitee;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class InviteeJsonTest {
+    private static final int GUESTS_PER_TICKET = 4;
+
+    @Test
+    public void readsTheBackendsNoTimeSpellings() {
+        List<Invitee> parsed = InviteeJson.parseList("[{\"invitees_attendance_time\":false},"
+                + "{\"invitees_attendance_time\":null},{\"invitees_attendance_time\":\"\"},"
+                + "{\"invitees_attendance_time\":\"2025-06-20 18:04:11\"}]");
+
+        assertFalse(parsed.get(0).hasAttendanceTime());
+        assertFalse(parsed.get(1).hasAttendanceTime());
+        assertFalse(parsed.get(2).hasAttendanceTime());
+        assertEquals("2025-06-20 18:04:11", parsed.get(3).getInviteesAttendanceTime());
+        assertFalse(InviteeJson.toJson(parsed.subList(0, 1)).contains("attendance_time"));
+    }
+
+    @Test
+    public void sharesOneCodeStringPerTicket() {
+        List<Invitee> parsed = InviteeJson.parseList(eventJson(8));
+        assertSame(parsed.get(0).getInviteesQrcodeText(), parsed.get(3).getInviteesQrcodeText());
+        assertNotSame(parsed.get(3).getInviteesQrcodeText(), parsed.get(4).getInviteesQrcodeText());
+    }
+
+    // How the backend client reads get_data: the "message" array of the parsed body
+    @Test
+    public void responseMessageGetsTheSameTreatment() {
+        JsonObject body = JsonParser.parseString("{\"message\":" + eventJson(8) + "}").getAsJsonObject();
+        List<Invitee> parsed = InviteeJson.parseList(body.getAsJsonArray("message"));
+        assertEquals(8, parsed.size());
+        assertFalse(parsed.get(0).hasAttendanceTime());
+        assertSame(parsed.get(0).getInviteesQrcodeText(), parsed.get(3).getInviteesQrcodeText());
+    }
+
+    // One student and three guests per ticket, Arabic names
+    private static String eventJson(int invitees) {
+        StringBuilder json = new StringBuilder(invitees * 160).append('[');
+        for (int i = 0; i < invitees; i++) {
+            int ticket = i / GUESTS_PER_TICKET;
+            int guest = i % GUESTS_PER_TICKET;
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"main_invitee\":").append(guest == 0)
+                    .append(",\"number_of_seats\":").append(GUESTS_PER_TICKET)
+                    .append(",\"invitees_qrcode_text\":\"S").append(10000 + ticket)
+                    .append("\",\"invitees_name\":\"").append(guest == 0 ? "محمد أحمد " + ticket : "ضيف " + guest)
+                    .append("\",\"invitees_attendance\":false,\"invitees_attendance_time\":false}");
+        }
+        return json.append(']').toString();
+    }
+}
@@ -0,0 +1,117 @@
+package com.bedayia.tickets.core;
+
+import com.bedayia.tickets.Invitee;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+public class InviteeTableTest {
+    private static final int INVITEES = 50_000;
+    private static final int GUESTS_PER_TICKET = 4;
+
+    @Test
+    public void looksUpTheGuestsOnACode() {
+        InviteeTable table = InviteeTable.of(InviteeJson.parseList(eventJson(40)));
+
+        assertEquals(40, table.size());
+        assertEquals(10, table.codeCount());
+        List<Invitee> guests = table.lookup(code(3));
+        assertEquals(GUESTS_PER_TICKET - 1, guests.size());
+        for (int i = 0; i < guests.size(); i++) {
+            assertEquals(code(3), guests.get(i).getInviteesQrcodeText());
+            assertEquals(guestName(3, i + 1), guests.get(i).getInviteesName());
+            assertEquals(GUESTS_PER_TICKET, guests.get(i).getNumberOfSeats());
+            assertFalse(guests.get(i).isInviteesAttendance());
+            assertFalse(guests.get(i).hasAttendanceTime());
+        }
+        assertTrue(table.lookup("S99999nobody").isEmpty());
+    }
+
+    @Test
+    public void keepsRowsOfACodeTogetherWhateverTheInputOrder() {
+        InviteeTable.Builder builder = new InviteeTable.Builder();
+        builder.add("A", "a1", false, 2, false, AttendanceTimes.NONE);
+        builder.add("B", "b1", false, 1, false, AttendanceTimes.NONE);
+        builder.add("A", "a2", false, 2, true, 1_750_000_000_000L);
+        InviteeTable table = builder.build();
+
+        int a = table.findCode("A");
+        assertEquals(2, table.firstRow(a + 1) - table.firstRow(a));
+        assertEquals("a1", table.name(table.firstRow(a)));
+        assertEquals("a2", table.name(table.firstRow(a) + 1));
+        assertEquals(1_750_000_000_000L, table.attendanceMillis(table.firstRow(a) + 1));
+        assertEquals(-1, table.findCode("C"));
+    }
+
+    @Test
+    public void marksAttendanceOnce() {
+        InviteeTable table = InviteeTable.of(InviteeJson.parseList(eventJson(8)));
+        int row = table.firstRow(table.findCode(code(1))) + 1;
+
+        assertTrue(table.markAttended(row, 1_750_000_000_000L));
+        assertFalse(table.markAttended(row, 1_750_000_999_000L));
+        assertTrue(table.isAttended(row));
+        Invitee guest = table.lookup(code(1)).get(0);
+        assertTrue(guest.isInviteesAttendance());
+        assertEquals(1_750_000_000_000L, guest.getAttendanceTimeMillis());
+        assertEquals(AttendanceTimes.format(1_750_000_000_000L), guest.getInviteesAttendanceTime());
+    }
+
+    @Test
+    public void holdsAWholeEventInAFractionOfTheObjectHeap() {
+        long empty = usedHeap();
+        List<Invitee> list = InviteeJson.parseList(eventJson(INVITEES));
+        long listBytes = usedHeap() - empty;
+
+        InviteeTable table = InviteeTable.of(list);
+        list = null;
+        long tableBytes = usedHeap() - empty;
+
+        System.out.printf(Locale.US, "%d invitees: List<Invitee> %.1f MB, InviteeTable %.1f MB (%.0f%%)%n",
+                table.size(), listBytes / 1e6, tableBytes / 1e6, 100.0 * tableBytes / listBytes);
+        assertEquals(INVITEES, table.size());
+        assertTrue("table " + tableBytes + " vs list " + listBytes, tableBytes * 2 < listBytes);
+    }
+
+    // A graduation night: one student and three guests per ticket, Arabic names
+    private static String eventJson(int invitees) {
+        StringBuilder json = new StringBuilder(invitees * 160).append('[');
+        for (int i = 0; i < invitees; i++) {
+            int ticket = i / GUESTS_PER_TICKET;
+            int guest = i % GUESTS_PER_TICKET;
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"main_invitee\":").append(guest == 0)
+                    .append(",\"number_of_seats\":").append(GUESTS_PER_TICKET)
+                    .append(",\"invitees_qrcode_text\":\"").append(code(ticket))
+                    .append("\",\"invitees_name\":\"").append(guestName(ticket, guest))
+                    .append("\",\"invitees_attendance\":false,\"invitees_attendance_time\":false}");
+        }
+        return json.append(']').toString();
+    }
+
+    private static String code(int ticket) {
+        return "S" + (10000 + ticket) + "محمد أحمد " + ticket;
+    }
+
+    private static String guestName(int ticket, int guest) {
+        return guest == 0 ? "محمد أحمد " + ticket : "ضيف " + guest + " لمحمد أحمد " + ticket;
+    }
+
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long used = Long.MAX_VALUE;
+        // A few rounds so the collector has settled
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            used = Math.min(used, memory.getHeapMemoryUsage().getUsed());
+        }
+        return used;
+    }
+}
@@ -0,0 +1,103 @@
+package com.bedayia.tickets.core;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loopback stand-in for the tickets API. {@code workers} bounds how many
+ * requests it serves at once and every request takes {@code delayMillis}, which
+ * is enough to reproduce a slow or saturated venue server.
+ */
+final class MockBackend implements AutoCloseable {
+    private final HttpServer server;
+    private final ExecutorService workers;
+    private final ExecutorService clients = Executors.newCachedThreadPool();
+    private final AtomicLong delayMillis;
+    private volatile boolean failing;
+    final AtomicInteger requests = new AtomicInteger();
+
+    MockBackend(int workers, long delayMillis) throws IOException {
+        this.delayMillis = new AtomicLong(delayMillis);
+        this.workers = Executors.newFixedThreadPool(workers);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 128);
+        server.createContext("/", this::handle);
+        server.setExecutor(this.workers);
+        server.start();
+    }
+
+    String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    void setDelayMillis(long delayMillis) {
+        this.delayMillis.set(delayMillis);
+    }
+
+    // Answer every request with 503 until cleared
+    void setFailing(boolean failing) {
+        this.failing = failing;
+    }
+
+    CompletableFuture<String> post(String path) {
+        return post(baseUrl(), path);
+    }
+
+    // Issues a POST on a client thread; the future completes with the response body
+    CompletableFuture<String> post(String baseUrl, String path) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+                connection.setRequestMethod("POST");
+                connection.setDoOutput(true);
+                connection.getOutputStream().write("{}".getBytes(StandardCharsets.UTF_8));
+                try (InputStream in = connection.getInputStream()) {
+                    return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }, clients);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        exchange.getRequestBody().readAllBytes();
+        try {
+            Thread.sleep(delayMillis.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        byte[] body = "{\"success\":true,\"message\":[]}".getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(failing ? 503 : 200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        workers.shutdownNow();
+        clients.shutdownNow();
+        try {
+            workers.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.bedayia.tickets.core;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class OccupancyMirrorTest {
+
+    @Test
+    public void countsPushesAfterTheSnapshot() {
+        OccupancyMirror mirror = snapshot("k3x.10");
+        AtomicInteger notified = new AtomicInteger();
+        mirror.setListener(notified::incrementAndGet);
+
+        mirror.apply(checkIn(7, "Guest 1", true), "k3x.11");
+        mirror.apply(checkIn(7, "Guest 2", true), "k3x.12");
+
+        assertEquals(42, mirror.get(7).getAttended());
+        assertEquals(32, mirror.get(7).getGuestsAttended());
+        assertEquals(2, notified.get());
+    }
+
+    @Test
+    public void skipsPushesTheSnapshotAlreadyCounted() {
+        OccupancyMirror mirror = snapshot("k3x.10");
+
+        mirror.apply(checkIn(7, "Guest 1", true), "k3x.9");
+        mirror.apply(checkIn(7, "Guest 2", true), "k3x.10");
+
+        assertEquals(40, mirror.get(7).getAttended());
+    }
+
+    @Test
+    public void countsPushesFromANewServerBoot() {
+        OccupancyMirror mirror = snapshot("k3x.10");
+
+        mirror.apply(checkIn(7, "Guest 1", true), "m9q.1");
+
+        assertEquals(41, mirror.get(7).getAttended());
+    }
+
+    @Test
+    public void unmarkingLowersTheCountButNeverBelowZero() {
+        OccupancyMirror mirror = new OccupancyMirror();
+        mirror.reset(Collections.singletonList(new OccupancyMirror.EventCount(7, "Graduation", 4, 1, 3, 1, 3)),
+                null);
+
+        mirror.apply(checkIn(7, "Guest 1", false), null);
+        mirror.apply(checkIn(7, "Guest 2", false), null);
+
+        assertEquals(0, mirror.get(7).getAttended());
+        assertEquals(0, mirror.get(7).getGuestsAttended());
+    }
+
+    // The server pushes an earlier time for a guest already inside, and organisers re-save
+    @Test
+    public void countsTheSameCheckInOnce() {
+        OccupancyMirror mirror = snapshot("k3x.10");
+
+        mirror.apply(checkIn(7, "Guest 1", true), "k3x.11");
+        mirror.apply(checkIn(7, "Guest 1", true), "k3x.12");
+        assertEquals(41, mirror.get(7).getAttended());
+        assertEquals(31, mirror.get(7).getGuestsAttended());
+
+        mirror.apply(checkIn(7, "Guest 1", false), "k3x.13");
+        mirror.apply(checkIn(7, "Guest 1", false), "k3x.14");
+        assertEquals(40, mirror.get(7).getAttended());
+    }
+
+    @Test
+    public void aNewSnapshotForgetsThePushes() {
+        OccupancyMirror mirror = snapshot("k3x.10");
+        mirror.apply(checkIn(7, "Guest 1", true), "k3x.11");
+
+        mirror.reset(Collections.singletonList(new OccupancyMirror.EventCount(7, "Graduation", 200, 40, 150, 30, 160)),
+                "k3x.11");
+        mirror.apply(checkIn(7, "Guest 1", false), "k3x.12");
+
+        assertEquals(39, mirror.get(7).getAttended());
+    }
+
+    @Test
+    public void ignoresEventsNotInTheSnapshot() {
+        OccupancyMirror mirror = snapshot("k3x.10");
+
+        mirror.apply(checkIn(8, "Guest 1", true), "k3x.11");
+
+        assertNull(mirror.get(8));
+        assertEquals(1, mirror.snapshot().size());
+    }
+
+    private static OccupancyMirror snapshot(String streamId) {
+        OccupancyMirror mirror = new OccupancyMirror();
+        mirror.reset(Collections.singletonList(new OccupancyMirror.EventCount(7, "Graduation", 200, 40, 150, 30, 160)),
+                streamId);
+        return mirror;
+    }
+
+    private static AttendanceChange checkIn(int eventId, String guest, boolean attended) {
+        return new AttendanceChange(eventId, "S10001Student", guest, attended, null);
+    }
+}
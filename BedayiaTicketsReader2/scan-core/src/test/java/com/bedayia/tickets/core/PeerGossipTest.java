@@ -0,0 +1,221 @@
+package com.bedayia.tickets.core;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import static org.junit.Assert.*;
+
+public class PeerGossipTest {
+    private static final long SYNC_INTERVAL_MILLIS = 50;
+    private static final byte[] SECRET = "event-secret".getBytes(StandardCharsets.UTF_8);
+
+    private final List<PeerGossip> gates = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        gates.forEach(PeerGossip::close);
+    }
+
+    @Test
+    public void gatesConvergeDespiteLostDatagrams() throws Exception {
+        int gateCount = 5;
+        int checkInsPerGate = 20;
+        List<GateLedger> ledgers = new ArrayList<>();
+        for (int i = 0; i < gateCount; i++) {
+            GateLedger ledger = new GateLedger("gate-" + i);
+            PeerGossip gossip = new PeerGossip(ledger, SECRET, 0, Collections.emptyList(), null, SYNC_INTERVAL_MILLIS,
+                    PeerGossipTest::daemon);
+            gossip.start();
+            gossip.setDropRate(0.3);
+            ledgers.add(ledger);
+            gates.add(gossip);
+        }
+        // Ring: each gate is only configured with its neighbour and learns the rest from traffic
+        for (int i = 0; i < gateCount; i++) {
+            gates.get(i).addPeer(new InetSocketAddress("127.0.0.1", gates.get((i + 1) % gateCount).getLocalPort()));
+        }
+
+        long start = System.nanoTime();
+        for (int n = 0; n < checkInsPerGate; n++) {
+            for (int i = 0; i < gateCount; i++) {
+                GateLedger.Entry entry = ledgers.get(i).recordLocal("S1" + i + n, "Guest " + n,
+                        System.currentTimeMillis(), false);
+                gates.get(i).publish(entry);
+            }
+        }
+
+        int expected = gateCount * checkInsPerGate;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!allHave(ledgers, expected) && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        long convergedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("gates did not converge", allHave(ledgers, expected));
+        System.out.println(gateCount + " gates x " + checkInsPerGate + " check-ins, 30% datagram loss: converged in "
+                + convergedMillis + "ms");
+        for (GateLedger ledger : ledgers) {
+            assertTrue(ledger.isAdmitted("S130", "Guest 0"));
+        }
+    }
+
+    @Test
+    public void datagramsWithoutTheEventSecretAreDropped() throws Exception {
+        GateLedger ledger = new GateLedger("gate");
+        PeerGossip gate = new PeerGossip(ledger, SECRET, 0, Collections.emptyList(), null, SYNC_INTERVAL_MILLIS,
+                PeerGossipTest::daemon);
+        GateLedger forgedLedger = new GateLedger("intruder");
+        PeerGossip intruder = new PeerGossip(forgedLedger, "guessed".getBytes(StandardCharsets.UTF_8), 0,
+                Collections.emptyList(), null, SYNC_INTERVAL_MILLIS, PeerGossipTest::daemon);
+        gates.add(gate);
+        gates.add(intruder);
+        gate.start();
+        intruder.start();
+        intruder.addPeer(new InetSocketAddress("127.0.0.1", gate.getLocalPort()));
+
+        intruder.publish(forgedLedger.recordLocal("S1", "Guest 1", 1_000, false));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (gate.getDatagramsRejected() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue("forged datagrams not seen", gate.getDatagramsRejected() >= 2);
+        assertFalse(ledger.isAdmitted("S1", "Guest 1"));
+        assertTrue("an intruder must not become a peer", gate.getPeers().isEmpty());
+    }
+
+    // Arabic names take two bytes a character on the wire
+    @Test
+    public void repliesStayWithinOneDatagramWithNonAsciiNames() throws Exception {
+        int checkIns = 120;
+        GateLedger ledger = new GateLedger("gate");
+        for (int i = 0; i < checkIns; i++) {
+            ledger.recordLocal("S" + (10000 + i) + "محمد أحمد عبد الرحمن", "ضيف " + i + " لمحمد أحمد عبد الرحمن",
+                    1_750_000_000_000L + i, false);
+        }
+        PeerGossip gate = new PeerGossip(ledger, SECRET, 0, Collections.emptyList(), null, 60_000,
+                PeerGossipTest::daemon);
+        gates.add(gate);
+        gate.start();
+
+        try (DatagramSocket probe = new DatagramSocket(0)) {
+            probe.setSoTimeout(2_000);
+            byte[] sync = sign("{\"type\":\"sync\",\"from\":\"probe\"}".getBytes(StandardCharsets.UTF_8));
+            probe.send(new DatagramPacket(sync, sync.length, new InetSocketAddress("127.0.0.1", gate.getLocalPort())));
+
+            int received = 0;
+            int datagrams = 0;
+            byte[] buffer = new byte[65_536];
+            while (received < checkIns) {
+                DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                try {
+                    probe.receive(packet);
+                } catch (SocketTimeoutException e) {
+                    break;
+                }
+                assertTrue(packet.getLength() + " bytes", packet.getLength() <= PeerGossip.MAX_DATAGRAM_BYTES);
+                JsonObject message = JsonParser.parseString(new String(packet.getData(), 32, packet.getLength() - 32,
+                        StandardCharsets.UTF_8)).getAsJsonObject();
+                if (message.has("entries")) {
+                    received += message.getAsJsonArray("entries").size();
+                    datagrams++;
+                }
+            }
+            assertEquals(checkIns, received);
+            assertTrue(datagrams > 1);
+        }
+    }
+
+    @Test
+    public void gatesAdmittingTheSameGuestOfflineKeepTheEarliest() {
+        GateLedger east = new GateLedger("east");
+        GateLedger west = new GateLedger("west");
+        GateLedger.Entry late = east.recordLocal("S1", "Guest 1", 2_000, false);
+        GateLedger.Entry early = west.recordLocal("S1", "Guest 1", 1_000, false);
+
+        east.merge(Collections.singletonList(early));
+        west.merge(Collections.singletonList(late));
+
+        assertEquals(1_000, east.admittedOn("S1").get(0).getTimeMillis());
+        assertEquals(1_000, west.admittedOn("S1").get(0).getTimeMillis());
+        // Once merged, a third scan at either gate is refused
+        assertNull(east.recordLocal("S1", "Guest 1", 3_000, false));
+        // Each gate still owes the server its own check-in
+        assertEquals(Collections.singletonList(late), east.pendingUploads());
+    }
+
+    @Test
+    public void reconcilerUploadsPendingCheckInsOnceTheServerIsBack() {
+        GateLedger ledger = new GateLedger("gate");
+        for (int i = 0; i < 25; i++) {
+            ledger.recordLocal("S" + i, "Guest", i, false);
+        }
+        ledger.recordLocal("S-online", "Guest", 100, true);
+        peerEntry(ledger);
+
+        AtomicBoolean serverUp = new AtomicBoolean(false);
+        AtomicInteger uploads = new AtomicInteger();
+        GateReconciler reconciler = new GateReconciler(ledger, batch -> {
+            if (!serverUp.get()) {
+                return Futures.failed(new EndpointUnavailableException("All backend endpoints are failing"));
+            }
+            uploads.incrementAndGet();
+            return CompletableFuture.completedFuture(null);
+        }, 10);
+
+        assertTrue(reconciler.reconcile().isCompletedExceptionally());
+        assertEquals(25, ledger.pendingUploads().size());
+
+        serverUp.set(true);
+        assertEquals(Integer.valueOf(25), reconciler.reconcile().join());
+        assertEquals(3, uploads.get());
+        assertTrue(ledger.pendingUploads().isEmpty());
+    }
+
+    // Another gate's check-in is theirs to upload, not ours
+    private static void peerEntry(GateLedger ledger) {
+        ledger.merge(Collections.singletonList(new GateLedger.Entry("other", 1, "S-peer", "Guest", 50)));
+    }
+
+    private static byte[] sign(byte[] payload) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(SECRET, "HmacSHA256"));
+        byte[] signature = mac.doFinal(payload);
+        byte[] data = new byte[signature.length + payload.length];
+        System.arraycopy(signature, 0, data, 0, signature.length);
+        System.arraycopy(payload, 0, data, signature.length, payload.length);
+        return data;
+    }
+
+    private static boolean allHave(List<GateLedger> ledgers, int expected) {
+        for (GateLedger ledger : ledgers) {
+            if (ledger.size() < expected) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Thread daemon(Runnable runnable) {
+        Thread thread = new Thread(runnable, "peer-gossip-test");
+        thread.setDaemon(true);
+        return thread;
+    }
+}
@@ -0,0 +1,92 @@
+package com.bedayia.tickets.core;
+
+import com.bedayia.tickets.core.RequestScheduler.Priority;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class RequestSchedulerTest {
+    private static final long SERVICE_MILLIS = 30;
+    private static final int BACKGROUND_REQUESTS = 40;
+    private static final int LOOKUPS = 20;
+
+    @Test
+    public void interactiveP99StaysFlatUnderBackgroundLoad() throws Exception {
+        try (MockBackend backend = new MockBackend(2, SERVICE_MILLIS)) {
+            RequestScheduler scheduler = new RequestScheduler(3, 3, 2);
+
+            LatencyRecorder idle = measureLookups(scheduler, backend, Priority.INTERACTIVE);
+
+            List<CompletableFuture<String>> uploads = new ArrayList<>();
+            for (int i = 0; i < BACKGROUND_REQUESTS; i++) {
+                uploads.add(scheduler.submit(Priority.BACKGROUND, () -> backend.post("tickets/update_data")));
+            }
+            LatencyRecorder loaded = measureLookups(scheduler, backend, Priority.INTERACTIVE);
+            CompletableFuture.allOf(uploads.toArray(new CompletableFuture<?>[0])).get(10, TimeUnit.SECONDS);
+
+            System.out.println("idle   " + idle.summary());
+            System.out.println("loaded " + loaded.summary());
+            System.out.println(scheduler.summary());
+
+            // Worst case a lookup waits for one background request to leave the server
+            long bound = idle.percentile(99) + TimeUnit.MILLISECONDS.toNanos(SERVICE_MILLIS * 3);
+            assertTrue("loaded p99 " + loaded.percentile(99) + " > " + bound, loaded.percentile(99) <= bound);
+            assertTrue(scheduler.maxQueueDepth(Priority.BACKGROUND) >= BACKGROUND_REQUESTS - 2);
+            assertEquals(BACKGROUND_REQUESTS, scheduler.completed(Priority.BACKGROUND));
+            assertEquals(0, scheduler.queueDepth(Priority.BACKGROUND));
+        }
+    }
+
+    @Test
+    public void sameLoadWithoutPrioritiesQueuesLookupsBehindUploads() throws Exception {
+        try (MockBackend backend = new MockBackend(2, SERVICE_MILLIS)) {
+            // One class for everything: what OkHttp's FIFO dispatcher does today
+            RequestScheduler fifo = new RequestScheduler(3, 3, 3);
+            for (int i = 0; i < BACKGROUND_REQUESTS; i++) {
+                fifo.submit(Priority.BACKGROUND, () -> backend.post("tickets/update_data"));
+            }
+            long started = System.nanoTime();
+            fifo.submit(Priority.BACKGROUND, () -> backend.post("tickets/get_data")).get(10, TimeUnit.SECONDS);
+            long waited = System.nanoTime() - started;
+
+            assertTrue(waited > TimeUnit.MILLISECONDS.toNanos(SERVICE_MILLIS * BACKGROUND_REQUESTS / 4));
+        }
+    }
+
+    @Test
+    public void cancellingQueuedWorkNeverStartsIt() {
+        RequestScheduler scheduler = new RequestScheduler(1, 1, 1);
+        CompletableFuture<String> blocker = new CompletableFuture<>();
+        scheduler.submit(Priority.BACKGROUND, () -> blocker);
+
+        boolean[] started = new boolean[1];
+        CompletableFuture<String> queued = scheduler.submit(Priority.BACKGROUND, () -> {
+            started[0] = true;
+            return CompletableFuture.completedFuture("late");
+        });
+        assertEquals(1, scheduler.queueDepth(Priority.BACKGROUND));
+
+        queued.cancel(true);
+        blocker.complete("done");
+
+        assertFalse(started[0]);
+        assertEquals(0, scheduler.queueDepth(Priority.BACKGROUND));
+        assertEquals(0, scheduler.inFlight(Priority.BACKGROUND));
+    }
+
+    private static LatencyRecorder measureLookups(RequestScheduler scheduler, MockBackend backend,
+                                                  Priority priority) throws Exception {
+        LatencyRecorder latency = new LatencyRecorder();
+        for (int i = 0; i < LOOKUPS; i++) {
+            long started = System.nanoTime();
+            scheduler.submit(priority, () -> backend.post("tickets/get_data")).get(10, TimeUnit.SECONDS);
+            latency.record(System.nanoTime() - started);
+        }
+        return latency;
+    }
+}
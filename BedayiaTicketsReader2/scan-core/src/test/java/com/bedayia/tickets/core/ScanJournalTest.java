@@ -0,0 +1,171 @@
+package com.bedayia.tickets.core;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+public class ScanJournalTest {
+    private static final String DEVICE = "gate-north-7f3a";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // Reports the rate only: a wall-clock bound would fail on a loaded build machine
+    @Test
+    public void reportsAppendRateAndReadsEveryEntryBack() throws IOException {
+        int appends = 50_000;
+        File path = folder.newFile();
+        try (ScanJournal journal = ScanJournal.open(path, appends)) {
+            long started = System.nanoTime();
+            for (int i = 0; i < appends; i++) {
+                journal.append("S" + (10000 + i % 5000) + "Student " + i, 1_750_000_000_000L + i,
+                        ScanJournal.Result.ADMIT, 0, DEVICE);
+            }
+            double seconds = (System.nanoTime() - started) / 1e9;
+            System.out.printf(Locale.US, "%d journal appends in %.0f ms (%.1f us each, %.0f/s)%n",
+                    appends, seconds * 1000, seconds * 1e6 / appends, appends / seconds);
+        }
+
+        try (ScanJournal journal = ScanJournal.open(path, appends)) {
+            assertEquals(appends, journal.size());
+            assertEquals(0, journal.skippedOnOpen());
+            List<ScanJournal.Entry> entries = journal.entries();
+            for (int i = 0; i < appends; i++) {
+                assertEquals(i + 1, entries.get(i).getSeq());
+                assertEquals(1_750_000_000_000L + i, entries.get(i).getTimeMillis());
+            }
+            assertNotNull(journal.lastScan("S" + (10000 + (appends - 1) % 5000) + "Student " + (appends - 1)));
+        }
+    }
+
+    @Test
+    public void survivesTheProcessBeingKilled() throws Exception {
+        File path = folder.newFile();
+        Process child = new ProcessBuilder(
+                new File(System.getProperty("java.home"), "bin/java").getPath(),
+                "-cp", System.getProperty("java.class.path"),
+                KilledMidEvent.class.getName(), path.getPath())
+                .inheritIO()
+                .start();
+        assertEquals("child did not halt as planned", 137, child.waitFor());
+
+        try (ScanJournal journal = ScanJournal.open(path, 1024)) {
+            assertEquals(KilledMidEvent.ENTRIES, journal.size());
+            ScanJournal.Entry checkIn = journal.lastCheckIn("S10007Student 7");
+            assertNotNull(checkIn);
+            assertEquals(3, checkIn.getGuests());
+            assertEquals(DEVICE, checkIn.getDevice());
+            assertEquals(ScanJournal.Result.ALREADY_ADMITTED, journal.lastScan("S10007Student 7").getResult());
+            assertNull(journal.lastCheckIn("S10008Student 8"));
+
+            // Appends carry on after what the dead process wrote
+            ScanJournal.Entry next = journal.append("S10009Student 9", 5, ScanJournal.Result.ADMIT, 0, DEVICE);
+            assertEquals(KilledMidEvent.ENTRIES + 1, next.getSeq());
+        }
+    }
+
+    @Test
+    public void skipsATornSlotAndKeepsTheRest() throws IOException {
+        File path = folder.newFile();
+        try (ScanJournal journal = ScanJournal.open(path, 16)) {
+            for (int i = 1; i <= 10; i++) {
+                journal.append("S1000" + i, i, ScanJournal.Result.CHECKED_IN, 1, DEVICE);
+            }
+        }
+        // Half-written entry 5: its code bytes changed but the CRC is the old one
+        try (RandomAccessFile raw = new RandomAccessFile(path, "rw")) {
+            raw.seek(64 + 5 * ScanJournal.SLOT_SIZE + 40);
+            raw.write(0x5a);
+        }
+
+        try (ScanJournal journal = ScanJournal.open(path, 16)) {
+            assertEquals(9, journal.size());
+            assertEquals(1, journal.skippedOnOpen());
+            assertNull(journal.lastCheckIn("S10005"));
+            assertNotNull(journal.lastCheckIn("S10004"));
+            assertNotNull(journal.lastCheckIn("S10006"));
+        }
+    }
+
+    @Test
+    public void ringKeepsTheLatestEntriesAndTheirIndex() throws IOException {
+        File path = folder.newFile();
+        try (ScanJournal journal = ScanJournal.open(path, 8)) {
+            journal.append("S20001", 1, ScanJournal.Result.CHECKED_IN, 2, DEVICE);
+            for (int i = 2; i <= 8; i++) {
+                journal.append("S2000" + i, i, ScanJournal.Result.ADMIT, 0, DEVICE);
+            }
+            journal.append("S20002", 9, ScanJournal.Result.ALREADY_ADMITTED, 0, DEVICE);
+            // Overwrites entry 2, whose code has a later entry that must stay indexed
+            journal.append("S30000", 10, ScanJournal.Result.ADMIT, 0, DEVICE);
+
+            assertNull("the oldest check-in fell out of the ring", journal.lastCheckIn("S20001"));
+            assertNull(journal.lastScan("S20001"));
+            assertEquals(9, journal.lastScan("S20002").getTimeMillis());
+        }
+
+        try (ScanJournal journal = ScanJournal.open(path, 8)) {
+            List<ScanJournal.Entry> entries = journal.entries();
+            assertEquals(8, entries.size());
+            for (int i = 0; i < entries.size(); i++) {
+                assertEquals(3 + i, entries.get(i).getSeq());
+            }
+            assertEquals(ScanJournal.Result.ALREADY_ADMITTED, journal.lastScan("S20002").getResult());
+        }
+    }
+
+    @Test
+    public void exportsCsvForTheAudit() throws IOException {
+        try (ScanJournal journal = ScanJournal.open(folder.newFile(), 16)) {
+            journal.append("S10001Student 1", 0, ScanJournal.Result.of(ScanDecision.ADMIT), 0, DEVICE);
+            journal.append("S10001Student 1", 1000, ScanJournal.Result.CHECKED_IN, 2, DEVICE);
+            journal.append("code, with \"quotes\"", 2000, ScanJournal.Result.NOT_FOUND, 0, DEVICE);
+
+            StringWriter out = new StringWriter();
+            journal.exportCsv(out);
+            String[] lines = out.toString().split("\n");
+            assertEquals(4, lines.length);
+            assertEquals("seq,time,result,guests,device,code", lines[0]);
+            assertTrue(lines[2], lines[2].startsWith("2,") && lines[2].endsWith(",CHECKED_IN,2," + DEVICE + ",S10001Student 1"));
+            assertTrue(lines[3], lines[3].endsWith(",\"code, with \"\"quotes\"\"\""));
+        }
+    }
+
+    @Test
+    public void longCodesAreFoundByTheirFullText() throws IOException {
+        StringBuilder code = new StringBuilder("S10001");
+        while (code.length() < 400) {
+            code.append("طالب ");
+        }
+        try (ScanJournal journal = ScanJournal.open(folder.newFile(), 16)) {
+            journal.append(code.toString(), 0, ScanJournal.Result.CHECKED_IN, 1, DEVICE);
+            assertNotNull(journal.lastCheckIn(code.toString()));
+        }
+    }
+
+    /** Journals a few scans and check-ins, then dies without closing or forcing anything. */
+    public static final class KilledMidEvent {
+        static final int ENTRIES = 20;
+
+        public static void main(String[] args) throws IOException {
+            ScanJournal journal = ScanJournal.open(new File(args[0]), 1024);
+            for (int i = 1; i <= ENTRIES / 2; i++) {
+                journal.append("S1000" + i + "Student " + i, i, ScanJournal.Result.ADMIT, 0, DEVICE);
+            }
+            journal.append("S10007Student 7", 100, ScanJournal.Result.CHECKED_IN, 3, DEVICE);
+            for (int i = 2; i <= ENTRIES / 2; i++) {
+                journal.append("S10007Student 7", 100 + i, ScanJournal.Result.ALREADY_ADMITTED, 0, DEVICE);
+            }
+            Runtime.getRuntime().halt(137);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.bedayia.tickets.core;
+
+import com.bedayia.tickets.Invitee;
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ScanPipelineTest {
+
+    @Test
+    public void duplicateDecodesShareOneLookup() {
+        AtomicInteger lookups = new AtomicInteger();
+        ScanPipeline pipeline = new ScanPipeline(new ScanDeduplicator(3000), code -> {
+            lookups.incrementAndGet();
+            return CompletableFuture.completedFuture(Collections.singletonList(invitee(code, false)));
+        });
+
+        CompletableFuture<ScanResult> first = pipeline.submitDecoded("S10001Student 1");
+        assertNotNull(first);
+        assertNull(pipeline.submitDecoded("S10001Student 1"));
+        assertNotNull(pipeline.submitDecoded("S10002Student 2"));
+
+        assertEquals(2, lookups.get());
+        assertEquals(ScanDecision.ADMIT, first.join().getDecision());
+    }
+
+    @Test
+    public void failedLookupAllowsImmediateRetry() {
+        ScanPipeline pipeline = new ScanPipeline(new ScanDeduplicator(3000), code -> {
+            CompletableFuture<List<Invitee>> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new IOException("Network Error"));
+            return failed;
+        });
+
+        ScanResult result = pipeline.submitDecoded("S10001Student 1").join();
+        assertEquals(ScanDecision.LOOKUP_FAILED, result.getDecision());
+        assertTrue(result.getError() instanceof IOException);
+        assertNotNull(pipeline.submitDecoded("S10001Student 1"));
+    }
+
+    @Test
+    public void decideCoversEveryOutcome() {
+        assertEquals(ScanDecision.NOT_FOUND, ScanPipeline.decide(new ArrayList<>()));
+        assertEquals(ScanDecision.ADMIT,
+                ScanPipeline.decide(Arrays.asList(invitee("a", true), invitee("a", false))));
+        assertEquals(ScanDecision.ALREADY_ADMITTED,
+                ScanPipeline.decide(Arrays.asList(invitee("a", true), invitee("a", true))));
+    }
+
+    @Test
+    public void zxingDecoderReadsRenderedCode() {
+        BitMatrix matrix;
+        try {
+            matrix = new QRCodeWriter()
+                    .encode("S10001Student 1", BarcodeFormat.QR_CODE, 240, 240);
+        } catch (WriterException e) {
+            throw new AssertionError(e);
+        }
+        byte[] luma = new byte[240 * 240];
+        for (int y = 0; y < 240; y++) {
+            for (int x = 0; x < 240; x++) {
+                luma[y * 240 + x] = (byte) (matrix.get(x, y) ? 0 : 255);
+            }
+        }
+        assertEquals("S10001Student 1", new ZxingFrameDecoder().decode(new LumaFrame(luma, 240, 240, 0)));
+        assertNull(new ZxingFrameDecoder().decode(new LumaFrame(new byte[240 * 240], 240, 240, 0)));
+    }
+
+    private static Invitee invitee(String code, boolean attended) {
+        Invitee invitee = new Invitee();
+        invitee.setInviteesQrcodeText(code);
+        invitee.setInviteesName("Guest");
+        invitee.setInviteesAttendance(attended);
+        return invitee;
+    }
+}
@@ -0,0 +1,101 @@
+package com.bedayia.tickets.core;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class UploadOutboxTest {
+    private static final UploadOutbox.Account NORTH = new UploadOutbox.Account("north", "key-north");
+    private static final UploadOutbox.Account SOUTH = new UploadOutbox.Account("south", "key-south");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void unsentCheckInsSurviveARestart() throws IOException {
+        File path = new File(folder.getRoot(), "outbox");
+        GateLedger ledger = new GateLedger("north-1a2b");
+        GateLedger.Entry first = ledger.recordLocal("S10001محمد", "ضيف 1", 1_000, false);
+        GateLedger.Entry second = ledger.recordLocal("S10001محمد", "ضيف 2", 2_000, false);
+        GateLedger.Entry third = ledger.recordLocal("S10002", "Guest", 3_000, false);
+        try (UploadOutbox outbox = UploadOutbox.open(path)) {
+            outbox.add(NORTH, Arrays.asList(first, second, third));
+            outbox.remove(Collections.singletonList(second));
+        }
+
+        try (UploadOutbox outbox = UploadOutbox.open(path)) {
+            List<GateLedger.Entry> pending = outbox.pendingFor("north");
+            assertEquals(Arrays.asList(first, third), pending);
+            assertEquals("ضيف 1", pending.get(0).getName());
+            assertEquals(1_000, pending.get(0).getTimeMillis());
+            assertEquals("north-1a2b", pending.get(0).getOrigin());
+            assertTrue(outbox.pendingFor("south").isEmpty());
+        }
+    }
+
+    @Test
+    public void keepsEachCheckInWithTheAccountThatMadeIt() throws IOException {
+        GateLedger ledger = new GateLedger("gate");
+        GateLedger.Entry north = ledger.recordLocal("S1", "Guest", 1_000, false);
+        GateLedger.Entry south = ledger.recordLocal("S2", "Guest", 2_000, false);
+        try (UploadOutbox outbox = UploadOutbox.open(folder.newFile())) {
+            outbox.add(NORTH, Collections.singletonList(north));
+            outbox.add(SOUTH, Collections.singletonList(south));
+            // Already kept: stays with the first account
+            outbox.add(SOUTH, Collections.singletonList(north));
+
+            Map<UploadOutbox.Account, List<GateLedger.Entry>> accounts = outbox.byAccount();
+            assertEquals(Collections.singletonList(north), accounts.get(NORTH));
+            assertEquals(Collections.singletonList(south), accounts.get(SOUTH));
+            assertEquals("key-south", accounts.keySet().toArray(new UploadOutbox.Account[0])[1].getApiKey());
+        }
+    }
+
+    @Test
+    public void skipsALineTornByACrash() throws IOException {
+        File path = new File(folder.getRoot(), "outbox");
+        GateLedger ledger = new GateLedger("gate");
+        GateLedger.Entry kept = ledger.recordLocal("S1", "Guest", 1_000, false);
+        try (UploadOutbox outbox = UploadOutbox.open(path)) {
+            outbox.add(NORTH, Collections.singletonList(kept));
+        }
+        try (FileOutputStream out = new FileOutputStream(path, true)) {
+            out.write("{\"o\":\"gate\",\"s\":2,\"q\":\"S2\",\"n\":\"Gu".getBytes(StandardCharsets.UTF_8));
+        }
+
+        try (UploadOutbox outbox = UploadOutbox.open(path)) {
+            assertEquals(Collections.singletonList(kept), outbox.pendingFor("north"));
+            assertEquals(1, outbox.skippedOnOpen());
+        }
+        // Rewritten on open without the torn line
+        assertEquals(1, Files.readAllLines(path.toPath()).size());
+    }
+
+    @Test
+    public void startsTheFileOverOnceEverythingIsUp() throws IOException {
+        File path = new File(folder.getRoot(), "outbox");
+        GateLedger ledger = new GateLedger("gate");
+        try (UploadOutbox outbox = UploadOutbox.open(path)) {
+            for (int i = 0; i < 100; i++) {
+                List<GateLedger.Entry> entry = Collections.singletonList(
+                        ledger.recordLocal("S" + i, "Guest", i, false));
+                outbox.add(NORTH, entry);
+                outbox.remove(entry);
+            }
+            assertEquals(0, outbox.size());
+        }
+        assertEquals(0, path.length());
+    }
+}
@@ -0,0 +1,153 @@
+-- Live attendance counters, kept up to date by a trigger on bydaya_event_invitees
+-- so headcounts and reports don't have to COUNT the whole invitees table.
+-- Only active invitees are counted; "guests" leaves out the main invitee (the student).
+
+CREATE TABLE IF NOT EXISTS bydaya_event_counters (
+    event_id INTEGER PRIMARY KEY REFERENCES bydaya_events(id) ON DELETE CASCADE,
+    invitees INTEGER NOT NULL DEFAULT 0,
+    attended INTEGER NOT NULL DEFAULT 0,
+    guests INTEGER NOT NULL DEFAULT 0,
+    guests_attended INTEGER NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS bydaya_event_item_counters (
+    student_item_id INTEGER PRIMARY KEY REFERENCES bydaya_event_items(id) ON DELETE CASCADE,
+    event_id INTEGER NOT NULL,
+    invitees INTEGER NOT NULL DEFAULT 0,
+    attended INTEGER NOT NULL DEFAULT 0,
+    guests INTEGER NOT NULL DEFAULT 0,
+    guests_attended INTEGER NOT NULL DEFAULT 0
+);
+
+CREATE INDEX IF NOT EXISTS idx_event_item_counters_event_id ON bydaya_event_item_counters(event_id);
+
+-- Adds one invitee row's contribution (sign +1 or -1) to its event and student item.
+-- Removals only UPDATE: while an event or item is being deleted its counter row
+-- may already be gone, and re-inserting it would fail the foreign key.
+CREATE OR REPLACE FUNCTION bydaya_bump_counters(
+    p_event_id INTEGER, p_item_id INTEGER, p_sign INTEGER, p_attended BOOLEAN, p_main BOOLEAN
+) RETURNS void AS $$
+DECLARE
+    d_attended INTEGER := CASE WHEN p_attended THEN p_sign ELSE 0 END;
+    d_guests INTEGER := CASE WHEN p_main THEN 0 ELSE p_sign END;
+    d_guests_attended INTEGER := CASE WHEN p_attended AND NOT p_main THEN p_sign ELSE 0 END;
+BEGIN
+    IF p_event_id IS NOT NULL THEN
+        UPDATE bydaya_event_counters
+        SET invitees = invitees + p_sign,
+            attended = attended + d_attended,
+            guests = guests + d_guests,
+            guests_attended = guests_attended + d_guests_attended,
+            updated_at = NOW()
+        WHERE event_id = p_event_id;
+        IF NOT FOUND AND p_sign > 0 THEN
+            INSERT INTO bydaya_event_counters (event_id, invitees, attended, guests, guests_attended)
+            VALUES (p_event_id, p_sign, d_attended, d_guests, d_guests_attended)
+            ON CONFLICT (event_id) DO UPDATE SET
+                invitees = bydaya_event_counters.invitees + EXCLUDED.invitees,
+                attended = bydaya_event_counters.attended + EXCLUDED.attended,
+                guests = bydaya_event_counters.guests + EXCLUDED.guests,
+                guests_attended = bydaya_event_counters.guests_attended + EXCLUDED.guests_attended,
+                updated_at = NOW();
+        END IF;
+    END IF;
+
+    IF p_item_id IS NOT NULL THEN
+        UPDATE bydaya_event_item_counters
+        SET invitees = invitees + p_sign,
+            attended = attended + d_attended,
+            guests = guests + d_guests,
+            guests_attended = guests_attended + d_guests_attended
+        WHERE student_item_id = p_item_id;
+        IF NOT FOUND AND p_sign > 0 THEN
+            INSERT INTO bydaya_event_item_counters
+                (student_item_id, event_id, invitees, attended, guests, guests_attended)
+            VALUES (p_item_id, p_event_id, p_sign, d_attended, d_guests, d_guests_attended)
+            ON CONFLICT (student_item_id) DO UPDATE SET
+                invitees = bydaya_event_item_counters.invitees + EXCLUDED.invitees,
+                attended = bydaya_event_item_counters.attended + EXCLUDED.attended,
+                guests = bydaya_event_item_counters.guests + EXCLUDED.guests,
+                guests_attended = bydaya_event_item_counters.guests_attended + EXCLUDED.guests_attended;
+        END IF;
+    END IF;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION bydaya_count_invitee() RETURNS trigger AS $$
+BEGIN
+    -- Nested so OLD is never read on INSERT nor NEW on DELETE
+    IF TG_OP IN ('UPDATE', 'DELETE') THEN
+        IF OLD.active THEN
+            PERFORM bydaya_bump_counters(OLD.event_id, OLD.student_item_id, -1,
+                                         COALESCE(OLD.invitees_attendance, false), COALESCE(OLD.main_invitee, false));
+        END IF;
+    END IF;
+    IF TG_OP IN ('INSERT', 'UPDATE') THEN
+        IF NEW.active THEN
+            PERFORM bydaya_bump_counters(NEW.event_id, NEW.student_item_id, 1,
+                                         COALESCE(NEW.invitees_attendance, false), COALESCE(NEW.main_invitee, false));
+        END IF;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Replaced by a per-statement insert trigger and a delete-only one in 05-counters-per-statement.sql
+DROP TRIGGER IF EXISTS trg_count_invitee_insert_delete ON bydaya_event_invitees;
+CREATE TRIGGER trg_count_invitee_insert_delete
+    AFTER INSERT OR DELETE ON bydaya_event_invitees
+    FOR EACH ROW EXECUTE FUNCTION bydaya_count_invitee();
+
+-- Most updates (email sent, name edits) don't move a counter; skip them
+DROP TRIGGER IF EXISTS trg_count_invitee_update ON bydaya_event_invitees;
+CREATE TRIGGER trg_count_invitee_update
+    AFTER UPDATE ON bydaya_event_invitees
+    FOR EACH ROW
+    WHEN (OLD.invitees_attendance IS DISTINCT FROM NEW.invitees_attendance
+          OR OLD.active IS DISTINCT FROM NEW.active
+          OR OLD.main_invitee IS DISTINCT FROM NEW.main_invitee
+          OR OLD.event_id IS DISTINCT FROM NEW.event_id
+          OR OLD.student_item_id IS DISTINCT FROM NEW.student_item_id)
+    EXECUTE FUNCTION bydaya_count_invitee();
+
+-- Backfill from the rows already there. The lock (which needs a transaction;
+-- initdb runs psql in autocommit) holds off writes until the counts are in,
+-- so none is counted twice or missed.
+BEGIN;
+
+LOCK TABLE bydaya_event_invitees IN SHARE MODE;
+
+INSERT INTO bydaya_event_counters (event_id, invitees, attended, guests, guests_attended)
+SELECT e.id,
+       COUNT(inv.id),
+       COUNT(inv.id) FILTER (WHERE inv.invitees_attendance = true),
+       COUNT(inv.id) FILTER (WHERE inv.main_invitee = false),
+       COUNT(inv.id) FILTER (WHERE inv.invitees_attendance = true AND inv.main_invitee = false)
+FROM bydaya_events e
+LEFT JOIN bydaya_event_invitees inv ON inv.event_id = e.id AND inv.active = true
+GROUP BY e.id
+ON CONFLICT (event_id) DO UPDATE SET
+    invitees = EXCLUDED.invitees,
+    attended = EXCLUDED.attended,
+    guests = EXCLUDED.guests,
+    guests_attended = EXCLUDED.guests_attended,
+    updated_at = NOW();
+
+INSERT INTO bydaya_event_item_counters (student_item_id, event_id, invitees, attended, guests, guests_attended)
+SELECT ei.id,
+       ei.event_id,
+       COUNT(inv.id),
+       COUNT(inv.id) FILTER (WHERE inv.invitees_attendance = true),
+       COUNT(inv.id) FILTER (WHERE inv.main_invitee = false),
+       COUNT(inv.id) FILTER (WHERE inv.invitees_attendance = true AND inv.main_invitee = false)
+FROM bydaya_event_items ei
+LEFT JOIN bydaya_event_invitees inv ON inv.student_item_id = ei.id AND inv.active = true
+GROUP BY ei.id, ei.event_id
+ON CONFLICT (student_item_id) DO UPDATE SET
+    invitees = EXCLUDED.invitees,
+    attended = EXCLUDED.attended,
+    guests = EXCLUDED.guests,
+    guests_attended = EXCLUDED.guests_attended;
+
+COMMIT;
@@ -0,0 +1,10 @@
+-- Rendered QR code PNGs, shared by the invite emails and the admin QR view.
+-- The digest is sha256 of the render version and the code text (see
+-- qrImageCache.ts), so an image never changes once stored. All invitees of a
+-- student share one code and therefore one image.
+
+CREATE TABLE IF NOT EXISTS bydaya_qr_images (
+    digest CHAR(64) PRIMARY KEY,
+    png BYTEA NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
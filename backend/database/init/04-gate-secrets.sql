@@ -0,0 +1,7 @@
+-- Per-event key the gates sign their LAN gossip with (PeerGossip on the
+-- scanners). It is handed to a gate at login; gates drop datagrams whose
+-- signature doesn't match, so nobody else on the Wi-Fi can inject check-ins.
+-- A volatile default is evaluated per row, so existing events get their own key.
+
+ALTER TABLE bydaya_events ADD COLUMN IF NOT EXISTS gate_secret CHAR(64) NOT NULL
+    DEFAULT replace(gen_random_uuid()::text || gen_random_uuid()::text, '-', '');
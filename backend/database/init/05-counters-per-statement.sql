@@ -0,0 +1,64 @@
+-- Inserts update the counters once per statement instead of once per row. An
+-- import adds thousands of invitees to one event in a single INSERT (see
+-- studentImport.ts), and the row trigger from 02-attendance-counters.sql
+-- updated the same event counter row for every one of them. The new rows are
+-- now summed per event and per student item, and each counter row is updated
+-- once. Deletes and updates stay per row: a trigger with a transition table
+-- can only fire on one kind of event.
+
+CREATE OR REPLACE FUNCTION bydaya_count_inserted_invitees() RETURNS trigger AS $$
+BEGIN
+    -- Same rules as bydaya_count_invitee: only active rows, a NULL flag counts as false
+    INSERT INTO bydaya_event_counters (event_id, invitees, attended, guests, guests_attended)
+    SELECT event_id,
+           COUNT(*),
+           COUNT(*) FILTER (WHERE invitees_attendance),
+           COUNT(*) FILTER (WHERE NOT COALESCE(main_invitee, false)),
+           COUNT(*) FILTER (WHERE invitees_attendance AND NOT COALESCE(main_invitee, false))
+    FROM inserted_invitees
+    WHERE active AND event_id IS NOT NULL
+    GROUP BY event_id
+    ON CONFLICT (event_id) DO UPDATE SET
+        invitees = bydaya_event_counters.invitees + EXCLUDED.invitees,
+        attended = bydaya_event_counters.attended + EXCLUDED.attended,
+        guests = bydaya_event_counters.guests + EXCLUDED.guests,
+        guests_attended = bydaya_event_counters.guests_attended + EXCLUDED.guests_attended,
+        updated_at = NOW();
+
+    INSERT INTO bydaya_event_item_counters (student_item_id, event_id, invitees, attended, guests, guests_attended)
+    SELECT student_item_id,
+           MIN(event_id),
+           COUNT(*),
+           COUNT(*) FILTER (WHERE invitees_attendance),
+           COUNT(*) FILTER (WHERE NOT COALESCE(main_invitee, false)),
+           COUNT(*) FILTER (WHERE invitees_attendance AND NOT COALESCE(main_invitee, false))
+    FROM inserted_invitees
+    WHERE active AND student_item_id IS NOT NULL
+    GROUP BY student_item_id
+    ON CONFLICT (student_item_id) DO UPDATE SET
+        invitees = bydaya_event_item_counters.invitees + EXCLUDED.invitees,
+        attended = bydaya_event_item_counters.attended + EXCLUDED.attended,
+        guests = bydaya_event_item_counters.guests + EXCLUDED.guests,
+        guests_attended = bydaya_event_item_counters.guests_attended + EXCLUDED.guests_attended;
+
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Swapped in one transaction, so no insert lands between the two triggers
+BEGIN;
+
+DROP TRIGGER IF EXISTS trg_count_invitee_insert_delete ON bydaya_event_invitees;
+
+DROP TRIGGER IF EXISTS trg_count_invitee_delete ON bydaya_event_invitees;
+CREATE TRIGGER trg_count_invitee_delete
+    AFTER DELETE ON bydaya_event_invitees
+    FOR EACH ROW EXECUTE FUNCTION bydaya_count_invitee();
+
+DROP TRIGGER IF EXISTS trg_count_invitees_insert ON bydaya_event_invitees;
+CREATE TRIGGER trg_count_invitees_insert
+    AFTER INSERT ON bydaya_event_invitees
+    REFERENCING NEW TABLE AS inserted_invitees
+    FOR EACH STATEMENT EXECUTE FUNCTION bydaya_count_inserted_invitees();
+
+COMMIT;
@@ -1,6 +1,8 @@
 /** @type {import('next').NextConfig} */
 const nextConfig = {
   devIndicators: false,
+  // gzip responses for clients that send Accept-Encoding (the scanner's OkHttp does)
+  compress: true,
   experimental: {
     serverActions: {
       allowedOrigins: ['localhost:3001'],
@@ -17,6 +17,11 @@ interface UploadResult {
   errors?: string[];
 }
 
+interface UploadProgress {
+  rowsRead: number;
+  studentsAdded: number;
+}
+
 export default function UploadStudentsPage() {
   const params = useParams();
   const router = useRouter();
@@ -26,6 +31,7 @@ export default function UploadStudentsPage() {
   const [uploading, setUploading] = useState(false);
   const [dragOver, setDragOver] = useState(false);
   const [uploadResult, setUploadResult] = useState<UploadResult | null>(null);
+  const [progress, setProgress] = useState<UploadProgress | null>(null);
 
   const handleFileSelect = (selectedFile: File) => {
     // Validate file type
@@ -85,14 +91,41 @@ export default function UploadStudentsPage() {
       const formData = new FormData();
       formData.append('file', file);
       
+      setProgress(null);
+      // Progress lines as each chunk is imported, then the result
       const response = await fetch(`/api/admin/events/${eventId}/upload`, {
         method: 'POST',
         body: formData,
+        headers: { Accept: 'application/x-ndjson' },
       });
+
+      let result: UploadResult | null = null;
+      if (response.headers.get('content-type')?.includes('application/x-ndjson') && response.body) {
+        const reader = response.body.pipeThrough(new TextDecoderStream()).getReader();
+        let buffered = '';
+        for (;;) {
+          const { done, value } = await reader.read();
+          if (done) break;
+          buffered += value;
+          const lines = buffered.split('\n');
+          buffered = lines.pop() || '';
+          for (const line of lines.filter(Boolean)) {
+            const message = JSON.parse(line);
+            if (message.type === 'progress') {
+              setProgress({ rowsRead: message.rowsRead, studentsAdded: message.studentsAdded });
+            } else if (message.type === 'result') {
+              result = message;
+            }
+          }
+        }
+      } else {
+        result = await response.json();
+      }
+      if (!result) {
+        throw new Error('Upload ended without a result');
+      }
       
-      const result = await response.json();
-      
-      if (response.ok) {
+      if (result.success) {
         setUploadResult(result);
         toast.success(`Successfully uploaded ${result.studentsAdded} students!`);
       } else {
@@ -104,6 +137,7 @@ export default function UploadStudentsPage() {
       toast.error('Failed to upload file');
     } finally {
       setUploading(false);
+      setProgress(null);
     }
   };
 
@@ -196,7 +230,9 @@ export default function UploadStudentsPage() {
                     {uploading ? (
                       <>
                         <div className="animate-spin rounded-full h-4 w-4 border-b-2 border-white mr-2"></div>
-                        Uploading...
+                        {progress
+                          ? `Imported ${progress.studentsAdded} of ${progress.rowsRead} rows...`
+                          : 'Uploading...'}
                       </>
                     ) : (
                       <>
@@ -478,7 +478,8 @@ function QRCodeModal({
       const response = await fetch(`/api/admin/invitees/${invitee.id}/qrcode`);
       if (response.ok) {
         const data = await response.json();
-        setQRCodeData(data.qrcode);
+        // The image URL is immutable, so reopening the modal comes from the browser cache
+        setQRCodeData(data.qrcode_url || `data:image/png;base64,${data.qrcode}`);
       }
     } catch (error) {
       toast.error('Failed to generate QR code');
@@ -503,7 +504,7 @@ function QRCodeModal({
             <div className="space-y-4">
               <div className="flex justify-center">
                 <img 
-                  src={`data:image/png;base64,${qrCodeData}`}
+                  src={qrCodeData}
                   alt="QR Code"
                   className="border rounded-lg"
                 />
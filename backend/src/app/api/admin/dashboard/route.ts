@@ -2,6 +2,7 @@ import { NextRequest, NextResponse } from 'next/server';
 import { query } from '@/lib/db/connection';
 import { corsHeaders } from '@/lib/middleware';
 import { withRoleAuth } from '@/lib/middleware/roleAuth';
+import { OccupancyService } from '@/lib/services/occupancyService';
 import { User } from '@/types';
 
 async function handleDashboard(request: NextRequest, context: any, user: User): Promise<NextResponse> {
@@ -10,21 +11,11 @@ async function handleDashboard(request: NextRequest, context: any, user: User):
     const eventsResult = await query('SELECT COUNT(*) as count FROM bydaya_events WHERE active = true');
     const totalEvents = parseInt(eventsResult.rows[0].count);
 
-    // Get total invitees count
-    const inviteesResult = await query('SELECT COUNT(*) as count FROM bydaya_event_invitees WHERE active = true');
-    const totalInvitees = parseInt(inviteesResult.rows[0].count);
-
-    // Get attendance rate
-    const attendanceResult = await query(`
-      SELECT
-        COUNT(*) FILTER (WHERE invitees_attendance = true) as attended,
-        COUNT(*) as total
-      FROM bydaya_event_invitees
-      WHERE active = true
-    `);
-    const attendanceData = attendanceResult.rows[0];
-    const attendanceRate = attendanceData.total > 0
-      ? Math.round((attendanceData.attended / attendanceData.total) * 100)
+    // Invitees and attendance from the live counters
+    const totals = await OccupancyService.totals(false);
+    const totalInvitees = totals.invitees;
+    const attendanceRate = totals.invitees > 0
+      ? Math.round((totals.attended / totals.invitees) * 100)
       : 0;
 
     // Get recent events
@@ -1,6 +1,7 @@
 import { NextRequest, NextResponse } from 'next/server';
 import { query } from '@/lib/db/connection';
 import { corsHeaders } from '@/lib/middleware';
+import { InviteeLookupCache } from '@/lib/services/lookupCache';
 
 export async function GET(
   request: NextRequest,
@@ -144,6 +145,8 @@ export async function DELETE(
       WHERE id = $1
     `, [eventId]);
 
+    InviteeLookupCache.clear();
+
     return NextResponse.json({
       message: "Event deleted successfully",
       success: true
@@ -53,6 +53,14 @@ export async function POST(
           headers: corsHeaders()
         }
       );
+    } else if (result.busy) {
+      return NextResponse.json(
+        { error: 'Emails for this event are already being sent' },
+        {
+          status: 409,
+          headers: corsHeaders()
+        }
+      );
     } else {
       return NextResponse.json(
         { 
@@ -1,6 +1,7 @@
 import { NextRequest, NextResponse } from 'next/server';
 import { query } from '@/lib/db/connection';
 import { corsHeaders } from '@/lib/middleware';
+import { InviteeLookupCache } from '@/lib/services/lookupCache';
 
 export async function PUT(
   request: NextRequest,
@@ -128,6 +129,9 @@ export async function PUT(
       }
     }
 
+    // Names and QR codes may have changed under any number of cached lookups
+    InviteeLookupCache.clear();
+
     return NextResponse.json({
       student: result.rows[0],
       success: true
@@ -179,6 +183,8 @@ export async function DELETE(
       WHERE student_item_id = $1
     `, [studentId]);
 
+    InviteeLookupCache.clear();
+
     return NextResponse.json({
       message: "Student deleted successfully",
       success: true
@@ -1,17 +1,74 @@
 import { NextRequest, NextResponse } from 'next/server';
 import { query } from '@/lib/db/connection';
-import { EventService } from '@/lib/services/eventService';
 import { corsHeaders } from '@/lib/middleware';
-import * as XLSX from 'xlsx';
+import {
+  ImportFormatError,
+  ImportResult,
+  SheetRow,
+  StudentImport,
+  csvRows,
+  workbookRows,
+} from '@/lib/services/studentImport';
+import { QrImageCache } from '@/lib/services/qrImageCache';
+
+export const dynamic = 'force-dynamic';
+
+// Renders the new codes' QR images in the background, so the first invite
+// email or admin view of each doesn't have to
+function warmQrImages(eventId: number, result: ImportResult) {
+  if (result.studentsAdded > 0) {
+    QrImageCache.warmEvent(eventId)
+      .then(({ rendered }) => console.log(`Rendered ${rendered} QR images for event ${eventId}`))
+      .catch((error) => console.error(`Failed to warm QR images for event ${eventId}:`, error));
+  }
+}
 
-interface StudentRow {
-  student_id: string;
-  student_name: string;
-  student_email: string;
-  student_email_parent_1: string;
-  student_email_parent_2?: string;
-  number_of_seats?: number;
-  invitees?: string;
+function responseBody(result: ImportResult) {
+  return {
+    success: result.success,
+    message: result.message,
+    studentsAdded: result.studentsAdded,
+    inviteesAdded: result.inviteesAdded,
+    durationMs: result.durationMs,
+    errors: result.errors
+  };
+}
+
+function streamImport(eventId: number, rows: AsyncIterable<SheetRow[]>): NextResponse {
+  const encoder = new TextEncoder();
+  const stream = new ReadableStream<Uint8Array>({
+    async start(controller) {
+      const send = (line: object) => controller.enqueue(encoder.encode(JSON.stringify(line) + '\n'));
+      try {
+        const result = await StudentImport.run(eventId, rows, progress => send({ type: 'progress', ...progress }));
+        warmQrImages(eventId, result);
+        send({ type: 'result', ...responseBody(result) });
+      } catch (error) {
+        if (!(error instanceof ImportFormatError)) {
+          console.error('Upload error:', error);
+        }
+        send({
+          type: 'result',
+          success: false,
+          message: error instanceof ImportFormatError ? error.message : 'Failed to process file',
+          errors: error instanceof ImportFormatError
+            ? (error.details.length > 0 ? error.details : undefined)
+            : [error instanceof Error ? error.message : 'Unknown error occurred']
+        });
+      }
+      controller.close();
+    },
+  });
+
+  return new NextResponse(stream, {
+    status: 200,
+    headers: {
+      ...corsHeaders(),
+      'Content-Type': 'application/x-ndjson; charset=utf-8',
+      'Cache-Control': 'no-cache, no-transform',
+      'X-Accel-Buffering': 'no',
+    },
+  });
 }
 
 export async function POST(
@@ -55,169 +112,32 @@ export async function POST(
       );
     }
 
-    // Read and parse the file
-    const buffer = await file.arrayBuffer();
-    const workbook = XLSX.read(buffer, { type: 'buffer' });
-    
-    if (!workbook.SheetNames || workbook.SheetNames.length === 0) {
-      return NextResponse.json(
-        { success: false, message: "No worksheets found in the file" },
-        { status: 400, headers: corsHeaders() }
-      );
-    }
-
-    // Get the first worksheet
-    const worksheet = workbook.Sheets[workbook.SheetNames[0]];
-    const jsonData = XLSX.utils.sheet_to_json(worksheet) as any[];
-
-    if (!jsonData || jsonData.length === 0) {
-      return NextResponse.json(
-        { success: false, message: "No data found in the file" },
-        { status: 400, headers: corsHeaders() }
-      );
-    }
-
-    // Get column names from the first row
-    const firstRow = jsonData[0];
-    const columnNames = Object.keys(firstRow);
-    
-    // Function to find column by various name patterns (case insensitive, flexible matching)
-    const findColumn = (patterns: string[]): string | null => {
-      for (const pattern of patterns) {
-        const found = columnNames.find(col => {
-          const cleanCol = col.toLowerCase().trim().replace(/[^a-z0-9]/g, '');
-          const cleanPattern = pattern.toLowerCase().replace(/[^a-z0-9]/g, '');
-          return cleanCol.includes(cleanPattern) || cleanPattern.includes(cleanCol);
-        });
-        if (found) return found;
-      }
-      return null;
-    };
-
-    // Look for required columns with flexible naming
-    const studentIdCol = findColumn(['studentid', 'id', 'studentnumber', 'number', 'رقم', 'code']);
-    const studentNameCol = findColumn(['studentname', 'name', 'fullname', 'اسم']);
-    const studentEmailCol = findColumn(['studentemail', 'email', 'mail', 'البريد']);
-    const parent1EmailCol = findColumn(['parentemail', 'parent1', 'guardian', 'ولي', 'father', 'mother']);
-
-    // If we can't find the required columns, show what's available
-    const missingInfo = [];
-    if (!studentIdCol) missingInfo.push('Student ID/Number');
-    if (!studentNameCol) missingInfo.push('Student Name');
-    if (!studentEmailCol) missingInfo.push('Student Email');
-    if (!parent1EmailCol) missingInfo.push('Parent Email');
-    
-    if (missingInfo.length > 0) {
-      return NextResponse.json({
-        success: false,
-        message: `Could not automatically match column names`,
-        errors: [
-          `Available columns in your Excel file: ${columnNames.join(', ')}`,
-          `Could not find: ${missingInfo.join(', ')}`,
-          `Please check your column names match one of these patterns:`,
-          `- Student ID: containing 'id', 'number', 'student'`,
-          `- Student Name: containing 'name', 'student'`, 
-          `- Student Email: containing 'email', 'mail'`,
-          `- Parent Email: containing 'parent', 'guardian', 'father', 'mother'`
-        ]
-      }, { status: 400, headers: corsHeaders() });
-    }
-
-    // Process each row
-    const errors: string[] = [];
-    let studentsAdded = 0;
-    const existingStudentIds: string[] = [];
+    // The whole upload is in memory before the import opens its transaction and locks the
+    // event, so a slow client can't hold them. Rows are still parsed and inserted a chunk at a time
+    const data = await file.arrayBuffer();
+    const rows = file.type === 'text/csv'
+      ? csvRows(new Blob([data]).stream())
+      : workbookRows(data);
 
-    // Get existing student IDs for this event
-    const existingStudents = await query(
-      'SELECT student_id FROM bydaya_event_items WHERE event_id = $1 AND active = true',
-      [eventId]
-    );
-    const existingIds = new Set(existingStudents.rows.map(row => row.student_id));
-
-    for (let i = 0; i < jsonData.length; i++) {
-      const row = jsonData[i];
-      const rowNumber = i + 2; // +2 because array is 0-indexed and assuming row 1 is headers
-
-      try {
-        // Use the dynamically found column names
-        const normalizedRow: StudentRow = {
-          student_id: row[studentIdCol!]?.toString().trim(),
-          student_name: row[studentNameCol!]?.toString().trim(),
-          student_email: row[studentEmailCol!]?.toString().trim(),
-          student_email_parent_1: row[parent1EmailCol!]?.toString().trim(),
-          student_email_parent_2: findColumn(['parent2', 'parentemail2', 'guardian2', 'mother', 'father']) ? 
-            row[findColumn(['parent2', 'parentemail2', 'guardian2', 'mother', 'father'])!]?.toString().trim() : '',
-          number_of_seats: parseInt(findColumn(['seats', 'numberofseats', 'seat']) ? 
-            row[findColumn(['seats', 'numberofseats', 'seat'])!]?.toString() || '1' : '1'),
-          invitees: findColumn(['invitees', 'guests', 'attendees']) ? 
-            row[findColumn(['invitees', 'guests', 'attendees'])!]?.toString().trim() : ''
-        };
-
-        // Validate required fields
-        if (!normalizedRow.student_id || !normalizedRow.student_name || !normalizedRow.student_email || !normalizedRow.student_email_parent_1) {
-          errors.push(`Row ${rowNumber}: Missing required data`);
-          continue;
-        }
-
-        // Check if student ID already exists
-        if (existingIds.has(normalizedRow.student_id)) {
-          existingStudentIds.push(normalizedRow.student_id);
-          errors.push(`Row ${rowNumber}: Student ID '${normalizedRow.student_id}' already exists in this event`);
-          continue;
-        }
-
-        // Validate email formats
-        const emailRegex = /^[^\s@]+@[^\s@]+\.[^\s@]+$/;
-        if (!emailRegex.test(normalizedRow.student_email)) {
-          errors.push(`Row ${rowNumber}: Invalid student email format`);
-          continue;
-        }
-        if (!emailRegex.test(normalizedRow.student_email_parent_1)) {
-          errors.push(`Row ${rowNumber}: Invalid parent 1 email format`);
-          continue;
-        }
-        if (normalizedRow.student_email_parent_2 && !emailRegex.test(normalizedRow.student_email_parent_2)) {
-          errors.push(`Row ${rowNumber}: Invalid parent 2 email format`);
-          continue;
-        }
-
-        // Create the student
-        await EventService.createEventItem({
-          event_id: eventId,
-          student_id: normalizedRow.student_id,
-          student_name: normalizedRow.student_name,
-          student_email: normalizedRow.student_email,
-          student_email_parent_1: normalizedRow.student_email_parent_1,
-          student_email_parent_2: normalizedRow.student_email_parent_2 || undefined,
-          number_of_seats: normalizedRow.number_of_seats || 1,
-          invitees: normalizedRow.invitees || undefined
-        });
-
-        studentsAdded++;
-        existingIds.add(normalizedRow.student_id); // Add to set to prevent duplicates within the same file
-
-      } catch (error) {
-        console.error(`Error processing row ${rowNumber}:`, error);
-        errors.push(`Row ${rowNumber}: Failed to process - ${error instanceof Error ? error.message : 'Unknown error'}`);
-      }
+    // With Accept: application/x-ndjson, a progress line after every chunk and the result last
+    if ((request.headers.get('accept') || '').includes('application/x-ndjson')) {
+      return streamImport(eventId, rows);
     }
 
-    const response = {
-      success: studentsAdded > 0,
-      message: studentsAdded > 0 
-        ? `Successfully processed ${studentsAdded} out of ${jsonData.length} students`
-        : 'No students were added',
-      studentsAdded,
-      errors: errors.length > 0 ? errors : undefined
-    };
-
-    return NextResponse.json(response, {
-      status: studentsAdded > 0 ? 200 : 400,
+    const result = await StudentImport.run(eventId, rows);
+    warmQrImages(eventId, result);
+    return NextResponse.json(responseBody(result), {
+      status: result.studentsAdded > 0 ? 200 : 400,
       headers: corsHeaders()
     });
 
   } catch (error) {
+    if (error instanceof ImportFormatError) {
+      return NextResponse.json(
+        { success: false, message: error.message, errors: error.details.length > 0 ? error.details : undefined },
+        { status: error.status, headers: corsHeaders() }
+      );
+    }
     console.error('Upload error:', error);
     return NextResponse.json({
       success: false,
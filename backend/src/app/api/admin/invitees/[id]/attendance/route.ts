@@ -1,6 +1,8 @@
 import { NextRequest, NextResponse } from 'next/server';
 import { query } from '@/lib/db/connection';
 import { corsHeaders } from '@/lib/middleware';
+import { AttendanceStream } from '@/lib/services/attendanceStream';
+import { InviteeLookupCache } from '@/lib/services/lookupCache';
 
 export async function PUT(
   request: NextRequest,
@@ -21,13 +23,16 @@ export async function PUT(
 
     // Update attendance
     const result = await query(`
-      UPDATE bydaya_event_invitees 
+      UPDATE bydaya_event_invitees bei
       SET 
         invitees_attendance = $1,
         invitees_attendance_time = $2,
         updated_at = NOW()
-      WHERE id = $3 AND active = true
-      RETURNING id
+      FROM (SELECT id, invitees_attendance FROM bydaya_event_invitees WHERE id = $3 FOR UPDATE) prev
+      WHERE bei.id = prev.id AND bei.active = true
+      RETURNING bei.id, bei.event_id, bei.invitees_qrcode_text, bei.invitees_name,
+                bei.invitees_attendance, bei.invitees_attendance_time,
+                prev.invitees_attendance AS was_attended
     `, [attendance, attendance ? new Date().toISOString() : null, inviteeId]);
 
     if (result.rows.length === 0) {
@@ -37,6 +42,13 @@ export async function PUT(
       );
     }
 
+    // Let the gates know straight away, including un-marks, but only of a real
+    // change: they move their headcount by one for every push
+    InviteeLookupCache.invalidate(result.rows[0].invitees_qrcode_text);
+    if (result.rows[0].was_attended !== attendance) {
+      AttendanceStream.publish(AttendanceStream.fromRow(result.rows[0]));
+    }
+
     return NextResponse.json({
       success: true,
       message: `Attendance ${attendance ? 'marked' : 'unmarked'} successfully`
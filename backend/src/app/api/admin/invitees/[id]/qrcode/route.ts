@@ -1,7 +1,7 @@
 import { NextRequest, NextResponse } from 'next/server';
 import { query } from '@/lib/db/connection';
 import { corsHeaders } from '@/lib/middleware';
-import QRCode from 'qrcode';
+import { QrImageCache } from '@/lib/services/qrImageCache';
 
 export async function GET(
   request: NextRequest,
@@ -33,20 +33,13 @@ export async function GET(
 
     const invitee = result.rows[0];
     
-    // Generate QR code as base64
-    const qrCodeBuffer = await QRCode.toBuffer(invitee.invitees_qrcode_text, {
-      width: 256,
-      margin: 2,
-      color: {
-        dark: '#000000',
-        light: '#FFFFFF'
-      }
-    });
-
-    const qrCodeBase64 = qrCodeBuffer.toString('base64');
+    // Rendered once per code and shared with the invite emails
+    const image = await QrImageCache.get(invitee.invitees_qrcode_text);
+    const qrCodeBase64 = image.png.toString('base64');
 
     return NextResponse.json({
       qrcode: qrCodeBase64,
+      qrcode_url: `/api/admin/qrcodes/${image.digest}`,
       qrcode_text: invitee.invitees_qrcode_text,
       invitee_name: invitee.invitees_name,
       event_name: invitee.event_name,
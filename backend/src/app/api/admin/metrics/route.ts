@@ -0,0 +1,27 @@
+import { NextRequest, NextResponse } from 'next/server';
+import { corsHeaders } from '@/lib/middleware';
+import { withRoleAuth } from '@/lib/middleware/roleAuth';
+import { AttendanceStream } from '@/lib/services/attendanceStream';
+import { AuthCache } from '@/lib/services/authCache';
+import { InviteeLookupCache } from '@/lib/services/lookupCache';
+import { User } from '@/types';
+
+// Counters of this server process since it started, for watching the gates on event night
+async function handleMetrics(request: NextRequest, context: any, user: User): Promise<NextResponse> {
+  return NextResponse.json({
+    lookupCache: InviteeLookupCache.stats(),
+    auth: AuthCache.stats(),
+    attendanceStream: {
+      subscribers: AttendanceStream.subscriberCount(),
+    },
+  }, {
+    status: 200,
+    headers: {
+      ...corsHeaders(),
+      'Cache-Control': 'no-store',
+    },
+  });
+}
+
+// Export with role-based authentication - requires web access
+export const GET = withRoleAuth(handleMetrics, 'web');
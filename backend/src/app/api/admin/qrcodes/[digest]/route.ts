@@ -0,0 +1,62 @@
+import { NextRequest, NextResponse } from 'next/server';
+import { corsHeaders } from '@/lib/middleware';
+import { QrImageCache } from '@/lib/services/qrImageCache';
+
+// A digest names exactly one image, so browsers may keep it for good
+const IMAGE_CACHE_CONTROL = 'private, max-age=31536000, immutable';
+
+export async function GET(
+  request: NextRequest,
+  { params }: { params: Promise<{ digest: string }> }
+) {
+  try {
+    const { digest } = await params;
+    if (!/^[0-9a-f]{64}$/.test(digest)) {
+      return NextResponse.json(
+        { error: 'Invalid QR image id' },
+        { status: 400, headers: corsHeaders() }
+      );
+    }
+
+    const etag = `"${digest}"`;
+    const headers = {
+      ...corsHeaders(),
+      'Cache-Control': IMAGE_CACHE_CONTROL,
+      ETag: etag
+    };
+    if (request.headers.get('if-none-match') === etag) {
+      return new NextResponse(null, { status: 304, headers });
+    }
+
+    const png = await QrImageCache.byDigest(digest);
+    if (!png) {
+      return NextResponse.json(
+        { error: 'QR image not found' },
+        { status: 404, headers: corsHeaders() }
+      );
+    }
+
+    return new NextResponse(new Uint8Array(png), {
+      status: 200,
+      headers: {
+        ...headers,
+        'Content-Type': 'image/png',
+        'Content-Length': String(png.length)
+      }
+    });
+
+  } catch (error) {
+    console.error('QR image error:', error);
+    return NextResponse.json(
+      { error: 'Failed to load QR image' },
+      { status: 500, headers: corsHeaders() }
+    );
+  }
+}
+
+export async function OPTIONS() {
+  return new NextResponse(null, {
+    status: 200,
+    headers: corsHeaders(),
+  });
+}
@@ -2,22 +2,24 @@ import { NextRequest, NextResponse } from 'next/server';
 import { query } from '@/lib/db/connection';
 import { corsHeaders } from '@/lib/middleware';
 import * as XLSX from 'xlsx';
+import {
+  AttendanceExport, AttendanceFilter, EXPORT_CONTENT_TYPES, ExportBusyError, ExportFormat
+} from '@/lib/services/attendanceExport';
 
 export async function GET(request: NextRequest) {
   try {
     const { searchParams } = new URL(request.url);
     const reportType = searchParams.get('type') || 'summary';
-    const eventId = searchParams.get('eventId');
+
+    // One row per guest, so it is streamed from a cursor rather than built in memory
+    if (reportType === 'attendance') {
+      return await streamAttendanceReport(searchParams);
+    }
 
     let workbook: XLSX.WorkBook;
     let filename: string;
 
     switch (reportType) {
-      case 'attendance':
-        const result = await generateAttendanceReport(eventId);
-        workbook = result.workbook;
-        filename = result.filename;
-        break;
       case 'events':
         workbook = await generateEventsReport();
         filename = 'events_report.xlsx';
@@ -154,60 +156,42 @@ async function generateEventsReport(): Promise<XLSX.WorkBook> {
   return workbook;
 }
 
-async function generateAttendanceReport(eventId?: string | null): Promise<{workbook: XLSX.WorkBook, filename: string}> {
-  const workbook = XLSX.utils.book_new();
+async function streamAttendanceReport(searchParams: URLSearchParams): Promise<NextResponse> {
+  const format = (searchParams.get('format') || 'xlsx') as ExportFormat;
+  const attendance = (searchParams.get('attendance') || 'all') as AttendanceFilter;
+  const eventId = searchParams.get('eventId') ? parseInt(searchParams.get('eventId')!) : null;
 
-  let whereClause = `WHERE inv.active = true AND e.active = true AND ei.active = true AND inv.main_invitee = false`;
-  let params: any[] = [];
-  
-  if (eventId) {
-    whereClause += ` AND e.id = $1`;
-    params.push(parseInt(eventId));
+  if (!(format in EXPORT_CONTENT_TYPES) || !['all', 'present', 'absent'].includes(attendance) ||
+      (eventId !== null && isNaN(eventId))) {
+    return NextResponse.json(
+      { error: 'Invalid export parameters' },
+      { status: 400, headers: corsHeaders() }
+    );
   }
 
-  // Detailed attendance data - excluding main invitees (only additional family members)
-  const attendanceResult = await query(`
-    SELECT 
-      e.name as event_name,
-      ei.student_name,
-      ei.student_id,
-      inv.invitees_name,
-      CASE WHEN inv.invitees_attendance THEN 'Present' ELSE 'Absent' END as attendance_status,
-      CASE WHEN inv.invitees_attendance_time IS NOT NULL 
-           THEN TO_CHAR(inv.invitees_attendance_time, 'YYYY-MM-DD HH24:MI') 
-           ELSE '' END as attendance_time,
-      CASE WHEN inv.mail_send THEN 'Yes' ELSE 'No' END as email_sent,
-      TO_CHAR(e.created_at, 'YYYY-MM-DD') as event_date
-    FROM bydaya_event_invitees inv
-    JOIN bydaya_events e ON inv.event_id = e.id
-    JOIN bydaya_event_items ei ON inv.student_item_id = ei.id
-    ${whereClause}
-    ORDER BY e.created_at DESC, ei.student_name
-  `, params);
-
-  // Generate filename based on event name or use default
-  let filename = 'attendance_report.xlsx';
-  if (attendanceResult.rows.length > 0) {
-    const eventName = attendanceResult.rows[0].event_name;
-    // Clean filename by removing special characters
-    const cleanEventName = eventName.replace(/[^a-zA-Z0-9\s]/g, '').replace(/\s+/g, '_');
-    filename = `${cleanEventName}_attendance_report.xlsx`;
+  const filename = await AttendanceExport.filename(eventId, format);
+  let body: ReadableStream<Uint8Array>;
+  try {
+    body = await AttendanceExport.stream({ eventId, attendance, format });
+  } catch (error) {
+    if (error instanceof ExportBusyError) {
+      return NextResponse.json(
+        { error: 'Other exports are running, try again in a minute' },
+        { status: 503, headers: { ...corsHeaders(), 'Retry-After': '30' } }
+      );
+    }
+    throw error;
   }
 
-  const attendanceData = attendanceResult.rows.map(row => ({
-    'Student Name': row.student_name,
-    'Student ID': row.student_id,
-    'Invitee Name': row.invitees_name,
-    'Attendance Status': row.attendance_status,
-    'Attendance Time': row.attendance_time,
-    'Email Sent': row.email_sent,
-    'Event Date': row.event_date
-  }));
-
-  const attendanceSheet = XLSX.utils.json_to_sheet(attendanceData);
-  XLSX.utils.book_append_sheet(workbook, attendanceSheet, 'Attendance');
-
-  return { workbook, filename };
+  return new NextResponse(body, {
+    status: 200,
+    headers: {
+      ...corsHeaders(),
+      'Content-Type': EXPORT_CONTENT_TYPES[format],
+      'Content-Disposition': `attachment; filename="${filename}"`,
+      'Cache-Control': 'no-store',
+    }
+  });
 }
 
 async function generateMonthlyReport(): Promise<XLSX.WorkBook> {
@@ -2,13 +2,13 @@ import { NextRequest, NextResponse } from 'next/server';
 import { EventService } from '@/lib/services/eventService';
 import { corsHeaders } from '@/lib/middleware';
 import { withRoleAuth } from '@/lib/middleware/roleAuth';
+import { BadRequestBodyError, badRequestBody, inviteesResponse, readJsonBody } from '@/lib/wire';
 import { GetDataRequest } from '@/types';
 import { User } from '@/types';
 
 async function handleGetData(request: NextRequest, context: any, user: User): Promise<NextResponse> {
   try {
-    const body = await request.json();
-    const { invitees_qrcode_text } = body as GetDataRequest;
+    const { invitees_qrcode_text } = await readJsonBody<GetDataRequest>(request);
 
     // Validate required fields
     if (!invitees_qrcode_text) {
@@ -24,12 +24,13 @@ async function handleGetData(request: NextRequest, context: any, user: User): Pr
     // Get invitees data
     const result = await EventService.getInviteesByQRCode(invitees_qrcode_text);
 
-    return NextResponse.json(result, {
-      status: 200,
-      headers: corsHeaders()
-    });
+    // JSON or compact CBOR rows, depending on the client's Accept header
+    return inviteesResponse(request, result);
 
   } catch (error) {
+    if (error instanceof BadRequestBodyError) {
+      return badRequestBody(error);
+    }
     console.error('Get data error:', error);
     return NextResponse.json(
       { error: "Internal server error" },
@@ -1,11 +1,12 @@
 import { NextRequest, NextResponse } from 'next/server';
 import { AuthService } from '@/lib/auth';
 import { corsHeaders } from '@/lib/middleware';
+import { readJsonBody } from '@/lib/wire';
 import { LoginRequest, LoginResponse } from '@/types';
 
 export async function POST(request: NextRequest) {
   try {
-    const body: LoginRequest = await request.json();
+    const body = await readJsonBody<LoginRequest>(request);
     const { db, login, password } = body;
 
     // Validate required fields
@@ -38,9 +39,10 @@ export async function POST(request: NextRequest) {
     try {
       // Generate API key
       const apiKey = await AuthService.generateApiKey(user.id, user.username);
+      const gateSecret = await AuthService.gateSecret();
       
       const response: LoginResponse = {
-        message: [{ apikey: apiKey }],
+        message: [{ apikey: apiKey, ...(gateSecret ? { gate_secret: gateSecret } : {}) }],
         success: true
       };
 
@@ -1,10 +1,11 @@
 import { NextRequest, NextResponse } from 'next/server';
 import { AuthService } from '@/lib/auth';
 import { corsHeaders } from '@/lib/middleware';
+import { readJsonBody } from '@/lib/wire';
 
 export async function POST(request: NextRequest) {
   try {
-    const body = await request.json();
+    const body = await readJsonBody<{ api_key: string; username: string }>(request);
     const { api_key, username } = body;
 
     // Validate required fields
@@ -0,0 +1,70 @@
+import { NextRequest, NextResponse } from 'next/server';
+import { corsHeaders } from '@/lib/middleware';
+import { withRoleAuth } from '@/lib/middleware/roleAuth';
+import { AttendanceStream } from '@/lib/services/attendanceStream';
+import { OccupancyService } from '@/lib/services/occupancyService';
+import { User } from '@/types';
+
+export const dynamic = 'force-dynamic';
+
+/**
+ * Live headcount per active event, read from the counter tables. With
+ * ?event_id= the answer is for that event and also lists each student's
+ * guests against their seats. stream_id is the last tickets/stream change
+ * already counted, so a device can keep the numbers current from the stream.
+ */
+async function handleOccupancy(request: NextRequest, context: any, user: User): Promise<NextResponse> {
+  try {
+    const eventIdParam = request.nextUrl.searchParams.get('event_id');
+    const eventId = eventIdParam ? parseInt(eventIdParam, 10) : undefined;
+    if (eventId !== undefined && isNaN(eventId)) {
+      return NextResponse.json(
+        { error: 'event_id must be a number' },
+        {
+          status: 400,
+          headers: corsHeaders()
+        }
+      );
+    }
+
+    // Taken before the counters: every change up to here is committed and counted.
+    // One published while they are read may be counted twice on the device until
+    // its next snapshot, but none is missed
+    const streamId = AttendanceStream.lastId();
+    const events = await OccupancyService.eventOccupancy(eventId);
+    const students = eventId !== undefined ? await OccupancyService.studentOccupancy(eventId) : undefined;
+
+    return NextResponse.json({
+      success: true,
+      stream_id: streamId,
+      events,
+      ...(students ? { students } : {}),
+    }, {
+      status: 200,
+      headers: {
+        ...corsHeaders(),
+        'Cache-Control': 'no-store',
+      },
+    });
+
+  } catch (error) {
+    console.error('Occupancy error:', error);
+    return NextResponse.json(
+      { error: "Internal server error" },
+      {
+        status: 500,
+        headers: corsHeaders()
+      }
+    );
+  }
+}
+
+// Export with role-based authentication - requires API access (user, manager, admin can use)
+export const GET = withRoleAuth(handleOccupancy, 'api');
+
+export async function OPTIONS() {
+  return new NextResponse(null, {
+    status: 200,
+    headers: corsHeaders(),
+  });
+}
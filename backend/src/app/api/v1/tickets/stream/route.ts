@@ -0,0 +1,91 @@
+import { NextRequest, NextResponse } from 'next/server';
+import { corsHeaders } from '@/lib/middleware';
+import { withRoleAuth } from '@/lib/middleware/roleAuth';
+import { AttendanceStream, StreamedChange } from '@/lib/services/attendanceStream';
+import { User } from '@/types';
+
+export const dynamic = 'force-dynamic';
+
+// Keeps idle connections alive through venue APs and proxies, and lets the
+// client notice a dead connection from its read timeout
+const HEARTBEAT_MS = 15000;
+
+/**
+ * Server-sent events with every attendance change, optionally for one event
+ * only (?event_id=). Reconnecting clients send Last-Event-ID and get what they
+ * missed; if that is no longer possible they get a "reset" event and should
+ * trust get_data over anything they have cached.
+ */
+async function handleStream(request: NextRequest, context: any, user: User): Promise<NextResponse> {
+  const eventIdParam = request.nextUrl.searchParams.get('event_id');
+  const eventId = eventIdParam ? parseInt(eventIdParam, 10) : null;
+  const lastEventId = request.headers.get('last-event-id');
+  const encoder = new TextEncoder();
+
+  let cleanup = () => {};
+  const stream = new ReadableStream<Uint8Array>({
+    start(controller) {
+      const send = (text: string) => {
+        try {
+          controller.enqueue(encoder.encode(text));
+        } catch (error) {
+          // Stream already closed; the abort handler cleans up
+        }
+      };
+      const sendChange = ({ id, change }: StreamedChange) => {
+        if (eventId === null || change.event_id === eventId) {
+          send(`id: ${id}\nevent: attendance\ndata: ${JSON.stringify(change)}\n\n`);
+        }
+      };
+
+      const subscription = AttendanceStream.subscribe(sendChange, lastEventId);
+      // Tell the client how long to wait before reconnecting
+      send('retry: 1000\n\n');
+      if (subscription.missed === null) {
+        send('event: reset\ndata: {}\n\n');
+      } else {
+        subscription.missed.forEach(sendChange);
+      }
+
+      const heartbeat = setInterval(() => send(': heartbeat\n\n'), HEARTBEAT_MS);
+      cleanup = () => {
+        clearInterval(heartbeat);
+        subscription.unsubscribe();
+      };
+      request.signal.addEventListener('abort', () => {
+        cleanup();
+        try {
+          controller.close();
+        } catch (error) {
+          // Already closed
+        }
+      });
+    },
+    cancel() {
+      cleanup();
+    },
+  });
+
+  return new NextResponse(stream, {
+    status: 200,
+    headers: {
+      ...corsHeaders(),
+      'Content-Type': 'text/event-stream; charset=utf-8',
+      // no-transform also keeps Next's gzip from buffering the events
+      'Cache-Control': 'no-cache, no-transform',
+      'Connection': 'keep-alive',
+      // Stop reverse proxies from buffering the stream
+      'X-Accel-Buffering': 'no',
+    },
+  });
+}
+
+// Export with role-based authentication - requires API access (user, manager, admin can use)
+export const GET = withRoleAuth(handleStream, 'api');
+
+export async function OPTIONS() {
+  return new NextResponse(null, {
+    status: 200,
+    headers: corsHeaders(),
+  });
+}
@@ -2,13 +2,14 @@ import { NextRequest, NextResponse } from 'next/server';
 import { EventService } from '@/lib/services/eventService';
 import { corsHeaders } from '@/lib/middleware';
 import { withRoleAuth } from '@/lib/middleware/roleAuth';
+import { BadRequestBodyError, badRequestBody, readUpdateDataRequest, scannerHeaders } from '@/lib/wire';
 import { UpdateDataRequest } from '@/types';
 import { User } from '@/types';
 
 async function handleUpdateData(request: NextRequest, context: any, user: User): Promise<NextResponse> {
   try {
-    const body = await request.json();
-    const { invitees } = body as UpdateDataRequest;
+    // JSON or compact CBOR rows, optionally gzipped
+    const { invitees }: UpdateDataRequest = await readUpdateDataRequest(request);
 
     // Validate required fields
     if (!invitees || !Array.isArray(invitees)) {
@@ -26,10 +27,13 @@ async function handleUpdateData(request: NextRequest, context: any, user: User):
 
     return NextResponse.json(result, {
       status: 200,
-      headers: corsHeaders()
+      headers: scannerHeaders()
     });
 
   } catch (error) {
+    if (error instanceof BadRequestBodyError) {
+      return badRequestBody(error);
+    }
     console.error('Update data error:', error);
     return NextResponse.json(
       { error: "Internal server error" },
@@ -2,6 +2,7 @@ import bcrypt from 'bcryptjs';
 import jwt from 'jsonwebtoken';
 import { v4 as uuidv4 } from 'uuid';
 import { query } from './db/connection';
+import { ApiKeyUser, AuthCache } from './services/authCache';
 import { User, ApiKey, UserRole } from '@/types';
 
 export class AuthService {
@@ -47,6 +48,7 @@ export class AuthService {
         if (apiKey.expires_at && new Date() > new Date(apiKey.expires_at)) {
           // Delete expired key
           await query('DELETE FROM api_keys WHERE id = $1', [apiKey.id]);
+          AuthCache.revokeKey(apiKey.api_key);
         } else {
           throw new Error('Api Key Already Exist');
         }
@@ -68,32 +70,48 @@ export class AuthService {
     }
   }
 
+  // Every scanner request comes through here, so verified keys are cached (see AuthCache)
   static async validateApiKey(apiKey: string): Promise<User | null> {
     try {
-      const result = await query(`
-        SELECT u.* FROM users u
-        JOIN api_keys ak ON u.id = ak.user_id
-        WHERE ak.api_key = $1 AND ak.is_active = true
-        AND (ak.expires_at IS NULL OR ak.expires_at > NOW())
-      `, [apiKey]);
-
-      if (result.rows.length === 0) {
-        return null;
-      }
-
-      return result.rows[0];
+      return await AuthCache.user(apiKey, () => AuthService.queryApiKeyUser(apiKey));
     } catch (error) {
       console.error('API key validation error:', error);
       return null;
     }
   }
 
+  private static async queryApiKeyUser(apiKey: string): Promise<ApiKeyUser | null> {
+    const result = await query(`
+      SELECT u.*, ak.expires_at AS key_expires_at FROM users u
+      JOIN api_keys ak ON u.id = ak.user_id
+      WHERE ak.api_key = $1 AND ak.is_active = true
+      AND (ak.expires_at IS NULL OR ak.expires_at > NOW())
+    `, [apiKey]);
+
+    if (result.rows.length === 0) {
+      return null;
+    }
+
+    const { key_expires_at: keyExpiresAt, ...user } = result.rows[0];
+    return { user, keyExpiresAt };
+  }
+
+  // Key of the event being run (the newest active one) for signing gate-to-gate sync; null if none is active
+  static async gateSecret(): Promise<string | null> {
+    const result = await query(
+      'SELECT gate_secret FROM bydaya_events WHERE active = true ORDER BY created_at DESC, id DESC LIMIT 1'
+    );
+    return result.rows.length > 0 ? result.rows[0].gate_secret : null;
+  }
+
   static async revokeApiKey(apiKey: string, username: string): Promise<void> {
     try {
       await query(
         'DELETE FROM api_keys WHERE api_key = $1 AND key_name = $2',
         [apiKey, `Bedayia ApiKey For ${username}`]
       );
+      // After the DELETE, so a concurrent request cannot cache the key again
+      AuthCache.revokeKey(apiKey);
     } catch (error) {
       console.error('API key revocation error:', error);
       throw error;
@@ -117,16 +135,18 @@ export class AuthService {
 
   static async getUserRole(roleId: string): Promise<UserRole | null> {
     try {
-      const result = await query(
-        'SELECT * FROM user_roles WHERE role_name = $1',
-        [roleId]
-      );
-
-      if (result.rows.length === 0) {
-        return null;
-      }
+      return await AuthCache.role(roleId, async () => {
+        const result = await query(
+          'SELECT * FROM user_roles WHERE role_name = $1',
+          [roleId]
+        );
+
+        if (result.rows.length === 0) {
+          return null;
+        }
 
-      return result.rows[0];
+        return result.rows[0];
+      });
     } catch (error) {
       console.error('Get user role error:', error);
       return null;
@@ -0,0 +1,162 @@
+import { GetDataResponse, UpdateDataRequest } from '@/types';
+
+export const CBOR_MEDIA_TYPE = 'application/cbor';
+
+type Invitee = GetDataResponse['message'][number];
+
+/**
+ * Compact binary encoding of the scanner's invitee list.
+ *
+ * The list is a CBOR array of fixed-position rows:
+ *   [qrcode_text, name, main_invitee, number_of_seats, attendance, attendance_time | null]
+ * Only the CBOR subset needed for that shape is handled (ints, text, arrays,
+ * true/false/null). Mirror of InviteeCbor in the app's scan-core module; keep
+ * the row order in sync.
+ */
+export function encodeInvitees(invitees: Invitee[]): Buffer {
+  const writer = new Writer();
+  writer.head(4, invitees.length);
+  for (const invitee of invitees) {
+    writer.head(4, 6);
+    writer.text(invitee.invitees_qrcode_text);
+    writer.text(invitee.invitees_name);
+    writer.bool(invitee.main_invitee);
+    writer.int(invitee.number_of_seats);
+    writer.bool(invitee.invitees_attendance);
+    writer.text(invitee.invitees_attendance_time);
+  }
+  return writer.toBuffer();
+}
+
+export function decodeInvitees(data: Buffer): UpdateDataRequest['invitees'] {
+  const reader = new Reader(data);
+  const rows = reader.value();
+  if (!Array.isArray(rows)) {
+    throw new Error('Expected an array of invitee rows');
+  }
+  return rows.map((row, i) => {
+    if (!Array.isArray(row) || row.length < 6) {
+      throw new Error(`Invitee row ${i} is malformed`);
+    }
+    return {
+      invitees_qrcode_text: String(row[0]),
+      invitees_name: String(row[1]),
+      invitees_attendance: row[4] === true,
+    };
+  });
+}
+
+class Writer {
+  private chunks: Buffer[] = [];
+
+  head(major: number, value: number) {
+    const type = major << 5;
+    if (value < 24) {
+      this.chunks.push(Buffer.from([type | value]));
+    } else if (value < 0x100) {
+      this.chunks.push(Buffer.from([type | 24, value]));
+    } else if (value < 0x10000) {
+      const buf = Buffer.alloc(3);
+      buf[0] = type | 25;
+      buf.writeUInt16BE(value, 1);
+      this.chunks.push(buf);
+    } else {
+      const buf = Buffer.alloc(5);
+      buf[0] = type | 26;
+      buf.writeUInt32BE(value, 1);
+      this.chunks.push(buf);
+    }
+  }
+
+  int(value: number | null) {
+    if (value === null || value === undefined) {
+      this.chunks.push(Buffer.from([0xf6]));
+    } else if (value >= 0) {
+      this.head(0, value);
+    } else {
+      this.head(1, -1 - value);
+    }
+  }
+
+  text(value: string | null) {
+    if (value === null || value === undefined) {
+      this.chunks.push(Buffer.from([0xf6]));
+      return;
+    }
+    const utf8 = Buffer.from(value, 'utf8');
+    this.head(3, utf8.length);
+    this.chunks.push(utf8);
+  }
+
+  bool(value: boolean) {
+    this.chunks.push(Buffer.from([value ? 0xf5 : 0xf4]));
+  }
+
+  toBuffer(): Buffer {
+    return Buffer.concat(this.chunks);
+  }
+}
+
+type CborValue = number | string | boolean | null | CborValue[];
+
+class Reader {
+  private pos = 0;
+
+  constructor(private data: Buffer) {}
+
+  value(): CborValue {
+    const initial = this.byte();
+    switch (initial) {
+      case 0xf4: return false;
+      case 0xf5: return true;
+      case 0xf6: return null;
+    }
+    const major = initial >> 5;
+    const arg = this.argument(initial);
+    switch (major) {
+      case 0:
+        return arg;
+      case 1:
+        return -1 - arg;
+      case 3: {
+        this.require(arg);
+        const text = this.data.toString('utf8', this.pos, this.pos + arg);
+        this.pos += arg;
+        return text;
+      }
+      case 4: {
+        const items: CborValue[] = [];
+        for (let i = 0; i < arg; i++) {
+          items.push(this.value());
+        }
+        return items;
+      }
+      default:
+        throw new Error(`Unsupported CBOR item 0x${initial.toString(16)}`);
+    }
+  }
+
+  private argument(initial: number): number {
+    const info = initial & 0x1f;
+    if (info < 24) return info;
+    const size = info === 24 ? 1 : info === 25 ? 2 : info === 26 ? 4 : 0;
+    if (size === 0) {
+      throw new Error(`Unsupported CBOR length at offset ${this.pos - 1}`);
+    }
+    this.require(size);
+    const value = this.data.readUIntBE(this.pos, size);
+    this.pos += size;
+    return value;
+  }
+
+  private byte(): number {
+    this.require(1);
+    return this.data[this.pos++];
+  }
+
+  private require(bytes: number) {
+    if (this.pos + bytes > this.data.length) {
+      throw new Error(`Truncated CBOR at offset ${this.pos}`);
+    }
+  }
+}
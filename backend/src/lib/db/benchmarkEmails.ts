@@ -0,0 +1,102 @@
+#!/usr/bin/env bun
+
+import { query } from './connection';
+import { StudentImport, SheetRow } from '../services/studentImport';
+import { startSmtpStandIn } from './smtpStandIn';
+
+// Sends the invite emails of a throwaway event through the SMTP stand-in, which
+// answers each message after --delay ms like a remote relay would. The run is
+// interrupted halfway and started again, and every student must end up with
+// exactly one email. --concurrency 1 gives the one-at-a-time baseline.
+//
+//   bun run db:bench-emails --rows 2000 --delay 80 --concurrency 5 --rate 0
+
+const EVENT_NAME = 'Email Benchmark';
+
+function option(name: string, fallback: string): string {
+  const index = process.argv.indexOf(`--${name}`);
+  return index >= 0 && process.argv[index + 1] ? process.argv[index + 1] : fallback;
+}
+
+async function* syntheticStudents(rows: number): AsyncGenerator<SheetRow[]> {
+  const data: SheetRow[] = [[
+    'student_id', 'student_name', 'student_email', 'student_email_parent_1',
+    'student_email_parent_2', 'number_of_seats', 'invitees'
+  ]];
+  for (let i = 1; i <= rows; i++) {
+    data.push([`M${100000 + i}`, `طالب رقم ${i}`, `student${i}@bench.invalid`, `parent${i}@bench.invalid`, null, 2, 'ضيف']);
+  }
+  yield data;
+}
+
+async function benchmarkEmails() {
+  const rows = parseInt(option('rows', '2000'));
+  const delay = parseInt(option('delay', '80'));
+  const concurrency = option('concurrency', '5');
+
+  const standIn = await startSmtpStandIn(0, delay);
+  // Read when the transporter is first created
+  process.env.SMTP_HOST = '127.0.0.1';
+  process.env.SMTP_PORT = String(standIn.port);
+  process.env.SMTP_SECURE = 'false';
+  process.env.EMAIL_CONCURRENCY = concurrency;
+  process.env.SMTP_RATE_LIMIT = option('rate', '0');
+  const { EmailService } = await import('../services/emailService');
+
+  await query('DELETE FROM bydaya_events WHERE name = $1', [EVENT_NAME]);
+  try {
+    const created = await query(
+      'INSERT INTO bydaya_events (name, location) VALUES ($1, $2) RETURNING id',
+      [EVENT_NAME, 'Benchmark']
+    );
+    const eventId = created.rows[0].id;
+    await StudentImport.run(eventId, syntheticStudents(rows));
+    console.log(`📨 ${rows} students, relay latency ${delay} ms, ${concurrency} connections`);
+
+    const started = performance.now();
+    const interrupt = new AbortController();
+    const watcher = setInterval(() => {
+      if (standIn.received.length >= rows / 2) {
+        interrupt.abort();
+      }
+    }, 10);
+    const first = await EmailService.sendEventInviteEmails(eventId, { signal: interrupt.signal });
+    clearInterval(watcher);
+    const second = await EmailService.sendEventInviteEmails(eventId);
+    const seconds = (performance.now() - started) / 1000;
+
+    const perRecipient = new Map<string, number>();
+    for (const message of standIn.received) {
+      for (const to of message.to.filter((address) => address.startsWith('student'))) {
+        perRecipient.set(to, (perRecipient.get(to) || 0) + 1);
+      }
+    }
+    const duplicates = Array.from(perRecipient.values()).filter((count) => count > 1).length;
+    const pending = await query(`
+      SELECT COUNT(*) AS pending FROM bydaya_event_invitees
+      WHERE event_id = $1 AND mail_send = false
+    `, [eventId]);
+
+    console.log(`⚡ Interrupted after ${first.sent}, resumed with ${second.sent}: ` +
+      `${standIn.received.length} messages in ${seconds.toFixed(2)}s ` +
+      `(${Math.round(standIn.received.length / seconds)} msg/s, ${standIn.peakConnections} connections)`);
+    console.log(`   ${rows - perRecipient.size} students without an email, ${duplicates} mailed twice, ` +
+      `${pending.rows[0].pending} invitee rows still pending, ${first.failed + second.failed} failed`);
+  } finally {
+    await query('DELETE FROM bydaya_events WHERE name = $1', [EVENT_NAME]);
+    await standIn.close();
+  }
+}
+
+// Run the benchmark if this file is executed directly
+if (require.main === module) {
+  benchmarkEmails().then(() => {
+    console.log('✨ Email benchmark finished');
+    process.exit(0);
+  }).catch((error) => {
+    console.error('Email benchmark failed:', error);
+    process.exit(1);
+  });
+}
+
+export { benchmarkEmails };
@@ -0,0 +1,150 @@
+#!/usr/bin/env bun
+
+import fs from 'fs';
+import path from 'path';
+import { query } from './connection';
+import { StudentImport, SheetRow } from '../services/studentImport';
+import { AttendanceExport, ExportFormat } from '../services/attendanceExport';
+import * as XLSX from 'xlsx';
+
+// Exports the attendance report of a throwaway event with --invitees guests
+// (half of them checked in) and reports time to first byte, time to the first
+// rows, total time and peak heap for the streamed CSV and XLSX. --legacy also
+// times the old way: every row in memory, one SheetJS workbook, then write.
+// --out DIR keeps the files for opening in Excel.
+//
+//   bun run db:bench-export --invitees 100000 --legacy
+
+const EVENT_NAME = 'Export Benchmark';
+const GUESTS_PER_STUDENT = 4;
+
+function option(name: string, fallback: string): string {
+  const index = process.argv.indexOf(`--${name}`);
+  return index >= 0 && process.argv[index + 1] ? process.argv[index + 1] : fallback;
+}
+
+async function* syntheticStudents(students: number): AsyncGenerator<SheetRow[]> {
+  let chunk: SheetRow[] = [[
+    'student_id', 'student_name', 'student_email', 'student_email_parent_1',
+    'student_email_parent_2', 'number_of_seats', 'invitees'
+  ]];
+  for (let i = 1; i <= students; i++) {
+    const names = Array.from({ length: GUESTS_PER_STUDENT }, (_, g) => `ضيف ${g + 1} للطالب ${i}`);
+    chunk.push([`X${100000 + i}`, `طالب رقم ${i}`, `student${i}@bench.invalid`, `parent${i}@bench.invalid`,
+      null, GUESTS_PER_STUDENT, names.join(', ')]);
+    if (chunk.length >= 1000) {
+      yield chunk;
+      chunk = [];
+    }
+  }
+  if (chunk.length > 0) {
+    yield chunk;
+  }
+}
+
+// Samples the heap while fn runs, so the report shows the peak and not just the end state
+async function measure<T>(fn: () => Promise<T>): Promise<{ value: T; ms: number; peakHeapMb: number }> {
+  let peak = process.memoryUsage().heapUsed;
+  const sampler = setInterval(() => {
+    peak = Math.max(peak, process.memoryUsage().heapUsed);
+  }, 20);
+  const started = performance.now();
+  try {
+    const value = await fn();
+    return { value, ms: performance.now() - started, peakHeapMb: peak / 1024 / 1024 };
+  } finally {
+    clearInterval(sampler);
+  }
+}
+
+async function exportStreamed(eventId: number, format: ExportFormat, outDir: string | null) {
+  const started = performance.now();
+  const stream = await AttendanceExport.stream({ eventId, format });
+  const out = outDir ? fs.createWriteStream(path.join(outDir, `attendance.${format}`)) : null;
+  const reader = stream.getReader();
+  let firstByteMs = 0;
+  let firstRowsMs = 0;
+  let chunks = 0;
+  let bytes = 0;
+  for (;;) {
+    const { done, value } = await reader.read();
+    if (done) break;
+    chunks++;
+    bytes += value.length;
+    // The first chunk is the header; the second carries the first fetched rows
+    if (chunks === 1) firstByteMs = performance.now() - started;
+    if (chunks === 2) firstRowsMs = performance.now() - started;
+    out?.write(value);
+  }
+  out?.end();
+  return { firstByteMs, firstRowsMs, bytes };
+}
+
+async function benchmarkExport() {
+  const invitees = parseInt(option('invitees', '100000'));
+  const legacy = process.argv.includes('--legacy');
+  const outDir = process.argv.includes('--out') ? option('out', '.') : null;
+  const students = Math.ceil(invitees / GUESTS_PER_STUDENT);
+
+  await query('DELETE FROM bydaya_events WHERE name = $1', [EVENT_NAME]);
+  try {
+    const created = await query(
+      'INSERT INTO bydaya_events (name, location) VALUES ($1, $2) RETURNING id',
+      [EVENT_NAME, 'Benchmark']
+    );
+    const eventId = created.rows[0].id;
+    await StudentImport.run(eventId, syntheticStudents(students));
+    await query(`
+      UPDATE bydaya_event_invitees
+      SET invitees_attendance = true, invitees_attendance_time = CURRENT_TIMESTAMP
+      WHERE event_id = $1 AND id % 2 = 0
+    `, [eventId]);
+    console.log(`📊 ${students} students, ${students * GUESTS_PER_STUDENT} guests, baseline heap ` +
+      `${(process.memoryUsage().heapUsed / 1024 / 1024).toFixed(0)} MB`);
+
+    for (const format of ['csv', 'xlsx'] as ExportFormat[]) {
+      const run = await measure(() => exportStreamed(eventId, format, outDir));
+      console.log(`⚡ Streamed ${format}: first byte ${run.value.firstByteMs.toFixed(0)} ms, ` +
+        `first rows ${run.value.firstRowsMs.toFixed(0)} ms, done in ${(run.ms / 1000).toFixed(2)}s, ` +
+        `${(run.value.bytes / 1024 / 1024).toFixed(1)} MB, peak heap ${run.peakHeapMb.toFixed(0)} MB`);
+    }
+
+    if (legacy) {
+      const run = await measure(async () => {
+        const result = await query(`
+          SELECT ei.student_name, ei.student_id, inv.invitees_name,
+            CASE WHEN inv.invitees_attendance THEN 'Present' ELSE 'Absent' END as attendance_status,
+            CASE WHEN inv.invitees_attendance_time IS NOT NULL
+                 THEN TO_CHAR(inv.invitees_attendance_time, 'YYYY-MM-DD HH24:MI') ELSE '' END as attendance_time,
+            CASE WHEN inv.mail_send THEN 'Yes' ELSE 'No' END as email_sent,
+            TO_CHAR(e.created_at, 'YYYY-MM-DD') as event_date
+          FROM bydaya_event_invitees inv
+          JOIN bydaya_events e ON inv.event_id = e.id
+          JOIN bydaya_event_items ei ON inv.student_item_id = ei.id
+          WHERE e.id = $1 AND inv.main_invitee = false
+          ORDER BY ei.student_name
+        `, [eventId]);
+        const workbook = XLSX.utils.book_new();
+        XLSX.utils.book_append_sheet(workbook, XLSX.utils.json_to_sheet(result.rows), 'Attendance');
+        return XLSX.write(workbook, { type: 'buffer', bookType: 'xlsx' }).length;
+      });
+      console.log(`🐢 In-memory xlsx: first byte after ${(run.ms / 1000).toFixed(2)}s, ` +
+        `${(run.value / 1024 / 1024).toFixed(1)} MB, peak heap ${run.peakHeapMb.toFixed(0)} MB`);
+    }
+  } finally {
+    await query('DELETE FROM bydaya_events WHERE name = $1', [EVENT_NAME]);
+  }
+}
+
+// Run the benchmark if this file is executed directly
+if (require.main === module) {
+  benchmarkExport().then(() => {
+    console.log('✨ Export benchmark finished');
+    process.exit(0);
+  }).catch((error) => {
+    console.error('Export benchmark failed:', error);
+    process.exit(1);
+  });
+}
+
+export { benchmarkExport };
@@ -0,0 +1,124 @@
+#!/usr/bin/env bun
+
+import { query } from './connection';
+import { EventService } from '../services/eventService';
+import { StudentImport, workbookRows } from '../services/studentImport';
+import * as XLSX from 'xlsx';
+
+// Times the spreadsheet import on a synthetic sheet shaped like the graduation
+// file (one row per student, a few comma-separated guests), in a throwaway
+// event that is deleted afterwards. --legacy N also times the old path, one
+// EventService.createEventItem per row, on the first N rows.
+//
+//   bun run db:bench-import --rows 20000 --guests 3 --legacy 1000
+
+const EVENT_NAME = 'Import Benchmark';
+
+function option(name: string, fallback: string): string {
+  const index = process.argv.indexOf(`--${name}`);
+  return index >= 0 && process.argv[index + 1] ? process.argv[index + 1] : fallback;
+}
+
+function syntheticSheet(rows: number, guests: number): ArrayBuffer {
+  const data: (string | number)[][] = [[
+    'student_id', 'student_name', 'student_email', 'student_email_parent_1',
+    'student_email_parent_2', 'number_of_seats', 'invitees'
+  ]];
+  for (let i = 1; i <= rows; i++) {
+    const names = Array.from({ length: guests }, (_, g) => `ضيف ${g + 1} للطالب ${i}`);
+    data.push([
+      `B${100000 + i}`, `طالب رقم ${i}`, `student${i}@bench.invalid`, `parent${i}@bench.invalid`,
+      `parent${i}b@bench.invalid`, guests, names.join(', ')
+    ]);
+  }
+  const workbook = XLSX.utils.book_new();
+  XLSX.utils.book_append_sheet(workbook, XLSX.utils.aoa_to_sheet(data), 'Students');
+  const bytes: Uint8Array = XLSX.write(workbook, { type: 'array', bookType: 'xlsx' });
+  return bytes.buffer.slice(bytes.byteOffset, bytes.byteOffset + bytes.byteLength) as ArrayBuffer;
+}
+
+async function createEvent(): Promise<number> {
+  const result = await query(
+    'INSERT INTO bydaya_events (name, location) VALUES ($1, $2) RETURNING id',
+    [EVENT_NAME, 'Benchmark']
+  );
+  return result.rows[0].id;
+}
+
+// Samples the heap while fn runs, so the report shows the import's peak and not just the end state
+async function measure<T>(fn: () => Promise<T>): Promise<{ value: T; ms: number; peakHeapMb: number }> {
+  let peak = process.memoryUsage().heapUsed;
+  const sampler = setInterval(() => {
+    peak = Math.max(peak, process.memoryUsage().heapUsed);
+  }, 20);
+  const started = performance.now();
+  try {
+    const value = await fn();
+    return { value, ms: performance.now() - started, peakHeapMb: peak / 1024 / 1024 };
+  } finally {
+    clearInterval(sampler);
+  }
+}
+
+async function benchmarkImport() {
+  const rows = parseInt(option('rows', '20000'));
+  const guests = parseInt(option('guests', '3'));
+  const legacyRows = parseInt(option('legacy', '0'));
+
+  await query('DELETE FROM bydaya_events WHERE name = $1', [EVENT_NAME]);
+  const sheet = syntheticSheet(rows, guests);
+  console.log(`📄 ${rows} rows x ${guests} guests, ${(sheet.byteLength / 1024 / 1024).toFixed(1)} MB xlsx`);
+
+  try {
+    const eventId = await createEvent();
+    let chunks = 0;
+    const run = await measure(() => StudentImport.run(eventId, workbookRows(sheet), () => chunks++));
+    const result = run.value;
+    console.log(`⚡ Chunked import: ${result.studentsAdded} students, ${result.inviteesAdded} invitees ` +
+      `in ${(run.ms / 1000).toFixed(2)}s (${Math.round(result.studentsAdded / (run.ms / 1000))} rows/s, ` +
+      `${chunks} chunks), peak heap ${run.peakHeapMb.toFixed(0)} MB`);
+    if (result.errors) {
+      console.log(`   ${result.errors.length} rows rejected, first: ${result.errors[0]}`);
+    }
+
+    if (legacyRows > 0) {
+      const legacyEventId = await createEvent();
+      const data = XLSX.utils.sheet_to_json(
+        XLSX.read(sheet, { type: 'array' }).Sheets.Students
+      ).slice(0, legacyRows) as any[];
+      const legacy = await measure(async () => {
+        for (const row of data) {
+          await EventService.createEventItem({
+            event_id: legacyEventId,
+            student_id: row.student_id,
+            student_name: row.student_name,
+            student_email: row.student_email,
+            student_email_parent_1: row.student_email_parent_1,
+            student_email_parent_2: row.student_email_parent_2,
+            number_of_seats: row.number_of_seats,
+            invitees: row.invitees
+          });
+        }
+        return data.length;
+      });
+      const perRow = legacy.ms / legacy.value;
+      console.log(`🐢 Row-by-row: ${legacy.value} students in ${(legacy.ms / 1000).toFixed(2)}s ` +
+        `(${Math.round(1000 / perRow)} rows/s, about ${(perRow * rows / 1000).toFixed(0)}s for ${rows} rows)`);
+    }
+  } finally {
+    await query('DELETE FROM bydaya_events WHERE name = $1', [EVENT_NAME]);
+  }
+}
+
+// Run the benchmark if this file is executed directly
+if (require.main === module) {
+  benchmarkImport().then(() => {
+    console.log('✨ Import benchmark finished');
+    process.exit(0);
+  }).catch((error) => {
+    console.error('Import benchmark failed:', error);
+    process.exit(1);
+  });
+}
+
+export { benchmarkImport };
@@ -13,4 +13,21 @@ export const getClient = () => {
   return pool.connect();
 };
 
+// Attendance exports hold a connection, in an open transaction, for as long as
+// the download runs, so they get a small pool of their own instead of taking
+// connections from the scanners. One more export waits briefly, then is refused.
+const exportPool = new Pool({
+  connectionString: process.env.DATABASE_URL,
+  ssl: process.env.NODE_ENV === 'production' ? { rejectUnauthorized: false } : false,
+  max: parseInt(process.env.EXPORT_POOL_SIZE || '2'),
+  connectionTimeoutMillis: parseInt(process.env.EXPORT_POOL_WAIT_MS || '5000'),
+});
+exportPool.on('error', (error) => {
+  console.error('Idle export connection failed:', error);
+});
+
+export const getExportClient = () => {
+  return exportPool.connect();
+};
+
 export default pool;
\ No newline at end of file
@@ -0,0 +1,101 @@
+#!/usr/bin/env bun
+
+import { getClient, query } from './connection';
+import bcrypt from 'bcryptjs';
+import { writeFileSync } from 'fs';
+
+// Fixtures for the scanner load simulator (BedayiaTicketsReader2/loadsim):
+// one API user per simulated gate, and an event whose QR codes it scans.
+// Safe to re-run before every load test: it revokes the gates' API keys and
+// rebuilds the event, so every run starts with nobody checked in.
+//
+// The simulator scans each code once per run, so --students has to cover every
+// guest the stages send; it prints the expected number and stops at the stage
+// where the codes run out. The default covers its default stages about twice.
+//
+//   bun run db:seed-loadtest --gates 400 --students 5000 --guests 3 --out loadtest-codes.txt
+
+const USER_PREFIX = 'loadgate';
+const PASSWORD = 'loadtest';
+const EVENT_NAME = 'Load Test';
+
+function option(name: string, fallback: string): string {
+  const index = process.argv.indexOf(`--${name}`);
+  return index >= 0 && process.argv[index + 1] ? process.argv[index + 1] : fallback;
+}
+
+async function seedLoadTest() {
+  const gates = parseInt(option('gates', '400'));
+  const students = parseInt(option('students', '5000'));
+  const guests = parseInt(option('guests', '3'));
+  const out = option('out', 'loadtest-codes.txt');
+
+  const hashedPassword = await bcrypt.hash(PASSWORD, 10);
+  for (let i = 1; i <= gates; i++) {
+    await query(`
+      INSERT INTO users (username, email, password_hash, role)
+      VALUES ($1, $2, $3, 'user')
+      ON CONFLICT (username) DO UPDATE SET password_hash = EXCLUDED.password_hash, updated_at = NOW()
+    `, [`${USER_PREFIX}${i}`, `${USER_PREFIX}${i}@loadtest.invalid`, hashedPassword]);
+  }
+  // A gate that was not logged out last time would be refused with "Api Key Already Exist"
+  await query(`
+    DELETE FROM api_keys WHERE user_id IN (SELECT id FROM users WHERE username LIKE $1)
+  `, [`${USER_PREFIX}%`]);
+  console.log(`✅ ${gates} gate users ${USER_PREFIX}1..${USER_PREFIX}${gates}, password ${PASSWORD}`);
+
+  const codes: string[] = [];
+  const client = await getClient();
+  try {
+    await client.query('BEGIN');
+    await client.query('DELETE FROM bydaya_events WHERE name = $1', [EVENT_NAME]);
+    const event = await client.query(
+      'INSERT INTO bydaya_events (name, location, active) VALUES ($1, $2, false) RETURNING id',
+      [EVENT_NAME, 'Load test']
+    );
+    const eventId = event.rows[0].id;
+
+    for (let i = 1; i <= students; i++) {
+      const studentId = `LT${i}`;
+      const studentName = `Load Student ${i}`;
+      const item = await client.query(`
+        INSERT INTO bydaya_event_items
+        (event_id, student_id, student_name, student_email, student_email_parent_1, number_of_seats)
+        VALUES ($1, $2, $3, $4, $4, $5)
+        RETURNING id
+      `, [eventId, studentId, studentName, `${studentId.toLowerCase()}@loadtest.invalid`, guests]);
+
+      // Same QR text rule as EventService.createEventItem
+      const qrCodeText = `${studentId}${studentName}`;
+      const names = [studentName];
+      for (let g = 1; g <= guests; g++) {
+        names.push(`Guest ${g} of ${studentName}`);
+      }
+      await client.query(`
+        INSERT INTO bydaya_event_invitees
+        (event_id, student_item_id, invitees_name, invitees_qrcode_text, main_invitee)
+        SELECT $1, $2, name, $3, ord = 1
+        FROM unnest($4::text[]) WITH ORDINALITY AS t(name, ord)
+      `, [eventId, item.rows[0].id, qrCodeText, names]);
+      codes.push(qrCodeText);
+    }
+    await client.query('COMMIT');
+  } catch (error) {
+    await client.query('ROLLBACK');
+    throw error;
+  } finally {
+    client.release();
+  }
+
+  writeFileSync(out, codes.join('\n') + '\n');
+  console.log(`✅ Event "${EVENT_NAME}" with ${students} tickets of ${guests} guests; codes written to ${out}`);
+}
+
+if (require.main === module) {
+  seedLoadTest().then(() => process.exit(0)).catch((error) => {
+    console.error('❌ Error seeding load test:', error);
+    process.exit(1);
+  });
+}
+
+export { seedLoadTest };
@@ -0,0 +1,145 @@
+#!/usr/bin/env bun
+
+import net from 'net';
+
+// A minimal SMTP server that accepts every message and keeps only its envelope,
+// for sending invite emails without a real relay. --delay adds the relay's
+// per-message latency before the message is acknowledged.
+//
+//   bun run smtp:stand-in --port 2525 --delay 80
+//   SMTP_HOST=localhost SMTP_PORT=2525 bun run dev
+
+export interface ReceivedMessage {
+  from: string;
+  to: string[];
+  bytes: number;
+}
+
+export interface SmtpStandIn {
+  port: number;
+  received: ReceivedMessage[];
+  // Most connections open at once, to check the transporter's pool size
+  peakConnections: number;
+  close(): Promise<void>;
+}
+
+export function startSmtpStandIn(port = 2525, delayMs = 0): Promise<SmtpStandIn> {
+  const received: ReceivedMessage[] = [];
+  const sockets = new Set<net.Socket>();
+  let connections = 0;
+  const stats = { peakConnections: 0 };
+
+  const server = net.createServer((socket) => {
+    connections++;
+    sockets.add(socket);
+    stats.peakConnections = Math.max(stats.peakConnections, connections);
+    socket.on('close', () => {
+      connections--;
+      sockets.delete(socket);
+    });
+    socket.on('error', () => {});
+
+    let buffered = '';
+    let inData = false;
+    let dataBytes = 0;
+    let envelope: ReceivedMessage = { from: '', to: [], bytes: 0 };
+    const reply = (line: string) => socket.write(`${line}\r\n`);
+
+    const command = (line: string) => {
+      const verb = line.slice(0, 4).toUpperCase();
+      if (verb === 'EHLO') {
+        reply('250-stand-in');
+        reply('250-8BITMIME');
+        reply('250 SMTPUTF8');
+      } else if (verb === 'HELO') {
+        reply('250 stand-in');
+      } else if (verb === 'MAIL') {
+        envelope = { from: line.replace(/^MAIL FROM:\s*<?([^>\s]*)>?.*$/i, '$1'), to: [], bytes: 0 };
+        reply('250 OK');
+      } else if (verb === 'RCPT') {
+        envelope.to.push(line.replace(/^RCPT TO:\s*<?([^>\s]*)>?.*$/i, '$1'));
+        reply('250 OK');
+      } else if (verb === 'DATA') {
+        inData = true;
+        dataBytes = 0;
+        reply('354 End data with <CR><LF>.<CR><LF>');
+      } else if (verb === 'RSET') {
+        envelope = { from: '', to: [], bytes: 0 };
+        reply('250 OK');
+      } else if (verb === 'QUIT') {
+        reply('221 Bye');
+        socket.end();
+      } else {
+        reply(verb === 'NOOP' ? '250 OK' : '502 Command not implemented');
+      }
+    };
+
+    socket.on('data', (chunk) => {
+      buffered += chunk.toString('latin1');
+      for (;;) {
+        if (inData) {
+          const end = buffered.indexOf('\r\n.\r\n');
+          if (end < 0) {
+            // Keep the tail in case the terminator is split across reads
+            dataBytes += Math.max(0, buffered.length - 4);
+            buffered = buffered.slice(Math.max(0, buffered.length - 4));
+            return;
+          }
+          const message = { ...envelope, bytes: dataBytes + end };
+          buffered = buffered.slice(end + 5);
+          inData = false;
+          setTimeout(() => {
+            received.push(message);
+            reply('250 OK queued');
+          }, delayMs);
+          continue;
+        }
+        const newline = buffered.indexOf('\r\n');
+        if (newline < 0) {
+          return;
+        }
+        const line = buffered.slice(0, newline);
+        buffered = buffered.slice(newline + 2);
+        command(line);
+      }
+    });
+
+    reply('220 stand-in ESMTP');
+  });
+
+  return new Promise((resolve, reject) => {
+    server.once('error', reject);
+    server.listen(port, () => {
+      const address = server.address() as net.AddressInfo;
+      resolve({
+        port: address.port,
+        received,
+        get peakConnections() {
+          return stats.peakConnections;
+        },
+        // Pooled clients keep their connections open, so drop them
+        close: () => new Promise<void>((done) => {
+          server.close(() => done());
+          sockets.forEach((socket) => socket.destroy());
+        })
+      });
+    });
+  });
+}
+
+// Run the stand-in if this file is executed directly
+if (require.main === module) {
+  const option = (name: string, fallback: string) => {
+    const index = process.argv.indexOf(`--${name}`);
+    return index >= 0 && process.argv[index + 1] ? process.argv[index + 1] : fallback;
+  };
+  startSmtpStandIn(parseInt(option('port', '2525')), parseInt(option('delay', '0'))).then((standIn) => {
+    console.log(`📮 SMTP stand-in listening on ${standIn.port}`);
+    setInterval(() => {
+      console.log(`   ${standIn.received.length} messages received, ${standIn.peakConnections} peak connections`);
+    }, 5000).unref();
+  }).catch((error) => {
+    console.error('SMTP stand-in failed:', error);
+    process.exit(1);
+  });
+}
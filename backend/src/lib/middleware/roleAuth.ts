@@ -1,5 +1,6 @@
 import { NextRequest, NextResponse } from 'next/server';
 import { AuthService } from '@/lib/auth';
+import { AuthCache } from '@/lib/services/authCache';
 import { User } from '@/types';
 
 export interface AuthenticatedRequest extends NextRequest {
@@ -89,6 +90,8 @@ export function withRoleAuth(
 ) {
   return async (request: NextRequest, context: any): Promise<NextResponse> => {
     try {
+      AuthCache.countRequest();
+
       // Extract API key from request
       let apiKey = request.headers.get('x-api-key');
 
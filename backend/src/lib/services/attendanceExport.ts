@@ -0,0 +1,205 @@
+import { getExportClient, query } from '@/lib/db/connection';
+import { XlsxStreamWriter } from '@/lib/xlsxStream';
+
+// Rows fetched from the cursor per round trip, and written to the response together
+const EXPORT_FETCH_SIZE = parseInt(process.env.EXPORT_FETCH_SIZE || '1000');
+// A download whose reader takes nothing for this long is abandoned and its connection released.
+// Postgres ends the transaction itself a little later, in case this process can't
+const EXPORT_STALL_TIMEOUT_MS = parseInt(process.env.EXPORT_STALL_TIMEOUT_MS || '30000');
+const EXPORT_SERVER_IDLE_TIMEOUT_MS = EXPORT_STALL_TIMEOUT_MS + 10000;
+
+// Every export connection is busy; the caller should try again shortly
+export class ExportBusyError extends Error {}
+
+export type ExportFormat = 'csv' | 'xlsx';
+export type AttendanceFilter = 'all' | 'present' | 'absent';
+
+export interface AttendanceExportOptions {
+  eventId?: number | null;
+  attendance?: AttendanceFilter;
+  format?: ExportFormat;
+}
+
+const HEADER = [
+  'Student Name', 'Student ID', 'Invitee Name', 'Attendance Status', 'Attendance Time', 'Email Sent', 'Event Date'
+];
+
+export const EXPORT_CONTENT_TYPES: Record<ExportFormat, string> = {
+  csv: 'text/csv; charset=utf-8',
+  xlsx: 'application/vnd.openxmlformats-officedocument.spreadsheetml.sheet',
+};
+
+function csvField(value: string | null): string {
+  if (value === null) {
+    return '';
+  }
+  return /[",\r\n]/.test(value) ? `"${value.replace(/"/g, '""')}"` : value;
+}
+
+function csvLines(rows: (string | null)[][]): string {
+  return rows.map(row => row.map(csvField).join(',')).join('\r\n') + '\r\n';
+}
+
+/**
+ * Attendance report rows (guests only, like the Excel report always was),
+ * streamed from a server-side cursor straight into the response. Memory stays
+ * at one fetch of rows however large the event is, and the first bytes go out
+ * as soon as Postgres returns the first batch.
+ */
+export class AttendanceExport {
+  static async filename(eventId: number | null | undefined, format: ExportFormat): Promise<string> {
+    let filename = `attendance_report.${format}`;
+    if (eventId) {
+      const result = await query('SELECT name FROM bydaya_events WHERE id = $1', [eventId]);
+      if (result.rows.length > 0) {
+        // Clean filename by removing special characters
+        const cleanEventName = result.rows[0].name.replace(/[^a-zA-Z0-9\s]/g, '').replace(/\s+/g, '_');
+        filename = `${cleanEventName}_attendance_report.${format}`;
+      }
+    }
+    return filename;
+  }
+
+  // Opens the cursor before returning, so a bad query fails the request instead of the download
+  static async stream(options: AttendanceExportOptions): Promise<ReadableStream<Uint8Array>> {
+    const format = options.format || 'xlsx';
+    let whereClause = `WHERE inv.active = true AND e.active = true AND ei.active = true AND inv.main_invitee = false`;
+    const params: any[] = [];
+    if (options.eventId) {
+      params.push(options.eventId);
+      whereClause += ` AND e.id = $${params.length}`;
+    }
+    if (options.attendance === 'present') {
+      whereClause += ' AND inv.invitees_attendance = true';
+    } else if (options.attendance === 'absent') {
+      whereClause += ' AND inv.invitees_attendance IS NOT TRUE';
+    }
+
+    let client: Awaited<ReturnType<typeof getExportClient>> | null;
+    try {
+      client = await getExportClient();
+    } catch (error: any) {
+      if (/timeout/i.test(error?.message || '')) {
+        throw new ExportBusyError('Too many exports running');
+      }
+      throw error;
+    }
+    let xlsx: XlsxStreamWriter | null = null;
+    let stallTimer: ReturnType<typeof setTimeout> | null = null;
+    let broken = false;
+    const encoder = new TextEncoder();
+    // Postgres ending the session (e.g. the idle timeout below) is reported here, not thrown
+    const onError = (error: Error) => {
+      console.error('Attendance export connection failed:', error);
+      broken = true;
+    };
+    client.on('error', onError);
+
+    const release = async (commit: boolean) => {
+      if (stallTimer) {
+        clearTimeout(stallTimer);
+        stallTimer = null;
+      }
+      if (!client) {
+        return;
+      }
+      const current = client;
+      client = null;
+      // Ending the transaction closes the cursor
+      if (!broken) {
+        await current.query(commit ? 'COMMIT' : 'ROLLBACK').catch(() => {
+          broken = true;
+        });
+      }
+      current.off('error', onError);
+      // A broken connection is closed rather than handed to the next export
+      current.release(broken);
+    };
+
+    // Armed whenever a chunk waits for the reader; pull() disarms it
+    const awaitReader = (controller: ReadableStreamDefaultController<Uint8Array>) => {
+      stallTimer = setTimeout(() => {
+        stallTimer = null;
+        console.error(`Attendance export abandoned: nothing read for ${EXPORT_STALL_TIMEOUT_MS}ms`);
+        release(false);
+        controller.error(new Error('Export reader stalled'));
+      }, EXPORT_STALL_TIMEOUT_MS);
+    };
+
+    try {
+      // A cursor only lives inside a transaction; read-only, so it blocks nobody
+      await client.query('BEGIN READ ONLY');
+      await client.query(`SET LOCAL idle_in_transaction_session_timeout = ${EXPORT_SERVER_IDLE_TIMEOUT_MS}`);
+      await client.query(`
+        DECLARE attendance_export NO SCROLL CURSOR FOR
+        SELECT
+          ei.student_name,
+          ei.student_id,
+          inv.invitees_name,
+          CASE WHEN inv.invitees_attendance THEN 'Present' ELSE 'Absent' END as attendance_status,
+          CASE WHEN inv.invitees_attendance_time IS NOT NULL
+               THEN TO_CHAR(inv.invitees_attendance_time, 'YYYY-MM-DD HH24:MI')
+               ELSE '' END as attendance_time,
+          CASE WHEN inv.mail_send THEN 'Yes' ELSE 'No' END as email_sent,
+          TO_CHAR(e.created_at, 'YYYY-MM-DD') as event_date
+        FROM bydaya_event_invitees inv
+        JOIN bydaya_events e ON inv.event_id = e.id
+        JOIN bydaya_event_items ei ON inv.student_item_id = ei.id
+        ${whereClause}
+        ORDER BY e.created_at DESC, ei.student_name, inv.id
+      `, params);
+    } catch (error) {
+      await release(false);
+      throw error;
+    }
+
+    return new ReadableStream<Uint8Array>({
+      start: (controller) => {
+        if (format === 'xlsx') {
+          xlsx = new XlsxStreamWriter('Attendance');
+          controller.enqueue(xlsx.start(HEADER));
+        } else {
+          // BOM so Excel opens the Arabic names as UTF-8
+          controller.enqueue(encoder.encode('\uFEFF' + csvLines([HEADER])));
+        }
+        awaitReader(controller);
+      },
+
+      // Called again only once the consumer has taken what we gave it
+      pull: async (controller) => {
+        if (stallTimer) {
+          clearTimeout(stallTimer);
+          stallTimer = null;
+        }
+        try {
+          const batch = await client!.query(`FETCH ${EXPORT_FETCH_SIZE} FROM attendance_export`);
+          const rows: (string | null)[][] = batch.rows.map(row => [
+            row.student_name, row.student_id, row.invitees_name, row.attendance_status,
+            row.attendance_time, row.email_sent, row.event_date
+          ]);
+          if (rows.length > 0) {
+            controller.enqueue(xlsx ? await xlsx.rows(rows) : encoder.encode(csvLines(rows)));
+          }
+          if (rows.length < EXPORT_FETCH_SIZE) {
+            if (xlsx) {
+              controller.enqueue(await xlsx.finish());
+            }
+            await release(true);
+            controller.close();
+          } else {
+            awaitReader(controller);
+          }
+        } catch (error) {
+          console.error('Attendance export failed:', error);
+          await release(false);
+          controller.error(error);
+        }
+      },
+
+      // The client went away
+      cancel: async () => {
+        await release(false);
+      },
+    }, { highWaterMark: 1 });
+  }
+}
@@ -0,0 +1,118 @@
+import { format } from 'date-fns';
+
+export interface AttendanceChange {
+  event_id: number;
+  invitees_qrcode_text: string;
+  invitees_name: string;
+  invitees_attendance: boolean;
+  invitees_attendance_time: string | null;
+}
+
+export interface StreamedChange {
+  // SSE event id, "<boot>.<seq>", so a reconnecting client can resume
+  id: string;
+  change: AttendanceChange;
+}
+
+type Listener = (change: StreamedChange) => void;
+
+// Recent changes kept for clients that reconnect with Last-Event-ID
+const BACKLOG_SIZE = 1000;
+
+interface StreamState {
+  boot: string;
+  seq: number;
+  backlog: StreamedChange[];
+  listeners: Set<Listener>;
+}
+
+// Route handlers can be bundled separately, so the state lives on globalThis
+// to make sure every route publishes to the same subscribers
+const globalForStream = globalThis as unknown as { attendanceStream?: StreamState };
+const state: StreamState = globalForStream.attendanceStream ?? {
+  boot: Date.now().toString(36),
+  seq: 0,
+  backlog: [],
+  listeners: new Set(),
+};
+globalForStream.attendanceStream = state;
+
+/**
+ * In-process fan-out of attendance changes to the gate devices subscribed to
+ * tickets/stream. Single server process only; every write path that changes
+ * invitees_attendance must call publish().
+ */
+export class AttendanceStream {
+
+  static publish(change: AttendanceChange): StreamedChange {
+    const streamed = { id: `${state.boot}.${++state.seq}`, change };
+    state.backlog.push(streamed);
+    if (state.backlog.length > BACKLOG_SIZE) {
+      state.backlog.shift();
+    }
+    state.listeners.forEach(listener => {
+      try {
+        listener(streamed);
+      } catch (error) {
+        console.error('Attendance stream listener error:', error);
+      }
+    });
+    return streamed;
+  }
+
+  /**
+   * Registers a listener and returns the changes it missed since lastEventId,
+   * or null when they can no longer be replayed (server restarted or the
+   * backlog rolled over) and the client should treat its state as stale.
+   */
+  static subscribe(listener: Listener, lastEventId: string | null): { missed: StreamedChange[] | null; unsubscribe: () => void } {
+    state.listeners.add(listener);
+    return {
+      missed: lastEventId ? AttendanceStream.since(lastEventId) : [],
+      unsubscribe: () => {
+        state.listeners.delete(listener);
+      },
+    };
+  }
+
+  // Id of the latest published change, so a snapshot can tell clients which pushes it already includes
+  static lastId(): string {
+    return `${state.boot}.${state.seq}`;
+  }
+
+  static subscriberCount(): number {
+    return state.listeners.size;
+  }
+
+  // Same shape and format as tickets/get_data
+  static fromRow(row: {
+    event_id: number;
+    invitees_qrcode_text: string;
+    invitees_name: string;
+    invitees_attendance: boolean;
+    invitees_attendance_time: Date | string | null;
+  }): AttendanceChange {
+    return {
+      event_id: row.event_id,
+      invitees_qrcode_text: row.invitees_qrcode_text,
+      invitees_name: row.invitees_name,
+      invitees_attendance: row.invitees_attendance,
+      invitees_attendance_time: row.invitees_attendance_time
+        ? format(new Date(row.invitees_attendance_time), 'yyyy-MM-dd HH:mm:ss')
+        : null,
+    };
+  }
+
+  private static since(lastEventId: string): StreamedChange[] | null {
+    const [boot, seqText] = lastEventId.split('.');
+    const seq = parseInt(seqText, 10);
+    if (boot !== state.boot || isNaN(seq)) {
+      return null;
+    }
+    const oldest = state.backlog.length > 0 ? state.seq - state.backlog.length + 1 : state.seq + 1;
+    if (seq < oldest - 1) {
+      return null;
+    }
+    return state.backlog.slice(state.backlog.length - (state.seq - seq));
+  }
+}
@@ -0,0 +1,160 @@
+import { User, UserRole } from '@/types';
+
+// Short, so a key revoked by another process (or by hand in SQL) stops working
+// quickly; revocations through AuthService in this process take effect at once.
+// AUTH_CACHE_TTL_MS=0 turns caching off, e.g. to measure the uncached baseline
+const TTL_MS = parseInt(process.env.AUTH_CACHE_TTL_MS ?? '30000');
+const MAX_KEYS = parseInt(process.env.AUTH_CACHE_MAX_KEYS || '2000');
+
+interface Cached<T> {
+  value: T;
+  expiresAt: number;
+}
+
+// A verified key's user, and when the key itself expires (null if never)
+export interface ApiKeyUser {
+  user: User;
+  keyExpiresAt: Date | null;
+}
+
+export interface AuthCacheStats {
+  ttlMs: number;
+  cachedKeys: number;
+  requests: number;
+  queries: number;
+  queriesPerRequest: number;
+  keyHits: number;
+  keyMisses: number;
+  roleHits: number;
+  roleMisses: number;
+  revocations: number;
+}
+
+interface AuthCacheState {
+  // Insertion ordered; a hit re-inserts, so the first key is least recently used
+  keys: Map<string, Cached<User>>;
+  roles: Map<string, Cached<UserRole>>;
+  requests: number;
+  queries: number;
+  keyHits: number;
+  keyMisses: number;
+  roleHits: number;
+  roleMisses: number;
+  revocations: number;
+  // Bumped by every revocation; a lookup that raced one is not cached
+  generation: number;
+}
+
+// Route handlers can be bundled separately, so the state lives on globalThis
+// to make sure a logout in one route revokes the key for all the others
+const globalForAuth = globalThis as unknown as { authCache?: AuthCacheState };
+const state: AuthCacheState = globalForAuth.authCache ?? {
+  keys: new Map(),
+  roles: new Map(),
+  requests: 0,
+  queries: 0,
+  keyHits: 0,
+  keyMisses: 0,
+  roleHits: 0,
+  roleMisses: 0,
+  revocations: 0,
+  generation: 0,
+};
+globalForAuth.authCache = state;
+
+function fresh<T>(map: Map<string, Cached<T>>, key: string): T | undefined {
+  const cached = map.get(key);
+  if (!cached) {
+    return undefined;
+  }
+  if (cached.expiresAt <= Date.now()) {
+    map.delete(key);
+    return undefined;
+  }
+  map.delete(key);
+  map.set(key, cached);
+  return cached.value;
+}
+
+/**
+ * Verified API keys and role rows, so withRoleAuth does not query Postgres on
+ * every scanner request. Only successful lookups are cached. Also counts the
+ * auth queries that do reach the database, per authenticated request.
+ */
+export class AuthCache {
+
+  static async user(apiKey: string, load: () => Promise<ApiKeyUser | null>): Promise<User | null> {
+    const cached = fresh(state.keys, apiKey);
+    if (cached) {
+      state.keyHits++;
+      return cached;
+    }
+    state.keyMisses++;
+    state.queries++;
+    const generation = state.generation;
+    const loaded = await load();
+    if (loaded && TTL_MS > 0 && generation === state.generation) {
+      // Never serve a key from the cache past its own expiry
+      let expiresAt = Date.now() + TTL_MS;
+      if (loaded.keyExpiresAt) {
+        expiresAt = Math.min(expiresAt, loaded.keyExpiresAt.getTime());
+      }
+      state.keys.set(apiKey, { value: loaded.user, expiresAt });
+      while (state.keys.size > MAX_KEYS) {
+        state.keys.delete(state.keys.keys().next().value as string);
+      }
+    }
+    return loaded ? loaded.user : null;
+  }
+
+  static async role(roleName: string, load: () => Promise<UserRole | null>): Promise<UserRole | null> {
+    const cached = fresh(state.roles, roleName);
+    if (cached) {
+      state.roleHits++;
+      return cached;
+    }
+    state.roleMisses++;
+    state.queries++;
+    const role = await load();
+    if (role && TTL_MS > 0) {
+      state.roles.set(roleName, { value: role, expiresAt: Date.now() + TTL_MS });
+    }
+    return role;
+  }
+
+  static revokeKey(apiKey: string): void {
+    state.revocations++;
+    state.generation++;
+    state.keys.delete(apiKey);
+  }
+
+  // Role change, password change or deletion: drop every key of this user
+  static revokeUser(userId: number): void {
+    state.revocations++;
+    state.generation++;
+    state.keys.forEach((cached, apiKey) => {
+      if (cached.value.id === userId) {
+        state.keys.delete(apiKey);
+      }
+    });
+  }
+
+  static countRequest(): void {
+    state.requests++;
+  }
+
+  static stats(): AuthCacheStats {
+    return {
+      ttlMs: TTL_MS,
+      cachedKeys: state.keys.size,
+      requests: state.requests,
+      queries: state.queries,
+      queriesPerRequest: state.requests > 0 ? state.queries / state.requests : 0,
+      keyHits: state.keyHits,
+      keyMisses: state.keyMisses,
+      roleHits: state.roleHits,
+      roleMisses: state.roleMisses,
+      revocations: state.revocations,
+    };
+  }
+}
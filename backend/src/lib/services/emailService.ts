@@ -1,6 +1,6 @@
 import nodemailer from 'nodemailer';
-import QRCode from 'qrcode';
-import { query } from '@/lib/db/connection';
+import { query, getClient } from '@/lib/db/connection';
+import { QrImageCache, qrImageDigestSql } from './qrImageCache';
 
 export interface EmailConfig {
   host?: string;
@@ -20,6 +20,168 @@ export interface EmailData {
   attachments?: any[];
 }
 
+// Messages in flight at once; also the number of pooled SMTP connections
+export const EMAIL_CONCURRENCY = parseInt(process.env.EMAIL_CONCURRENCY || '5');
+// Messages per second across the pool, 0 for no limit (most relays throttle)
+export const SMTP_RATE_LIMIT = parseInt(process.env.SMTP_RATE_LIMIT || '10');
+// QR images fetched or rendered ahead of the senders
+const EMAIL_QR_LOOKAHEAD = parseInt(process.env.EMAIL_QR_LOOKAHEAD || '32');
+// Sent students recorded per UPDATE; at most this many are mailed again after a crash
+const EMAIL_STATUS_BATCH = parseInt(process.env.EMAIL_STATUS_BATCH || '50');
+const EMAIL_STATUS_FLUSH_MS = 1000;
+const INVITE_PAGE_SIZE = 500;
+// First key of the pg_advisory_lock taken per event while its invites go out
+const INVITE_LOCK_CLASS = 4039;
+
+export interface InviteSendOptions {
+  concurrency?: number;
+  qrLookahead?: number;
+  statusBatchSize?: number;
+  // Stops taking new invitees; the ones already sent are still recorded
+  signal?: AbortSignal;
+}
+
+interface PendingInvite {
+  invitee_id: number;
+  student_item_id: number;
+  student_email: string | null;
+  student_email_parent_1: string | null;
+  student_email_parent_2: string | null;
+  invitees_qrcode_text: string;
+  qr_png: Buffer | null;
+}
+
+interface RenderedInvite {
+  invitee: PendingInvite;
+  qrCode: Buffer | null;
+  error?: unknown;
+}
+
+// Main invitees still waiting for their email, a page at a time. Keyset paging
+// so rows marked sent while we go don't shift the pages.
+async function* pendingInvites(eventId: number, signal?: AbortSignal): AsyncGenerator<PendingInvite> {
+  let afterId = 0;
+  while (!signal?.aborted) {
+    const page = await query(`
+      SELECT
+        bei.id as invitee_id,
+        bei.student_item_id,
+        beitem.student_email,
+        beitem.student_email_parent_1,
+        beitem.student_email_parent_2,
+        bei.invitees_qrcode_text,
+        qr.png AS qr_png
+      FROM bydaya_event_invitees bei
+      JOIN bydaya_event_items beitem ON bei.student_item_id = beitem.id
+      LEFT JOIN bydaya_qr_images qr ON qr.digest = ${qrImageDigestSql('bei.invitees_qrcode_text')}
+      WHERE beitem.event_id = $1
+      AND bei.main_invitee = true
+      AND bei.invitees_qrcode_text IS NOT NULL
+      AND bei.mail_send = false
+      AND bei.id > $2
+      ORDER BY bei.id
+      LIMIT $3
+    `, [eventId, afterId, INVITE_PAGE_SIZE]);
+    yield* page.rows;
+    if (page.rows.length < INVITE_PAGE_SIZE) {
+      return;
+    }
+    afterId = page.rows[page.rows.length - 1].invitee_id;
+  }
+}
+
+// Keeps up to `depth` QR images ready ahead of whoever consumes the invites.
+// Most come with the page from the image cache; the rest are rendered once and stored.
+async function* renderAhead(invites: AsyncIterable<PendingInvite>, depth: number): AsyncGenerator<RenderedInvite> {
+  const queue: Promise<RenderedInvite>[] = [];
+  for await (const invitee of invites) {
+    const image = invitee.qr_png
+      ? Promise.resolve(invitee.qr_png)
+      : QrImageCache.render(invitee.invitees_qrcode_text).then((rendered) => rendered.png);
+    queue.push(image.then(
+      (qrCode) => ({ invitee, qrCode }),
+      (error) => ({ invitee, qrCode: null, error })
+    ));
+    if (queue.length >= depth) {
+      yield await queue.shift()!;
+    }
+  }
+  while (queue.length > 0) {
+    yield await queue.shift()!;
+  }
+}
+
+// Collects sent students and marks them in one UPDATE per batch, or once a
+// second when sending is slow, instead of one round trip per email
+class SentStatusBatcher {
+  private pending: number[] = [];
+  private flushing: Promise<void> = Promise.resolve();
+  private timer: ReturnType<typeof setTimeout> | null = null;
+
+  constructor(private batchSize: number) {}
+
+  add(studentItemId: number) {
+    this.pending.push(studentItemId);
+    if (this.pending.length >= this.batchSize) {
+      this.flush();
+    } else if (!this.timer) {
+      this.timer = setTimeout(() => this.flush(), EMAIL_STATUS_FLUSH_MS);
+    }
+  }
+
+  async close(): Promise<void> {
+    this.flush();
+    await this.flushing;
+  }
+
+  private flush() {
+    if (this.timer) {
+      clearTimeout(this.timer);
+      this.timer = null;
+    }
+    if (this.pending.length === 0) {
+      return;
+    }
+    const ids = this.pending;
+    this.pending = [];
+    this.flushing = this.flushing.then(() => query(`
+      UPDATE bydaya_event_invitees
+      SET mail_send = true, mail_sent_at = CURRENT_TIMESTAMP, updated_at = CURRENT_TIMESTAMP
+      WHERE student_item_id = ANY($1::int[])
+    `, [ids])).then(
+      (result) => console.log(`Marked ${result.rowCount} invitee records of ${ids.length} students as sent`),
+      (error) => console.error(`Failed to mark ${ids.length} students as sent:`, error)
+    );
+  }
+}
+
+function inviteHtml(qrCodeBase64: string): string {
+  return `
+            <div style="font-family: Arial, sans-serif; max-width: 600px; margin: 0 auto;">
+              <h2>Bedayia International School Event Invitation</h2>
+              
+              <p>To Whom It May Concern,</p>
+              
+              <p>Kindly find attached the QR code for your requested ticket to the upcoming Bedayia International School event.</p>
+              
+              ${qrCodeBase64 ? `<div style="text-align: center; margin: 20px 0;">
+                <img src="data:image/png;base64,${qrCodeBase64}" 
+                     style="width:200px;height:200px;object-fit:cover;" 
+                     alt="QR Code"/>
+              </div>` : ''}
+              
+              <p>please share the QR code with your invitees.</p>
+              
+              <p>We kindly ask that you have your designated QR code ready on your mobile device at the entrance gate, where it will be scanned and verified.</p>
+              
+              <p>Thank you and best regards,</p>
+              
+              <p><strong>BIS Tickets</strong><br/>
+              Bedayia International School</p>
+            </div>
+          `;
+}
+
 export class EmailService {
   private static transporter: nodemailer.Transporter | null = null;
 
@@ -34,7 +196,15 @@ export class EmailService {
       }
     };
 
-    return nodemailer.createTransport(config);
+    // Pooled so a send run reuses a few connections instead of a handshake per
+    // message; the pool also enforces the relay's rate limit
+    return nodemailer.createTransport({
+      ...config,
+      pool: true,
+      maxConnections: EMAIL_CONCURRENCY,
+      maxMessages: 100,
+      ...(SMTP_RATE_LIMIT > 0 ? { rateDelta: 1000, rateLimit: SMTP_RATE_LIMIT } : {})
+    });
   }
 
   private static getTransporter(): nodemailer.Transporter {
@@ -66,161 +236,95 @@ export class EmailService {
     }
   }
 
-  static async sendEventInviteEmails(eventId: number): Promise<{ success: boolean; sent: number; failed: number }> {
+  static async sendEventInviteEmails(
+    eventId: number,
+    options: InviteSendOptions = {}
+  ): Promise<{ success: boolean; sent: number; failed: number; busy?: boolean }> {
+    const concurrency = options.concurrency ?? EMAIL_CONCURRENCY;
+    const qrLookahead = options.qrLookahead ?? EMAIL_QR_LOOKAHEAD;
+    const client = await getClient();
+    let locked = false;
     try {
-      // Get event details
-      const eventResult = await query(`
-        SELECT name, email_subject 
-        FROM bydaya_events 
-        WHERE id = $1
-      `, [eventId]);
+      // One run per event at a time; a second click must not mail everybody twice
+      const lock = await client.query('SELECT pg_try_advisory_lock($1, $2) AS locked', [INVITE_LOCK_CLASS, eventId]);
+      locked = lock.rows[0].locked;
+      if (!locked) {
+        console.warn(`Invite emails for event ${eventId} are already being sent`);
+        return { success: false, sent: 0, failed: 0, busy: true };
+      }
 
+      const eventResult = await client.query('SELECT name FROM bydaya_events WHERE id = $1', [eventId]);
       if (eventResult.rows.length === 0) {
         throw new Error('Event not found');
       }
+      const eventName = eventResult.rows[0].name;
 
-      const event = eventResult.rows[0];
-      const eventName = event.name;
-      const emailSubject = event.email_subject || 'BIS Tickets';
-
-      // Get all invitees for this event with their QR codes (only those who haven't been sent emails)
-      const inviteesResult = await query(`
-        SELECT DISTINCT
-          bei.id as invitee_id,
-          bei.student_item_id,
-          beitem.student_email,
-          beitem.student_email_parent_1,
-          beitem.student_email_parent_2,
-          beitem.number_of_seats,
-          bei.invitees_qrcode_text,
-          bei.mail_send,
-          bei.mail_sent_at
-        FROM bydaya_event_invitees bei
-        JOIN bydaya_event_items beitem ON bei.student_item_id = beitem.id
-        WHERE beitem.event_id = $1 
-        AND bei.main_invitee = true
-        AND bei.invitees_qrcode_text IS NOT NULL
-        AND bei.mail_send = false
-      `, [eventId]);
-
-      console.log(`Found ${inviteesResult.rows.length} invitees to send emails to`);
-      if (inviteesResult.rows.length === 0) {
-        console.log('No invitees found with QR codes for event', eventId);
-      }
-
+      const transporter = this.getTransporter();
+      const statuses = new SentStatusBatcher(options.statusBatchSize ?? EMAIL_STATUS_BATCH);
+      const started = Date.now();
       let sent = 0;
       let failed = 0;
 
-      for (const invitee of inviteesResult.rows) {
-        try {
-          // Generate QR code from text
-          let qrCodeBase64 = '';
-          let qrCodeBuffer: Buffer | null = null;
-          if (invitee.invitees_qrcode_text) {
-            qrCodeBuffer = await QRCode.toBuffer(invitee.invitees_qrcode_text, {
-              width: 256,
-              margin: 2,
-              color: {
-                dark: '#000000',
-                light: '#FFFFFF'
-              }
-            });
-            qrCodeBase64 = qrCodeBuffer.toString('base64');
+      // Pages of pending rows -> QR codes rendered ahead of the senders -> a pool of
+      // senders sharing the pooled transporter -> batched mail_send updates
+      const rendered = renderAhead(pendingInvites(eventId, options.signal), qrLookahead)[Symbol.asyncIterator]();
+      const worker = async () => {
+        for (;;) {
+          if (options.signal?.aborted) {
+            return;
           }
-          
-          const numberOfSeats = invitee.number_of_seats || 1;
-          
-          const emailHtml = `
-            <div style="font-family: Arial, sans-serif; max-width: 600px; margin: 0 auto;">
-              <h2>Bedayia International School Event Invitation</h2>
-              
-              <p>To Whom It May Concern,</p>
-              
-              <p>Kindly find attached the QR code for your requested ticket to the upcoming Bedayia International School event.</p>
-              
-              ${qrCodeBase64 ? `<div style="text-align: center; margin: 20px 0;">
-                <img src="data:image/png;base64,${qrCodeBase64}" 
-                     style="width:200px;height:200px;object-fit:cover;" 
-                     alt="QR Code"/>
-              </div>` : ''}
-              
-              <p>please share the QR code with your invitees.</p>
-              
-              <p>We kindly ask that you have your designated QR code ready on your mobile device at the entrance gate, where it will be scanned and verified.</p>
-              
-              <p>Thank you and best regards,</p>
-              
-              <p><strong>BIS Tickets</strong><br/>
-              Bedayia International School</p>
-            </div>
-          `;
+          const next = await rendered.next();
+          if (next.done) {
+            return;
+          }
+          const { invitee, qrCode, error } = next.value;
+          try {
+            if (error) {
+              throw error;
+            }
+            if (!invitee.student_email) {
+              failed++;
+              console.warn(`No email address found for student item ${invitee.student_item_id}`);
+              continue;
+            }
+            const ccEmails: string[] = [];
+            if (invitee.student_email_parent_1) ccEmails.push(invitee.student_email_parent_1);
+            if (invitee.student_email_parent_2) ccEmails.push(invitee.student_email_parent_2);
 
-          // Prepare recipient emails
-          const recipients: string[] = [];
-          if (invitee.student_email) recipients.push(invitee.student_email);
-          
-          // Add CC recipients
-          const ccEmails: string[] = [];
-          if (invitee.student_email_parent_1) ccEmails.push(invitee.student_email_parent_1);
-          if (invitee.student_email_parent_2) ccEmails.push(invitee.student_email_parent_2);
-
-          // Send to primary email
-          if (recipients.length > 0) {
-            const emailData: EmailData = {
-              to: recipients[0],
+            await transporter.sendMail({
+              from: process.env.SMTP_FROM || 'tickets@bedayia.com',
+              to: invitee.student_email,
               cc: ccEmails.join(', '),
               subject: eventName,
-              html: emailHtml,
-              attachments: qrCodeBuffer ? [{
+              html: inviteHtml(qrCode ? qrCode.toString('base64') : ''),
+              attachments: qrCode ? [{
                 filename: 'qr-code.png',
-                content: qrCodeBuffer,
+                content: qrCode,
                 contentType: 'image/png'
               }] : []
-            };
-
-            const emailSent = await this.sendEmail(emailData);
-            if (emailSent) {
-              // Mark main invitee as sent and all invitees under the same student as sent
-              console.log(`Updating all invitees for student_item_id: ${invitee.student_item_id}`);
-              
-              const updateResult = await query(`
-                UPDATE bydaya_event_invitees 
-                SET mail_send = true, mail_sent_at = CURRENT_TIMESTAMP, updated_at = CURRENT_TIMESTAMP
-                WHERE student_item_id = $1
-              `, [invitee.student_item_id]);
-              
-              console.log(`Updated ${updateResult.rowCount} invitee records for student_item_id: ${invitee.student_item_id}`);
-              
-              sent++;
-              console.log(`Email sent successfully to ${emailData.to} for student item ${invitee.student_item_id} - marked all invitees as sent`);
-            } else {
-              failed++;
-            }
-          } else {
-            failed++;
-            console.warn(`No email address found for student item ${invitee.student_item_id}`);
-          }
-
-        } catch (error) {
-          failed++;
-          console.error(`Error sending email for student item ${invitee.student_item_id}:`, error);
-          
-          // Log specific error details for debugging
-          if (error instanceof Error) {
-            console.error('Error details:', {
-              message: error.message,
-              name: error.name,
-              stack: error.stack?.split('\n')[0]
             });
+            sent++;
+            // Marks every invitee of the student, like the single update it replaces
+            statuses.add(invitee.student_item_id);
+          } catch (error) {
+            failed++;
+            console.error(`Error sending email for student item ${invitee.student_item_id}:`,
+              error instanceof Error ? error.message : error);
           }
         }
+      };
+
+      try {
+        await Promise.all(Array.from({ length: Math.max(1, concurrency) }, worker));
+      } finally {
+        // Whatever was sent is recorded even if the run stops early, so a rerun
+        // only picks up the students still pending
+        await statuses.close();
       }
 
-      return {
-        success: true,
-        sent,
-        failed
-      };
+      console.log(`Invite emails for event ${eventId}: ${sent} sent, ${failed} failed in ` +
+        `${((Date.now() - started) / 1000).toFixed(1)}s`);
+      return { success: true, sent, failed };
 
     } catch (error) {
       console.error('Error in sendEventInviteEmails:', error);
@@ -229,6 +333,11 @@ export class EmailService {
         sent: 0,
         failed: 0
       };
+    } finally {
+      if (locked) {
+        await client.query('SELECT pg_advisory_unlock($1, $2)', [INVITE_LOCK_CLASS, eventId]).catch(() => {});
+      }
+      client.release();
     }
   }
 
@@ -1,10 +1,32 @@
 import { query } from '@/lib/db/connection';
 import { BydayaEventInvitee, GetDataResponse, UpdateDataRequest } from '@/types';
 import { format } from 'date-fns';
+import { AttendanceStream } from './attendanceStream';
+import { InviteeLookupCache } from './lookupCache';
+
+// Gate clocks drift; a time a little ahead is the same moment, one far ahead is bogus
+const CHECK_IN_CLOCK_SKEW_MS = 60_000;
+
+// A gate's own check-in time, if it sent a usable one; never later than now
+function clientCheckInTime(value: unknown): number | null {
+  if (typeof value !== 'number' || !Number.isFinite(value) || value <= 0) {
+    return null;
+  }
+  const now = Date.now();
+  if (value > now + CHECK_IN_CLOCK_SKEW_MS) {
+    return null;
+  }
+  return Math.min(value, now);
+}
 
 export class EventService {
   
+  // Scans hit the same code repeatedly (re-scans, several gates), so answers are cached
   static async getInviteesByQRCode(qrCodeText: string): Promise<GetDataResponse> {
+    return InviteeLookupCache.get(qrCodeText, () => EventService.queryInviteesByQRCode(qrCodeText));
+  }
+
+  private static async queryInviteesByQRCode(qrCodeText: string): Promise<GetDataResponse> {
     try {
       const result = await query(`
         SELECT 
@@ -45,6 +67,7 @@ export class EventService {
     try {
       for (const invitee of updateData.invitees) {
         const { invitees_name, invitees_attendance, invitees_qrcode_text } = invitee;
+        const checkedInAt = clientCheckInTime(invitee.invitees_checked_in_at);
 
         // Find the invitee record
         const findResult = await query(`
@@ -56,15 +79,33 @@ export class EventService {
         if (findResult.rows.length > 0) {
           const inviteeRecord = findResult.rows[0];
           
-          // Only update if attendance is true and no previous attendance time
-          if (invitees_attendance && !inviteeRecord.invitees_attendance_time) {
-            await query(`
-              UPDATE bydaya_event_invitees 
+          // Only update if attendance is true and no previous attendance time, or, for a
+          // check-in a gate made offline, if it is earlier than the one recorded: the
+          // gates agree the earliest admission stands, and so should the server
+          if (invitees_attendance && (!inviteeRecord.invitees_attendance_time || checkedInAt !== null)) {
+            // Re-checked in the UPDATE (in the database's own time zone) so two gates
+            // racing on one guest publish once
+            const updateResult = await query(`
+              UPDATE bydaya_event_invitees bei
               SET invitees_attendance = true, 
-                  invitees_attendance_time = NOW(),
+                  invitees_attendance_time = COALESCE(to_timestamp($2::double precision / 1000), NOW()),
                   updated_at = NOW()
-              WHERE id = $1
-            `, [inviteeRecord.id]);
+              FROM (SELECT id, invitees_attendance FROM bydaya_event_invitees WHERE id = $1 FOR UPDATE) prev
+              WHERE bei.id = prev.id AND (bei.invitees_attendance_time IS NULL
+                                          OR bei.invitees_attendance_time > to_timestamp($2::double precision / 1000))
+              RETURNING bei.event_id, bei.invitees_qrcode_text, bei.invitees_name,
+                        bei.invitees_attendance, bei.invitees_attendance_time,
+                        prev.invitees_attendance AS was_attended
+            `, [inviteeRecord.id, checkedInAt]);
+
+            if (updateResult.rows.length > 0) {
+              InviteeLookupCache.invalidate(invitees_qrcode_text);
+              // An earlier time for a guest already inside only corrects the record;
+              // the gates count every push as someone coming in
+              if (!updateResult.rows[0].was_attended) {
+                AttendanceStream.publish(AttendanceStream.fromRow(updateResult.rows[0]));
+              }
+            }
           }
         }
       }
@@ -153,6 +194,9 @@ export class EventService {
         }
       }
 
+      // A scan of this code may have been cached as "no invitees" before the import
+      InviteeLookupCache.invalidate(qrCodeText);
+
       return eventItem;
     } catch (error) {
       console.error('Error creating event item:', error);
@@ -0,0 +1,148 @@
+import { GetDataResponse } from '@/types';
+
+// Bounded so a long event night cannot grow the heap without limit; the TTL is
+// a backstop for writes that bypass invalidate() (e.g. manual SQL)
+const MAX_ENTRIES = parseInt(process.env.LOOKUP_CACHE_MAX_ENTRIES || '5000');
+const TTL_MS = parseInt(process.env.LOOKUP_CACHE_TTL_MS || '60000');
+
+interface CachedLookup {
+  value: GetDataResponse;
+  expiresAt: number;
+}
+
+interface PendingLookup {
+  promise: Promise<GetDataResponse>;
+  // Set when a write for this code lands while the query is in flight
+  stale: boolean;
+}
+
+export interface LookupCacheStats {
+  size: number;
+  maxEntries: number;
+  ttlMs: number;
+  hits: number;
+  misses: number;
+  coalesced: number;
+  hitRatio: number;
+  invalidations: number;
+  evictions: number;
+  expirations: number;
+}
+
+interface CacheState {
+  // Map keeps insertion order; a hit re-inserts, so the first key is least recently used
+  entries: Map<string, CachedLookup>;
+  pending: Map<string, PendingLookup>;
+  hits: number;
+  misses: number;
+  coalesced: number;
+  invalidations: number;
+  evictions: number;
+  expirations: number;
+}
+
+// Route handlers can be bundled separately, so the state lives on globalThis
+// to make sure an invalidation from one route reaches the lookups of another
+const globalForCache = globalThis as unknown as { inviteeLookupCache?: CacheState };
+const state: CacheState = globalForCache.inviteeLookupCache ?? {
+  entries: new Map(),
+  pending: new Map(),
+  hits: 0,
+  misses: 0,
+  coalesced: 0,
+  invalidations: 0,
+  evictions: 0,
+  expirations: 0,
+};
+globalForCache.inviteeLookupCache = state;
+
+/**
+ * In-process LRU + TTL cache of tickets/get_data results keyed by QR text.
+ * Concurrent misses for the same code share one query. Every write path
+ * that changes what a code returns must call invalidate() (or clear() for
+ * bulk admin edits). Single server process only, like AttendanceStream.
+ */
+export class InviteeLookupCache {
+
+  static async get(qrCodeText: string, load: () => Promise<GetDataResponse>): Promise<GetDataResponse> {
+    const cached = state.entries.get(qrCodeText);
+    if (cached) {
+      if (cached.expiresAt > Date.now()) {
+        state.entries.delete(qrCodeText);
+        state.entries.set(qrCodeText, cached);
+        state.hits++;
+        return cached.value;
+      }
+      state.entries.delete(qrCodeText);
+      state.expirations++;
+    }
+
+    const inFlight = state.pending.get(qrCodeText);
+    if (inFlight) {
+      state.coalesced++;
+      return inFlight.promise;
+    }
+
+    state.misses++;
+    const pending: PendingLookup = { promise: load(), stale: false };
+    state.pending.set(qrCodeText, pending);
+    try {
+      const value = await pending.promise;
+      if (!pending.stale) {
+        InviteeLookupCache.put(qrCodeText, value);
+      }
+      return value;
+    } finally {
+      if (state.pending.get(qrCodeText) === pending) {
+        state.pending.delete(qrCodeText);
+      }
+    }
+  }
+
+  static invalidate(qrCodeText: string): void {
+    state.invalidations++;
+    state.entries.delete(qrCodeText);
+    const inFlight = state.pending.get(qrCodeText);
+    if (inFlight) {
+      // Its result may predate the write: let it answer its callers but not be cached
+      inFlight.stale = true;
+      state.pending.delete(qrCodeText);
+    }
+  }
+
+  static clear(): void {
+    state.invalidations++;
+    state.entries.clear();
+    state.pending.forEach(pending => {
+      pending.stale = true;
+    });
+    state.pending.clear();
+  }
+
+  static stats(): LookupCacheStats {
+    const lookups = state.hits + state.misses + state.coalesced;
+    return {
+      size: state.entries.size,
+      maxEntries: MAX_ENTRIES,
+      ttlMs: TTL_MS,
+      hits: state.hits,
+      misses: state.misses,
+      coalesced: state.coalesced,
+      // Coalesced lookups did not reach Postgres either
+      hitRatio: lookups > 0 ? (state.hits + state.coalesced) / lookups : 0,
+      invalidations: state.invalidations,
+      evictions: state.evictions,
+      expirations: state.expirations,
+    };
+  }
+
+  private static put(qrCodeText: string, value: GetDataResponse): void {
+    state.entries.delete(qrCodeText);
+    state.entries.set(qrCodeText, { value, expiresAt: Date.now() + TTL_MS });
+    while (state.entries.size > MAX_ENTRIES) {
+      const oldest = state.entries.keys().next().value as string;
+      state.entries.delete(oldest);
+      state.evictions++;
+    }
+  }
+}
@@ -0,0 +1,102 @@
+import { query } from '@/lib/db/connection';
+
+export interface EventOccupancy {
+  event_id: number;
+  name: string;
+  invitees: number;
+  attended: number;
+  guests: number;
+  guests_attended: number;
+  seats: number;
+}
+
+export interface StudentOccupancy {
+  student_item_id: number;
+  student_id: string;
+  student_name: string;
+  number_of_seats: number;
+  guests: number;
+  guests_attended: number;
+}
+
+export interface AttendanceTotals {
+  invitees: number;
+  attended: number;
+}
+
+/**
+ * Headcounts from the counter tables that the bydaya_event_invitees trigger keeps
+ * up to date (database/init/02-attendance-counters.sql). Each read is one row per
+ * event or student instead of a COUNT over every invitee.
+ */
+export class OccupancyService {
+
+  static async eventOccupancy(eventId?: number): Promise<EventOccupancy[]> {
+    const result = await query(`
+      SELECT
+        e.id AS event_id,
+        e.name,
+        COALESCE(c.invitees, 0) AS invitees,
+        COALESCE(c.attended, 0) AS attended,
+        COALESCE(c.guests, 0) AS guests,
+        COALESCE(c.guests_attended, 0) AS guests_attended,
+        COALESCE((SELECT SUM(ei.number_of_seats) FROM bydaya_event_items ei
+                  WHERE ei.event_id = e.id AND ei.active = true), 0) AS seats
+      FROM bydaya_events e
+      LEFT JOIN bydaya_event_counters c ON c.event_id = e.id
+      WHERE e.active = true AND ($1::int IS NULL OR e.id = $1)
+      ORDER BY e.id
+    `, [eventId ?? null]);
+
+    return result.rows.map(row => ({
+      event_id: row.event_id,
+      name: row.name,
+      invitees: Number(row.invitees),
+      attended: Number(row.attended),
+      guests: Number(row.guests),
+      guests_attended: Number(row.guests_attended),
+      seats: Number(row.seats),
+    }));
+  }
+
+  static async studentOccupancy(eventId: number): Promise<StudentOccupancy[]> {
+    const result = await query(`
+      SELECT
+        ei.id AS student_item_id,
+        ei.student_id,
+        ei.student_name,
+        ei.number_of_seats,
+        COALESCE(c.guests, 0) AS guests,
+        COALESCE(c.guests_attended, 0) AS guests_attended
+      FROM bydaya_event_items ei
+      LEFT JOIN bydaya_event_item_counters c ON c.student_item_id = ei.id
+      WHERE ei.event_id = $1 AND ei.active = true
+      ORDER BY ei.student_name
+    `, [eventId]);
+
+    return result.rows.map(row => ({
+      student_item_id: row.student_item_id,
+      student_id: row.student_id,
+      student_name: row.student_name,
+      number_of_seats: Number(row.number_of_seats),
+      guests: Number(row.guests),
+      guests_attended: Number(row.guests_attended),
+    }));
+  }
+
+  // Active invitees over all events, or only over the active ones
+  static async totals(activeEventsOnly: boolean): Promise<AttendanceTotals> {
+    const result = await query(`
+      SELECT
+        COALESCE(SUM(c.invitees), 0) AS invitees,
+        COALESCE(SUM(c.attended), 0) AS attended
+      FROM bydaya_event_counters c
+      JOIN bydaya_events e ON e.id = c.event_id
+      WHERE e.active = true OR NOT $1::boolean
+    `, [activeEventsOnly]);
+    return {
+      invitees: Number(result.rows[0].invitees),
+      attended: Number(result.rows[0].attended),
+    };
+  }
+}
@@ -0,0 +1,111 @@
+import crypto from 'crypto';
+import QRCode from 'qrcode';
+import { query } from '@/lib/db/connection';
+
+// Part of every digest: bump it when the render options change so the old
+// images stop being found instead of being served for the new look
+const RENDER_VERSION = 'qr-v1';
+const RENDER_OPTIONS = {
+  width: 256,
+  margin: 2,
+  color: {
+    dark: '#000000',
+    light: '#FFFFFF'
+  }
+};
+// Codes rendered at once while warming; rendering is CPU, so more only queues
+const WARM_CONCURRENCY = 4;
+const WARM_BATCH = 200;
+
+export interface QrImage {
+  digest: string;
+  png: Buffer;
+}
+
+export function qrImageDigest(qrCodeText: string): string {
+  return crypto.createHash('sha256').update(`${RENDER_VERSION}:${qrCodeText}`, 'utf8').digest('hex');
+}
+
+// The same digest computed by Postgres, to join a query's codes to their images
+export function qrImageDigestSql(column: string): string {
+  return `encode(sha256(convert_to('${RENDER_VERSION}:' || ${column}, 'UTF8')), 'hex')::char(64)`;
+}
+
+/**
+ * QR PNGs rendered once per distinct code and kept in bydaya_qr_images, keyed
+ * by qrImageDigest. An image never changes under its digest, so it can be
+ * served as immutable and reused by every email and admin view of that code.
+ */
+export class QrImageCache {
+  static async get(qrCodeText: string): Promise<QrImage> {
+    const digest = qrImageDigest(qrCodeText);
+    const cached = await this.byDigest(digest);
+    if (cached) {
+      return { digest, png: cached };
+    }
+    return this.render(qrCodeText);
+  }
+
+  // For callers that already know the code has no image yet
+  static async render(qrCodeText: string): Promise<QrImage> {
+    const digest = qrImageDigest(qrCodeText);
+    const png = await QRCode.toBuffer(qrCodeText, RENDER_OPTIONS);
+    await this.store([digest], [png]);
+    return { digest, png };
+  }
+
+  static async byDigest(digest: string): Promise<Buffer | null> {
+    const result = await query('SELECT png FROM bydaya_qr_images WHERE digest = $1', [digest]);
+    return result.rows.length > 0 ? result.rows[0].png : null;
+  }
+
+  // Renders and stores the images of the codes that don't have one yet
+  static async warm(qrCodeTexts: Iterable<string>): Promise<{ rendered: number; cached: number }> {
+    const byDigest = new Map<string, string>();
+    for (const text of qrCodeTexts) {
+      byDigest.set(qrImageDigest(text), text);
+    }
+    const digests = Array.from(byDigest.keys());
+    let rendered = 0;
+
+    for (let start = 0; start < digests.length; start += WARM_BATCH) {
+      const batch = digests.slice(start, start + WARM_BATCH);
+      const existing = await query('SELECT digest FROM bydaya_qr_images WHERE digest = ANY($1)', [batch]);
+      const have = new Set<string>(existing.rows.map(row => row.digest));
+      const missing = batch.filter(digest => !have.has(digest));
+
+      const pngs: Buffer[] = new Array(missing.length);
+      let next = 0;
+      await Promise.all(Array.from({ length: WARM_CONCURRENCY }, async () => {
+        while (next < missing.length) {
+          const index = next++;
+          pngs[index] = await QRCode.toBuffer(byDigest.get(missing[index])!, RENDER_OPTIONS);
+        }
+      }));
+      if (missing.length > 0) {
+        await this.store(missing, pngs);
+        rendered += missing.length;
+      }
+    }
+
+    return { rendered, cached: digests.length - rendered };
+  }
+
+  // Every code of an event, e.g. right after its spreadsheet was imported
+  static async warmEvent(eventId: number): Promise<{ rendered: number; cached: number }> {
+    const result = await query(`
+      SELECT DISTINCT invitees_qrcode_text FROM bydaya_event_invitees
+      WHERE event_id = $1 AND active = true AND invitees_qrcode_text IS NOT NULL
+    `, [eventId]);
+    return this.warm(result.rows.map(row => row.invitees_qrcode_text));
+  }
+
+  private static async store(digests: string[], pngs: Buffer[]): Promise<void> {
+    // A concurrent render of the same code produced the same bytes; keep either
+    await query(`
+      INSERT INTO bydaya_qr_images (digest, png)
+      SELECT * FROM unnest($1::char(64)[], $2::bytea[])
+      ON CONFLICT (digest) DO NOTHING
+    `, [digests, pngs]);
+  }
+}
@@ -0,0 +1,400 @@
+import * as XLSX from 'xlsx';
+import { getClient } from '@/lib/db/connection';
+import { InviteeLookupCache } from './lookupCache';
+
+// Rows validated and written per round trip
+export const IMPORT_CHUNK_SIZE = parseInt(process.env.IMPORT_CHUNK_SIZE || '500');
+
+export type SheetCell = string | number | boolean | Date | null | undefined;
+export type SheetRow = SheetCell[];
+
+export interface ImportProgress {
+  rowsRead: number;
+  studentsAdded: number;
+  inviteesAdded: number;
+}
+
+export interface ImportResult extends ImportProgress {
+  success: boolean;
+  message: string;
+  errors?: string[];
+  durationMs: number;
+}
+
+// The sheet can't be imported at all (no rows, unrecognised columns)
+export class ImportFormatError extends Error {
+  constructor(message: string, public details: string[] = [], public status = 400) {
+    super(message);
+    this.name = 'ImportFormatError';
+  }
+}
+
+interface ColumnMap {
+  studentId: number;
+  studentName: number;
+  studentEmail: number;
+  parent1Email: number;
+  parent2Email: number;
+  seats: number;
+  invitees: number;
+}
+
+interface StudentRecord {
+  student_id: string;
+  student_name: string;
+  student_email: string;
+  student_email_parent_1: string;
+  student_email_parent_2: string | null;
+  number_of_seats: number;
+  invitees: string | null;
+}
+
+const EMAIL_REGEX = /^[^\s@]+@[^\s@]+\.[^\s@]+$/;
+
+/**
+ * Rows of the first worksheet, a chunk at a time, header row included. XLSX is
+ * a zip and has to be opened whole, but rows are only turned into arrays one
+ * chunk at a time instead of one object per row for the whole sheet.
+ */
+export async function* workbookRows(data: ArrayBuffer, chunkSize = IMPORT_CHUNK_SIZE): AsyncGenerator<SheetRow[]> {
+  const workbook = XLSX.read(data, { type: 'array', dense: true, cellHTML: false, cellText: false });
+  if (!workbook.SheetNames || workbook.SheetNames.length === 0) {
+    throw new ImportFormatError('No worksheets found in the file');
+  }
+  const sheet = workbook.Sheets[workbook.SheetNames[0]];
+  if (!sheet || !sheet['!ref']) {
+    return;
+  }
+  const range = XLSX.utils.decode_range(sheet['!ref']);
+  for (let start = range.s.r; start <= range.e.r; start += chunkSize) {
+    const end = Math.min(start + chunkSize - 1, range.e.r);
+    const rows = XLSX.utils.sheet_to_json<SheetRow>(sheet, {
+      header: 1,
+      range: { s: { r: start, c: range.s.c }, e: { r: end, c: range.e.c } },
+      blankrows: false,
+      defval: null,
+    });
+    if (rows.length > 0) {
+      yield rows;
+    }
+  }
+}
+
+/** Rows of a CSV file as it streams in, a chunk at a time; quoted fields may span lines. */
+export async function* csvRows(stream: ReadableStream<Uint8Array>, chunkSize = IMPORT_CHUNK_SIZE): AsyncGenerator<SheetRow[]> {
+  const reader = stream.getReader();
+  const decoder = new TextDecoder('utf-8');
+  let rows: SheetRow[] = [];
+  let row: string[] = [];
+  let field = '';
+  let quoted = false;
+  // A quote inside a quoted field is either "" (escaped) or its end; decided by the next char
+  let quoteSeen = false;
+  let first = true;
+
+  const endRow = () => {
+    row.push(field);
+    field = '';
+    if (row.length > 1 || row[0] !== '') {
+      rows.push(row);
+    }
+    row = [];
+  };
+
+  for (;;) {
+    const { done, value } = await reader.read();
+    let text = done ? decoder.decode() : decoder.decode(value, { stream: true });
+    if (first && text.length > 0) {
+      // Excel writes a byte order mark
+      if (text.charCodeAt(0) === 0xfeff) {
+        text = text.slice(1);
+      }
+      first = false;
+    }
+    for (let i = 0; i < text.length; i++) {
+      const c = text[i];
+      if (quoteSeen) {
+        quoteSeen = false;
+        if (c === '"') {
+          field += '"';
+          continue;
+        }
+        quoted = false;
+      }
+      if (quoted) {
+        if (c === '"') {
+          quoteSeen = true;
+        } else {
+          field += c;
+        }
+      } else if (c === '"' && field === '') {
+        quoted = true;
+      } else if (c === ',') {
+        row.push(field);
+        field = '';
+      } else if (c === '\n') {
+        endRow();
+      } else if (c !== '\r') {
+        field += c;
+      }
+    }
+    if (rows.length >= chunkSize) {
+      yield rows;
+      rows = [];
+    }
+    if (done) {
+      break;
+    }
+  }
+  if (field !== '' || row.length > 0) {
+    endRow();
+  }
+  if (rows.length > 0) {
+    yield rows;
+  }
+}
+
+// Case-insensitive, punctuation-blind and either-way substring match, as the upload page documents
+function findColumn(columnNames: string[], patterns: string[]): number {
+  for (const pattern of patterns) {
+    const cleanPattern = pattern.toLowerCase().replace(/[^a-z0-9]/g, '');
+    const found = columnNames.findIndex(col => {
+      const cleanCol = col.toLowerCase().trim().replace(/[^a-z0-9]/g, '');
+      return cleanCol.includes(cleanPattern) || cleanPattern.includes(cleanCol);
+    });
+    if (found >= 0) return found;
+  }
+  return -1;
+}
+
+export function mapColumns(header: SheetRow): ColumnMap {
+  const columnNames = header.map(cell => (cell ?? '').toString());
+  const columns: ColumnMap = {
+    studentId: findColumn(columnNames, ['studentid', 'id', 'studentnumber', 'number', 'رقم', 'code']),
+    studentName: findColumn(columnNames, ['studentname', 'name', 'fullname', 'اسم']),
+    studentEmail: findColumn(columnNames, ['studentemail', 'email', 'mail', 'البريد']),
+    parent1Email: findColumn(columnNames, ['parentemail', 'parent1', 'guardian', 'ولي', 'father', 'mother']),
+    parent2Email: findColumn(columnNames, ['parent2', 'parentemail2', 'guardian2', 'mother', 'father']),
+    seats: findColumn(columnNames, ['seats', 'numberofseats', 'seat']),
+    invitees: findColumn(columnNames, ['invitees', 'guests', 'attendees']),
+  };
+
+  const missingInfo = [];
+  if (columns.studentId < 0) missingInfo.push('Student ID/Number');
+  if (columns.studentName < 0) missingInfo.push('Student Name');
+  if (columns.studentEmail < 0) missingInfo.push('Student Email');
+  if (columns.parent1Email < 0) missingInfo.push('Parent Email');
+
+  if (missingInfo.length > 0) {
+    throw new ImportFormatError('Could not automatically match column names', [
+      `Available columns in your Excel file: ${columnNames.join(', ')}`,
+      `Could not find: ${missingInfo.join(', ')}`,
+      `Please check your column names match one of these patterns:`,
+      `- Student ID: containing 'id', 'number', 'student'`,
+      `- Student Name: containing 'name', 'student'`,
+      `- Student Email: containing 'email', 'mail'`,
+      `- Parent Email: containing 'parent', 'guardian', 'father', 'mother'`
+    ]);
+  }
+  return columns;
+}
+
+function cellText(row: SheetRow, column: number): string {
+  if (column < 0) return '';
+  const value = row[column];
+  return value === null || value === undefined ? '' : value.toString().trim();
+}
+
+/**
+ * Bulk import of an event's students from spreadsheet rows. Rows are
+ * validated a chunk at a time and each chunk is written with two multi-row
+ * INSERTs (students, then all their invitees) instead of one INSERT per
+ * student and per guest. The whole import is one transaction, so a failure
+ * leaves the event as it was; rows that fail validation are reported and
+ * skipped, as before.
+ */
+export class StudentImport {
+
+  static async run(
+    eventId: number,
+    chunks: AsyncIterable<SheetRow[]>,
+    onProgress?: (progress: ImportProgress) => void
+  ): Promise<ImportResult> {
+    const started = Date.now();
+    const errors: string[] = [];
+    const progress: ImportProgress = { rowsRead: 0, studentsAdded: 0, inviteesAdded: 0 };
+    const qrCodes: string[] = [];
+    let columns: ColumnMap | null = null;
+
+    const client = await getClient();
+    try {
+      await client.query('BEGIN');
+      // Also serialises two uploads into the same event, so neither misses the other's IDs
+      const eventCheck = await client.query(
+        'SELECT id FROM bydaya_events WHERE id = $1 AND active = true FOR UPDATE',
+        [eventId]
+      );
+      if (eventCheck.rows.length === 0) {
+        throw new ImportFormatError('Event not found', [], 404);
+      }
+      const existing = await client.query(
+        'SELECT student_id FROM bydaya_event_items WHERE event_id = $1 AND active = true',
+        [eventId]
+      );
+      const existingIds = new Set<string>(existing.rows.map(row => row.student_id));
+
+      for await (const chunk of chunks) {
+        let rows = chunk;
+        if (!columns) {
+          columns = mapColumns(rows[0]);
+          rows = rows.slice(1);
+        }
+
+        const students: StudentRecord[] = [];
+        for (const row of rows) {
+          progress.rowsRead++;
+          // +1 for the header row, +1 because spreadsheet rows count from 1
+          const rowNumber = progress.rowsRead + 1;
+          const student = StudentImport.validate(row, columns, rowNumber, existingIds, errors);
+          if (student) {
+            existingIds.add(student.student_id); // Add to set to prevent duplicates within the same file
+            students.push(student);
+          }
+        }
+
+        if (students.length > 0) {
+          progress.inviteesAdded += await StudentImport.insertChunk(client, eventId, students, qrCodes);
+          progress.studentsAdded += students.length;
+        }
+        onProgress?.({ ...progress });
+      }
+
+      if (!columns || progress.rowsRead === 0) {
+        throw new ImportFormatError('No data found in the file');
+      }
+
+      await client.query('COMMIT');
+    } catch (error) {
+      await client.query('ROLLBACK').catch(() => {});
+      throw error;
+    } finally {
+      client.release();
+    }
+
+    // A scan of one of these codes may have been cached as "no invitees" before the import
+    for (const qrCode of qrCodes) {
+      InviteeLookupCache.invalidate(qrCode);
+    }
+
+    return {
+      success: progress.studentsAdded > 0,
+      message: progress.studentsAdded > 0
+        ? `Successfully processed ${progress.studentsAdded} out of ${progress.rowsRead} students`
+        : 'No students were added',
+      ...progress,
+      errors: errors.length > 0 ? errors : undefined,
+      durationMs: Date.now() - started,
+    };
+  }
+
+  private static validate(
+    row: SheetRow,
+    columns: ColumnMap,
+    rowNumber: number,
+    existingIds: Set<string>,
+    errors: string[]
+  ): StudentRecord | null {
+    const student: StudentRecord = {
+      student_id: cellText(row, columns.studentId),
+      student_name: cellText(row, columns.studentName),
+      student_email: cellText(row, columns.studentEmail),
+      student_email_parent_1: cellText(row, columns.parent1Email),
+      student_email_parent_2: cellText(row, columns.parent2Email) || null,
+      number_of_seats: parseInt(cellText(row, columns.seats) || '1') || 1,
+      invitees: cellText(row, columns.invitees) || null,
+    };
+
+    // Validate required fields
+    if (!student.student_id || !student.student_name || !student.student_email || !student.student_email_parent_1) {
+      errors.push(`Row ${rowNumber}: Missing required data`);
+      return null;
+    }
+    if (existingIds.has(student.student_id)) {
+      errors.push(`Row ${rowNumber}: Student ID '${student.student_id}' already exists in this event`);
+      return null;
+    }
+    if (!EMAIL_REGEX.test(student.student_email)) {
+      errors.push(`Row ${rowNumber}: Invalid student email format`);
+      return null;
+    }
+    if (!EMAIL_REGEX.test(student.student_email_parent_1)) {
+      errors.push(`Row ${rowNumber}: Invalid parent 1 email format`);
+      return null;
+    }
+    if (student.student_email_parent_2 && !EMAIL_REGEX.test(student.student_email_parent_2)) {
+      errors.push(`Row ${rowNumber}: Invalid parent 2 email format`);
+      return null;
+    }
+    return student;
+  }
+
+  // Same rows as EventService.createEventItem, in two statements for the whole chunk
+  private static async insertChunk(
+    client: { query: (text: string, params?: any[]) => Promise<any> },
+    eventId: number,
+    students: StudentRecord[],
+    qrCodes: string[]
+  ): Promise<number> {
+    // unnest keeps it to one parameter per column however many rows there are
+    const items = await client.query(`
+      INSERT INTO bydaya_event_items
+      (event_id, student_id, student_name, student_email, student_email_parent_1, student_email_parent_2, number_of_seats, invitees)
+      SELECT $1::int, * FROM unnest($2::varchar[], $3::varchar[], $4::varchar[], $5::varchar[], $6::varchar[], $7::int[], $8::text[])
+      RETURNING id, student_id
+    `, [
+      eventId,
+      students.map(s => s.student_id),
+      students.map(s => s.student_name),
+      students.map(s => s.student_email),
+      students.map(s => s.student_email_parent_1),
+      students.map(s => s.student_email_parent_2),
+      students.map(s => s.number_of_seats),
+      students.map(s => s.invitees),
+    ]);
+    const itemIds = new Map<string, number>(items.rows.map((row: any) => [row.student_id, row.id]));
+
+    const inviteeItems: number[] = [];
+    const inviteeNames: string[] = [];
+    const inviteeCodes: string[] = [];
+    const inviteeMain: boolean[] = [];
+    for (const student of students) {
+      const itemId = itemIds.get(student.student_id)!;
+      // Generate QR code text
+      const qrCodeText = `${student.student_id}${student.student_name}`;
+      qrCodes.push(qrCodeText);
+
+      // Main invitee, then the guests in the order listed
+      inviteeItems.push(itemId);
+      inviteeNames.push(student.student_name);
+      inviteeCodes.push(qrCodeText);
+      inviteeMain.push(true);
+      for (const name of (student.invitees || '').split(',')) {
+        const trimmedName = name.trim();
+        if (trimmedName) {
+          inviteeItems.push(itemId);
+          inviteeNames.push(trimmedName);
+          inviteeCodes.push(qrCodeText);
+          inviteeMain.push(false);
+        }
+      }
+    }
+
+    await client.query(`
+      INSERT INTO bydaya_event_invitees
+      (event_id, student_item_id, invitees_name, invitees_qrcode_text, main_invitee)
+      SELECT $1::int, * FROM unnest($2::int[], $3::varchar[], $4::text[], $5::boolean[])
+    `, [eventId, inviteeItems, inviteeNames, inviteeCodes, inviteeMain]);
+
+    return inviteeItems.length;
+  }
+}
@@ -1,5 +1,6 @@
 import { query } from '@/lib/db/connection';
 import bcrypt from 'bcryptjs';
+import { AuthCache } from './authCache';
 
 export interface User {
   id: number;
@@ -115,6 +116,9 @@ export class UserService {
       RETURNING id, username, email, role, created_at, updated_at
     `, values);
 
+    // Cached keys carry the old role and name
+    AuthCache.revokeUser(id);
+
     return result.rows[0] || null;
   }
 
@@ -124,6 +128,7 @@ export class UserService {
       WHERE id = $1
       RETURNING id
     `, [id]);
+    AuthCache.revokeUser(id);
 
     return result.rows.length > 0;
   }
@@ -152,6 +157,7 @@ export class UserService {
       WHERE id = $2
       RETURNING id
     `, [newPasswordHash, id]);
+    AuthCache.revokeUser(id);
 
     return updateResult.rows.length > 0;
   }
@@ -0,0 +1,108 @@
+import { NextRequest, NextResponse } from 'next/server';
+import { gunzipSync } from 'zlib';
+import { corsHeaders } from '@/lib/middleware';
+import { CBOR_MEDIA_TYPE, decodeInvitees, encodeInvitees } from '@/lib/cbor';
+import { GetDataResponse, UpdateDataRequest } from '@/types';
+
+// Cap on a decompressed request body, so a tiny gzip bomb can't exhaust memory
+const MAX_BODY_BYTES = 8 * 1024 * 1024;
+
+/**
+ * Thrown for bodies we cannot decode (bad gzip, bad CBOR, bad JSON);
+ * routes answer these with 400 instead of 500.
+ */
+export class BadRequestBodyError extends Error {}
+
+/**
+ * Headers for scanner responses. Accept-Encoding on a response tells the
+ * client it may gzip its request bodies to us (RFC 7694).
+ */
+export function scannerHeaders(): Record<string, string> {
+  return {
+    ...corsHeaders(),
+    'Accept-Encoding': 'gzip',
+  };
+}
+
+/**
+ * Raw request body, gunzipped when the client sent Content-Encoding: gzip.
+ */
+export async function readBody(request: NextRequest): Promise<Buffer> {
+  const raw = Buffer.from(await request.arrayBuffer());
+  const encoding = (request.headers.get('content-encoding') || '').trim().toLowerCase();
+  if (!encoding || encoding === 'identity') {
+    return raw;
+  }
+  if (encoding !== 'gzip') {
+    throw new BadRequestBodyError(`Unsupported Content-Encoding: ${encoding}`);
+  }
+  try {
+    return gunzipSync(raw, { maxOutputLength: MAX_BODY_BYTES });
+  } catch (error) {
+    throw new BadRequestBodyError('Invalid gzip body');
+  }
+}
+
+export async function readJsonBody<T>(request: NextRequest): Promise<T> {
+  const body = await readBody(request);
+  try {
+    return JSON.parse(body.toString('utf8')) as T;
+  } catch (error) {
+    throw new BadRequestBodyError('Invalid JSON body');
+  }
+}
+
+/**
+ * tickets/update_data body: the usual JSON object, or the bare CBOR invitee
+ * rows from clients switched to the compact encoding.
+ */
+export async function readUpdateDataRequest(request: NextRequest): Promise<UpdateDataRequest> {
+  if (!isCbor(request.headers.get('content-type'))) {
+    return readJsonBody<UpdateDataRequest>(request);
+  }
+  const body = await readBody(request);
+  try {
+    return { invitees: decodeInvitees(body) };
+  } catch (error) {
+    throw new BadRequestBodyError('Invalid CBOR body');
+  }
+}
+
+/**
+ * tickets/get_data response in whichever encoding the client asked for.
+ * CBOR clients get the invitee rows alone; errors stay JSON for everyone.
+ */
+export function inviteesResponse(request: NextRequest, result: GetDataResponse): NextResponse {
+  if (isCbor(request.headers.get('accept'))) {
+    const encoded = encodeInvitees(result.message);
+    return new NextResponse(new Uint8Array(encoded.buffer, encoded.byteOffset, encoded.length), {
+      status: 200,
+      headers: {
+        ...scannerHeaders(),
+        'Content-Type': CBOR_MEDIA_TYPE,
+        'Vary': 'Accept',
+      },
+    });
+  }
+  return NextResponse.json(result, {
+    status: 200,
+    headers: {
+      ...scannerHeaders(),
+      'Vary': 'Accept',
+    },
+  });
+}
+
+export function badRequestBody(error: BadRequestBodyError): NextResponse {
+  return NextResponse.json(
+    { error: error.message },
+    {
+      status: 400,
+      headers: scannerHeaders()
+    }
+  );
+}
+
+function isCbor(header: string | null): boolean {
+  return !!header && header.toLowerCase().includes(CBOR_MEDIA_TYPE);
+}
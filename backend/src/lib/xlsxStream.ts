@@ -0,0 +1,243 @@
+import zlib from 'zlib';
+
+/**
+ * Writes a single-sheet .xlsx a batch of rows at a time, for exports too large
+ * to build as a SheetJS workbook (which keeps every cell in memory until
+ * XLSX.write). Cells are inline strings or numbers, so there is no shared
+ * string table to hold on to.
+ *
+ * An .xlsx is a zip. Each entry is deflated as it is written and announces its
+ * CRC and sizes in a data descriptor after the data, so nothing is buffered
+ * beyond the current batch. The central directory at the end is one small
+ * record per entry. No zip64: an entry must stay under 4 GB.
+ */
+export class XlsxStreamWriter {
+  private entries: ZipEntry[] = [];
+  private offset = 0;
+  private sheet: ZipEntry | null = null;
+  private deflater: zlib.DeflateRaw | null = null;
+  private pending: Buffer[] = [];
+
+  constructor(private sheetName: string) {}
+
+  // The package files and the start of the sheet, up to its first row
+  start(header: string[]): Buffer {
+    const parts = [
+      this.storedFile('[Content_Types].xml', CONTENT_TYPES),
+      this.storedFile('_rels/.rels', ROOT_RELS),
+      this.storedFile('xl/workbook.xml', workbookXml(this.sheetName)),
+      this.storedFile('xl/_rels/workbook.xml.rels', WORKBOOK_RELS),
+      this.storedFile('xl/styles.xml', STYLES),
+    ];
+
+    this.sheet = this.localHeader('xl/worksheets/sheet1.xml');
+    parts.push(this.sheet.header);
+    this.deflater = zlib.createDeflateRaw();
+    this.deflater.on('data', (chunk: Buffer) => this.pending.push(chunk));
+    parts.push(this.sheetChunk(
+      '<?xml version="1.0" encoding="UTF-8" standalone="yes"?>\n' +
+      '<worksheet xmlns="http://schemas.openxmlformats.org/spreadsheetml/2006/main"><sheetData>' +
+      rowXml(header)
+    ));
+    return Buffer.concat(parts);
+  }
+
+  // Appends rows; returns the compressed bytes ready so far
+  async rows(rows: (string | number | null)[][]): Promise<Buffer> {
+    this.sheetChunk(rows.map(rowXml).join(''));
+    await new Promise<void>((resolve) => this.deflater!.flush(zlib.constants.Z_SYNC_FLUSH, () => resolve()));
+    return this.drain();
+  }
+
+  // Closes the sheet and writes the central directory
+  async finish(): Promise<Buffer> {
+    this.sheetChunk('</sheetData></worksheet>');
+    await new Promise<void>((resolve, reject) => {
+      this.deflater!.once('end', resolve);
+      this.deflater!.once('error', reject);
+      this.deflater!.end();
+    });
+    const data = this.drain();
+    const sheet = this.sheet!;
+    const descriptor = Buffer.alloc(16);
+    descriptor.writeUInt32LE(0x08074b50, 0);
+    descriptor.writeUInt32LE(sheet.crc >>> 0, 4);
+    descriptor.writeUInt32LE(sheet.compressedSize, 8);
+    descriptor.writeUInt32LE(sheet.size, 12);
+    this.offset += descriptor.length;
+
+    const directoryStart = this.offset;
+    const directory = Buffer.concat(this.entries.map(centralRecord));
+    const end = Buffer.alloc(22);
+    end.writeUInt32LE(0x06054b50, 0);
+    end.writeUInt16LE(this.entries.length, 8);
+    end.writeUInt16LE(this.entries.length, 10);
+    end.writeUInt32LE(directory.length, 12);
+    end.writeUInt32LE(directoryStart, 16);
+    return Buffer.concat([data, descriptor, directory, end]);
+  }
+
+  // Uncompressed sheet XML in; counted for the CRC and sizes, and handed to the deflater
+  private sheetChunk(xml: string): Buffer {
+    const bytes = Buffer.from(xml, 'utf8');
+    const sheet = this.sheet!;
+    sheet.crc = crc32(bytes, sheet.crc);
+    sheet.size += bytes.length;
+    this.deflater!.write(bytes);
+    return this.drain();
+  }
+
+  private drain(): Buffer {
+    const out = Buffer.concat(this.pending);
+    this.pending = [];
+    this.sheet!.compressedSize += out.length;
+    this.offset += out.length;
+    return out;
+  }
+
+  private storedFile(name: string, content: string): Buffer {
+    const data = Buffer.from(content, 'utf8');
+    const entry = this.localHeader(name, data);
+    this.offset += data.length;
+    return Buffer.concat([entry.header, data]);
+  }
+
+  // With data, the entry is stored and its sizes are known up front;
+  // without, it is deflated and they follow in a data descriptor
+  private localHeader(name: string, data?: Buffer): ZipEntry {
+    const nameBytes = Buffer.from(name, 'utf8');
+    const entry: ZipEntry = {
+      name: nameBytes,
+      offset: this.offset,
+      method: data ? 0 : 8,
+      flags: data ? 0x0800 : 0x0808,
+      crc: data ? crc32(data) : 0,
+      size: data ? data.length : 0,
+      compressedSize: data ? data.length : 0,
+      header: Buffer.alloc(0),
+    };
+    const header = Buffer.alloc(30);
+    header.writeUInt32LE(0x04034b50, 0);
+    header.writeUInt16LE(20, 4);
+    header.writeUInt16LE(entry.flags, 6);
+    header.writeUInt16LE(entry.method, 8);
+    header.writeUInt32LE(DOS_DATE_1980, 10);
+    header.writeUInt32LE(entry.crc >>> 0, 14);
+    header.writeUInt32LE(entry.compressedSize, 18);
+    header.writeUInt32LE(entry.size, 22);
+    header.writeUInt16LE(nameBytes.length, 26);
+    entry.header = Buffer.concat([header, nameBytes]);
+    this.offset += entry.header.length;
+    this.entries.push(entry);
+    return entry;
+  }
+}
+
+interface ZipEntry {
+  name: Buffer;
+  offset: number;
+  method: number;
+  flags: number;
+  crc: number;
+  size: number;
+  compressedSize: number;
+  header: Buffer;
+}
+
+// 1980-01-01 00:00 in DOS time (date in the high word); a fixed stamp keeps the output reproducible
+const DOS_DATE_1980 = (1 << 5 | 1) << 16;
+
+function centralRecord(entry: ZipEntry): Buffer {
+  const record = Buffer.alloc(46);
+  record.writeUInt32LE(0x02014b50, 0);
+  record.writeUInt16LE(20, 4);
+  record.writeUInt16LE(20, 6);
+  record.writeUInt16LE(entry.flags, 8);
+  record.writeUInt16LE(entry.method, 10);
+  record.writeUInt32LE(DOS_DATE_1980, 12);
+  record.writeUInt32LE(entry.crc >>> 0, 16);
+  record.writeUInt32LE(entry.compressedSize, 20);
+  record.writeUInt32LE(entry.size, 24);
+  record.writeUInt16LE(entry.name.length, 28);
+  record.writeUInt32LE(entry.offset, 42);
+  return Buffer.concat([record, entry.name]);
+}
+
+const CRC_TABLE = (() => {
+  const table = new Int32Array(256);
+  for (let n = 0; n < 256; n++) {
+    let c = n;
+    for (let k = 0; k < 8; k++) {
+      c = c & 1 ? 0xedb88320 ^ (c >>> 1) : c >>> 1;
+    }
+    table[n] = c;
+  }
+  return table;
+})();
+
+function crc32(bytes: Buffer, previous = 0): number {
+  let crc = ~previous;
+  for (let i = 0; i < bytes.length; i++) {
+    crc = CRC_TABLE[(crc ^ bytes[i]) & 0xff] ^ (crc >>> 8);
+  }
+  return ~crc;
+}
+
+function escapeXml(text: string): string {
+  // Control characters other than tab and newlines are not allowed in XML at all
+  return text
+    .replace(/[\u0000-\u0008\u000b\u000c\u000e-\u001f]/g, '')
+    .replace(/&/g, '&amp;')
+    .replace(/</g, '&lt;')
+    .replace(/>/g, '&gt;');
+}
+
+function rowXml(cells: (string | number | null)[]): string {
+  let xml = '<row>';
+  for (const cell of cells) {
+    if (cell === null || cell === '') {
+      xml += '<c/>';
+    } else if (typeof cell === 'number') {
+      xml += `<c><v>${cell}</v></c>`;
+    } else {
+      xml += `<c t="inlineStr"><is><t xml:space="preserve">${escapeXml(cell)}</t></is></c>`;
+    }
+  }
+  return xml + '</row>';
+}
+
+function workbookXml(sheetName: string): string {
+  return '<?xml version="1.0" encoding="UTF-8" standalone="yes"?>\n' +
+    '<workbook xmlns="http://schemas.openxmlformats.org/spreadsheetml/2006/main" ' +
+    'xmlns:r="http://schemas.openxmlformats.org/officeDocument/2006/relationships">' +
+    `<sheets><sheet name="${escapeXml(sheetName).replace(/"/g, '&quot;')}" sheetId="1" r:id="rId1"/></sheets></workbook>`;
+}
+
+const CONTENT_TYPES = '<?xml version="1.0" encoding="UTF-8" standalone="yes"?>\n' +
+  '<Types xmlns="http://schemas.openxmlformats.org/package/2006/content-types">' +
+  '<Default Extension="rels" ContentType="application/vnd.openxmlformats-package.relationships+xml"/>' +
+  '<Default Extension="xml" ContentType="application/xml"/>' +
+  '<Override PartName="/xl/workbook.xml" ContentType="application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml"/>' +
+  '<Override PartName="/xl/worksheets/sheet1.xml" ContentType="application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml"/>' +
+  '<Override PartName="/xl/styles.xml" ContentType="application/vnd.openxmlformats-officedocument.spreadsheetml.styles+xml"/>' +
+  '</Types>';
+
+const ROOT_RELS = '<?xml version="1.0" encoding="UTF-8" standalone="yes"?>\n' +
+  '<Relationships xmlns="http://schemas.openxmlformats.org/package/2006/relationships">' +
+  '<Relationship Id="rId1" Type="http://schemas.openxmlformats.org/officeDocument/2006/relationships/officeDocument" Target="xl/workbook.xml"/>' +
+  '</Relationships>';
+
+const WORKBOOK_RELS = '<?xml version="1.0" encoding="UTF-8" standalone="yes"?>\n' +
+  '<Relationships xmlns="http://schemas.openxmlformats.org/package/2006/relationships">' +
+  '<Relationship Id="rId1" Type="http://schemas.openxmlformats.org/officeDocument/2006/relationships/worksheet" Target="worksheets/sheet1.xml"/>' +
+  '<Relationship Id="rId2" Type="http://schemas.openxmlformats.org/officeDocument/2006/relationships/styles" Target="styles.xml"/>' +
+  '</Relationships>';
+
+const STYLES = '<?xml version="1.0" encoding="UTF-8" standalone="yes"?>\n' +
+  '<styleSheet xmlns="http://schemas.openxmlformats.org/spreadsheetml/2006/main">' +
+  '<fonts count="1"><font><sz val="11"/><name val="Calibri"/></font></fonts>' +
+  '<fills count="2"><fill><patternFill patternType="none"/></fill><fill><patternFill patternType="gray125"/></fill></fills>' +
+  '<borders count="1"><border><left/><right/><top/><bottom/><diagonal/></border></borders>' +
+  '<cellStyleXfs count="1"><xf numFmtId="0" fontId="0" fillId="0" borderId="0"/></cellStyleXfs>' +
+  '<cellXfs count="1"><xf numFmtId="0" fontId="0" fillId="0" borderId="0" xfId="0"/></cellXfs>' +
+  '</styleSheet>';
@@ -74,7 +74,7 @@ export interface LoginRequest {
 }
 
 export interface LoginResponse {
-  message: { apikey: string }[];
+  message: { apikey: string; gate_secret?: string }[];
   success: boolean;
 }
 
@@ -99,6 +99,8 @@ export interface UpdateDataRequest {
     invitees_name: string;
     invitees_attendance: boolean;
     invitees_qrcode_text: string;
+    // Epoch millis of a check-in made while the gate was offline; the server time otherwise
+    invitees_checked_in_at?: number;
   }[];
 }
 